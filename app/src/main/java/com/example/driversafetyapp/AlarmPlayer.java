@@ -0,0 +1,372 @@
+package com.example.driversafetyapp;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.media.AudioAttributes;
+import android.media.AudioFormat;
+import android.media.AudioTimestamp;
+import android.media.AudioTrack;
+import android.media.MediaCodec;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.os.VibrationEffect;
+import android.os.Vibrator;
+import android.util.Log;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+
+/**
+ * Fatigue alarm on a static AudioTrack: the alarm file is decoded to PCM once, at startup, and
+ * kept, so play() only starts a track whose data is already in the mixer and the PCM survives a
+ * dead track (rebuilt without decoding again). Until the file is decoded, or if it can't be
+ * decoded or played, a synthesized tone plays instead, so the alarm is never silent. While it plays, AlarmEscalation
+ * drives volume, beat and vibration from its own thread, and the first frame's presentation time
+ * (AudioTimestamp) is reported so trigger-to-audible latency can be measured.
+ */
+public class AlarmPlayer {
+
+    private static final String TAG = "AlarmPlayer";
+
+    /** Receives the System.nanoTime() at which the alarm's first frame was played out, on the alarm thread. */
+    public interface AudibleListener {
+        void onAudible(long audibleNs);
+    }
+
+    private static final int MAX_PCM_MS = 8_000;          // Longer alarm files are cut; the track loops anyway
+    private static final int TONE_SAMPLE_RATE = 44_100;
+    private static final int TONE_HZ = 880;                // Whole cycles per second, so the 1 s tone loops seamlessly
+    private static final float TONE_AMPLITUDE = 0.8f;
+    private static final long CODEC_TIMEOUT_US = 10_000;
+    private static final long AUDIBLE_POLL_MS = 2;
+    private static final long AUDIBLE_TIMEOUT_MS = 1000;   // Give up measuring if the track never reports a position
+
+    private static final AudioAttributes ATTRIBUTES = new AudioAttributes.Builder()
+            .setUsage(AudioAttributes.USAGE_ALARM) // Alarm volume, not media volume, and not ducked
+            .setContentType(AudioAttributes.CONTENT_TYPE_SONIFICATION)
+            .build();
+
+    private final Context context;
+    private final int resId;
+    private final AudibleListener audibleListener; // Optional
+    private final Vibrator vibrator;               // Null without one
+    private final HandlerThread thread;
+    private final Handler handler;
+    private final Runnable escalate = this::escalate;          // Preallocated
+    private final Runnable pollAudible = this::pollAudible;
+    private final AudioTimestamp timestamp = new AudioTimestamp();
+
+    // Guarded by this
+    private short[] pcm;
+    private int sampleRate, channels;
+    private boolean decoded = false; // pcm is the alarm file rather than the fallback tone
+    private Pcm pendingPcm;          // Decoded while the tone was playing; swapped in at stop()
+    private AudioTrack track;
+    private boolean playing = false;
+    private boolean released = false;
+    private long startNs;
+    private long startFrames;
+    private float gain = -1f;
+    private int vibrationStage = -1;
+
+    public AlarmPlayer(Context context, int resId, AudibleListener audibleListener) {
+        this.context = context.getApplicationContext();
+        this.resId = resId;
+        this.audibleListener = audibleListener;
+        Vibrator v = (Vibrator) context.getSystemService(Context.VIBRATOR_SERVICE);
+        this.vibrator = v != null && v.hasVibrator() ? v : null;
+        thread = new HandlerThread("AlarmPlayer", Process.THREAD_PRIORITY_AUDIO);
+        thread.start();
+        handler = new Handler(thread.getLooper());
+    }
+
+    /** Decodes the alarm file and builds the track. Blocking; call from a background thread. */
+    public void prepare() {
+        long t0 = System.nanoTime();
+        Pcm decodedPcm = null;
+        try {
+            decodedPcm = decode();
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, "Alarm decode failed, the fallback tone will play", e);
+        }
+        synchronized (this) {
+            if (released) return;
+            if (playing) {
+                pendingPcm = decodedPcm; // Don't swap the track under a playing alarm
+            } else {
+                usePcm(decodedPcm);
+            }
+        }
+        Log.d(TAG, "Alarm prepared in " + (System.nanoTime() - t0) / 1_000_000L + " ms" + (decoded ? "" : " (tone)"));
+    }
+
+    /** Starts the alarm at the first escalation stage. No-op while it plays. */
+    public synchronized void play() {
+        if (released || playing) return;
+        if (track == null) rebuildTrack(); // Not prepared yet: the tone, built now
+        if (!startTrack() && !(rebuildTrack() && startTrack())) { // A dead track (e.g. audio server restart) gets one rebuild
+            Log.e(TAG, "Alarm could not be started");
+            return;
+        }
+        playing = true;
+        startNs = System.nanoTime();
+        handler.post(escalate);
+        if (audibleListener != null) handler.post(pollAudible);
+        Log.d(TAG, "Fatigue alarm started.");
+    }
+
+    public synchronized void stop() {
+        if (!playing) return;
+        playing = false;
+        handler.removeCallbacks(escalate);
+        handler.removeCallbacks(pollAudible);
+        if (vibrator != null) vibrator.cancel();
+        vibrationStage = -1;
+        try {
+            track.pause();
+            track.setPlaybackHeadPosition(0); // Next alarm starts from the top
+        } catch (IllegalStateException e) {
+            Log.e(TAG, "Alarm stop error", e);
+            releaseTrack(); // Rebuilt from the kept PCM on the next play()
+        }
+        if (pendingPcm != null && !released) {
+            usePcm(pendingPcm);
+            pendingPcm = null;
+        }
+        Log.d(TAG, "Fatigue alarm stopped.");
+    }
+
+    public synchronized boolean isPlaying() {
+        return playing;
+    }
+
+    public synchronized void release() {
+        stop();
+        released = true;
+        releaseTrack();
+        thread.quitSafely();
+    }
+
+    // Alarm thread: volume and beat for the elapsed time, vibration per stage, then sleep to the next change
+    private void escalate() {
+        synchronized (this) {
+            if (!playing) return;
+            long elapsedMs = (System.nanoTime() - startNs) / 1_000_000L;
+            setGain(AlarmEscalation.gainAt(elapsedMs));
+            int stage = AlarmEscalation.stageAt(elapsedMs);
+            if (stage != vibrationStage) {
+                vibrate(AlarmEscalation.vibrationPattern(stage));
+                vibrationStage = stage;
+            }
+            long nextMs = AlarmEscalation.nextChangeMs(elapsedMs);
+            if (nextMs >= 0) handler.postDelayed(escalate, Math.max(1, nextMs - elapsedMs));
+        }
+    }
+
+    // Alarm thread: waits for the track to report its first played frame and derives when frame 0 was heard
+    private void pollAudible() {
+        long audibleNs = -1;
+        synchronized (this) {
+            if (!playing) return;
+            if (track.getTimestamp(timestamp) && timestamp.framePosition > startFrames) {
+                audibleNs = timestamp.nanoTime - (timestamp.framePosition - startFrames) * 1_000_000_000L / sampleRate;
+            } else if (System.nanoTime() - startNs < AUDIBLE_TIMEOUT_MS * 1_000_000L) {
+                handler.postDelayed(pollAudible, AUDIBLE_POLL_MS);
+            }
+        }
+        if (audibleNs >= 0) audibleListener.onAudible(audibleNs);
+    }
+
+    // --- Track (caller holds the lock) ---
+    private void usePcm(Pcm decodedPcm) {
+        if (decodedPcm != null) {
+            pcm = decodedPcm.samples;
+            sampleRate = decodedPcm.sampleRate;
+            channels = decodedPcm.channels;
+            decoded = true;
+        }
+        rebuildTrack();
+    }
+
+    private boolean startTrack() {
+        if (track == null) return false;
+        try {
+            gain = -1f;
+            setGain(AlarmEscalation.gainAt(0));
+            startFrames = track.getTimestamp(timestamp) ? timestamp.framePosition : 0; // Timestamps count across plays
+            track.play();
+            return track.getPlayState() == AudioTrack.PLAYSTATE_PLAYING;
+        } catch (IllegalStateException e) {
+            Log.e(TAG, "Alarm start error", e);
+            return false;
+        }
+    }
+
+    private void setGain(float g) {
+        if (g == gain) return;
+        gain = g;
+        track.setVolume(g);
+    }
+
+    private boolean rebuildTrack() {
+        releaseTrack();
+        if (pcm == null) useTone();
+        if (buildTrack()) return true;
+        if (!decoded) return false;
+        Log.w(TAG, "Decoded alarm can't be played (" + sampleRate + " Hz, " + channels + " ch), falling back to the tone");
+        useTone();
+        return buildTrack();
+    }
+
+    private void useTone() {
+        pcm = tone();
+        sampleRate = TONE_SAMPLE_RATE;
+        channels = 1;
+        decoded = false;
+    }
+
+    private boolean buildTrack() {
+        try {
+            AudioFormat format = new AudioFormat.Builder()
+                    .setEncoding(AudioFormat.ENCODING_PCM_16BIT)
+                    .setSampleRate(sampleRate)
+                    .setChannelMask(channels == 1 ? AudioFormat.CHANNEL_OUT_MONO : AudioFormat.CHANNEL_OUT_STEREO)
+                    .build();
+            AudioTrack.Builder builder = new AudioTrack.Builder()
+                    .setAudioAttributes(ATTRIBUTES)
+                    .setAudioFormat(format)
+                    .setTransferMode(AudioTrack.MODE_STATIC)
+                    .setBufferSizeInBytes(pcm.length * 2);
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) builder.setPerformanceMode(AudioTrack.PERFORMANCE_MODE_LOW_LATENCY);
+            AudioTrack t = builder.build();
+            if (t.write(pcm, 0, pcm.length) != pcm.length || t.getState() != AudioTrack.STATE_INITIALIZED) {
+                t.release();
+                Log.e(TAG, "Alarm track could not be loaded");
+                return false;
+            }
+            t.setLoopPoints(0, pcm.length / channels, -1); // Loop forever
+            track = t;
+            return true;
+        } catch (IllegalArgumentException | UnsupportedOperationException | IllegalStateException e) {
+            Log.e(TAG, "Alarm track creation failed", e);
+            return false;
+        }
+    }
+
+    private void releaseTrack() {
+        if (track == null) return;
+        track.release();
+        track = null;
+    }
+
+    private void vibrate(long[] pattern) {
+        if (vibrator == null) return;
+        if (pattern == null) {
+            vibrator.cancel();
+        } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            vibrator.vibrate(VibrationEffect.createWaveform(pattern, 0), ATTRIBUTES);
+        } else {
+            vibrator.vibrate(pattern, 0, ATTRIBUTES);
+        }
+    }
+
+    // --- PCM ---
+    private static final class Pcm {
+        final short[] samples;
+        final int sampleRate, channels;
+
+        Pcm(short[] samples, int sampleRate, int channels) {
+            this.samples = samples;
+            this.sampleRate = sampleRate;
+            this.channels = channels;
+        }
+    }
+
+    // One second of sine at TONE_HZ
+    private static short[] tone() {
+        short[] samples = new short[TONE_SAMPLE_RATE];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = (short) (Math.sin(2 * Math.PI * TONE_HZ * i / TONE_SAMPLE_RATE) * TONE_AMPLITUDE * Short.MAX_VALUE);
+        }
+        return samples;
+    }
+
+    // Decodes the alarm resource to 16-bit PCM with MediaExtractor/MediaCodec, at most MAX_PCM_MS of it
+    private Pcm decode() throws IOException {
+        MediaExtractor extractor = new MediaExtractor();
+        MediaCodec codec = null;
+        try {
+            try (AssetFileDescriptor fd = context.getResources().openRawResourceFd(resId)) {
+                extractor.setDataSource(fd.getFileDescriptor(), fd.getStartOffset(), fd.getLength());
+            }
+            MediaFormat format = null;
+            for (int i = 0; i < extractor.getTrackCount(); i++) {
+                MediaFormat f = extractor.getTrackFormat(i);
+                String mime = f.getString(MediaFormat.KEY_MIME);
+                if (mime != null && mime.startsWith("audio/")) {
+                    extractor.selectTrack(i);
+                    format = f;
+                    break;
+                }
+            }
+            if (format == null) throw new IOException("No audio track in the alarm resource");
+            int rate = format.getInteger(MediaFormat.KEY_SAMPLE_RATE);
+            int channelCount = format.getInteger(MediaFormat.KEY_CHANNEL_COUNT);
+            ShortBuffer out = ShortBuffer.allocate((int) ((long) rate * channelCount * MAX_PCM_MS / 1000));
+
+            codec = MediaCodec.createDecoderByType(format.getString(MediaFormat.KEY_MIME));
+            codec.configure(format, null, null, 0);
+            codec.start();
+            MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+            boolean inputDone = false;
+            while (out.hasRemaining()) {
+                if (!inputDone) {
+                    int in = codec.dequeueInputBuffer(CODEC_TIMEOUT_US);
+                    if (in >= 0) {
+                        ByteBuffer buffer = codec.getInputBuffer(in);
+                        int size = buffer != null ? extractor.readSampleData(buffer, 0) : -1;
+                        if (size < 0) {
+                            codec.queueInputBuffer(in, 0, 0, 0, MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+                            inputDone = true;
+                        } else {
+                            codec.queueInputBuffer(in, 0, size, extractor.getSampleTime(), 0);
+                            extractor.advance();
+                        }
+                    }
+                }
+                int o = codec.dequeueOutputBuffer(info, CODEC_TIMEOUT_US);
+                if (o == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+                    MediaFormat outFormat = codec.getOutputFormat();
+                    rate = outFormat.getInteger(MediaFormat.KEY_SAMPLE_RATE);
+                    channelCount = outFormat.getInteger(MediaFormat.KEY_CHANNEL_COUNT);
+                } else if (o >= 0) {
+                    ByteBuffer buffer = codec.getOutputBuffer(o);
+                    if (buffer != null && info.size > 0) {
+                        buffer.position(info.offset).limit(info.offset + info.size);
+                        ShortBuffer samples = buffer.order(ByteOrder.nativeOrder()).asShortBuffer();
+                        if (samples.remaining() > out.remaining()) samples.limit(out.remaining());
+                        out.put(samples);
+                    }
+                    codec.releaseOutputBuffer(o, false);
+                    if ((info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) break;
+                }
+            }
+            if (channelCount < 1 || channelCount > 2) throw new IOException("Unsupported channel count " + channelCount);
+            int length = out.position() - out.position() % channelCount; // Whole frames only
+            if (length == 0) throw new IOException("Alarm resource decoded to nothing");
+            short[] samples = new short[length];
+            out.flip();
+            out.get(samples);
+            return new Pcm(samples, rate, channelCount);
+        } finally {
+            if (codec != null) codec.release();
+            extractor.release();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.driversafetyapp;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import java.util.Locale;
+
+/**
+ * Persists EyeCalibration state per driver profile. The profile is the driver name from
+ * AppConfig, so a shared phone keeps one calibration per driver. load() reads
+ * SharedPreferences, call it off the main thread; save() only queues the write (apply()),
+ * so it is cheap enough for the analysis thread.
+ */
+public class CalibrationStore {
+
+    private static final String TAG = "CalibrationStore";
+    private static final String PREFS_NAME = "EyeCalibration";
+    private static final String DEFAULT_PROFILE = "default";
+
+    private final SharedPreferences prefs;
+
+    public CalibrationStore(Context context) {
+        prefs = context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    public static String profileOf(AppConfig config) {
+        String name = config.userName.trim().toLowerCase(Locale.ROOT);
+        return name.isEmpty() ? DEFAULT_PROFILE : name;
+    }
+
+    /** The stored state for a profile, or null if that driver has not been calibrated yet. */
+    public EyeCalibration.State load(String profile) {
+        if (!prefs.contains(profile + ".threshold")) return null;
+        EyeCalibration.State state = new EyeCalibration.State(
+                prefs.getFloat(profile + ".threshold", 0f),
+                prefs.getFloat(profile + ".open", 0f),
+                prefs.getFloat(profile + ".closed", 0f),
+                prefs.getInt(profile + ".epochs", 0));
+        Log.i(TAG, "Profile '" + profile + "': " + state);
+        return state;
+    }
+
+    public void save(String profile, EyeCalibration.State state) {
+        prefs.edit()
+                .putFloat(profile + ".threshold", state.threshold)
+                .putFloat(profile + ".open", state.openLevel)
+                .putFloat(profile + ".closed", state.closedLevel)
+                .putInt(profile + ".epochs", state.epochs)
+                .apply();
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.driversafetyapp;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Process-wide owner of the AppConfig snapshot. SharedPreferences are read once on a background
+ * thread; current() is then a single volatile read, safe on any hot path. Edits (from
+ * UserDetailsActivity, or an imported .properties file) rebuild the snapshot in the background
+ * and notify listeners, so new thresholds apply without restarting the pipeline.
+ * Files are only imported on an explicit user action (importAsync).
+ */
+public class ConfigRepository {
+
+    private static final String TAG = "ConfigRepository";
+    public static final String PREFS_NAME = "DriverSafetyPrefs";
+
+    /** Called on the config thread with the new snapshot. */
+    public interface Listener {
+        void onConfigChanged(AppConfig config);
+    }
+
+    private static volatile ConfigRepository instance;
+
+    private final Context appContext;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> new Thread(r, "Config"));
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private volatile AppConfig current = AppConfig.defaults();
+    private volatile boolean loaded = false;
+    private SharedPreferences prefs; // Config thread only
+
+    // Held strongly: SharedPreferences only keeps a weak reference to its listeners
+    private final SharedPreferences.OnSharedPreferenceChangeListener prefsListener =
+            (sharedPreferences, key) -> executor.execute(this::reload);
+
+    public static ConfigRepository get(Context context) {
+        ConfigRepository repo = instance;
+        if (repo == null) {
+            synchronized (ConfigRepository.class) {
+                if (instance == null) instance = new ConfigRepository(context.getApplicationContext());
+                repo = instance;
+            }
+        }
+        return repo;
+    }
+
+    private ConfigRepository(Context appContext) {
+        this.appContext = appContext;
+        executor.execute(this::load);
+    }
+
+    /** The current snapshot; defaults until the first load has finished. */
+    public AppConfig current() {
+        return current;
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    // --- Config thread ---
+    private void load() {
+        prefs = appContext.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        prefs.registerOnSharedPreferenceChangeListener(prefsListener);
+        reload();
+        loaded = true;
+    }
+
+    private void reload() {
+        AppConfig next = AppConfig.fromValues(prefs.getAll(), AppConfig.defaults(), false, BuildConfig.DEBUG);
+        current = next;
+        Log.i(TAG, "Config: " + next);
+        for (Listener l : listeners) l.onConfigChanged(next);
+    }
+
+    /**
+     * Imports key=value settings (see AppConfig.KEY_*) in the background. All values are
+     * validated before anything is written; the future fails with IllegalArgumentException
+     * if any is malformed or out of range.
+     */
+    public CompletableFuture<AppConfig> importAsync(Callable<InputStream> source) {
+        CompletableFuture<AppConfig> result = new CompletableFuture<>();
+        executor.execute(() -> {
+            try (InputStream in = source.call()) {
+                importProperties(in);
+                reload(); // Don't wait for the prefs listener; the caller wants the new snapshot
+                result.complete(current);
+            } catch (Exception e) {
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+
+    private void importProperties(InputStream in) throws IOException {
+        Properties props = new Properties();
+        props.load(new InputStreamReader(in, StandardCharsets.UTF_8));
+        Map<String, Object> values = new HashMap<>();
+        for (String key : props.stringPropertyNames()) values.put(key, props.getProperty(key));
+        AppConfig parsed = AppConfig.fromValues(values, current, true, BuildConfig.DEBUG); // Throws before anything is written
+        SharedPreferences.Editor editor = prefs.edit()
+                .putFloat(AppConfig.KEY_EYE_CLOSED_THRESHOLD, parsed.eyeClosedThreshold)
+                .putLong(AppConfig.KEY_FATIGUE_DURATION_MS, parsed.fatigueDurationMs)
+                .putBoolean(AppConfig.KEY_AUTO_CALIBRATE_EYES, parsed.autoCalibrateEyes)
+                .putString(AppConfig.KEY_FACE_ENGINE, parsed.faceEngine)
+                .putFloat(AppConfig.KEY_ACCIDENT_ACCELERATION, parsed.accidentAccelerationThreshold)
+                .putFloat(AppConfig.KEY_ACCIDENT_ROTATION, parsed.accidentRotationThreshold)
+                .putLong(AppConfig.KEY_ALERT_COOLDOWN_MS, parsed.alertCooldownMs);
+        if (values.containsKey(AppConfig.KEY_USER_NAME)) editor.putString(AppConfig.KEY_USER_NAME, parsed.userName);
+        if (values.containsKey(AppConfig.KEY_EMERGENCY_CONTACT_NAME)) editor.putString(AppConfig.KEY_EMERGENCY_CONTACT_NAME, parsed.emergencyContactName);
+        if (values.containsKey(AppConfig.KEY_EMERGENCY_CONTACT_PHONE)) editor.putString(AppConfig.KEY_EMERGENCY_CONTACT_PHONE, parsed.emergencyContactPhone);
+        if (!editor.commit()) throw new IOException("Could not save imported config"); // Already off the main thread
+    }
+}
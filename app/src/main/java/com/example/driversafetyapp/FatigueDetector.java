@@ -1,153 +1,352 @@
 package com.example.driversafetyapp; // Make sure this matches your package name
 
 import android.annotation.SuppressLint;
-import android.graphics.PointF;
+import android.graphics.ImageFormat;
 import android.media.Image;
+import android.os.SystemClock;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
 import androidx.camera.core.ImageAnalysis;
 import androidx.camera.core.ImageProxy;
 
-import com.google.android.gms.tasks.OnFailureListener;
-import com.google.android.gms.tasks.OnSuccessListener;
-import com.google.mlkit.vision.common.InputImage;
-import com.google.mlkit.vision.face.Face;
-import com.google.mlkit.vision.face.FaceDetection;
-import com.google.mlkit.vision.face.FaceDetector;
-import com.google.mlkit.vision.face.FaceDetectorOptions;
-import com.google.mlkit.vision.face.FaceLandmark;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.LongSupplier;
 
-import java.util.List;
-
-public class FatigueDetector implements ImageAnalysis.Analyzer {
+public class FatigueDetector implements ImageAnalysis.Analyzer, FaceAnalysisEngine.Callback {
 
     private static final String TAG = "FatigueDetector";
 
-    // --- Fatigue Detection Parameters (NEEDS CALIBRATION!) ---
-    private static final float EYE_CLOSED_THRESHOLD = 0.4f; // Probability threshold for eye closure
-    private static final long FATIGUE_DURATION_THRESHOLD_MS = 2000; // 2 seconds of closed eyes
-    // ---
+    private static final long YAWN_STAGE_BUDGET_NS = 200_000; // Yawn stage must stay well under one frame
+    private static final long MAX_PLAUSIBLE_FRAME_AGE_NS = 5_000_000_000L; // Larger = different clock base
+    // Cascade: a cheap per-frame tier (classification only) and an ACCURATE tier with landmarks that
+    // confirms suspected closures and samples the mouth for yawns (engines with an accurate tier only)
+    private static final boolean USE_CASCADE = true;
+    private static final long YAWN_SAMPLE_INTERVAL_MS = 500; // Accurate-tier mouth samples at most 2 Hz while a face is in view...
+    private static final int YAWN_SAMPLE_FAST_FRAMES = 9;    // ...and only after this many fast inferences: <= 10% at any frame rate
 
-    private final FaceDetector faceDetector;
-    private final FatigueListener listener;
+    private final MeasuredFaceEngine faceEngine; // Whichever backend was configured, with its latency/allocation stats
+    private final boolean cascade;
+    private final FrameRateScheduler frameScheduler;
+    private final FatigueEngine engine; // All decision logic lives here, free of CameraX/ML Kit types
+    // Engine callbacks run here instead of on the main thread; one thread keeps frames in order
+    private final ExecutorService resultExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "FatigueResults");
+        t.setPriority(Thread.NORM_PRIORITY + 1);
+        return t;
+    });
 
-    private long eyesClosedStartTime = -1; // Timestamp when eyes were first detected as closed
+    private final FaceFrame faceFrame = new FaceFrame(); // Reused every frame (result thread only)
+    private final AnalysisFrame analysisFrame = new AnalysisFrame(); // Camera thread fills, engine reads until the callback
+    private final DriverLock driverLock = new DriverLock(); // Which face is the driver, and the ROI around them
+    private final FrameGate frameGate = new FrameGate(); // Skips or reuses inference for useless/unchanged frames
+    private final int[] eyeBand = new int[4]; // Camera thread: driver's eye band for the gate, sensor l, t, w, h
+    private final Runnable reuseLastResult = this::reuseLastResult; // Preallocated, posted for REUSE frames
+    private volatile long reuseTimestampMs = -1;
+    private volatile long reuseAnalyzeStartNs = -1;
+    // The one frame in flight: written on the camera thread before analyze(), read in the callback
+    private volatile ImageProxy inFlightProxy;
+    private volatile long inFlightTimeMs, inFlightAnalyzeStartNs, inFlightProcessStartNs;
+    private volatile boolean inFlightCropped, inFlightAccurate;
+    private volatile int inFlightOffsetX, inFlightOffsetY; // Shift crop coordinates back into the full frame
+    private long framesProcessed = 0;
+    private volatile boolean lastFacePresent = false;
+    private long lastAccurateMs = 0; // Camera thread
+    private int fastSinceAccurate = 0; // Camera thread
+    private volatile long fastInferences, confirmInferences, yawnSampleInferences; // Camera thread writes
+    private boolean firstFaceMarked = false;
+    private volatile BlackBoxRecorder blackBox; // Optional crash recorder for eye state
+    private volatile TripRecorder tripRecorder; // Optional trip history (eye-closure fraction)
+    private volatile TraceFile.Writer traceWriter; // Optional replay trace recording
+    private volatile LatencyTracker latencyTracker; // Optional per-stage latency histograms
+    private volatile StartupTimeline startupTimeline; // Optional; gets first_face / first_detection marks
 
-    // Interface to communicate fatigue status back to MainActivity
-    public interface FatigueListener {
-        void onFatigueDetected(boolean isFatigued); // True if fatigue detected, false otherwise
-        void onNoFaceDetected(); // Called when no face is found in the frame
+    public FatigueDetector(FatigueListener listener) {
+        this(listener, FrameRateScheduler.Config.defaults(), engineFactory(FaceAnalysisEngine.ENGINE_MLKIT), null);
     }
 
-    public FatigueDetector(FatigueListener listener) {
-        this.listener = listener;
+    public FatigueDetector(FatigueListener listener, FrameRateScheduler.Config rateConfig) {
+        this(listener, rateConfig, engineFactory(FaceAnalysisEngine.ENGINE_MLKIT), null);
+    }
 
-        // Configure ML Kit Face Detector
-        // High accuracy needed for landmarks, classification enabled for eye open probability
-        FaceDetectorOptions options =
-                new FaceDetectorOptions.Builder()
-                        .setPerformanceMode(FaceDetectorOptions.PERFORMANCE_MODE_FAST) // Fast mode for real-time
-                        .setLandmarkMode(FaceDetectorOptions.LANDMARK_MODE_ALL)       // Detect eyes, mouth, etc.
-                        .setClassificationMode(FaceDetectorOptions.CLASSIFICATION_MODE_ALL) // Classify eyes open/closed
-                        .setMinFaceSize(0.35f) // Minimum face size relative to image (adjust as needed)
-                        .enableTracking() // Enable tracking for smoother results between frames
-                        .build();
+    /** allocatedBytes: process-wide allocation counter for the engine stats, or null to skip them. */
+    public FatigueDetector(FatigueListener listener, FrameRateScheduler.Config rateConfig,
+                           FaceAnalysisEngine.Factory engineFactory, LongSupplier allocatedBytes) {
+        this.frameScheduler = new FrameRateScheduler(rateConfig);
+        this.engine = new FatigueEngine(listener, frameScheduler);
+        this.faceEngine = new MeasuredFaceEngine(engineFactory.create(resultExecutor), allocatedBytes);
+        this.cascade = faceEngine.hasAccurateTier();
+        engine.setConfirmationRequired(cascade);
+        Log.d(TAG, "Face analysis engine: " + faceEngine.getName() + (cascade ? " (FAST + ACCURATE cascade)" : ""));
+    }
 
-        faceDetector = FaceDetection.getClient(options);
-        Log.d(TAG, "Face Detector Initialized.");
+    /** Engine for an AppConfig.faceEngine name; unknown names, and the synthetic engine outside debug builds, get ML Kit. */
+    public static FaceAnalysisEngine.Factory engineFactory(String name) {
+        if (BuildConfig.DEBUG && FaceAnalysisEngine.ENGINE_SYNTHETIC.equals(name)) return ScriptedFaceEngine.factory(ScriptedFaceEngine.STEADY_FACE);
+        return MlKitFaceEngine.factory(USE_CASCADE);
     }
 
     @SuppressLint("UnsafeOptInUsageError") // Needed for image.getImage()
     @Override
     public void analyze(@NonNull ImageProxy imageProxy) {
+        final long analyzeStartNs = System.nanoTime();
+        final long frameTimestampNs = imageProxy.getImageInfo().getTimestamp();
+        if (!frameScheduler.shouldAnalyze(frameTimestampNs)) {
+            // Not due yet at the current analysis rate, release the frame straight away
+            imageProxy.close();
+            return;
+        }
+        final long frameTimeMs = frameTimestampNs / 1_000_000L;
+        final LatencyTracker latency = latencyTracker;
+        if (latency != null) {
+            // CameraX timestamps are normally on the elapsedRealtime clock; skip frames where they are not
+            long frameAgeNs = SystemClock.elapsedRealtimeNanos() - frameTimestampNs;
+            if (frameAgeNs >= 0 && frameAgeNs < MAX_PLAUSIBLE_FRAME_AGE_NS) latency.record(LatencyTracker.Stage.FRAME_AGE, frameAgeNs);
+        }
+
         Image mediaImage = imageProxy.getImage();
-        if (mediaImage != null) {
-            // Create InputImage from ImageProxy, getting rotation degrees
-            InputImage image = InputImage.fromMediaImage(mediaImage, imageProxy.getImageInfo().getRotationDegrees());
-
-            faceDetector.process(image)
-                    .addOnSuccessListener(faces -> {
-                        if (faces.isEmpty()) {
-                            // No face detected, reset fatigue state
-                            resetFatigueState();
-                            listener.onNoFaceDetected();
-                            // Log.v(TAG, "No face detected."); // Verbose logging
-                        } else {
-                            // Process the first detected face (assuming driver is primary subject)
-                            processFace(faces.get(0));
-                        }
-                    })
-                    .addOnFailureListener(e -> Log.e(TAG, "Face detection failed", e))
-                    .addOnCompleteListener(task -> {
-                        // VERY IMPORTANT: Close the ImageProxy to allow the next frame to be processed
-                        imageProxy.close();
-                    });
-        } else {
+        if (mediaImage == null) {
             // If mediaImage is null, close the proxy anyway
             imageProxy.close();
+            return;
         }
-    }
-
-    private void processFace(Face face) {
-        // Check Eye Open Probability
-        Float leftEyeOpenProb = face.getLeftEyeOpenProbability();
-        Float rightEyeOpenProb = face.getRightEyeOpenProbability();
-
-        boolean eyesClosed = (leftEyeOpenProb != null && leftEyeOpenProb < EYE_CLOSED_THRESHOLD) &&
-                (rightEyeOpenProb != null && rightEyeOpenProb < EYE_CLOSED_THRESHOLD);
-
-        // Log eye probabilities for debugging/calibration
-        // Log.v(TAG, String.format("Eye Probs - L: %.2f, R: %.2f, Closed: %b", leftEyeOpenProb, rightEyeOpenProb, eyesClosed));
-
-        if (eyesClosed) {
-            if (eyesClosedStartTime == -1) {
-                // Eyes just closed, record start time
-                eyesClosedStartTime = System.currentTimeMillis();
-                // Log.d(TAG, "Eyes detected closed. Starting timer.");
-            } else {
-                // Eyes still closed, check duration
-                long durationClosed = System.currentTimeMillis() - eyesClosedStartTime;
-                if (durationClosed >= FATIGUE_DURATION_THRESHOLD_MS) {
-                    // Fatigue detected! Eyes closed for too long.
-                    // Log.w(TAG, "FATIGUE DETECTED! Eyes closed for " + durationClosed + "ms");
-                    listener.onFatigueDetected(true); // Notify listener
+        boolean yuv = imageProxy.getFormat() == ImageFormat.YUV_420_888;
+        ImageProxy.PlaneProxy luma = imageProxy.getPlanes()[0];
+        int width = imageProxy.getWidth(), height = imageProxy.getHeight();
+        int rotation = imageProxy.getImageInfo().getRotationDegrees();
+        if (yuv) {
+            // Too dark/flat to classify, or unchanged (eye band included) since the last inference: no engine run
+            if (!driverLock.eyeBand(width, height, rotation, eyeBand)) eyeBand[2] = 0;
+            int decision = frameGate.evaluate(frameTimeMs, luma.getBuffer(), luma.getRowStride(), width, height,
+                    eyeBand[0], eyeBand[1], eyeBand[2], eyeBand[3]);
+            if (latency != null) latency.record(LatencyTracker.Stage.PREFILTER, System.nanoTime() - analyzeStartNs);
+            if (decision != FrameGate.INFER) {
+                imageProxy.close();
+                if (decision == FrameGate.REUSE) {
+                    reuseAnalyzeStartNs = analyzeStartNs;
+                    reuseTimestampMs = frameTimeMs;
+                    resultExecutor.execute(reuseLastResult);
                 }
-                // else: eyes closed, but not long enough yet
+                return;
             }
+        }
+        // Locked onto the driver: only their region of the Y plane is analyzed, else the full frame
+        AnalysisFrame frame = analysisFrame;
+        frame.set(frameTimeMs, yuv ? luma.getBuffer() : null, luma.getRowStride(), width, height, rotation, mediaImage);
+        boolean cropped = yuv && driverLock.planFrame(frameTimeMs, width, height, rotation);
+        if (cropped) {
+            frame.setCrop(driverLock.getCropLeft(), driverLock.getCropTop(), driverLock.getCropWidth(), driverLock.getCropHeight());
+        }
+        boolean accurate = useAccurateTier(frameTimeMs);
+        inFlightProxy = imageProxy;
+        inFlightTimeMs = frameTimeMs;
+        inFlightAnalyzeStartNs = analyzeStartNs;
+        inFlightCropped = cropped;
+        inFlightAccurate = accurate;
+        inFlightOffsetX = cropped ? driverLock.getOffsetX() : 0;
+        inFlightOffsetY = cropped ? driverLock.getOffsetY() : 0;
+        final long processStartNs = System.nanoTime();
+        inFlightProcessStartNs = processStartNs;
+        if (latency != null) latency.record(LatencyTracker.Stage.PREPARE, processStartNs - analyzeStartNs);
+
+        faceEngine.analyze(frame, accurate ? FaceAnalysisEngine.Tier.ACCURATE : FaceAnalysisEngine.Tier.FAST, this);
+    }
+
+    // Result thread. VERY IMPORTANT: close the ImageProxy to allow the next frame to be processed.
+    // The results no longer reference the image, so release it as soon as the gate knows the eye
+    // state the next frame will be judged on.
+    @Override
+    public void onError(Exception error) {
+        frameGate.onInferred(false, false, Float.NaN, 0f, 0);
+        releaseFrame();
+        Log.e(TAG, "Face detection failed", error);
+    }
+
+    @Override
+    public void onResult(FaceResults results) {
+        long resultNs = System.nanoTime();
+        long frameTimeMs = inFlightTimeMs, processStartNs = inFlightProcessStartNs, analyzeStartNs = inFlightAnalyzeStartNs;
+        boolean cropped = inFlightCropped, accurate = inFlightAccurate;
+        results.shift(inFlightOffsetX, inFlightOffsetY); // Into full-frame coordinates
+        int driver = driverLock.selectDriver(frameTimeMs, cropped, results.count, results.trackingIds, results.boxes);
+        frameGate.onInferred(driver >= 0 || !cropped, driver >= 0,
+                driver >= 0 ? results.maxEyeOpen(driver) : Float.NaN,
+                engine.getEyeClosedThreshold(), accurate ? 0 : resultNs - processStartNs); // Prices the fast tier only
+        releaseFrame(); // The next frame may start now; only locals and the result thread's own state from here
+        if (driver < 0 && cropped) return; // Crop missed the driver; the next frame is full, don't report "no face" for it
+        LatencyTracker latency = latencyTracker;
+        if (latency != null) {
+            latency.record(accurate ? LatencyTracker.Stage.INFERENCE_ACCURATE : LatencyTracker.Stage.INFERENCE,
+                    resultNs - processStartNs);
+            latency.beginFrame(analyzeStartNs);
+        }
+        if (driver < 0) {
+            faceFrame.setNoFace(frameTimeMs);
         } else {
-            // Eyes are open, reset timer and notify listener if fatigue state changes
-            if (eyesClosedStartTime != -1) {
-                //Log.d(TAG, "Eyes detected open. Resetting fatigue state.");
-                listener.onFatigueDetected(false); // Notify that fatigue ended (eyes opened)
+            results.copyTo(driver, frameTimeMs, accurate, faceFrame);
+        }
+        onFaceFrame(faceFrame);
+        if (latency != null) latency.record(LatencyTracker.Stage.PROCESS_FACE, System.nanoTime() - resultNs);
+    }
+
+    private void releaseFrame() {
+        ImageProxy proxy = inFlightProxy;
+        inFlightProxy = null;
+        analysisFrame.clear();
+        if (proxy != null) proxy.close();
+    }
+
+    /**
+     * Loads the engine's models while the camera is still opening, instead of on the first real
+     * frame. onWarm runs on the result thread.
+     */
+    public void prewarm(Runnable onWarm) {
+        faceEngine.prewarm(onWarm);
+    }
+
+    // Camera thread: the accurate tier runs when the engine wants a closure confirmed, and as a
+    // low-rate mouth sample for yawns; every other frame goes to the cheap tier. The mouth sample is
+    // budgeted in fast frames as well as in time: at low analysis rates a time-only interval would
+    // put most inferences on the accurate tier. Any accurate run (a confirmation too) restarts it.
+    private boolean useAccurateTier(long frameTimeMs) {
+        if (!cascade) return false;
+        if (engine.isConfirmationWanted()) {
+            confirmInferences++;
+        } else if (lastFacePresent && fastSinceAccurate >= YAWN_SAMPLE_FAST_FRAMES
+                && frameTimeMs - lastAccurateMs >= YAWN_SAMPLE_INTERVAL_MS) {
+            yawnSampleInferences++;
+        } else {
+            fastInferences++;
+            fastSinceAccurate++;
+            return false;
+        }
+        lastAccurateMs = frameTimeMs;
+        fastSinceAccurate = 0;
+        return true;
+    }
+
+    // Result thread: a frame the gate judged unchanged gets the previous result under its own timestamp
+    private void reuseLastResult() {
+        long timestampMs = reuseTimestampMs;
+        if (timestampMs <= faceFrame.timestampMs) return; // A newer frame was already handled
+        LatencyTracker latency = latencyTracker;
+        if (latency != null) latency.beginFrame(reuseAnalyzeStartNs);
+        faceFrame.timestampMs = timestampMs;
+        faceFrame.accurate = false; // A repeat is no new evidence for the cascade
+        onFaceFrame(faceFrame);
+    }
+
+    // Runs the decision logic, then feeds the optional recorders from its outputs
+    private void onFaceFrame(FaceFrame frame) {
+        engine.onFrame(frame);
+        lastFacePresent = frame.facePresent;
+
+        TraceFile.Writer trace = traceWriter;
+        if (trace != null) trace.writeFace(frame);
+        BlackBoxRecorder box = blackBox;
+        if (box != null) {
+            box.recordEye(SystemClock.elapsedRealtimeNanos(), frame.facePresent, frame.leftEyeOpen, frame.rightEyeOpen, engine.getPerclos());
+        }
+        TripRecorder trip = tripRecorder;
+        if (trip != null) {
+            if (frame.facePresent) trip.onEyeState(engine.isLastEyesClosed()); else trip.onNoFace();
+        }
+
+        if (!firstFaceMarked) {
+            StartupTimeline timeline = startupTimeline; // Cold-start milestones
+            if (timeline != null) {
+                if (framesProcessed == 0) timeline.mark(StartupTimeline.FIRST_DETECTION);
+                if (frame.facePresent) { timeline.mark("first_face"); firstFaceMarked = true; }
             }
-            resetFatigueState();
         }
 
-        // --- Optional: Yawn Detection (More complex) ---
-        // Yawn detection is harder. Could look for:
-        // 1. Mouth landmark vertical distance (mouth open wide).
-        // 2. Smiling probability (sometimes low during yawn, but unreliable).
-        // Requires more sophisticated logic and calibration.
-        // FaceLandmark mouthBottom = face.getLandmark(FaceLandmark.MOUTH_BOTTOM);
-        // FaceLandmark mouthLeft = face.getLandmark(FaceLandmark.MOUTH_LEFT);
-        // FaceLandmark mouthRight = face.getLandmark(FaceLandmark.MOUTH_RIGHT);
-        // if (mouthBottom != null && mouthLeft != null && mouthRight != null) {
-        // Calculate mouth aspect ratio or vertical opening
-        // }
-    }
-
-    private void resetFatigueState() {
-        // If eyes were previously closed, notify that fatigue state is now false (eyes open/no face)
-        if (eyesClosedStartTime != -1) {
-            listener.onFatigueDetected(false);
+        if (++framesProcessed % 900 == 0) {
+            if (engine.getYawnStageAvgNs() > YAWN_STAGE_BUDGET_NS) {
+                Log.w(TAG, "Yawn stage over budget: avg " + engine.getYawnStageAvgNs() + " ns/frame");
+            }
+            Log.d(TAG, "ROI frames " + driverLock.getCroppedFrames() + ", full frames " + driverLock.getFullFrames()
+                    + "; " + frameGate.formatSummary() + "; " + getCascadeSummary() + "; " + getEngineSummary());
         }
-        eyesClosedStartTime = -1; // Reset timer
+    }
+
+    public void setBlackBox(BlackBoxRecorder blackBox) {
+        this.blackBox = blackBox;
+    }
+
+    public void setTripRecorder(TripRecorder tripRecorder) {
+        this.tripRecorder = tripRecorder;
+    }
+
+    public void setTraceWriter(TraceFile.Writer traceWriter) {
+        this.traceWriter = traceWriter;
+    }
+
+    public void setLatencyTracker(LatencyTracker latencyTracker) {
+        this.latencyTracker = latencyTracker;
+    }
+
+    public void setConfig(AppConfig config) {
+        engine.setConfig(config);
+    }
+
+    public void setCalibration(EyeCalibration calibration) {
+        engine.setCalibration(calibration);
+    }
+
+    public float getEyeClosedThreshold() {
+        return engine.getEyeClosedThreshold();
+    }
+
+    public FrameGate getFrameGate() {
+        return frameGate;
+    }
+
+    /** How often the accurate tier ran, and how often it confirmed what the fast tier suspected. */
+    public String getCascadeSummary() {
+        if (!cascade) return "Cascade: off";
+        long fast = fastInferences, confirm = confirmInferences, yawn = yawnSampleInferences;
+        long total = fast + confirm + yawn;
+        long confirmed = engine.getConfirmedCount(), rejected = engine.getRejectedCount();
+        return String.format(Locale.US,
+                "Cascade: accurate tier on %.1f%% of inferences (%d confirmations, %d yawn samples of %d)\n"
+                        + "  suspected closures confirmed %d, rejected %d (%.0f%% false suspicions)",
+                total > 0 ? 100.0 * (confirm + yawn) / total : 0.0, confirm, yawn, total, confirmed, rejected,
+                confirmed + rejected > 0 ? 100.0 * rejected / (confirmed + rejected) : 0.0);
+    }
+
+    /** Latency and allocation per tier of the configured engine, measured the same way for every engine. */
+    public String getEngineSummary() {
+        return faceEngine.formatSummary();
+    }
+
+    public void setStartupTimeline(StartupTimeline startupTimeline) {
+        this.startupTimeline = startupTimeline;
+    }
+
+    public boolean isFatigued() {
+        return engine.isFatigued();
+    }
+
+    public float getPerclos() {
+        return engine.getPerclos();
+    }
+
+    public long getYawnStageAvgNs() {
+        return engine.getYawnStageAvgNs();
+    }
+
+    // Exposes analyzed/skipped frame counts and lets callers change the analysis rates
+    public FrameRateScheduler getFrameScheduler() {
+        return frameScheduler;
     }
 
     // Call this when the detector is no longer needed (e.g., in MainActivity's onDestroy)
     public void stop() {
-        faceDetector.close();
-        Log.d(TAG, "Face Detector stopped and resources released.");
+        resultExecutor.shutdown(); // Drains results already queued
+        faceEngine.close();
+        Log.d(TAG, "Face Detector stopped and resources released. Frames analyzed: "
+                + frameScheduler.getAnalyzedFrames() + ", skipped: " + frameScheduler.getSkippedFrames());
     }
 }
\ No newline at end of file
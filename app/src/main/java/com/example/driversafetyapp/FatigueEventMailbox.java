@@ -0,0 +1,128 @@
+package com.example.driversafetyapp;
+
+import android.os.Handler;
+import android.view.Choreographer;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Coalescing single-slot channel from the detector threads to the main thread.
+ * Producers fold each event into one atomic word (latest fatigue state plus pending edge bits)
+ * and schedule at most one drain, which delivers the net transitions to the main-thread listener.
+ * A UI target drains on the next display frame, so however fast the analyzer runs it sees at
+ * most one update per frame. Choreographer stops with the screen, so a target that must react
+ * with the screen off (the service) drains through a main-looper Handler instead. Either way
+ * there is never a backlog of queued runnables.
+ */
+public class FatigueEventMailbox implements FatigueListener {
+
+    // --- Slot bits ---
+    private static final int FATIGUED = 1;       // Latest fatigue state
+    private static final int FATIGUE_ONSET = 2;  // An onset happened since the last drain (even if already cleared)
+    private static final int FATIGUE_CHANGED = 4;
+    private static final int NO_FACE = 8;
+    private static final int YAWN = 16;
+
+    private final FatigueListener target; // Called on the main thread only
+    private final LatencyTracker latencyTracker; // Optional
+    private final Handler handler;            // Drains through the looper; null = on display frames
+    private final Choreographer choreographer; // Null when draining through the handler
+    private final Choreographer.FrameCallback drainCallback = frameTimeNanos -> drain();
+    private final Runnable drainRunnable = this::drain;
+
+    private final AtomicInteger slot = new AtomicInteger();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean(false);
+    private volatile int latestYawnCount;
+    private boolean deliveredFatigued = false; // Main thread only
+    private long drains, coalescedEvents;      // Main thread / stats only
+
+    /** Drains on display frames. Must be created on the main thread (binds to its Choreographer). */
+    public FatigueEventMailbox(FatigueListener mainThreadTarget, LatencyTracker latencyTracker) {
+        this.target = mainThreadTarget;
+        this.latencyTracker = latencyTracker;
+        this.handler = null;
+        this.choreographer = Choreographer.getInstance();
+    }
+
+    /** Drains as soon as mainThreadHandler's looper gets to it, screen on or off. */
+    public FatigueEventMailbox(FatigueListener mainThreadTarget, Handler mainThreadHandler, LatencyTracker latencyTracker) {
+        this.target = mainThreadTarget;
+        this.latencyTracker = latencyTracker;
+        this.handler = mainThreadHandler;
+        this.choreographer = null;
+    }
+
+    // --- Producer side (any thread) ---
+    @Override
+    public void onFatigueDetected(boolean isFatigued) {
+        if (isFatigued && latencyTracker != null) latencyTracker.markFatigueSignal();
+        int prev, next;
+        do {
+            prev = slot.get();
+            next = (prev & ~FATIGUED) | FATIGUE_CHANGED | (isFatigued ? FATIGUED | FATIGUE_ONSET : 0);
+        } while (!slot.compareAndSet(prev, next));
+        scheduleDrain();
+    }
+
+    @Override
+    public void onNoFaceDetected() {
+        setBits(NO_FACE);
+    }
+
+    @Override
+    public void onYawnDetected(int yawnsInWindow) {
+        latestYawnCount = yawnsInWindow;
+        setBits(YAWN);
+    }
+
+    private void setBits(int bits) {
+        int prev;
+        do {
+            prev = slot.get();
+        } while (!slot.compareAndSet(prev, prev | bits));
+        scheduleDrain();
+    }
+
+    private void scheduleDrain() {
+        if (drainScheduled.compareAndSet(false, true)) {
+            // Both are safe to post to from any thread
+            if (handler != null) handler.post(drainRunnable);
+            else choreographer.postFrameCallback(drainCallback);
+        } else {
+            coalescedEvents++; // Racy by design; debug stat only
+        }
+    }
+
+    // --- Consumer side (main thread, at most one drain pending) ---
+    private void drain() {
+        drainScheduled.set(false); // Before reading the slot, so a later event schedules a new drain
+        int bits = slot.getAndSet(0);
+        drains++;
+        if ((bits & FATIGUE_CHANGED) != 0) {
+            boolean fatigued = (bits & FATIGUED) != 0;
+            // Keep a short episode that started and ended within one frame: deliver it as onset + clear
+            if (!deliveredFatigued && (bits & FATIGUE_ONSET) != 0) deliverFatigue(true);
+            if (deliveredFatigued != fatigued) deliverFatigue(fatigued);
+        }
+        if ((bits & NO_FACE) != 0) target.onNoFaceDetected();
+        if ((bits & YAWN) != 0) target.onYawnDetected(latestYawnCount);
+    }
+
+    private void deliverFatigue(boolean fatigued) {
+        deliveredFatigued = fatigued;
+        if (fatigued && latencyTracker != null) latencyTracker.markMainThreadRun();
+        target.onFatigueDetected(fatigued);
+    }
+
+    /** Drops anything still pending, e.g. when the activity is going away. Main thread. */
+    public void cancel() {
+        if (handler != null) handler.removeCallbacks(drainRunnable);
+        else choreographer.removeFrameCallback(drainCallback);
+        slot.set(0);
+        drainScheduled.set(false);
+    }
+
+    public long getDrainCount() { return drains; }
+    public long getCoalescedEventCount() { return coalescedEvents; }
+}
@@ -0,0 +1,170 @@
+package com.example.driversafetyapp;
+
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.location.Location;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.google.android.gms.location.FusedLocationProviderClient;
+import com.google.android.gms.location.LocationCallback;
+import com.google.android.gms.location.LocationRequest;
+import com.google.android.gms.location.LocationResult;
+import com.google.android.gms.location.LocationServices;
+import com.google.android.gms.location.Priority;
+
+import java.util.List;
+
+/**
+ * Fused location updates on a dedicated HandlerThread, with an interval that follows speed and
+ * heading change: roughly one fix per TARGET_SPACING_M while moving, 1 s through turns, and the
+ * power profile's base interval when stationary. Every fix goes into a TrajectoryBuffer so the
+ * alert path can report how the car approached a crash. The base interval and priority come
+ * from the MotionGovernor; this class only ever asks for fixes more often than the base.
+ */
+public class LocationTracker {
+
+    private static final String TAG = "LocationTracker";
+
+    /** Receives every fix of a batch, on the tracker thread. */
+    public interface Listener {
+        void onLocation(Location location);
+    }
+
+    // --- Adaptive interval (NEEDS CALIBRATION!) ---
+    private static final long MIN_INTERVAL_MS = 1000;
+    private static final float TARGET_SPACING_M = 100f;       // ~3 s at highway speed, ~10 s in town
+    private static final float MOVING_SPEED_MPS = 1.0f;
+    private static final float TURNING_DEG_PER_S = 10f;       // Roundabouts, junctions, swerves
+    private static final float RESTART_CHANGE_RATIO = 0.25f;  // Re-request only for a >25% interval change
+    private static final int TRAJECTORY_CAPACITY = 512;       // Kept (compressed) fixes, hours of driving
+    // ---
+
+    private final FusedLocationProviderClient client;
+    private final Listener listener;
+    private final TrajectoryBuffer trajectory = new TrajectoryBuffer(TRAJECTORY_CAPACITY);
+    private volatile Location lastLocation;
+
+    private HandlerThread thread;
+    private Handler handler;
+
+    // Tracker thread only
+    private boolean requesting = false;
+    private int priority = Priority.PRIORITY_HIGH_ACCURACY;
+    private long baseIntervalMs = 10_000;
+    private long currentIntervalMs = -1;
+
+    private final LocationCallback callback = new LocationCallback() {
+        @Override
+        public void onLocationResult(@NonNull LocationResult result) {
+            List<Location> locations = result.getLocations();
+            for (Location l : locations) {
+                trajectory.add(elapsedMs(l), l.getLatitude(), l.getLongitude(),
+                        l.hasSpeed() ? l.getSpeed() : -1f, l.hasBearing() ? l.getBearing() : Float.NaN,
+                        l.hasAccuracy() ? l.getAccuracy() : 0f);
+                listener.onLocation(l);
+            }
+            if (!locations.isEmpty()) lastLocation = locations.get(locations.size() - 1);
+            adaptInterval();
+        }
+    };
+
+    public LocationTracker(Context context, Listener listener) {
+        this.client = LocationServices.getFusedLocationProviderClient(context);
+        this.listener = listener;
+    }
+
+    // --- Lifecycle (any thread; work is posted to the tracker thread) ---
+    public void start() {
+        if (thread == null) {
+            thread = new HandlerThread("LocationTracker", Process.THREAD_PRIORITY_BACKGROUND);
+            thread.start();
+            handler = new Handler(thread.getLooper());
+        }
+        handler.post(this::startOnThread);
+    }
+
+    public void release() {
+        if (thread == null) return;
+        handler.post(() -> {
+            if (requesting) client.removeLocationUpdates(callback);
+            requesting = false;
+            Log.d(TAG, "Location updates stopped.");
+        });
+        thread.quitSafely(); // Runs the removal above first
+        thread = null;
+        handler = null;
+    }
+
+    /** Base interval and priority for the current power profile; the tracker may go faster while moving. */
+    public void setPowerProfile(long baseIntervalMs, int priority) {
+        Handler h = handler;
+        if (h == null) { this.baseIntervalMs = baseIntervalMs; this.priority = priority; return; }
+        h.post(() -> {
+            if (this.baseIntervalMs == baseIntervalMs && this.priority == priority) return;
+            this.baseIntervalMs = baseIntervalMs;
+            this.priority = priority;
+            if (requesting) request(intervalFor(baseIntervalMs, speedMps(), trajectory.getHeadingRateDegPerS()));
+        });
+    }
+
+    @SuppressLint("MissingPermission") // Callers check location permission before start()
+    private void startOnThread() {
+        if (requesting) return;
+        request(baseIntervalMs);
+        client.getLastLocation().addOnSuccessListener(Runnable::run, location -> { // Just a volatile write; any thread will do
+            if (location != null && lastLocation == null) lastLocation = location;
+            Log.d(TAG, "Got last known location: " + (location != null));
+        });
+    }
+
+    @SuppressLint("MissingPermission")
+    private void request(long intervalMs) {
+        LocationRequest request = new LocationRequest.Builder(priority, intervalMs)
+                .setMinUpdateIntervalMillis(Math.max(MIN_INTERVAL_MS, intervalMs / 2))
+                .build();
+        // Same callback: the fused provider replaces the previous request
+        client.requestLocationUpdates(request, callback, Looper.myLooper()); // Always called on the tracker thread
+        requesting = true;
+        currentIntervalMs = intervalMs;
+        Log.d(TAG, "Requested location updates every " + intervalMs + " ms (priority " + priority + ").");
+    }
+
+    private void adaptInterval() {
+        if (!requesting) return;
+        long wanted = intervalFor(baseIntervalMs, speedMps(), trajectory.getHeadingRateDegPerS());
+        if (Math.abs(wanted - currentIntervalMs) > currentIntervalMs * RESTART_CHANGE_RATIO) request(wanted);
+    }
+
+    private float speedMps() {
+        TrajectoryBuffer.Point p = trajectory.latest();
+        return p != null ? p.speedMps : 0f;
+    }
+
+    static long intervalFor(long baseIntervalMs, float speedMps, float headingRateDegPerS) {
+        if (speedMps < MOVING_SPEED_MPS) return baseIntervalMs;
+        if (headingRateDegPerS >= TURNING_DEG_PER_S) return MIN_INTERVAL_MS;
+        long spacingMs = (long) (TARGET_SPACING_M / speedMps * 1000f);
+        return Math.max(MIN_INTERVAL_MS, Math.min(baseIntervalMs, spacingMs));
+    }
+
+    // Fix time on the elapsedRealtime clock, like SensorEvent timestamps
+    private static long elapsedMs(Location l) {
+        return l.getElapsedRealtimeNanos() / 1_000_000L;
+    }
+
+    // --- Reading (any thread) ---
+    public Location getLastLocation() { return lastLocation; }
+    public TrajectoryBuffer getTrajectory() { return trajectory; }
+
+    /** Trajectory points of the last windowMs, for the alert path. */
+    public List<TrajectoryBuffer.Point> recent(long windowMs) {
+        return trajectory.since(SystemClock.elapsedRealtime() - windowMs);
+    }
+}
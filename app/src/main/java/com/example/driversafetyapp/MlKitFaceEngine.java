@@ -0,0 +1,161 @@
+package com.example.driversafetyapp;
+
+import android.graphics.Bitmap;
+import android.graphics.PointF;
+import android.graphics.Rect;
+import android.media.Image;
+import android.util.Log;
+
+import com.google.android.gms.tasks.OnCompleteListener;
+import com.google.android.gms.tasks.Task;
+import com.google.mlkit.vision.common.InputImage;
+import com.google.mlkit.vision.face.Face;
+import com.google.mlkit.vision.face.FaceDetection;
+import com.google.mlkit.vision.face.FaceDetector;
+import com.google.mlkit.vision.face.FaceDetectorOptions;
+import com.google.mlkit.vision.face.FaceLandmark;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * FaceAnalysisEngine backed by ML Kit. FAST is the tracking detector with classification only
+ * (eye-open probabilities, Euler angles); ACCURATE is the accurate model with landmarks, for the
+ * few frames the cascade sends it. Crops are cut from the Y plane with YPlaneCropper; full frames
+ * go in as the media Image without a copy when there is one.
+ */
+public class MlKitFaceEngine implements FaceAnalysisEngine {
+
+    private static final String TAG = "MlKitFaceEngine";
+
+    private static final int PREWARM_IMAGE_SIZE = 64; // Blank bitmap used to load the model ahead of the camera
+    private static final float MIN_FACE_SIZE = 0.35f; // Minimum face size relative to image (adjust as needed)
+
+    private final Executor callbackExecutor;
+    private final boolean cascade;
+    private final FaceDetector faceDetector;
+    private final FaceDetector accurateDetector; // Null without the cascade
+    private final YPlaneCropper cropper = new YPlaneCropper(); // Camera thread; one frame in flight, so one buffer
+    private final FaceResults results = new FaceResults(); // Result thread
+    private final OnCompleteListener<List<Face>> onComplete = this::onComplete; // Preallocated
+    private volatile Callback pending;
+    private volatile boolean pendingLandmarks;
+
+    public MlKitFaceEngine(Executor callbackExecutor, boolean cascade) {
+        this.callbackExecutor = callbackExecutor;
+        this.cascade = cascade;
+
+        // Per-frame tier: classification for eye open probability; landmarks only without the cascade
+        FaceDetectorOptions options =
+                new FaceDetectorOptions.Builder()
+                        .setPerformanceMode(FaceDetectorOptions.PERFORMANCE_MODE_FAST) // Fast mode for real-time
+                        .setLandmarkMode(cascade ? FaceDetectorOptions.LANDMARK_MODE_NONE : FaceDetectorOptions.LANDMARK_MODE_ALL)
+                        .setClassificationMode(FaceDetectorOptions.CLASSIFICATION_MODE_ALL) // Classify eyes open/closed
+                        .setMinFaceSize(MIN_FACE_SIZE)
+                        .enableTracking() // Enable tracking for smoother results between frames
+                        .build();
+        faceDetector = FaceDetection.getClient(options);
+
+        // Confirmation tier: runs on a few frames only, so it can afford the accurate model and landmarks
+        accurateDetector = !cascade ? null : FaceDetection.getClient(
+                new FaceDetectorOptions.Builder()
+                        .setPerformanceMode(FaceDetectorOptions.PERFORMANCE_MODE_ACCURATE)
+                        .setLandmarkMode(FaceDetectorOptions.LANDMARK_MODE_ALL)
+                        .setClassificationMode(FaceDetectorOptions.CLASSIFICATION_MODE_ALL)
+                        .setMinFaceSize(MIN_FACE_SIZE)
+                        .build());
+        Log.d(TAG, "Face Detector Initialized." + (cascade ? " (FAST + ACCURATE cascade)" : ""));
+    }
+
+    public static Factory factory(boolean cascade) {
+        return callbackExecutor -> new MlKitFaceEngine(callbackExecutor, cascade);
+    }
+
+    @Override public String getName() { return ENGINE_MLKIT; }
+    @Override public boolean hasAccurateTier() { return cascade; }
+
+    @Override
+    public void analyze(AnalysisFrame frame, Tier tier, Callback callback) {
+        boolean accurate = tier == Tier.ACCURATE && accurateDetector != null;
+        InputImage image;
+        if (frame.cropped || !(frame.platformImage instanceof Image)) {
+            int left = frame.cropped ? frame.cropLeft : 0, top = frame.cropped ? frame.cropTop : 0;
+            int width = frame.getRegionWidth(), height = frame.getRegionHeight();
+            ByteBuffer nv21 = cropper.crop(frame.yPlane, frame.rowStride, left, top, width, height);
+            image = InputImage.fromByteBuffer(nv21, width, height, frame.rotationDegrees, InputImage.IMAGE_FORMAT_NV21);
+        } else {
+            image = InputImage.fromMediaImage((Image) frame.platformImage, frame.rotationDegrees);
+        }
+        pending = callback;
+        pendingLandmarks = accurate || !cascade;
+        (accurate ? accurateDetector : faceDetector).process(image).addOnCompleteListener(callbackExecutor, onComplete);
+    }
+
+    // Callback thread: copies what the pipeline needs out of the ML Kit Faces into the reused results
+    private void onComplete(Task<List<Face>> task) {
+        Callback callback = pending;
+        if (!task.isSuccessful()) {
+            Exception error = task.getException();
+            callback.onError(error != null ? error : new IllegalStateException("Face detection failed"));
+            return;
+        }
+        List<Face> faces = task.getResult();
+        boolean landmarks = pendingLandmarks;
+        results.clear(landmarks);
+        int count = Math.min(faces.size(), FaceResults.MAX_FACES);
+        for (int n = 0; n < count; n++) {
+            Face face = faces.get(n);
+            Rect box = face.getBoundingBox();
+            int i = results.add(box.left, box.top, box.right, box.bottom);
+            Integer trackingId = face.getTrackingId();
+            results.trackingIds[i] = trackingId != null ? trackingId : -1;
+            Float leftEyeOpenProb = face.getLeftEyeOpenProbability();
+            Float rightEyeOpenProb = face.getRightEyeOpenProbability();
+            results.leftEyeOpen[i] = leftEyeOpenProb != null ? leftEyeOpenProb : Float.NaN;
+            results.rightEyeOpen[i] = rightEyeOpenProb != null ? rightEyeOpenProb : Float.NaN;
+            results.eulerX[i] = face.getHeadEulerAngleX();
+            results.eulerY[i] = face.getHeadEulerAngleY();
+            results.eulerZ[i] = face.getHeadEulerAngleZ();
+            int m = i * YawnDetector.MOUTH_POINT_COUNT;
+            results.mouthValid[i] = landmarks
+                    && copyLandmark(face, FaceLandmark.MOUTH_LEFT, m + YawnDetector.MOUTH_LEFT_X)
+                    && copyLandmark(face, FaceLandmark.MOUTH_RIGHT, m + YawnDetector.MOUTH_RIGHT_X)
+                    && copyLandmark(face, FaceLandmark.MOUTH_BOTTOM, m + YawnDetector.MOUTH_BOTTOM_X);
+        }
+        callback.onResult(results);
+    }
+
+    private boolean copyLandmark(Face face, int landmarkType, int offset) {
+        FaceLandmark landmark = face.getLandmark(landmarkType);
+        if (landmark == null) return false;
+        PointF position = landmark.getPosition();
+        results.mouth[offset] = position.x;
+        results.mouth[offset + 1] = position.y;
+        return true;
+    }
+
+    /**
+     * Runs one blank image through ML Kit so the face model is loaded while the camera is still
+     * opening, instead of on the first real frame. onWarm runs on the callback executor.
+     */
+    @Override
+    public void prewarm(Runnable onWarm) {
+        Bitmap blank = Bitmap.createBitmap(PREWARM_IMAGE_SIZE, PREWARM_IMAGE_SIZE, Bitmap.Config.ARGB_8888);
+        faceDetector.process(InputImage.fromBitmap(blank, 0))
+                .addOnCompleteListener(callbackExecutor, task -> {
+                    if (!task.isSuccessful()) Log.w(TAG, "Model pre-warm failed", task.getException());
+                    if (onWarm != null) onWarm.run();
+                    if (accurateDetector == null) { blank.recycle(); return; }
+                    // The confirmation tier's first use is usually a closure; don't let it pay the model load
+                    accurateDetector.process(InputImage.fromBitmap(blank, 0))
+                            .addOnCompleteListener(callbackExecutor, accurateTask -> blank.recycle());
+                });
+    }
+
+    @Override
+    public void close() {
+        faceDetector.close();
+        if (accurateDetector != null) accurateDetector.close();
+    }
+}
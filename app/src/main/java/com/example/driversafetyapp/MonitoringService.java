@@ -0,0 +1,818 @@
+package com.example.driversafetyapp;
+
+import android.Manifest;
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.PackageManager;
+import android.content.pm.ServiceInfo;
+import android.hardware.SensorManager;
+import android.location.Location;
+import android.os.Binder;
+import android.os.Build;
+import android.os.Debug;
+import android.os.Handler;
+import android.os.IBinder;
+import android.os.Looper;
+import android.os.PowerManager;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.camera.core.CameraSelector;
+import androidx.camera.core.ImageAnalysis;
+import androidx.camera.core.Preview;
+import androidx.camera.lifecycle.ProcessCameraProvider;
+import androidx.core.app.NotificationCompat;
+import androidx.core.app.ServiceCompat;
+import androidx.core.content.ContextCompat;
+import androidx.lifecycle.LifecycleService;
+
+import com.google.android.gms.location.Priority;
+import com.google.common.util.concurrent.ListenableFuture;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Foreground service that owns the whole monitoring pipeline: CameraX binding and the
+ * FatigueDetector, sensors, location, black box, trip history and the fatigue alarm.
+ * The camera is bound to this service's lifecycle, so it stays warm while activities come and
+ * go. MainActivity attaches as a viewer: it gets the preview surface and the detection events.
+ * The alert countdown runs here too, so an alert still goes out when nobody is looking; the
+ * viewer and the countdown notification only show it and offer Cancel.
+ */
+public class MonitoringService extends LifecycleService implements FatigueListener, ImpactDetector.ImpactListener, CrashClassifier.Listener {
+
+    private static final String TAG = "MonitoringService";
+
+    public static final String ACTION_STOP = "com.example.driversafetyapp.action.STOP_MONITORING";
+    public static final String ACTION_CANCEL_ALERT = "com.example.driversafetyapp.action.CANCEL_ALERT";
+    public static final String ALERT_ACCIDENT = "Accident";
+    public static final String ALERT_FATIGUE = "Fatigue";
+    public static final String ALERT_CHANNEL_ID = "DRIVER_SAFETY_ALERTS";
+    private static final String MONITORING_CHANNEL_ID = "DRIVER_SAFETY_MONITORING";
+    private static final int MONITORING_NOTIFICATION_ID = 1;
+    private static final int COUNTDOWN_NOTIFICATION_ID = 2;
+    private static final String STARTUP_LOG_FILE = "startup_timeline.csv";
+
+    // --- Configuration (thresholds live in AppConfig) ---
+    private static final boolean RECORD_REPLAY_TRACE = false; // Debug: record face/sensor traces for offline replay
+    private static final boolean MEASURE_ENGINE_ALLOCATIONS = false; // Debug: allocation per inference (slows the runtime)
+    private static final int COUNTDOWN_SECONDS = 7; // Time to cancel before an alert is sent
+
+    /** What an attached activity receives, always on the main thread. */
+    public interface Viewer extends FatigueListener {
+        void onAlertCountdown(String alertType, int secondsLeft); // Every second while an alert is pending
+        void onAlertCountdownEnded(String alertType, boolean sent, @Nullable String callContact); // Call this contact, if set
+        void onMonitoringStopped();
+    }
+
+    public class LocalBinder extends Binder {
+        public MonitoringService getService() { return MonitoringService.this; }
+    }
+
+    private final IBinder binder = new LocalBinder();
+    private Handler mainThreadHandler;
+    private Viewer viewer; // Main thread only
+    private volatile boolean pipelineStarted = false; // Written on the main thread; the startup pool reads it
+
+    // CameraX
+    private ExecutorService cameraExecutor;
+    private ProcessCameraProvider cameraProvider;
+    private Preview preview;
+    private Preview.SurfaceProvider pendingSurfaceProvider; // Viewer's surface, applied once the camera is bound
+    private volatile FatigueDetector fatigueDetector; // Built on the startup pool
+    private FatigueEventMailbox fatigueEvents; // Coalesces detector callbacks into at most one pending main-thread run
+    private FatigueEventMailbox viewerEvents;  // Coalesces them again to at most one viewer update per display frame
+
+    // Sensors, recorders, power
+    private SensorPipeline sensorPipeline;
+    private volatile ImpactDetector impactDetector;
+    private volatile CrashClassifier crashClassifier; // Decides whether an impact was a crash
+    private ConfigRepository configRepository;
+    private final ConfigRepository.Listener configListener = this::onConfigChanged;
+    private CalibrationStore calibrationStore; // Guarded by this, with the two below
+    private FatigueDetector calibratedDetector;
+    private String calibrationProfile;
+    private volatile EyeCalibration eyeCalibration;
+    private volatile BlackBoxRecorder blackBox; // Recorders are opened on the startup pool
+    private volatile TripRecorder tripRecorder;
+    private volatile TraceFile.Writer traceWriter;
+    private MotionGovernor motionGovernor;
+    private PowerManager.OnThermalStatusChangedListener thermalListener; // API 29+
+    private PowerManager.WakeLock wakeLock;
+    private final LatencyTracker latencyTracker = new LatencyTracker();
+    private StartupTimeline startupTimeline;
+
+    // Location
+    private LocationTracker locationTracker; // Speed-adaptive, on its own thread
+    private static final long APPROACH_WINDOW_MS = 60_000; // Trajectory reported with an accident alert
+
+    // Emergency alerts (outlive the pipeline, so a queued SMS still goes out after Stop)
+    private ScheduledExecutorService alertWorker;
+    private final Object outboxLock = new Object();
+    private AlertOutbox alertOutbox;         // Guarded by outboxLock; opened on first use
+    private SmsAlertTransport smsTransport;  // Guarded by outboxLock
+
+    // Alert countdown (main thread)
+    private String countdownType;     // ALERT_ACCIDENT / ALERT_FATIGUE; null = none pending
+    private String countdownMessage;  // SMS body, located when the countdown started
+    private String countdownContacts;
+    private long countdownEndMs;      // SystemClock.uptimeMillis(), the handler's clock
+    private long lastAccidentAlertTime = 0;
+    private long lastFatigueAlertTime = 0;
+    private final Runnable countdownTick = this::onCountdownTick;
+
+    // Alarm
+    private AlarmPlayer alarmPlayer; // Created with the pipeline, decoded on the startup pool
+    private boolean isFatigued = false;
+
+    public static void start(Context context) {
+        ContextCompat.startForegroundService(context, new Intent(context, MonitoringService.class));
+    }
+
+    // --- Service Lifecycle ---
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        startupTimeline = new StartupTimeline(processStartNanoTime());
+        startupTimeline.mark("service_created");
+        startupTimeline.setListener(this::onStartupComplete);
+        mainThreadHandler = new Handler(Looper.getMainLooper());
+        configRepository = ConfigRepository.get(this); // Loads in the background if it hasn't yet
+        configRepository.addListener(configListener);
+        createNotificationChannels(this);
+        fatigueEvents = new FatigueEventMailbox(this, mainThreadHandler, latencyTracker); // Not vsync: the screen may be off
+        cameraExecutor = Executors.newSingleThreadExecutor();
+        alertWorker = Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "AlertOutbox"));
+        Log.d(TAG, "onCreate.");
+    }
+
+    @Override
+    public int onStartCommand(@Nullable Intent intent, int flags, int startId) {
+        super.onStartCommand(intent, flags, startId);
+        if (intent != null && ACTION_STOP.equals(intent.getAction())) {
+            Log.i(TAG, "Stop requested from notification.");
+            stopMonitoring();
+            return START_NOT_STICKY;
+        }
+        if (intent != null && ACTION_CANCEL_ALERT.equals(intent.getAction())) {
+            cancelAlertCountdown("Cancelled from notification");
+            return START_NOT_STICKY;
+        }
+        if (!hasCorePermissions()) {
+            Log.e(TAG, "Core permissions missing, not starting.");
+            stopSelf();
+            return START_NOT_STICKY;
+        }
+        int types = 0;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+            types = ServiceInfo.FOREGROUND_SERVICE_TYPE_CAMERA | ServiceInfo.FOREGROUND_SERVICE_TYPE_LOCATION;
+        }
+        ServiceCompat.startForeground(this, MONITORING_NOTIFICATION_ID, buildMonitoringNotification(), types);
+        startupTimeline.mark("foreground_started");
+        startPipeline();
+        return START_NOT_STICKY; // Camera FGS can't be restarted from the background anyway
+    }
+
+    @Nullable
+    @Override
+    public IBinder onBind(@NonNull Intent intent) {
+        super.onBind(intent);
+        return binder;
+    }
+
+    @Override
+    public void onDestroy() {
+        if (countdownType != null) clearCountdown();
+        stopPipeline();
+        if (fatigueEvents != null) fatigueEvents.cancel();
+        if (viewerEvents != null) viewerEvents.cancel();
+        configRepository.removeListener(configListener);
+        if (cameraExecutor != null) cameraExecutor.shutdown();
+        synchronized (outboxLock) {
+            if (alertOutbox != null) alertOutbox.stop(); // Unsent alerts stay journaled for the next start
+            if (smsTransport != null) smsTransport.release();
+        }
+        if (alertWorker != null) alertWorker.shutdown();
+        mainThreadHandler.removeCallbacksAndMessages(null);
+        Log.d(TAG, "onDestroy.");
+        super.onDestroy();
+    }
+
+    private void stopMonitoring() {
+        cancelAlertCountdown("Monitoring stopped");
+        stopPipeline();
+        if (viewer != null) viewer.onMonitoringStopped();
+        ServiceCompat.stopForeground(this, ServiceCompat.STOP_FOREGROUND_REMOVE);
+        stopSelf();
+    }
+
+    // --- Pipeline ---
+    // Cheap, main-thread-bound setup runs inline; file-backed recorders and the face detector are
+    // built in parallel on the startup pool while CameraX initializes, and the camera is bound
+    // once both are ready. The alarm player is loaded last, off the path to the first frame.
+    private void startPipeline() {
+        if (pipelineStarted) return;
+        pipelineStarted = true;
+        startupTimeline.mark("pipeline_start");
+        ListenableFuture<ProcessCameraProvider> cameraProviderFuture = ProcessCameraProvider.getInstance(this); // Starts its own async init
+
+        AlarmPlayer alarm = new AlarmPlayer(this, R.raw.alarm, latencyTracker::markAlarmAudible);
+        alarmPlayer = alarm;
+        StartupOrchestrator startup = new StartupOrchestrator(startupTimeline,
+                (name, e) -> Log.e(TAG, "Startup step " + name + " failed", e));
+        startup.add("black_box", this::initializeBlackBox)
+                .add("trip_history", () -> { initializeTripRecorder(); if (tripRecorder != null) tripRecorder.startTrip(); })
+                .add("face_detector", () -> {
+                    AppConfig config = configRepository.current();
+                    FatigueDetector detector = new FatigueDetector(fatigueEvents, FrameRateScheduler.Config.defaults(),
+                            FatigueDetector.engineFactory(config.faceEngine), engineAllocationCounter());
+                    detector.setLatencyTracker(latencyTracker);
+                    detector.setConfig(config);
+                    applyCalibrationProfile(detector, config); // Reads the stored profile, off the main thread
+                    detector.setStartupTimeline(startupTimeline);
+                    detector.prewarm(() -> startupTimeline.mark("mlkit_warm"));
+                    fatigueDetector = detector;
+                })
+                .addDeferred("alarm_player", alarm::prepare); // Plays a tone until then; a no-op once released
+        startup.add("alert_outbox", this::obtainAlertOutbox); // Resumes alerts queued before a restart
+        if (RECORD_REPLAY_TRACE) startup.add("trace_writer", this::initializeTraceWriter);
+        startup.whenDone(ContextCompat.getMainExecutor(this), () -> {
+            startupTimeline.mark("initializers_done");
+            if (!pipelineStarted) { releaseRecorders(); return; } // Stopped while initializing
+            if (fatigueDetector == null) { Log.e(TAG, "No face detector, camera not started."); return; }
+            fatigueDetector.setConfig(configRepository.current()); // In case it changed while the detector was built
+            fatigueDetector.setBlackBox(blackBox);
+            fatigueDetector.setTripRecorder(tripRecorder);
+            fatigueDetector.setTraceWriter(traceWriter);
+            if (sensorPipeline != null) {
+                sensorPipeline.setBlackBox(blackBox);
+                sensorPipeline.setTripRecorder(tripRecorder);
+                sensorPipeline.setTraceWriter(traceWriter);
+            }
+            cameraProviderFuture.addListener(() -> bindCamera(cameraProviderFuture), ContextCompat.getMainExecutor(this));
+        });
+
+        SensorManager sensorManager = (SensorManager) getSystemService(Context.SENSOR_SERVICE);
+        if (sensorManager != null) {
+            AppConfig config = configRepository.current();
+            impactDetector = new ImpactDetector(config.accidentAccelerationThreshold, config.accidentRotationThreshold, this);
+            sensorPipeline = new SensorPipeline(sensorManager, impactDetector);
+            crashClassifier = new CrashClassifier(config.accidentAccelerationThreshold, config.accidentRotationThreshold, this);
+            sensorPipeline.setCrashClassifier(crashClassifier);
+        }
+        motionGovernor = new MotionGovernor(profile -> mainThreadHandler.post(() -> applyPowerProfile(profile)));
+        if (sensorPipeline != null) sensorPipeline.setMotionGovernor(motionGovernor);
+
+        PowerManager powerManager = (PowerManager) getSystemService(POWER_SERVICE);
+        if (powerManager != null) {
+            wakeLock = powerManager.newWakeLock(PowerManager.PARTIAL_WAKE_LOCK, "DriverSafetyApp::CpuWakeLock");
+            wakeLock.setReferenceCounted(false);
+            wakeLock.acquire(); Log.d(TAG, "WakeLock acquired.");
+            registerThermalListener(powerManager);
+        } else {
+            Log.e(TAG, "PowerManager not available.");
+        }
+
+        startLocationUpdates();
+        if (sensorPipeline != null) sensorPipeline.start(); // Impact detection doesn't wait for the recorders
+        startupTimeline.mark("sensors_location_started");
+        Log.i(TAG, "Monitoring pipeline started.");
+    }
+
+    private void stopPipeline() {
+        if (!pipelineStarted) return;
+        pipelineStarted = false;
+        if (cameraProvider != null) cameraProvider.unbindAll();
+        if (sensorPipeline != null) sensorPipeline.release();
+        stopLocationUpdates();
+        if (thermalListener != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            PowerManager pm = (PowerManager) getSystemService(POWER_SERVICE);
+            if (pm != null) pm.removeThermalStatusListener(thermalListener);
+        }
+        releaseAlarm();
+        releaseRecorders(); // If startup is still running, its completion callback does this instead
+        if (wakeLock != null && wakeLock.isHeld()) { wakeLock.release(); Log.d(TAG, "WakeLock released."); }
+        Log.i(TAG, "Monitoring pipeline stopped.");
+    }
+
+    private void releaseRecorders() {
+        if (fatigueDetector != null) { fatigueDetector.stop(); fatigueDetector = null; }
+        if (blackBox != null) { blackBox.close(); blackBox = null; }
+        if (tripRecorder != null) { tripRecorder.endTrip(); tripRecorder.close(); tripRecorder = null; }
+        if (traceWriter != null) { try { traceWriter.close(); } catch (IOException e) { Log.e(TAG, "Trace close failed", e); } traceWriter = null; }
+    }
+
+    // --- Viewer attachment (main thread) ---
+    /** Attaches an activity: it receives events and the camera preview. Detection never stops in between. */
+    public void attachViewer(Viewer viewer, Preview.SurfaceProvider surfaceProvider) {
+        if (viewerEvents != null) viewerEvents.cancel();
+        this.viewer = viewer;
+        viewerEvents = new FatigueEventMailbox(viewer, null);
+        if (preview != null) preview.setSurfaceProvider(surfaceProvider);
+        pendingSurfaceProvider = surfaceProvider;
+        if (countdownType != null) viewer.onAlertCountdown(countdownType, countdownSecondsLeft()); // Opened from the notification
+        Log.d(TAG, "Viewer attached.");
+    }
+
+    public void detachViewer(Viewer viewer) {
+        if (this.viewer != viewer) return;
+        this.viewer = null;
+        viewerEvents.cancel();
+        viewerEvents = null;
+        pendingSurfaceProvider = null;
+        if (preview != null) preview.setSurfaceProvider(null); // Analysis keeps running without a preview surface
+        Log.d(TAG, "Viewer detached.");
+    }
+
+    // --- CameraX Setup (main thread, once the detector and recorders exist) ---
+    private void bindCamera(ListenableFuture<ProcessCameraProvider> cameraProviderFuture) {
+        try {
+            if (!pipelineStarted) return; // Stopped before the provider was ready
+            cameraProvider = cameraProviderFuture.get();
+            startupTimeline.mark("camera_provider_ready");
+            preview = new Preview.Builder().build();
+            if (pendingSurfaceProvider != null) preview.setSurfaceProvider(pendingSurfaceProvider);
+            ImageAnalysis imageAnalysis = new ImageAnalysis.Builder()
+                    .setBackpressureStrategy(ImageAnalysis.STRATEGY_KEEP_ONLY_LATEST)
+                    .build();
+            fatigueDetector.getFrameScheduler().setConfig(motionGovernor.getProfile().camera);
+            imageAnalysis.setAnalyzer(cameraExecutor, fatigueDetector);
+            CameraSelector cameraSelector = CameraSelector.DEFAULT_FRONT_CAMERA;
+            cameraProvider.unbindAll();
+            cameraProvider.bindToLifecycle(this, cameraSelector, preview, imageAnalysis); // Service lifecycle, not the activity's
+            startupTimeline.mark("camera_bound");
+            Log.d(TAG, "CameraX started and bound.");
+        } catch (Exception e) {
+            Log.e(TAG, "Camera setup failed", e);
+        }
+    }
+
+    // --- Black Box ---
+    private void initializeBlackBox() {
+        try {
+            blackBox = BlackBoxRecorder.createDefault(new File(getFilesDir(), "blackbox"), new BlackBoxRecorder.FreezeListener() {
+                @Override public void onIncidentFrozen(File incidentFile, int recordCount) { Log.i(TAG, "Black box incident saved: " + incidentFile.getName() + " (" + recordCount + " records)"); }
+                @Override public void onFreezeFailed(IOException e) { Log.e(TAG, "Black box freeze failed", e); }
+            });
+            Log.d(TAG, "Black box recorder ready.");
+        } catch (IOException e) {
+            Log.e(TAG, "Black box unavailable", e); // Monitoring continues without it
+        }
+    }
+
+    // --- Trip History ---
+    private void initializeTripRecorder() {
+        try {
+            tripRecorder = new TripRecorder(TripStore.createDefault(new File(getFilesDir(), "trips")), System::currentTimeMillis);
+        } catch (IOException e) {
+            Log.e(TAG, "Trip history unavailable", e);
+        }
+    }
+
+    private void initializeTraceWriter() {
+        try {
+            File dir = new File(getFilesDir(), "traces");
+            if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("Cannot create " + dir);
+            traceWriter = new TraceFile.Writer(new File(dir, "trace_" + System.currentTimeMillis() + ".bin"));
+            Log.i(TAG, "Recording replay trace.");
+        } catch (IOException e) {
+            Log.e(TAG, "Trace recording unavailable", e);
+        }
+    }
+
+    // --- Location Handling ---
+    private void startLocationUpdates() {
+        if (!hasCorePermissions()) { Log.w(TAG, "Location permission missing."); return; }
+        if (locationTracker != null) { Log.d(TAG,"Location updates already active."); return; }
+        locationTracker = new LocationTracker(this, this::onLocation);
+        MotionGovernor.Profile profile = motionGovernor.getProfile();
+        locationTracker.setPowerProfile(profile.locationIntervalMs, toLocationPriority(profile.locationPower));
+        locationTracker.start();
+    }
+    private void stopLocationUpdates() {
+        if (locationTracker != null) { locationTracker.release(); locationTracker = null; }
+    }
+
+    // Location thread, once per fix
+    private void onLocation(Location l) {
+        if (motionGovernor != null) motionGovernor.onLocation(l.getElapsedRealtimeNanos(), l.hasSpeed(), l.getSpeed());
+        CrashClassifier classifier = crashClassifier;
+        if (classifier != null) classifier.onLocation(l.getElapsedRealtimeNanos(), l.hasSpeed(), l.getSpeed());
+        TripRecorder trip = tripRecorder;
+        if (trip != null) trip.onLocation(l.getLatitude(), l.getLongitude());
+        TraceFile.Writer trace = traceWriter;
+        if (trace != null) trace.writeLocation(l.getElapsedRealtimeNanos(), l.getLatitude(), l.getLongitude(), l.getSpeed());
+        BlackBoxRecorder box = blackBox;
+        if (box != null) box.recordLocation(l.getElapsedRealtimeNanos(), l.getLatitude(), l.getLongitude(), l.getSpeed());
+    }
+
+    private String getAccidentLocationString() {
+        String approach = getApproachSummary();
+        return approach.isEmpty() ? getCurrentLocationString() : getCurrentLocationString() + ". " + approach;
+    }
+
+    public String getCurrentLocationString() {
+        LocationTracker tracker = locationTracker;
+        Location location = tracker != null ? tracker.getLastLocation() : null;
+        return location != null ? AlertMessages.location(location.getLatitude(), location.getLongitude()) : AlertMessages.LOCATION_UNAVAILABLE;
+    }
+
+    /** Speed/heading over the last minute, for accident alerts; empty if unknown. */
+    public String getApproachSummary() {
+        LocationTracker tracker = locationTracker;
+        return tracker != null ? AlertMessages.approach(tracker.recent(APPROACH_WINDOW_MS), SystemClock.elapsedRealtime()) : "";
+    }
+
+    // --- Power Governor ---
+    // Main thread; called on every parked/idling/driving or thermal change
+    private void applyPowerProfile(MotionGovernor.Profile profile) {
+        if (!pipelineStarted) return;
+        Log.i(TAG, "Power profile: " + profile);
+        if (fatigueDetector != null) fatigueDetector.getFrameScheduler().setConfig(profile.camera);
+        if (sensorPipeline != null) sensorPipeline.setRates(profile.sensorPeriodUs, profile.sensorMaxLatencyUs);
+        if (locationTracker != null) locationTracker.setPowerProfile(profile.locationIntervalMs, toLocationPriority(profile.locationPower)); // Base; the tracker speeds up while moving
+    }
+    private static int toLocationPriority(MotionGovernor.LocationPower power) {
+        switch (power) {
+            case LOW_POWER: return Priority.PRIORITY_LOW_POWER;
+            case BALANCED: return Priority.PRIORITY_BALANCED_POWER_ACCURACY;
+            case HIGH_ACCURACY:
+            default: return Priority.PRIORITY_HIGH_ACCURACY;
+        }
+    }
+    private void registerThermalListener(PowerManager powerManager) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.Q) return;
+        thermalListener = status -> {
+            MotionGovernor.ThermalLevel level;
+            if (status >= PowerManager.THERMAL_STATUS_SEVERE) level = MotionGovernor.ThermalLevel.SEVERE;
+            else if (status >= PowerManager.THERMAL_STATUS_MODERATE) level = MotionGovernor.ThermalLevel.MODERATE;
+            else level = MotionGovernor.ThermalLevel.NORMAL;
+            Log.i(TAG, "Thermal status " + status + " -> " + level);
+            motionGovernor.setThermalLevel(level);
+        };
+        powerManager.addThermalStatusListener(ContextCompat.getMainExecutor(this), thermalListener);
+    }
+
+    // --- Configuration ---
+    // Config thread; the detectors pick up the new snapshot on their next frame/sample
+    private void onConfigChanged(AppConfig config) {
+        FatigueDetector detector = fatigueDetector;
+        if (detector != null) detector.setConfig(config);
+        ImpactDetector impact = impactDetector;
+        if (impact != null) impact.setThresholds(config.accidentAccelerationThreshold, config.accidentRotationThreshold);
+        CrashClassifier classifier = crashClassifier;
+        if (classifier != null) classifier.setThresholds(config.accidentAccelerationThreshold, config.accidentRotationThreshold);
+        if (detector != null) applyCalibrationProfile(detector, config); // The driver may have changed
+    }
+
+    // Startup pool or config thread; gives a new detector, or a new driver, its stored calibration
+    private synchronized void applyCalibrationProfile(FatigueDetector detector, AppConfig config) {
+        String profile = CalibrationStore.profileOf(config);
+        if (detector == calibratedDetector && profile.equals(calibrationProfile)) return;
+        if (calibrationStore == null) calibrationStore = new CalibrationStore(this);
+        CalibrationStore store = calibrationStore;
+        EyeCalibration calibration = new EyeCalibration(store.load(profile), state -> {
+            store.save(profile, state); // Queued write, fine on the analysis thread
+            Log.i(TAG, "Eye calibration '" + profile + "': " + state);
+        });
+        detector.setCalibration(calibration);
+        eyeCalibration = calibration;
+        calibratedDetector = detector;
+        calibrationProfile = profile;
+    }
+
+    /** Inference avoided by the pre-filter gate, the detector cascade's hit rates and the engine's cost, for diagnostics. */
+    public String getInferenceSummary() {
+        FatigueDetector detector = fatigueDetector;
+        return detector != null ? detector.getFrameGate().formatSummary() + "\n" + detector.getCascadeSummary()
+                + "\n" + detector.getEngineSummary() : "Inference: not running";
+    }
+
+    // Process-wide bytes allocated, for the engine stats; ML Kit allocates on its own threads
+    @SuppressWarnings("deprecation") // No replacement for a cheap running allocation total
+    private static LongSupplier engineAllocationCounter() {
+        if (!MEASURE_ENGINE_ALLOCATIONS) return null;
+        Debug.startAllocCounting();
+        return Debug::getGlobalAllocSize;
+    }
+
+    /** The eye-closed threshold in use and where it came from, for diagnostics. */
+    public String getCalibrationSummary() {
+        FatigueDetector detector = fatigueDetector;
+        EyeCalibration calibration = eyeCalibration;
+        if (detector == null) return "Eye calibration: not running";
+        String threshold = String.format(Locale.US, "Eye-closed threshold %.2f", detector.getEyeClosedThreshold());
+        if (!configRepository.current().autoCalibrateEyes) return threshold + " (fixed)";
+        EyeCalibration.State state = calibration != null ? calibration.getState() : null;
+        return state != null ? threshold + " (personal, " + state.epochs + " epochs)" : threshold + " (calibrating)";
+    }
+
+    // --- Detection Events (main thread, via fatigueEvents) ---
+    @Override
+    public void onFatigueDetected(boolean fatigued) {
+        if (fatigued && !isFatigued) {
+            playFatigueAlarm(); latencyTracker.markAlarmStarted(); // Sound first, whether or not anyone is watching
+            if (tripRecorder != null) tripRecorder.onFatigueEpisode();
+            boolean armed = startAlertCountdown(ALERT_FATIGUE, "Driver Fatigue Detected", getCurrentLocationString());
+            if (!armed && viewer == null) sendAlertNotification("Fatigue Alert!", "Fatigue detected. Please pull over and rest.");
+        } else if (!fatigued && isFatigued) {
+            if (ALERT_FATIGUE.equals(countdownType)) cancelAlertCountdown("Fatigue Ended");
+            stopFatigueAlarm();
+        }
+        isFatigued = fatigued;
+        if (viewerEvents != null) viewerEvents.onFatigueDetected(fatigued);
+    }
+
+    @Override
+    public void onNoFaceDetected() {
+        if (ALERT_FATIGUE.equals(countdownType)) cancelAlertCountdown("No Face Detected");
+        if (isFatigued) stopFatigueAlarm();
+        isFatigued = false;
+        if (viewerEvents != null) viewerEvents.onNoFaceDetected();
+    }
+
+    @Override
+    public void onYawnDetected(int yawnsInWindow) {
+        if (viewerEvents != null) viewerEvents.onYawnDetected(yawnsInWindow);
+    }
+
+    // ImpactDetector callbacks arrive on the sensor thread, only on threshold hits.
+    // They freeze the black box; whether it was a crash is up to the CrashClassifier.
+    // Without one (no sensor manager) the raw threshold still raises the alert.
+    @Override
+    public void onHighAcceleration(final float acceleration, long timestampNs) {
+        if (blackBox != null) blackBox.trigger(timestampNs); // Freeze pre/post-impact data
+        Log.w(TAG, "Potential Accident: High Acceleration! Val: " + acceleration);
+        if (crashClassifier == null) mainThreadHandler.post(() -> onAccidentSuspected(AlertMessages.impactCause(acceleration)));
+    }
+    @Override
+    public void onHighRotation(final float rotation, long timestampNs) {
+        if (blackBox != null) blackBox.trigger(timestampNs); // Freeze pre/post-impact data
+        Log.w(TAG, "Potential Accident: High Rotation! Val: " + rotation);
+        if (crashClassifier == null) mainThreadHandler.post(() -> onAccidentSuspected(AlertMessages.rotationCause(rotation)));
+    }
+
+    // CrashClassifier verdicts arrive on the sensor thread, a few seconds after the impact
+    @Override
+    public void onCrashDetected(CrashClassifier.Assessment assessment) {
+        if (blackBox != null) blackBox.trigger(assessment.triggerNs); // Below the raw thresholds, nothing froze it yet
+        Log.w(TAG, "Crash detected: " + assessment);
+        mainThreadHandler.post(() -> onAccidentSuspected(AlertMessages.crashCause(assessment.peakAcceleration, assessment.deltaV)));
+    }
+    @Override
+    public void onImpactDismissed(CrashClassifier.Assessment assessment) {
+        Log.i(TAG, "Impact dismissed: " + assessment);
+    }
+
+    private void onAccidentSuspected(String cause) {
+        startAlertCountdown(ALERT_ACCIDENT, cause, getAccidentLocationString()); // Includes speed/heading before the impact
+    }
+
+    // --- Alert Countdown (main thread) ---
+    // Runs whether or not a viewer is attached; when it expires the alert goes to the outbox
+    private boolean startAlertCountdown(String alertType, String cause, String locationString) {
+        if (countdownType != null) { Log.d(TAG, "Countdown already active, " + alertType + " alert ignored."); return false; }
+        AppConfig config = configRepository.current();
+        long lastAlertTime = ALERT_ACCIDENT.equals(alertType) ? lastAccidentAlertTime : lastFatigueAlertTime;
+        if (System.currentTimeMillis() - lastAlertTime < config.alertCooldownMs) { Log.w(TAG, alertType + " alert cooldown."); return false; }
+        if (!config.hasEmergencyContact()) {
+            Log.e(TAG, "Emergency contact missing, " + alertType + " alert not sent.");
+            sendAlertNotification(alertType + " Detected!", "No emergency contact set: nobody can be alerted.");
+            return false;
+        }
+        Log.w(TAG, alertType + " Trigger -> Countdown Start. Cause: " + cause);
+        countdownType = alertType;
+        countdownMessage = AlertMessages.smsBody(alertType, cause, locationString);
+        countdownContacts = config.emergencyContactPhone;
+        countdownEndMs = SystemClock.uptimeMillis() + COUNTDOWN_SECONDS * 1000L;
+        onCountdownTick();
+        return true;
+    }
+
+    private int countdownSecondsLeft() {
+        return (int) ((countdownEndMs - SystemClock.uptimeMillis() + 999) / 1000);
+    }
+
+    private void onCountdownTick() {
+        int secondsLeft = countdownSecondsLeft();
+        if (secondsLeft <= 0) {
+            finishAlertCountdown();
+            return;
+        }
+        showCountdownNotification(secondsLeft);
+        if (viewer != null) viewer.onAlertCountdown(countdownType, secondsLeft);
+        mainThreadHandler.postAtTime(countdownTick, countdownEndMs - (secondsLeft - 1) * 1000L); // Next whole second
+    }
+
+    private void finishAlertCountdown() {
+        String alertType = countdownType, message = countdownMessage;
+        List<String> contacts = AlertOutbox.parseDestinations(countdownContacts);
+        Log.i(TAG, "Countdown finished, sending " + alertType + " alert.");
+        if (ALERT_ACCIDENT.equals(alertType)) lastAccidentAlertTime = System.currentTimeMillis();
+        else lastFatigueAlertTime = System.currentTimeMillis();
+        sendAlert(alertType, message, countdownContacts); // Journaled, retried, sent to every contact in parallel
+        clearCountdown();
+        onAlertFired(); // A fatigue alarm keeps escalating until the fatigue ends: sending help doesn't wake the driver
+        String callContact = ALERT_ACCIDENT.equals(alertType) && !contacts.isEmpty() ? contacts.get(0) : null;
+        if (viewer != null) viewer.onAlertCountdownEnded(alertType, true, callContact); // Calls need an activity; first contact only
+        else sendAlertNotification("Emergency alert sent", alertType + " alert sent to " + contacts.size() + " contact(s).");
+    }
+
+    /** Cancels the pending alert, if any, and stops the alarm. From the viewer's or the notification's Cancel. */
+    public void cancelAlertCountdown(String reason) {
+        if (countdownType == null) return;
+        String alertType = countdownType;
+        Log.w(TAG, "Countdown cancelled: " + reason);
+        clearCountdown();
+        stopFatigueAlarm();
+        if (viewer != null) viewer.onAlertCountdownEnded(alertType, false, null);
+    }
+
+    private void clearCountdown() {
+        mainThreadHandler.removeCallbacks(countdownTick);
+        countdownType = null;
+        countdownMessage = null;
+        countdownContacts = null;
+        NotificationManager manager = (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
+        if (manager != null) manager.cancel(COUNTDOWN_NOTIFICATION_ID);
+    }
+
+    // --- Startup Timeline ---
+    // System.nanoTime() at process start, so every mark reads as ms since the process was forked
+    private static long processStartNanoTime() {
+        long sinceStartMs = SystemClock.elapsedRealtime() - android.os.Process.getStartElapsedRealtime();
+        return System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(sinceStartMs);
+    }
+
+    // Called on the detector's result thread when the first frame has been analyzed
+    private void onStartupComplete(StartupTimeline timeline) {
+        new Thread(() -> {
+            Log.i(TAG, "Startup timeline (ms since process start):\n" + timeline.format());
+            String release;
+            try {
+                release = getPackageManager().getPackageInfo(getPackageName(), 0).versionName;
+            } catch (PackageManager.NameNotFoundException e) {
+                release = "unknown";
+            }
+            // One line per cold start, so time-to-first-detection can be compared across releases
+            try (FileWriter writer = new FileWriter(new File(getFilesDir(), STARTUP_LOG_FILE), true)) {
+                writer.write(timeline.toCsvLine(release, System.currentTimeMillis()));
+                writer.write('\n');
+            } catch (IOException e) {
+                Log.e(TAG, "Startup timeline write failed", e);
+            }
+        }, "startup-report").start();
+    }
+
+    // --- Alerts ---
+    private void onAlertFired() {
+        if (tripRecorder != null) tripRecorder.onAlertFired();
+    }
+
+    // Queues an alert SMS to every contact in the setting; sending and retries happen in the background
+    private void sendAlert(String alertType, String message, String contacts) {
+        List<String> destinations = AlertOutbox.parseDestinations(contacts);
+        alertWorker.execute(() -> {
+            AlertOutbox outbox = obtainAlertOutbox();
+            if (outbox != null) {
+                long id = outbox.enqueue(alertType, message, destinations);
+                if (outbox.getLastError() != null) Log.e(TAG, "Outbox journal write failed", outbox.getLastError());
+                Log.i(TAG, "Alert " + id + " queued for " + destinations.size() + " contact(s).");
+            } else {
+                for (String d : destinations) smsTransport.sendSms(d, message, new AlertTransport.Callback() { // No journal: one best-effort attempt
+                    @Override public void onSent(boolean success, String error) { Log.i(TAG, "Unqueued alert SMS to " + d + ": " + (success ? "sent" : error)); }
+                    @Override public void onDelivered(boolean success) {}
+                });
+            }
+        });
+    }
+
+    // Startup pool or alert worker
+    private AlertOutbox obtainAlertOutbox() {
+        synchronized (outboxLock) {
+            if (smsTransport == null) smsTransport = new SmsAlertTransport(this);
+            if (alertOutbox == null) {
+                try {
+                    alertOutbox = new AlertOutbox(new File(getFilesDir(), "outbox"), smsTransport, System::currentTimeMillis); // Wall clock: retry times survive a reboot
+                    alertOutbox.setListener(this::onAlertStatusChanged);
+                    alertOutbox.start(alertWorker);
+                    if (alertOutbox.getPendingCount() > 0) Log.i(TAG, "Resuming " + alertOutbox.getPendingCount() + " queued alert(s).");
+                } catch (IOException e) {
+                    Log.e(TAG, "Alert outbox unavailable", e);
+                }
+            }
+            return alertOutbox;
+        }
+    }
+
+    // Alert worker or SMS report thread
+    private void onAlertStatusChanged(long alertId, String destination, AlertOutbox.Status status, int attempts, String error) {
+        Log.i(TAG, "Alert " + alertId + " -> " + destination + ": " + status + " (attempt " + attempts + (error != null ? ", " + error : "") + ")");
+        if (status == AlertOutbox.Status.FAILED) {
+            sendAlertNotification("Emergency alert not sent", "Could not reach " + destination + " after " + attempts + " attempts.");
+        }
+    }
+    public boolean isFatigued() { return isFatigued; }
+    public boolean isAlertCountdownActive() { return countdownType != null; }
+    public LatencyTracker getLatencyTracker() { return latencyTracker; }
+    public StartupTimeline getStartupTimeline() { return startupTimeline; }
+
+    // --- Alarm Sound Handling (synchronized: stop() may come from the viewer while the pipeline stops) ---
+    public synchronized void playFatigueAlarm() { if (alarmPlayer != null) alarmPlayer.play(); }
+    public synchronized void stopFatigueAlarm() { if (alarmPlayer != null) alarmPlayer.stop(); }
+    public synchronized boolean isFatigueAlarmPlaying() { return alarmPlayer != null && alarmPlayer.isPlaying(); }
+    private synchronized void releaseAlarm() { if (alarmPlayer != null) { alarmPlayer.release(); alarmPlayer = null; Log.d(TAG, "Alarm released."); } }
+
+    // --- Notifications ---
+    public static void createNotificationChannels(Context context) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.O) return;
+        NotificationManager nM = context.getSystemService(NotificationManager.class);
+        if (nM == null) return;
+        NotificationChannel alerts = new NotificationChannel(ALERT_CHANNEL_ID, "Driver Safety Alerts", NotificationManager.IMPORTANCE_HIGH);
+        alerts.setDescription("Fatigue/accident notifications"); alerts.enableLights(true); alerts.enableVibration(true);
+        nM.createNotificationChannel(alerts);
+        NotificationChannel monitoring = new NotificationChannel(MONITORING_CHANNEL_ID, "Monitoring", NotificationManager.IMPORTANCE_LOW);
+        monitoring.setDescription("Shown while fatigue and accident monitoring is running");
+        nM.createNotificationChannel(monitoring);
+    }
+
+    private Notification buildMonitoringNotification() {
+        PendingIntent open = PendingIntent.getActivity(this, 0, new Intent(this, MainActivity.class)
+                .addFlags(Intent.FLAG_ACTIVITY_SINGLE_TOP), PendingIntent.FLAG_IMMUTABLE);
+        PendingIntent stop = PendingIntent.getService(this, 1, new Intent(this, MonitoringService.class)
+                .setAction(ACTION_STOP), PendingIntent.FLAG_IMMUTABLE);
+        return new NotificationCompat.Builder(this, MONITORING_CHANNEL_ID)
+                .setSmallIcon(R.drawable.ic_launcher_foreground)
+                .setContentTitle("Driver monitoring active")
+                .setContentText("Watching for fatigue and accidents.")
+                .setContentIntent(open)
+                .addAction(0, "Stop", stop)
+                .setOngoing(true)
+                .setForegroundServiceBehavior(NotificationCompat.FOREGROUND_SERVICE_IMMEDIATE)
+                .build();
+    }
+
+    // Ongoing while the alert is pending; re-posted every second without sounding again
+    private void showCountdownNotification(int secondsLeft) {
+        if (!canNotify()) return;
+        PendingIntent open = PendingIntent.getActivity(this, 2, new Intent(this, MainActivity.class)
+                .addFlags(Intent.FLAG_ACTIVITY_SINGLE_TOP), PendingIntent.FLAG_IMMUTABLE);
+        PendingIntent cancel = PendingIntent.getService(this, 3, new Intent(this, MonitoringService.class)
+                .setAction(ACTION_CANCEL_ALERT), PendingIntent.FLAG_IMMUTABLE);
+        NotificationCompat.Builder builder = new NotificationCompat.Builder(this, ALERT_CHANNEL_ID)
+                .setSmallIcon(R.drawable.ic_launcher_foreground)
+                .setContentTitle(countdownType + " Detected!")
+                .setContentText("Sending alert in " + secondsLeft + " seconds...")
+                .setPriority(NotificationCompat.PRIORITY_HIGH)
+                .setCategory(NotificationCompat.CATEGORY_ALARM)
+                .setDefaults(NotificationCompat.DEFAULT_ALL)
+                .setOnlyAlertOnce(true)
+                .setOngoing(true)
+                .setContentIntent(open)
+                .addAction(0, "Cancel Alert", cancel);
+        NotificationManager manager = (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
+        if (manager != null) manager.notify(COUNTDOWN_NOTIFICATION_ID, builder.build());
+    }
+
+    private void sendAlertNotification(String title, String message) {
+        if (!canNotify()) return;
+        PendingIntent open = PendingIntent.getActivity(this, 2, new Intent(this, MainActivity.class)
+                .addFlags(Intent.FLAG_ACTIVITY_SINGLE_TOP), PendingIntent.FLAG_IMMUTABLE);
+        NotificationCompat.Builder builder = new NotificationCompat.Builder(this, ALERT_CHANNEL_ID)
+                .setSmallIcon(R.drawable.ic_launcher_foreground)
+                .setContentTitle(title).setContentText(message)
+                .setStyle(new NotificationCompat.BigTextStyle().bigText(message))
+                .setPriority(NotificationCompat.PRIORITY_HIGH)
+                .setCategory(NotificationCompat.CATEGORY_ALARM)
+                .setDefaults(NotificationCompat.DEFAULT_ALL)
+                .setContentIntent(open)
+                .setAutoCancel(true);
+        NotificationManager manager = (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
+        if (manager != null) manager.notify((int) System.currentTimeMillis(), builder.build());
+    }
+
+    private boolean canNotify() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU && ContextCompat.checkSelfPermission(this, Manifest.permission.POST_NOTIFICATIONS) != PackageManager.PERMISSION_GRANTED) { Log.w(TAG, "Notification permission missing."); return false; }
+        return true;
+    }
+
+    private boolean hasCorePermissions() {
+        return ContextCompat.checkSelfPermission(this, Manifest.permission.CAMERA) == PackageManager.PERMISSION_GRANTED
+                && ContextCompat.checkSelfPermission(this, Manifest.permission.ACCESS_FINE_LOCATION) == PackageManager.PERMISSION_GRANTED;
+    }
+}
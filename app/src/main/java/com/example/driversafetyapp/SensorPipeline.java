@@ -0,0 +1,140 @@
+package com.example.driversafetyapp;
+
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.hardware.SensorEventListener;
+import android.hardware.SensorManager;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.util.Log;
+
+/**
+ * Accelerometer/gyroscope ingestion on a dedicated HandlerThread.
+ * Sensors are registered with a max report latency so the hardware FIFO delivers events in
+ * batches (fewer CPU wakeups at higher sampling rates). Samples go through the ImpactDetector
+ * and the optional consumers on the sensor thread; only threshold hits leave this thread.
+ */
+public class SensorPipeline implements SensorEventListener {
+
+    private static final String TAG = "SensorPipeline";
+
+    public static final int DEFAULT_SAMPLING_PERIOD_US = 20_000;      // SENSOR_DELAY_GAME (~50 Hz)
+    public static final int DEFAULT_MAX_REPORT_LATENCY_US = 200_000;  // Batch up to 200 ms in the FIFO
+
+    private final SensorManager sensorManager;
+    private final Sensor accelerometer;
+    private final Sensor gyroscope;
+    private final ImpactDetector impactDetector;
+
+    private volatile BlackBoxRecorder blackBox; // Optional crash recorder
+    private volatile TripRecorder tripRecorder; // Optional trip history (max g-force)
+    private volatile TraceFile.Writer traceWriter; // Optional replay trace recording
+    private volatile MotionGovernor motionGovernor; // Optional parked/idling/driving classification
+    private volatile CrashClassifier crashClassifier; // Optional crash/drop verdict on impacts
+
+    private HandlerThread sensorThread;
+    private Handler sensorHandler;
+    private boolean registered = false;
+    private int samplingPeriodUs = DEFAULT_SAMPLING_PERIOD_US;
+    private int maxReportLatencyUs = DEFAULT_MAX_REPORT_LATENCY_US;
+
+    public SensorPipeline(SensorManager sensorManager, ImpactDetector impactDetector) {
+        this.sensorManager = sensorManager;
+        this.accelerometer = sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER);
+        this.gyroscope = sensorManager.getDefaultSensor(Sensor.TYPE_GYROSCOPE);
+        this.impactDetector = impactDetector;
+    }
+
+    // --- Lifecycle (call from the main thread) ---
+    public void start() {
+        if (registered) return;
+        if (sensorThread == null) {
+            sensorThread = new HandlerThread("SensorPipeline", Process.THREAD_PRIORITY_FOREGROUND);
+            sensorThread.start();
+            sensorHandler = new Handler(sensorThread.getLooper());
+        }
+        if (accelerometer != null) sensorManager.registerListener(this, accelerometer, samplingPeriodUs, maxReportLatencyUs, sensorHandler);
+        if (gyroscope != null) sensorManager.registerListener(this, gyroscope, samplingPeriodUs, maxReportLatencyUs, sensorHandler);
+        registered = true;
+        Log.d(TAG, "Sensors registered: period=" + samplingPeriodUs + "us, maxLatency=" + maxReportLatencyUs + "us"
+                + " (accel FIFO=" + (accelerometer != null ? accelerometer.getFifoMaxEventCount() : 0) + ")");
+    }
+
+    public void stop() {
+        if (!registered) return;
+        sensorManager.unregisterListener(this);
+        registered = false;
+        Log.d(TAG, "Sensors unregistered.");
+    }
+
+    /** Changes sampling rate/batching; re-registers if currently running. */
+    public void setRates(int samplingPeriodUs, int maxReportLatencyUs) {
+        if (this.samplingPeriodUs == samplingPeriodUs && this.maxReportLatencyUs == maxReportLatencyUs) return;
+        this.samplingPeriodUs = samplingPeriodUs;
+        this.maxReportLatencyUs = maxReportLatencyUs;
+        if (registered) {
+            stop();
+            start();
+        }
+    }
+
+    public void release() {
+        stop();
+        if (sensorThread != null) {
+            sensorThread.quitSafely();
+            sensorThread = null;
+            sensorHandler = null;
+        }
+    }
+
+    // --- Sensor thread ---
+    @Override
+    public void onSensorChanged(SensorEvent event) {
+        float[] v = event.values;
+        if (event.sensor.getType() == Sensor.TYPE_ACCELEROMETER) {
+            BlackBoxRecorder box = blackBox;
+            if (box != null) box.recordAccel(event.timestamp, v[0], v[1], v[2]);
+            TripRecorder trip = tripRecorder;
+            if (trip != null) trip.onAccelerationSq(v[0] * v[0] + v[1] * v[1] + v[2] * v[2]);
+            TraceFile.Writer trace = traceWriter;
+            if (trace != null) trace.writeVector(TraceFile.TYPE_ACCEL, event.timestamp, v[0], v[1], v[2]);
+            MotionGovernor governor = motionGovernor;
+            if (governor != null) governor.onAccelerometer(event.timestamp, v[0], v[1], v[2]);
+            impactDetector.onAccelerometer(event.timestamp, v[0], v[1], v[2]);
+            CrashClassifier classifier = crashClassifier;
+            if (classifier != null) classifier.onAccelerometer(event.timestamp, v[0], v[1], v[2]);
+        } else if (event.sensor.getType() == Sensor.TYPE_GYROSCOPE) {
+            BlackBoxRecorder box = blackBox;
+            if (box != null) box.recordGyro(event.timestamp, v[0], v[1], v[2]);
+            TraceFile.Writer trace = traceWriter;
+            if (trace != null) trace.writeVector(TraceFile.TYPE_GYRO, event.timestamp, v[0], v[1], v[2]);
+            impactDetector.onGyroscope(event.timestamp, v[0], v[1], v[2]);
+            CrashClassifier classifier = crashClassifier;
+            if (classifier != null) classifier.onGyroscope(event.timestamp, v[0], v[1], v[2]);
+        }
+    }
+
+    @Override
+    public void onAccuracyChanged(Sensor sensor, int accuracy) {}
+
+    public void setBlackBox(BlackBoxRecorder blackBox) {
+        this.blackBox = blackBox;
+    }
+
+    public void setTripRecorder(TripRecorder tripRecorder) {
+        this.tripRecorder = tripRecorder;
+    }
+
+    public void setTraceWriter(TraceFile.Writer traceWriter) {
+        this.traceWriter = traceWriter;
+    }
+
+    public void setMotionGovernor(MotionGovernor motionGovernor) {
+        this.motionGovernor = motionGovernor;
+    }
+
+    public void setCrashClassifier(CrashClassifier crashClassifier) {
+        this.crashClassifier = crashClassifier;
+    }
+}
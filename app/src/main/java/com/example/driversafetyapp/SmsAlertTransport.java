@@ -0,0 +1,160 @@
+package com.example.driversafetyapp;
+
+import android.Manifest;
+import android.app.Activity;
+import android.app.PendingIntent;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.pm.PackageManager;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.telephony.SmsManager;
+import android.telephony.SmsMessage;
+import android.util.Log;
+
+import androidx.core.content.ContextCompat;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * AlertTransport over SmsManager. Every part of a multipart message gets sent and delivery
+ * PendingIntents; the reports arrive on a background HandlerThread and are folded into one
+ * onSent/onDelivered per message (any failed part fails the message).
+ */
+public class SmsAlertTransport implements AlertTransport {
+
+    private static final String TAG = "SmsAlertTransport";
+    private static final String ACTION_SENT = "com.example.driversafetyapp.action.ALERT_SMS_SENT";
+    private static final String ACTION_DELIVERED = "com.example.driversafetyapp.action.ALERT_SMS_DELIVERED";
+    private static final String EXTRA_SEND_ID = "sendId";
+    private static final int MAX_PARTS = 16;                   // Request codes are sendId * MAX_PARTS + part
+    private static final long REPORT_RETENTION_MS = 24 * 3600_000L; // Carriers that never report delivery
+    private static final int STATUS_FAILED_MIN = 0x40;         // TP-Status: 0x00-0x1F done, 0x20-0x3F still trying
+
+    private static class PendingSend {
+        final AlertTransport.Callback callback;
+        final long startedMs = System.currentTimeMillis();
+        int sentLeft, deliveredLeft;
+        boolean sentFailed, deliveryFailed;
+
+        PendingSend(AlertTransport.Callback callback, int parts) {
+            this.callback = callback;
+            this.sentLeft = parts;
+            this.deliveredLeft = parts;
+        }
+    }
+
+    private final Context context;
+    private final HandlerThread reportThread;
+    private final Map<Integer, PendingSend> pending = new ConcurrentHashMap<>();
+    private final AtomicInteger nextSendId = new AtomicInteger();
+
+    private final BroadcastReceiver reportReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context ctx, Intent intent) {
+            int sendId = intent.getIntExtra(EXTRA_SEND_ID, -1);
+            PendingSend send = pending.get(sendId);
+            if (send == null) return;
+            if (ACTION_SENT.equals(intent.getAction())) {
+                onPartSent(sendId, send, getResultCode());
+            } else if (ACTION_DELIVERED.equals(intent.getAction())) {
+                onPartDelivered(sendId, send, intent);
+            }
+        }
+    };
+
+    public SmsAlertTransport(Context context) {
+        this.context = context.getApplicationContext();
+        reportThread = new HandlerThread("SmsReports", Process.THREAD_PRIORITY_BACKGROUND);
+        reportThread.start();
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(ACTION_SENT);
+        filter.addAction(ACTION_DELIVERED);
+        ContextCompat.registerReceiver(this.context, reportReceiver, filter, null,
+                new Handler(reportThread.getLooper()), ContextCompat.RECEIVER_NOT_EXPORTED);
+    }
+
+    public void release() {
+        context.unregisterReceiver(reportReceiver);
+        reportThread.quitSafely();
+    }
+
+    @Override
+    public void sendSms(String destination, String body, Callback callback) {
+        if (ContextCompat.checkSelfPermission(context, Manifest.permission.SEND_SMS) != PackageManager.PERMISSION_GRANTED) {
+            callback.onSent(false, "SMS permission denied");
+            return;
+        }
+        dropStaleReports();
+        try {
+            SmsManager smsManager = Build.VERSION.SDK_INT >= Build.VERSION_CODES.S
+                    ? context.getSystemService(SmsManager.class) : SmsManager.getDefault();
+            ArrayList<String> parts = smsManager.divideMessage(body);
+            if (parts.size() > MAX_PARTS) {
+                callback.onSent(false, "Message too long (" + parts.size() + " parts)");
+                return;
+            }
+            int sendId = nextSendId.incrementAndGet() & 0x3FFFFFF; // Keeps sendId * MAX_PARTS in int range
+            ArrayList<PendingIntent> sentIntents = new ArrayList<>();
+            ArrayList<PendingIntent> deliveryIntents = new ArrayList<>();
+            for (int i = 0; i < parts.size(); i++) {
+                sentIntents.add(reportIntent(ACTION_SENT, sendId, i, PendingIntent.FLAG_IMMUTABLE));
+                // Mutable: the platform attaches the status PDU to the delivery report
+                deliveryIntents.add(reportIntent(ACTION_DELIVERED, sendId, i, PendingIntent.FLAG_MUTABLE));
+            }
+            pending.put(sendId, new PendingSend(callback, parts.size()));
+            smsManager.sendMultipartTextMessage(destination, null, parts, sentIntents, deliveryIntents);
+            Log.i(TAG, "SMS queued to radio for " + destination + " (" + parts.size() + " parts)");
+        } catch (RuntimeException e) {
+            Log.e(TAG, "SMS send failed", e);
+            callback.onSent(false, e.getClass().getSimpleName());
+        }
+    }
+
+    private PendingIntent reportIntent(String action, int sendId, int part, int mutability) {
+        Intent intent = new Intent(action).setPackage(context.getPackageName()).putExtra(EXTRA_SEND_ID, sendId);
+        return PendingIntent.getBroadcast(context, sendId * MAX_PARTS + part, intent,
+                mutability | PendingIntent.FLAG_ONE_SHOT | PendingIntent.FLAG_UPDATE_CURRENT);
+    }
+
+    // --- Reports (report thread) ---
+    private void onPartSent(int sendId, PendingSend send, int resultCode) {
+        if (send.sentLeft <= 0) return;
+        send.sentLeft--;
+        if (resultCode != Activity.RESULT_OK && !send.sentFailed) {
+            send.sentFailed = true;
+            pending.remove(sendId); // Outbox retries the whole message
+            send.callback.onSent(false, "Radio error " + resultCode);
+        } else if (send.sentLeft == 0 && !send.sentFailed) {
+            send.callback.onSent(true, null);
+        }
+    }
+
+    private void onPartDelivered(int sendId, PendingSend send, Intent intent) {
+        if (send.sentFailed || send.deliveryFailed) return;
+        byte[] pdu = intent.getByteArrayExtra("pdu");
+        String format = intent.getStringExtra("format");
+        SmsMessage report = pdu != null ? SmsMessage.createFromPdu(pdu, format) : null;
+        int status = report != null ? report.getStatus() : 0;
+        if (status >= STATUS_FAILED_MIN) {
+            send.deliveryFailed = true;
+            pending.remove(sendId);
+            send.callback.onDelivered(false);
+        } else if (status < 0x20 && --send.deliveredLeft == 0) {
+            pending.remove(sendId);
+            send.callback.onDelivered(true);
+        }
+    }
+
+    private void dropStaleReports() {
+        long cutoff = System.currentTimeMillis() - REPORT_RETENTION_MS;
+        pending.values().removeIf(s -> s.startedMs < cutoff);
+    }
+}
@@ -2,12 +2,15 @@ package com.example.driversafetyapp; // Match your package name
 
 import android.content.Context;
 import android.content.SharedPreferences;
+import android.net.Uri;
 import android.os.Bundle;
 import android.text.TextUtils;
 import android.util.Log;
 import android.widget.Button;
 import android.widget.Toast;
 
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.appcompat.app.AppCompatActivity;
 
 import com.google.android.material.textfield.TextInputEditText;
@@ -16,11 +19,11 @@ import com.google.android.material.textfield.TextInputLayout;
 public class UserDetailsActivity extends AppCompatActivity {
 
     private static final String TAG = "UserDetailsActivity";
-    // SharedPreferences keys (use constants defined in MainActivity or a dedicated class)
-    public static final String SHARED_PREFS_NAME = "DriverSafetyPrefs";
-    public static final String KEY_USER_NAME = "userName";
-    public static final String KEY_EMERGENCY_CONTACT_NAME = "emergencyContactName";
-    public static final String KEY_EMERGENCY_CONTACT_PHONE = "emergencyContactPhone";
+    // SharedPreferences keys (defined with the rest of the settings in AppConfig)
+    public static final String SHARED_PREFS_NAME = ConfigRepository.PREFS_NAME;
+    public static final String KEY_USER_NAME = AppConfig.KEY_USER_NAME;
+    public static final String KEY_EMERGENCY_CONTACT_NAME = AppConfig.KEY_EMERGENCY_CONTACT_NAME;
+    public static final String KEY_EMERGENCY_CONTACT_PHONE = AppConfig.KEY_EMERGENCY_CONTACT_PHONE;
 
     private TextInputEditText editTextUserName;
     private TextInputEditText editTextEmergencyContactName;
@@ -30,6 +33,10 @@ public class UserDetailsActivity extends AppCompatActivity {
 
     private SharedPreferences sharedPreferences;
 
+    // Long-press Save to import a .properties config file (thresholds and/or contact)
+    private final ActivityResultLauncher<String[]> importLauncher =
+            registerForActivityResult(new ActivityResultContracts.OpenDocument(), this::importConfig);
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -50,6 +57,7 @@ public class UserDetailsActivity extends AppCompatActivity {
 
         // Set Save button listener
         buttonSave.setOnClickListener(v -> saveUserDetails());
+        buttonSave.setOnLongClickListener(v -> { importLauncher.launch(new String[] {"text/*", "application/octet-stream"}); return true; });
     }
 
     private void loadUserDetails() {
@@ -98,4 +106,21 @@ public class UserDetailsActivity extends AppCompatActivity {
         // Optional: Close the activity after saving
         // finish();
     }
+
+    // Settings change listeners (MonitoringService) pick the new values up; no restart needed
+    private void importConfig(Uri uri) {
+        if (uri == null) return; // Picker cancelled
+        ConfigRepository.get(this).importAsync(() -> getContentResolver().openInputStream(uri))
+                .whenComplete((config, error) -> runOnUiThread(() -> {
+                    if (isFinishing() || isDestroyed()) return;
+                    if (error != null) {
+                        Throwable cause = error.getCause() != null ? error.getCause() : error;
+                        Log.w(TAG, "Config import failed", cause);
+                        Toast.makeText(this, "Import failed: " + cause.getMessage(), Toast.LENGTH_LONG).show();
+                        return;
+                    }
+                    loadUserDetails();
+                    Toast.makeText(this, "Config imported", Toast.LENGTH_SHORT).show();
+                }));
+    }
 }
\ No newline at end of file
@@ -0,0 +1,26 @@
+package com.example.driversafetyapp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Cost of building alert text, which happens on the main thread when an alert fires.
+ */
+@State(Scope.Thread)
+public class AlertMessageBenchmark {
+
+    private double latitude = 28.613939;
+    private double longitude = 77.209023;
+    private float acceleration = 52.3f;
+
+    @Benchmark
+    public String locationString() {
+        return AlertMessages.location(latitude, longitude);
+    }
+
+    @Benchmark
+    public String accidentSms() {
+        return AlertMessages.smsBody("Accident", AlertMessages.impactCause(acceleration), AlertMessages.location(latitude, longitude));
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.driversafetyapp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Per-frame cost of the fatigue decision logic (PERCLOS window, microsleep timer, yawn MAR),
+ * i.e. everything FatigueDetector does after ML Kit returns.
+ */
+@State(Scope.Thread)
+public class FatigueEngineBenchmark {
+
+    private static final int FRAMES = 1024;
+
+    private FatigueEngine engine;
+    private FrameRateScheduler scheduler;
+    private final FaceFrame[] frames = new FaceFrame[FRAMES];
+    private int next;
+    private long timestampMs;
+    private long timestampNs;
+
+    @Setup
+    public void setup() {
+        FatigueListener sink = new FatigueListener() {
+            @Override public void onFatigueDetected(boolean isFatigued) {}
+            @Override public void onNoFaceDetected() {}
+            @Override public void onYawnDetected(int yawnsInWindow) {}
+        };
+        scheduler = new FrameRateScheduler(FrameRateScheduler.Config.defaults());
+        engine = new FatigueEngine(sink, scheduler);
+        // Mostly open eyes with a blink every ~30 frames and an occasional wide mouth
+        for (int i = 0; i < FRAMES; i++) {
+            FaceFrame f = new FaceFrame();
+            f.facePresent = true;
+            float eye = (i % 30 < 3) ? 0.05f : 0.9f;
+            f.leftEyeOpen = eye;
+            f.rightEyeOpen = eye;
+            float mouthOpen = (i % 200 < 60) ? 36f : 8f;
+            f.mouth[YawnDetector.MOUTH_LEFT_X] = 100; f.mouth[YawnDetector.MOUTH_LEFT_Y] = 200;
+            f.mouth[YawnDetector.MOUTH_RIGHT_X] = 140; f.mouth[YawnDetector.MOUTH_RIGHT_Y] = 200;
+            f.mouth[YawnDetector.MOUTH_BOTTOM_X] = 120; f.mouth[YawnDetector.MOUTH_BOTTOM_Y] = 200 + mouthOpen;
+            f.mouthValid = true;
+            frames[i] = f;
+        }
+    }
+
+    @Benchmark
+    public void processFrame(Blackhole bh) {
+        FaceFrame f = frames[next];
+        next = (next + 1) & (FRAMES - 1);
+        timestampMs += 33;
+        f.timestampMs = timestampMs;
+        engine.onFrame(f);
+        bh.consume(engine.isFatigued());
+    }
+
+    @Benchmark
+    public boolean schedulerDecision() {
+        timestampNs += 33_333_333L;
+        return scheduler.shouldAnalyze(timestampNs);
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.driversafetyapp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Per-sensor-event cost: ImpactDetector's squared-magnitude check against the sqrt-per-event
+ * check MainActivity.onSensorChanged used to do.
+ */
+@State(Scope.Thread)
+public class SensorThresholdBenchmark {
+
+    private static final int SAMPLES = 1024;
+    private static final float ACCIDENT_ACCELERATION_THRESHOLD = 45.0f;
+
+    private final float[] xs = new float[SAMPLES];
+    private final float[] ys = new float[SAMPLES];
+    private final float[] zs = new float[SAMPLES];
+    private ImpactDetector detector;
+    private int next;
+    private long timestampNs;
+
+    @Setup
+    public void setup() {
+        java.util.Random random = new java.util.Random(42);
+        for (int i = 0; i < SAMPLES; i++) { // Normal driving: gravity plus a little noise
+            xs[i] = (float) random.nextGaussian();
+            ys[i] = (float) random.nextGaussian();
+            zs[i] = 9.81f + (float) random.nextGaussian();
+        }
+        detector = new ImpactDetector(ACCIDENT_ACCELERATION_THRESHOLD, 15.0f, new ImpactDetector.ImpactListener() {
+            @Override public void onHighAcceleration(float magnitude, long ts) {}
+            @Override public void onHighRotation(float magnitude, long ts) {}
+        });
+    }
+
+    @Benchmark
+    public void impactDetector() {
+        int i = next;
+        next = (next + 1) & (SAMPLES - 1);
+        timestampNs += 20_000_000L;
+        detector.onAccelerometer(timestampNs, xs[i], ys[i], zs[i]);
+    }
+
+    @Benchmark
+    public boolean sqrtPerEventBaseline() {
+        int i = next;
+        next = (next + 1) & (SAMPLES - 1);
+        float acceleration = (float) Math.sqrt(xs[i] * xs[i] + ys[i] * ys[i] + zs[i] * zs[i]);
+        return acceleration > ACCIDENT_ACCELERATION_THRESHOLD;
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.driversafetyapp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Steady-state cost of the sliding-window structures once their windows are full.
+ */
+@State(Scope.Thread)
+public class WindowingBenchmark {
+
+    private PerclosWindow perclos;
+    private YawnDetector yawn;
+    private final float[] mouth = new float[YawnDetector.MOUTH_POINT_COUNT];
+    private long timestampMs;
+    private int frame;
+
+    @Setup
+    public void setup() {
+        perclos = new PerclosWindow(60_000, 1_000, 4096);
+        yawn = YawnDetector.withDefaults();
+        mouth[YawnDetector.MOUTH_LEFT_X] = 100; mouth[YawnDetector.MOUTH_LEFT_Y] = 200;
+        mouth[YawnDetector.MOUTH_RIGHT_X] = 140; mouth[YawnDetector.MOUTH_RIGHT_Y] = 200;
+        mouth[YawnDetector.MOUTH_BOTTOM_X] = 120; mouth[YawnDetector.MOUTH_BOTTOM_Y] = 210;
+        // Fill the PERCLOS window so every add also evicts
+        for (int i = 0; i < 2 * 60 * 30; i++) addPerclosSample();
+    }
+
+    private void addPerclosSample() {
+        timestampMs += 33;
+        boolean closed = (++frame % 30) < 3;
+        perclos.add(timestampMs, closed ? 0.05f : 0.9f, closed ? 0.05f : 0.9f, closed);
+    }
+
+    @Benchmark
+    public float perclosAdd() {
+        addPerclosSample();
+        return perclos.getPerclos();
+    }
+
+    @Benchmark
+    public boolean yawnUpdate() {
+        timestampMs += 33;
+        mouth[YawnDetector.MOUTH_BOTTOM_Y] = 200 + ((++frame & 63) < 48 ? 36f : 8f);
+        return yawn.update(timestampMs, mouth);
+    }
+}
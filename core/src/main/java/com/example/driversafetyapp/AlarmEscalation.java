@@ -0,0 +1,57 @@
+package com.example.driversafetyapp;
+
+/**
+ * Escalation schedule of the fatigue alarm while fatigue continues: each stage raises the
+ * volume, changes the on/off beat of the sound and the vibration pattern. Pure timing, no audio:
+ * AlarmPlayer asks for the gain at the current elapsed time and when it next changes.
+ */
+public final class AlarmEscalation {
+
+    // --- Escalation (NEEDS CALIBRATION!) ---
+    private static final long[] STAGE_START_MS = {0, 8_000, 20_000};
+    private static final float[] STAGE_VOLUME = {0.6f, 0.85f, 1.0f};
+    private static final long[] STAGE_ON_MS = {0, 700, 250};   // 0 = continuous
+    private static final long[] STAGE_OFF_MS = {0, 300, 150};
+    private static final long[][] STAGE_VIBRATION = {          // Off/on ms pairs, repeated; null = none
+            null,
+            {0, 400, 600},
+            {0, 800, 200},
+    };
+    // ---
+
+    public static final int STAGE_COUNT = STAGE_START_MS.length;
+
+    private AlarmEscalation() {}
+
+    public static int stageAt(long elapsedMs) {
+        int stage = 0;
+        while (stage + 1 < STAGE_COUNT && elapsedMs >= STAGE_START_MS[stage + 1]) stage++;
+        return stage;
+    }
+
+    /** Output gain at elapsedMs: the stage's volume in the on part of its beat, 0 in the off part. */
+    public static float gainAt(long elapsedMs) {
+        int stage = stageAt(elapsedMs);
+        long period = STAGE_ON_MS[stage] + STAGE_OFF_MS[stage];
+        if (period == 0) return STAGE_VOLUME[stage];
+        long phase = (elapsedMs - STAGE_START_MS[stage]) % period;
+        return phase < STAGE_ON_MS[stage] ? STAGE_VOLUME[stage] : 0f;
+    }
+
+    /** Elapsed time of the next gain or stage change after elapsedMs, or -1 if there is none. */
+    public static long nextChangeMs(long elapsedMs) {
+        int stage = stageAt(elapsedMs);
+        long next = stage + 1 < STAGE_COUNT ? STAGE_START_MS[stage + 1] : -1;
+        long period = STAGE_ON_MS[stage] + STAGE_OFF_MS[stage];
+        if (period == 0) return next;
+        long sinceStart = elapsedMs - STAGE_START_MS[stage];
+        long phase = sinceStart % period;
+        long edge = elapsedMs - phase + (phase < STAGE_ON_MS[stage] ? STAGE_ON_MS[stage] : period);
+        return next == -1 ? edge : Math.min(edge, next);
+    }
+
+    /** Vibration pattern of the stage (for a repeating waveform), or null for none. */
+    public static long[] vibrationPattern(int stage) {
+        return STAGE_VIBRATION[stage];
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.driversafetyapp;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Text of the accident/fatigue alerts (status causes, location line, SMS body).
+ * Kept free of Android types so it can be benchmarked and tested on the JVM.
+ */
+public final class AlertMessages {
+
+    public static final String LOCATION_UNAVAILABLE = "Location unavailable";
+
+    private AlertMessages() {}
+
+    public static String impactCause(float accelerationMps2) {
+        return "High Impact (" + String.format(Locale.US, "%.1f", accelerationMps2) + " m/s²)";
+    }
+
+    public static String rotationCause(float rotationRadPerSec) {
+        return "Severe Rotation (" + String.format(Locale.US, "%.1f", Math.toDegrees(rotationRadPerSec)) + " °/s)";
+    }
+
+    public static String crashCause(float accelerationMps2, float deltaVMps) {
+        return String.format(Locale.US, "Crash Detected (%.1f m/s², Δv %.0f km/h)", accelerationMps2, deltaVMps * 3.6f);
+    }
+
+    public static String location(double latitude, double longitude) {
+        return String.format(Locale.US, "Lat: %.6f, Lng: %.6f (http://maps.google.com/maps?q=%.6f,%.6f)", latitude, longitude, latitude, longitude);
+    }
+
+    private static final int[] APPROACH_OFFSETS_S = {30, 20, 10, 5, 0};
+
+    /**
+     * Speed/heading shortly before nowElapsedMs, e.g. "Approach: -30s 88 km/h 184°, -10s 52 km/h 181°, -0s 4 km/h".
+     * Empty if there is no trajectory.
+     */
+    public static String approach(List<TrajectoryBuffer.Point> points, long nowElapsedMs) {
+        StringBuilder sb = new StringBuilder();
+        TrajectoryBuffer.Point previous = null;
+        for (int offsetS : APPROACH_OFFSETS_S) {
+            TrajectoryBuffer.Point at = null; // Newest point at or before the offset
+            for (TrajectoryBuffer.Point p : points) {
+                if (p.elapsedMs <= nowElapsedMs - offsetS * 1000L) at = p; else break;
+            }
+            if (at == null || at == previous) continue;
+            previous = at;
+            sb.append(sb.length() == 0 ? "Approach: " : ", ");
+            sb.append(String.format(Locale.US, "-%ds %.0f km/h", offsetS, at.speedMps * 3.6f));
+            if (!Float.isNaN(at.bearingDeg)) sb.append(String.format(Locale.US, " %.0f°", at.bearingDeg));
+        }
+        return sb.toString();
+    }
+
+    public static String smsBody(String alertType, String cause, String locationString) {
+        if (alertType.equals("Accident")) {
+            return "Emergency! Potential Accident Detected (" + cause + "). Last known location: " + locationString;
+        } else { // Fatigue
+            return "Alert: Driver Fatigue Detected. Last known location: " + locationString;
+        }
+    }
+}
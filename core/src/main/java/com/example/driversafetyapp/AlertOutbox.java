@@ -0,0 +1,514 @@
+package com.example.driversafetyapp;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.zip.CRC32;
+
+/**
+ * Durable queue of outgoing emergency alerts. enqueue() journals the alert (fsync'd) before it
+ * returns; a background worker then sends it to every destination in parallel through the
+ * AlertTransport, tracks sent/delivered per destination and retries failures with exponential
+ * backoff. Per destination, alerts go out in enqueue order, one at a time.
+ * The journal (outbox.log) is an append-only list of records, each framed as
+ *   length (int), payload, CRC32 of payload (int)
+ * with ENQUEUE (id, createdMs, type, body, destinations) and STATE (id, dest, status, attempts,
+ * nextAttemptMs) payloads. A torn tail from a crash mid-write is cut on load; a send that was in
+ * flight at the crash is retried (a duplicate SMS beats a lost one). Once every alert is settled
+ * the journal is compacted away; a SENT alert whose delivery then fails is journaled again.
+ * Thread-safe; transport callbacks may come from any thread.
+ */
+public class AlertOutbox {
+
+    public enum Status { PENDING, SENDING, SENT, DELIVERED, FAILED }
+
+    /** One alert and its per-destination progress. Fields are guarded by the outbox. */
+    public static class Alert {
+        public final long id;
+        public final long createdMs;
+        public final String type;
+        public final String body;
+        public final String[] destinations;
+        final Status[] status;
+        final int[] attempts;
+        final long[] nextAttemptMs;  // PENDING: earliest retry; SENDING: send timeout
+        final String[] lastError;
+        boolean journaled;           // The journal holds its ENQUEUE record
+
+        Alert(long id, long createdMs, String type, String body, String[] destinations) {
+            this.id = id;
+            this.createdMs = createdMs;
+            this.type = type;
+            this.body = body;
+            this.destinations = destinations;
+            int n = destinations.length;
+            status = new Status[n];
+            Arrays.fill(status, Status.PENDING);
+            attempts = new int[n];
+            nextAttemptMs = new long[n];
+            lastError = new String[n];
+        }
+
+        boolean isSettled() {
+            for (Status s : status) if (s == Status.PENDING || s == Status.SENDING) return false;
+            return true;
+        }
+    }
+
+    /** Called outside the outbox lock, on the worker or a transport thread. */
+    public interface Listener {
+        void onStatusChanged(long alertId, String destination, Status status, int attempts, String error);
+    }
+
+    // --- Retry policy ---
+    private static final long INITIAL_BACKOFF_MS = 5_000;
+    private static final long MAX_BACKOFF_MS = 5 * 60_000;
+    private static final int MAX_ATTEMPTS = 15;              // ~50 min of retries before giving up
+    private static final long SEND_TIMEOUT_MS = 60_000;      // No sent report by then = failed attempt
+    private static final int MAX_SETTLED_KEPT = 20;          // Settled alerts kept in memory for delivery reports/status
+    // ---
+
+    private static final byte REC_ENQUEUE = 1;
+    private static final byte REC_STATE = 2;
+    private static final int MAX_RECORD_BYTES = 64 * 1024;
+
+    private final File journal;
+    private final AlertTransport transport;
+    private final LongSupplier clock;
+    private final List<Alert> alerts = new ArrayList<>(); // Oldest first
+    private volatile Listener listener;
+    private long nextId;
+    private IOException lastError;
+
+    private ScheduledExecutorService worker;
+    private ScheduledFuture<?> scheduledPump;
+    private boolean wakePending = false;
+
+    public AlertOutbox(File directory, AlertTransport transport, LongSupplier clock) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        this.journal = new File(directory, "outbox.log");
+        this.transport = transport;
+        this.clock = clock;
+        nextId = clock.getAsLong();
+        load();
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /** Splits a contact setting like "+4915..., +4917...; 0171..." into destinations. */
+    public static List<String> parseDestinations(String contacts) {
+        List<String> result = new ArrayList<>();
+        if (contacts == null) return result;
+        for (String part : contacts.split("[,;\\n]")) {
+            String trimmed = part.trim();
+            if (!trimmed.isEmpty() && !result.contains(trimmed)) result.add(trimmed);
+        }
+        return result;
+    }
+
+    // --- Queueing ---
+    /**
+     * Queues an alert for every destination and wakes the worker. The alert is on disk when this
+     * returns; if the journal can't be written it is still sent, and getLastError() says why.
+     */
+    public long enqueue(String type, String body, List<String> destinations) {
+        Alert alert;
+        synchronized (this) {
+            long now = clock.getAsLong();
+            nextId = Math.max(nextId + 1, now);
+            alert = new Alert(nextId, now, type, body, destinations.toArray(new String[0]));
+            Arrays.fill(alert.nextAttemptMs, now);
+            alerts.add(alert);
+            try {
+                appendRecords(true, enqueueRecord(alert));
+                alert.journaled = true;
+            } catch (IOException e) {
+                lastError = e;
+            }
+        }
+        wake();
+        return alert.id;
+    }
+
+    // --- Worker ---
+    /** Drains on the given executor until stop(); pending alerts from the journal go out right away. */
+    public synchronized void start(ScheduledExecutorService worker) {
+        this.worker = worker;
+        wake();
+    }
+
+    public synchronized void stop() {
+        if (scheduledPump != null) scheduledPump.cancel(false);
+        scheduledPump = null;
+        worker = null; // Unsent alerts stay in the journal for the next start()
+    }
+
+    private synchronized void wake() {
+        if (worker == null) return;
+        if (scheduledPump != null) scheduledPump.cancel(false);
+        wakePending = true;
+        scheduledPump = worker.schedule(this::runPump, 0, TimeUnit.MILLISECONDS);
+    }
+
+    private void runPump() {
+        synchronized (this) { wakePending = false; }
+        long delayMs = pump();
+        synchronized (this) {
+            if (worker == null || delayMs < 0 || wakePending) return; // A newer pump is already queued
+            scheduledPump = worker.schedule(this::runPump, delayMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Starts every send that is due and times out stuck ones. Returns ms until the next due
+     * retry/timeout, or -1 if nothing is pending. The worker calls this; tests may call it directly.
+     */
+    public long pump() {
+        List<Runnable> sends = new ArrayList<>();
+        List<Runnable> notifications = new ArrayList<>();
+        long nextDue = Long.MAX_VALUE;
+        synchronized (this) {
+            long now = clock.getAsLong();
+            Set<String> busy = new HashSet<>(); // Destinations with an older unsettled alert
+            List<byte[]> records = new ArrayList<>();
+            for (Alert a : alerts) {
+                for (int i = 0; i < a.destinations.length; i++) {
+                    String dest = a.destinations[i];
+                    if (a.status[i] == Status.SENDING && now >= a.nextAttemptMs[i]) {
+                        records.add(fail(a, i, "timeout", now, notifications));
+                    }
+                    if (a.status[i] == Status.PENDING && now >= a.nextAttemptMs[i] && !busy.contains(dest)) {
+                        a.status[i] = Status.SENDING;
+                        a.attempts[i]++;
+                        a.nextAttemptMs[i] = now + SEND_TIMEOUT_MS;
+                        records.add(stateRecord(a, i));
+                        sends.add(sendTask(a, i, a.attempts[i]));
+                    }
+                    if (a.status[i] == Status.PENDING || a.status[i] == Status.SENDING) {
+                        busy.add(dest);
+                        nextDue = Math.min(nextDue, a.nextAttemptMs[i]);
+                    }
+                }
+            }
+            try {
+                if (!records.isEmpty()) appendRecords(false, records.toArray(new byte[0][]));
+            } catch (IOException e) {
+                lastError = e;
+            }
+            if (nextDue != Long.MAX_VALUE) nextDue = Math.max(0, nextDue - now);
+        }
+        for (Runnable r : notifications) r.run();
+        for (Runnable send : sends) send.run(); // Transports are asynchronous, so destinations go out in parallel
+        return nextDue == Long.MAX_VALUE ? -1 : nextDue;
+    }
+
+    private Runnable sendTask(Alert a, int dest, int attempt) {
+        return () -> transport.sendSms(a.destinations[dest], a.body, new AlertTransport.Callback() {
+            @Override
+            public void onSent(boolean success, String error) {
+                onSendResult(a, dest, attempt, success, error);
+            }
+
+            @Override
+            public void onDelivered(boolean success) {
+                onDeliveryResult(a, dest, attempt, success);
+            }
+        });
+    }
+
+    // --- Transport results (any thread) ---
+    private void onSendResult(Alert a, int dest, int attempt, boolean success, String error) {
+        List<Runnable> notifications = new ArrayList<>();
+        synchronized (this) {
+            if (a.attempts[dest] != attempt || a.status[dest] != Status.SENDING) return; // Stale (timed out already)
+            byte[] record;
+            if (success) {
+                a.status[dest] = Status.SENT;
+                a.lastError[dest] = null;
+                record = stateRecord(a, dest);
+                notifications.add(notification(a, dest));
+            } else {
+                record = fail(a, dest, error, clock.getAsLong(), notifications);
+            }
+            persistState(a, record);
+        }
+        for (Runnable r : notifications) r.run();
+        wake();
+    }
+
+    private void onDeliveryResult(Alert a, int dest, int attempt, boolean success) {
+        List<Runnable> notifications = new ArrayList<>();
+        synchronized (this) {
+            if (a.attempts[dest] != attempt || a.status[dest] != Status.SENT) return;
+            byte[] record;
+            if (success) {
+                a.status[dest] = Status.DELIVERED;
+                record = stateRecord(a, dest);
+                notifications.add(notification(a, dest));
+            } else {
+                record = fail(a, dest, "not delivered", clock.getAsLong(), notifications); // Network gave up; try again
+                if (!alerts.contains(a)) requeue(a); // Already dropped from memory as settled
+            }
+            persistState(a, record);
+        }
+        for (Runnable r : notifications) r.run();
+        if (!success) wake();
+    }
+
+    // Schedules a retry with backoff, or gives up after MAX_ATTEMPTS. Caller holds the lock.
+    private byte[] fail(Alert a, int dest, String error, long now, List<Runnable> notifications) {
+        a.lastError[dest] = error;
+        if (a.attempts[dest] >= MAX_ATTEMPTS) {
+            a.status[dest] = Status.FAILED;
+        } else {
+            a.status[dest] = Status.PENDING;
+            a.nextAttemptMs[dest] = now + backoffMs(a.attempts[dest]);
+        }
+        notifications.add(notification(a, dest));
+        return stateRecord(a, dest);
+    }
+
+    static long backoffMs(int attempts) {
+        long delay = INITIAL_BACKOFF_MS << Math.min(attempts - 1, 16);
+        return Math.min(delay, MAX_BACKOFF_MS);
+    }
+
+    private Runnable notification(Alert a, int dest) {
+        Listener l = listener;
+        if (l == null) return () -> {};
+        String destination = a.destinations[dest];
+        Status status = a.status[dest];
+        int attempts = a.attempts[dest];
+        String error = a.lastError[dest];
+        return () -> l.onStatusChanged(a.id, destination, status, attempts, error);
+    }
+
+    // Caller holds the lock
+    private void persistState(Alert a, byte[] record) {
+        try {
+            if (allSettled()) {
+                compact(); // Nothing left to resend after a restart
+            } else if (!a.journaled) {
+                // Compacted away while it looked settled (SENT), now pending again: journal it afresh
+                byte[][] records = new byte[a.destinations.length + 1][];
+                records[0] = enqueueRecord(a);
+                for (int i = 0; i < a.destinations.length; i++) records[i + 1] = stateRecord(a, i);
+                appendRecords(true, records);
+                a.journaled = true;
+            } else {
+                appendRecords(false, record);
+            }
+        } catch (IOException e) {
+            lastError = e;
+        }
+        while (alerts.size() > MAX_SETTLED_KEPT && alerts.get(0).isSettled()) alerts.remove(0);
+    }
+
+    // Puts an alert back in id (= enqueue) order, so per-destination ordering still holds. Caller holds the lock.
+    private void requeue(Alert a) {
+        int i = alerts.size();
+        while (i > 0 && alerts.get(i - 1).id > a.id) i--;
+        alerts.add(i, a);
+    }
+
+    private boolean allSettled() {
+        for (Alert a : alerts) if (!a.isSettled()) return false;
+        return true;
+    }
+
+    // --- Status ---
+    public synchronized Status getStatus(long alertId, String destination) {
+        for (Alert a : alerts) {
+            if (a.id != alertId) continue;
+            for (int i = 0; i < a.destinations.length; i++) if (a.destinations[i].equals(destination)) return a.status[i];
+        }
+        return null;
+    }
+
+    public synchronized int getAttempts(long alertId, String destination) {
+        for (Alert a : alerts) {
+            if (a.id != alertId) continue;
+            for (int i = 0; i < a.destinations.length; i++) if (a.destinations[i].equals(destination)) return a.attempts[i];
+        }
+        return 0;
+    }
+
+    /** Alerts with at least one destination still pending or in flight. */
+    public synchronized int getPendingCount() {
+        int n = 0;
+        for (Alert a : alerts) if (!a.isSettled()) n++;
+        return n;
+    }
+
+    public synchronized IOException getLastError() {
+        return lastError;
+    }
+
+    // --- Journal ---
+    private byte[] enqueueRecord(Alert a) {
+        return record(out -> {
+            out.writeByte(REC_ENQUEUE);
+            out.writeLong(a.id);
+            out.writeLong(a.createdMs);
+            out.writeUTF(a.type);
+            out.writeUTF(a.body);
+            out.writeInt(a.destinations.length);
+            for (String d : a.destinations) out.writeUTF(d);
+        });
+    }
+
+    private byte[] stateRecord(Alert a, int dest) {
+        return record(out -> {
+            out.writeByte(REC_STATE);
+            out.writeLong(a.id);
+            out.writeInt(dest);
+            out.writeByte(a.status[dest].ordinal());
+            out.writeInt(a.attempts[dest]);
+            out.writeLong(a.nextAttemptMs[dest]);
+        });
+    }
+
+    private interface RecordBody {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    // Frames one payload as length, payload, CRC32
+    private static byte[] record(RecordBody body) {
+        try {
+            ByteArrayOutputStream payload = new ByteArrayOutputStream(128);
+            body.write(new DataOutputStream(payload));
+            byte[] bytes = payload.toByteArray();
+            CRC32 crc = new CRC32();
+            crc.update(bytes);
+            ByteArrayOutputStream framed = new ByteArrayOutputStream(bytes.length + 8);
+            DataOutputStream out = new DataOutputStream(framed);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+            out.writeInt((int) crc.getValue());
+            return framed.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // In-memory streams don't throw
+        }
+    }
+
+    private void appendRecords(boolean sync, byte[]... records) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(journal, true)) {
+            for (byte[] r : records) out.write(r);
+            if (sync) out.getFD().sync();
+        }
+    }
+
+    // Rebuilds the queue from the journal; stops at (and cuts) the first torn or corrupt record
+    private void load() throws IOException {
+        if (!journal.exists()) return;
+        long validBytes = 0;
+        try (DataInputStream in = new DataInputStream(new FileInputStream(journal))) {
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                if (length <= 0 || length > MAX_RECORD_BYTES) break;
+                byte[] payload = new byte[length];
+                int crcValue;
+                try {
+                    in.readFully(payload);
+                    crcValue = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                CRC32 crc = new CRC32();
+                crc.update(payload);
+                if ((int) crc.getValue() != crcValue) break;
+                apply(new DataInputStream(new ByteArrayInputStream(payload)));
+                validBytes += 8 + length;
+            }
+        }
+        if (validBytes < journal.length()) {
+            try (RandomAccessFile raf = new RandomAccessFile(journal, "rw")) {
+                raf.setLength(validBytes);
+            }
+        }
+        long now = clock.getAsLong();
+        for (Alert a : alerts) {
+            nextId = Math.max(nextId, a.id);
+            for (int i = 0; i < a.destinations.length; i++) {
+                if (a.status[i] == Status.SENDING) { // Crashed mid-send: outcome unknown, send again
+                    a.status[i] = Status.PENDING;
+                    a.nextAttemptMs[i] = now;
+                }
+            }
+        }
+        compact();
+    }
+
+    private void apply(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        long id = in.readLong();
+        if (type == REC_ENQUEUE) {
+            long createdMs = in.readLong();
+            String alertType = in.readUTF();
+            String body = in.readUTF();
+            String[] destinations = new String[in.readInt()];
+            for (int i = 0; i < destinations.length; i++) destinations[i] = in.readUTF();
+            Alert a = new Alert(id, createdMs, alertType, body, destinations);
+            Arrays.fill(a.nextAttemptMs, createdMs);
+            a.journaled = true;
+            alerts.add(a);
+        } else if (type == REC_STATE) {
+            int dest = in.readInt();
+            Status status = Status.values()[in.readByte()];
+            int attempts = in.readInt();
+            long nextAttemptMs = in.readLong();
+            for (Alert a : alerts) {
+                if (a.id != id || dest >= a.destinations.length) continue;
+                a.status[dest] = status;
+                a.attempts[dest] = attempts;
+                a.nextAttemptMs[dest] = nextAttemptMs;
+            }
+        }
+    }
+
+    // Rewrites the journal with only the unsettled alerts (tmp file + rename, like TripStore)
+    private void compact() throws IOException {
+        List<byte[]> records = new ArrayList<>();
+        for (Alert a : alerts) {
+            a.journaled = !a.isSettled();
+            if (!a.journaled) continue;
+            records.add(enqueueRecord(a));
+            for (int i = 0; i < a.destinations.length; i++) records.add(stateRecord(a, i));
+        }
+        if (records.isEmpty()) {
+            if (journal.exists() && !journal.delete()) throw new IOException("Cannot delete " + journal);
+            return;
+        }
+        File tmp = new File(journal.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            for (byte[] r : records) out.write(r);
+            out.getFD().sync();
+        }
+        if (!tmp.renameTo(journal)) throw new IOException("Outbox compaction rename failed");
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.driversafetyapp;
+
+/**
+ * Sends one alert message to one destination. Implementations report the outcome
+ * asynchronously, so AlertOutbox can fan out to several contacts at once and be driven by a
+ * fake transport on the JVM.
+ */
+public interface AlertTransport {
+
+    /** Outcome of one send; may be called on any thread. onDelivered only follows a successful onSent. */
+    interface Callback {
+        void onSent(boolean success, String error);
+        void onDelivered(boolean success);
+    }
+
+    void sendSms(String destination, String body, Callback callback);
+}
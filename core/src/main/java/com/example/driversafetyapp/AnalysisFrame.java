@@ -0,0 +1,53 @@
+package com.example.driversafetyapp;
+
+import java.nio.ByteBuffer;
+
+/**
+ * One camera frame as handed to a FaceAnalysisEngine. Reused frame after frame (camera thread),
+ * so nothing here is allocated per frame. Geometry is in sensor orientation; rotationDegrees
+ * turns it upright, and engines report coordinates in the upright image of the analyzed region.
+ */
+public class AnalysisFrame {
+
+    public long timestampMs;
+    public ByteBuffer yPlane;      // Luma, rowStride bytes per row, pixel stride 1
+    public int rowStride;
+    public int width, height;      // Full frame
+    public int rotationDegrees;
+
+    // Region to analyze (sensor coordinates, even), or the full frame if cropped is false
+    public boolean cropped;
+    public int cropLeft, cropTop, cropWidth, cropHeight;
+
+    // Engine-specific handle to the full frame (e.g. android.media.Image) for engines that can
+    // use it without copying; null if there is none. Engines must also work from yPlane alone.
+    public Object platformImage;
+
+    public void set(long timestampMs, ByteBuffer yPlane, int rowStride, int width, int height, int rotationDegrees, Object platformImage) {
+        this.timestampMs = timestampMs;
+        this.yPlane = yPlane;
+        this.rowStride = rowStride;
+        this.width = width;
+        this.height = height;
+        this.rotationDegrees = rotationDegrees;
+        this.platformImage = platformImage;
+        this.cropped = false;
+    }
+
+    public void setCrop(int left, int top, int width, int height) {
+        cropped = true;
+        cropLeft = left;
+        cropTop = top;
+        cropWidth = width;
+        cropHeight = height;
+    }
+
+    /** Drops the buffer references once the frame has been released. */
+    public void clear() {
+        yPlane = null;
+        platformImage = null;
+    }
+
+    public int getRegionWidth() { return cropped ? cropWidth : width; }
+    public int getRegionHeight() { return cropped ? cropHeight : height; }
+}
@@ -0,0 +1,158 @@
+package com.example.driversafetyapp;
+
+import java.util.Map;
+
+/**
+ * Immutable snapshot of the tunable thresholds and the emergency contact. A new snapshot is
+ * built whenever the settings change and swapped in whole, so a reader that grabs the
+ * reference once per frame/sample always sees one consistent set of values.
+ * Parsing works on plain key/value maps (SharedPreferences.getAll(), Properties), so it runs
+ * on the JVM.
+ */
+public final class AppConfig {
+
+    // --- Keys (shared with UserDetailsActivity and config files) ---
+    public static final String KEY_EYE_CLOSED_THRESHOLD = "eyeClosedThreshold";
+    public static final String KEY_FATIGUE_DURATION_MS = "fatigueDurationMs";
+    public static final String KEY_AUTO_CALIBRATE_EYES = "autoCalibrateEyes";
+    public static final String KEY_FACE_ENGINE = "faceEngine";
+    public static final String KEY_ACCIDENT_ACCELERATION = "accidentAccelerationThreshold";
+    public static final String KEY_ACCIDENT_ROTATION = "accidentRotationThreshold";
+    public static final String KEY_ALERT_COOLDOWN_MS = "alertCooldownMs";
+    public static final String KEY_USER_NAME = "userName";
+    public static final String KEY_EMERGENCY_CONTACT_NAME = "emergencyContactName";
+    public static final String KEY_EMERGENCY_CONTACT_PHONE = "emergencyContactPhone";
+
+    // --- Defaults (NEEDS CALIBRATION!) ---
+    private static final float DEFAULT_EYE_CLOSED_THRESHOLD = 0.4f;       // Probability threshold for eye closure
+    private static final long DEFAULT_FATIGUE_DURATION_MS = 2000;         // 2 seconds of closed eyes (microsleep)
+    private static final boolean DEFAULT_AUTO_CALIBRATE_EYES = true;      // Learn a per-driver threshold (EyeCalibration)
+    private static final String DEFAULT_FACE_ENGINE = FaceAnalysisEngine.ENGINE_MLKIT;
+    private static final float DEFAULT_ACCIDENT_ACCELERATION = 45.0f;     // m/s^2 (Increased sensitivity)
+    private static final float DEFAULT_ACCIDENT_ROTATION = 15.0f;         // rad/s (Increased sensitivity)
+    private static final long DEFAULT_ALERT_COOLDOWN_MS = 2 * 60_000;     // Min time between SMS/Calls
+    // ---
+
+    public final float eyeClosedThreshold; // Used until the driver is calibrated, or always if auto calibration is off
+    public final long fatigueDurationMs;
+    public final boolean autoCalibrateEyes;
+    public final String faceEngine; // FaceAnalysisEngine.ENGINE_*; applies from the next pipeline start
+    public final float accidentAccelerationThreshold;
+    public final float accidentRotationThreshold;
+    public final long alertCooldownMs;
+    public final String userName;
+    public final String emergencyContactName;
+    public final String emergencyContactPhone; // May hold several numbers, see AlertOutbox.parseDestinations
+
+    public AppConfig(float eyeClosedThreshold, long fatigueDurationMs, boolean autoCalibrateEyes, String faceEngine,
+                     float accidentAccelerationThreshold, float accidentRotationThreshold, long alertCooldownMs,
+                     String userName, String emergencyContactName, String emergencyContactPhone) {
+        this.eyeClosedThreshold = eyeClosedThreshold;
+        this.fatigueDurationMs = fatigueDurationMs;
+        this.autoCalibrateEyes = autoCalibrateEyes;
+        this.faceEngine = faceEngine;
+        this.accidentAccelerationThreshold = accidentAccelerationThreshold;
+        this.accidentRotationThreshold = accidentRotationThreshold;
+        this.alertCooldownMs = alertCooldownMs;
+        this.userName = userName;
+        this.emergencyContactName = emergencyContactName;
+        this.emergencyContactPhone = emergencyContactPhone;
+    }
+
+    private static final AppConfig DEFAULTS = new AppConfig(DEFAULT_EYE_CLOSED_THRESHOLD, DEFAULT_FATIGUE_DURATION_MS,
+            DEFAULT_AUTO_CALIBRATE_EYES, DEFAULT_FACE_ENGINE, DEFAULT_ACCIDENT_ACCELERATION, DEFAULT_ACCIDENT_ROTATION, DEFAULT_ALERT_COOLDOWN_MS, "", "", "");
+
+    public static AppConfig defaults() {
+        return DEFAULTS;
+    }
+
+    public boolean hasEmergencyContact() {
+        return !emergencyContactPhone.trim().isEmpty();
+    }
+
+    /**
+     * Builds a snapshot from key/value pairs (Numbers or Strings); missing keys keep the base
+     * value. With strict set, a malformed or out-of-range value throws IllegalArgumentException
+     * (config import); otherwise it is ignored (stored settings must never stop monitoring).
+     * The synthetic face engine is not a valid choice here; see the overload.
+     */
+    public static AppConfig fromValues(Map<String, ?> values, AppConfig base, boolean strict) {
+        return fromValues(values, base, strict, false);
+    }
+
+    /** allowSyntheticEngine: accept ENGINE_SYNTHETIC as faceEngine (debug builds only). */
+    public static AppConfig fromValues(Map<String, ?> values, AppConfig base, boolean strict, boolean allowSyntheticEngine) {
+        String[] engines = allowSyntheticEngine
+                ? new String[] {FaceAnalysisEngine.ENGINE_MLKIT, FaceAnalysisEngine.ENGINE_SYNTHETIC}
+                : new String[] {FaceAnalysisEngine.ENGINE_MLKIT};
+        return new AppConfig(
+                floatValue(values, KEY_EYE_CLOSED_THRESHOLD, base.eyeClosedThreshold, 0.05f, 0.95f, strict),
+                longValue(values, KEY_FATIGUE_DURATION_MS, base.fatigueDurationMs, 300, 10_000, strict),
+                booleanValue(values, KEY_AUTO_CALIBRATE_EYES, base.autoCalibrateEyes, strict),
+                choiceValue(values, KEY_FACE_ENGINE, base.faceEngine, strict, engines),
+                floatValue(values, KEY_ACCIDENT_ACCELERATION, base.accidentAccelerationThreshold, 15f, 250f, strict),
+                floatValue(values, KEY_ACCIDENT_ROTATION, base.accidentRotationThreshold, 2f, 60f, strict),
+                longValue(values, KEY_ALERT_COOLDOWN_MS, base.alertCooldownMs, 0, 3_600_000, strict),
+                stringValue(values, KEY_USER_NAME, base.userName),
+                stringValue(values, KEY_EMERGENCY_CONTACT_NAME, base.emergencyContactName),
+                stringValue(values, KEY_EMERGENCY_CONTACT_PHONE, base.emergencyContactPhone));
+    }
+
+    private static float floatValue(Map<String, ?> values, String key, float base, float min, float max, boolean strict) {
+        Object raw = values.get(key);
+        if (raw == null) return base;
+        try {
+            float v = raw instanceof Number ? ((Number) raw).floatValue() : Float.parseFloat(raw.toString().trim());
+            if (v >= min && v <= max) return v;
+        } catch (NumberFormatException ignored) {
+        }
+        if (strict) throw new IllegalArgumentException(key + "=" + raw + " (expected " + min + ".." + max + ")");
+        return base;
+    }
+
+    private static long longValue(Map<String, ?> values, String key, long base, long min, long max, boolean strict) {
+        Object raw = values.get(key);
+        if (raw == null) return base;
+        try {
+            long v = raw instanceof Number ? ((Number) raw).longValue() : Long.parseLong(raw.toString().trim());
+            if (v >= min && v <= max) return v;
+        } catch (NumberFormatException ignored) {
+        }
+        if (strict) throw new IllegalArgumentException(key + "=" + raw + " (expected " + min + ".." + max + ")");
+        return base;
+    }
+
+    private static boolean booleanValue(Map<String, ?> values, String key, boolean base, boolean strict) {
+        Object raw = values.get(key);
+        if (raw == null) return base;
+        if (raw instanceof Boolean) return (Boolean) raw;
+        String s = raw.toString().trim();
+        if (s.equalsIgnoreCase("true")) return true;
+        if (s.equalsIgnoreCase("false")) return false;
+        if (strict) throw new IllegalArgumentException(key + "=" + raw + " (expected true or false)");
+        return base;
+    }
+
+    private static String choiceValue(Map<String, ?> values, String key, String base, boolean strict, String... choices) {
+        Object raw = values.get(key);
+        if (raw == null) return base;
+        String s = raw.toString().trim();
+        for (String choice : choices) {
+            if (choice.equalsIgnoreCase(s)) return choice;
+        }
+        if (strict) throw new IllegalArgumentException(key + "=" + raw + " (expected one of " + String.join(", ", choices) + ")");
+        return base;
+    }
+
+    private static String stringValue(Map<String, ?> values, String key, String base) {
+        Object raw = values.get(key);
+        return raw != null ? raw.toString().trim() : base;
+    }
+
+    @Override
+    public String toString() {
+        return "eyeClosed<" + eyeClosedThreshold + (autoCalibrateEyes ? " (auto)" : "") + " for " + fatigueDurationMs + "ms, engine " + faceEngine + ", impact>" + accidentAccelerationThreshold
+                + "m/s^2 or " + accidentRotationThreshold + "rad/s, cooldown " + alertCooldownMs + "ms, contact "
+                + (hasEmergencyContact() ? "set" : "missing");
+    }
+}
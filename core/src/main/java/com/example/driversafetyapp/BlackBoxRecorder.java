@@ -0,0 +1,191 @@
+package com.example.driversafetyapp;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Crash "black box": a fixed-size memory-mapped ring of the most recent sensor, location and
+ * eye-state samples. Records are written in place with absolute puts (no allocation per sample)
+ * and live in the page cache, so they survive a process kill. trigger() freezes a
+ * pre/post-impact window into a separate incident file once the post window has elapsed.
+ *
+ * File layout (little endian):
+ *   header (64 bytes): magic, version, recordSize, capacity, writeSeq (long)
+ *   records (32 bytes each): tsNs (long), type (short), flags (short), payload (20 bytes)
+ *     ACCEL/GYRO: x, y, z (float)
+ *     LOCATION:   lat (double), lon (double), speed m/s (float)
+ *     EYE:        left prob, right prob, perclos (float); flags bit 0 = face present
+ */
+public class BlackBoxRecorder {
+
+    public interface FreezeListener {
+        void onIncidentFrozen(File incidentFile, int recordCount);
+        void onFreezeFailed(IOException e);
+    }
+
+    public static final int MAGIC = 0x44534242; // "DSBB"
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 64;
+    public static final int RECORD_SIZE = 32;
+    private static final int WRITE_SEQ_OFFSET = 16;
+
+    public static final short TYPE_ACCEL = 1;
+    public static final short TYPE_GYRO = 2;
+    public static final short TYPE_LOCATION = 3;
+    public static final short TYPE_EYE = 4;
+
+    // Incident file header: magic, version, recordSize, recordCount, triggerNs, preNs, postNs
+    public static final int INCIDENT_MAGIC = 0x44534943; // "DSIC"
+    public static final int INCIDENT_HEADER_SIZE = 40;
+
+    private final File directory;
+    private final int capacity;
+    private final long preWindowNs;
+    private final long postWindowNs;
+    private final FreezeListener freezeListener;
+
+    private final RandomAccessFile ringFile;
+    private final MappedByteBuffer ring;
+    private long writeSeq; // Total records ever written; slot = writeSeq % capacity
+
+    private final ScheduledExecutorService freezeExecutor = Executors.newSingleThreadScheduledExecutor();
+    private boolean freezePending = false;
+
+    public BlackBoxRecorder(File directory, int capacity, long preWindowMs, long postWindowMs,
+                            FreezeListener freezeListener) throws IOException {
+        this.directory = directory;
+        this.capacity = capacity;
+        this.preWindowNs = TimeUnit.MILLISECONDS.toNanos(preWindowMs);
+        this.postWindowNs = TimeUnit.MILLISECONDS.toNanos(postWindowMs);
+        this.freezeListener = freezeListener;
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        long size = HEADER_SIZE + (long) capacity * RECORD_SIZE;
+        ringFile = new RandomAccessFile(new File(directory, "ring.bin"), "rw");
+        ringFile.setLength(size);
+        ring = ringFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        ring.order(ByteOrder.LITTLE_ENDIAN);
+
+        // Resume after the last record of a previous process if the layout matches
+        if (ring.getInt(0) == MAGIC && ring.getInt(4) == VERSION
+                && ring.getInt(8) == RECORD_SIZE && ring.getInt(12) == capacity) {
+            writeSeq = ring.getLong(WRITE_SEQ_OFFSET);
+        } else {
+            ring.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, RECORD_SIZE).putInt(12, capacity);
+            writeSeq = 0;
+            ring.putLong(WRITE_SEQ_OFFSET, writeSeq);
+        }
+    }
+
+    /** ~30 s of 50 Hz accel + gyro plus eye/location samples, split 20 s before / 10 s after a trigger. */
+    public static BlackBoxRecorder createDefault(File directory, FreezeListener listener) throws IOException {
+        return new BlackBoxRecorder(directory, 8192, 20_000, 10_000, listener);
+    }
+
+    // --- Recording (any thread) ---
+    public void recordAccel(long tsNs, float x, float y, float z) {
+        recordVector(TYPE_ACCEL, tsNs, x, y, z);
+    }
+
+    public void recordGyro(long tsNs, float x, float y, float z) {
+        recordVector(TYPE_GYRO, tsNs, x, y, z);
+    }
+
+    private synchronized void recordVector(short type, long tsNs, float x, float y, float z) {
+        int pos = beginRecord(type, tsNs, (short) 0);
+        ring.putFloat(pos + 12, x).putFloat(pos + 16, y).putFloat(pos + 20, z).putFloat(pos + 24, 0f).putFloat(pos + 28, 0f);
+        endRecord();
+    }
+
+    public synchronized void recordLocation(long tsNs, double lat, double lon, float speedMps) {
+        int pos = beginRecord(TYPE_LOCATION, tsNs, (short) 0);
+        ring.putDouble(pos + 12, lat).putDouble(pos + 20, lon).putFloat(pos + 28, speedMps);
+        endRecord();
+    }
+
+    public synchronized void recordEye(long tsNs, boolean facePresent, float leftProb, float rightProb, float perclos) {
+        int pos = beginRecord(TYPE_EYE, tsNs, (short) (facePresent ? 1 : 0));
+        ring.putFloat(pos + 12, leftProb).putFloat(pos + 16, rightProb).putFloat(pos + 20, perclos).putFloat(pos + 24, 0f).putFloat(pos + 28, 0f);
+        endRecord();
+    }
+
+    private int beginRecord(short type, long tsNs, short flags) {
+        int pos = HEADER_SIZE + (int) (writeSeq % capacity) * RECORD_SIZE;
+        ring.putLong(pos, tsNs).putShort(pos + 8, type).putShort(pos + 10, flags);
+        return pos;
+    }
+
+    private void endRecord() {
+        writeSeq++;
+        ring.putLong(WRITE_SEQ_OFFSET, writeSeq);
+    }
+
+    // --- Incident freeze ---
+    /**
+     * Schedules a freeze of [triggerNs - pre, triggerNs + post] once the post window has passed.
+     * Ignored while another freeze is pending (one incident file per event).
+     */
+    public synchronized void trigger(long triggerNs) {
+        if (freezePending) return;
+        freezePending = true;
+        freezeExecutor.schedule(() -> freeze(triggerNs), TimeUnit.NANOSECONDS.toMillis(postWindowNs), TimeUnit.MILLISECONDS);
+    }
+
+    private void freeze(long triggerNs) {
+        long fromNs = triggerNs - preWindowNs;
+        long toNs = triggerNs + postWindowNs;
+        ByteBuffer out = ByteBuffer.allocate(INCIDENT_HEADER_SIZE + capacity * RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        out.position(INCIDENT_HEADER_SIZE);
+        int count = 0;
+        synchronized (this) {
+            long firstSeq = Math.max(0, writeSeq - capacity);
+            for (long seq = firstSeq; seq < writeSeq; seq++) {
+                int pos = HEADER_SIZE + (int) (seq % capacity) * RECORD_SIZE;
+                long ts = ring.getLong(pos);
+                if (ts < fromNs || ts > toNs) continue;
+                for (int i = 0; i < RECORD_SIZE; i += 8) out.putLong(ring.getLong(pos + i));
+                count++;
+            }
+            freezePending = false;
+        }
+        out.putInt(0, INCIDENT_MAGIC).putInt(4, VERSION).putInt(8, RECORD_SIZE).putInt(12, count)
+                .putLong(16, triggerNs).putLong(24, preWindowNs).putLong(32, postWindowNs);
+        out.limit(INCIDENT_HEADER_SIZE + count * RECORD_SIZE).position(0);
+
+        File incident = new File(directory, "incident_" + System.currentTimeMillis() + ".bin");
+        try (FileOutputStream fos = new FileOutputStream(incident)) {
+            FileChannel channel = fos.getChannel();
+            while (out.hasRemaining()) channel.write(out);
+            channel.force(true);
+            if (freezeListener != null) freezeListener.onIncidentFrozen(incident, count);
+        } catch (IOException e) {
+            if (freezeListener != null) freezeListener.onFreezeFailed(e);
+        }
+    }
+
+    public synchronized long getWriteSeq() {
+        return writeSeq;
+    }
+
+    public void close() {
+        freezeExecutor.shutdown(); // Lets a pending freeze finish
+        synchronized (this) {
+            ring.force();
+        }
+        try {
+            ringFile.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
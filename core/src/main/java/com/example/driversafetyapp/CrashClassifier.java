@@ -0,0 +1,317 @@
+package com.example.driversafetyapp;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides whether an impact was a crash, from features over a window around it rather than one
+ * sample over a threshold: peak acceleration, delta-v of the impact pulse (integrated linear
+ * acceleration), jerk, rotation energy after the hit, stillness afterwards and the GPS speed
+ * drop. A dropped phone has a free fall before its (often much higher) peak, a short pulse and
+ * no speed drop; a crash has a long pulse, leaves the car still and stops it.
+ * An evaluation opens on a sample over the acceleration/rotation threshold, or on a pulse whose
+ * delta-v alone is large (a crash sampled too slowly to catch its peak), and is decided
+ * DECISION_DELAY_MS later, or when the GPS settles it, at most MAX_DECISION_MS later.
+ * Everything is incremental over fixed ring buffers: bounded CPU per sample, no allocation
+ * except one Assessment per decision. Sensor samples from one thread; onLocation() from any.
+ */
+public class CrashClassifier {
+
+    public interface Listener {
+        void onCrashDetected(Assessment assessment);
+        void onImpactDismissed(Assessment assessment); // Evaluated and judged not a crash (drop, pothole, ...)
+    }
+
+    /** The features of one evaluated impact and the verdict. Speeds are NaN when unknown. */
+    public static final class Assessment {
+        public final long triggerNs;
+        public final float peakAcceleration; // m/s^2, gravity included
+        public final float deltaV;           // m/s, largest over any PULSE_WINDOW_MS
+        public final float jerk;             // m/s^3, largest between two samples
+        public final float rotationEnergy;   // rad^2/s, integral of |w|^2 after the trigger
+        public final float stillnessStd;     // m/s^2, std of |a| once it settled; NaN if not measured
+        public final boolean freeFall;
+        public final float speedBefore, speedAfter; // m/s
+        public final float score;
+        public final boolean crash;
+
+        Assessment(long triggerNs, float peakAcceleration, float deltaV, float jerk, float rotationEnergy, float stillnessStd,
+                   boolean freeFall, float speedBefore, float speedAfter, float score, boolean crash) {
+            this.triggerNs = triggerNs;
+            this.peakAcceleration = peakAcceleration;
+            this.deltaV = deltaV;
+            this.jerk = jerk;
+            this.rotationEnergy = rotationEnergy;
+            this.stillnessStd = stillnessStd;
+            this.freeFall = freeFall;
+            this.speedBefore = speedBefore;
+            this.speedAfter = speedAfter;
+            this.score = score;
+            this.crash = crash;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%s score %.2f: peak %.1f m/s^2, dv %.1f m/s, jerk %.0f m/s^3, rotation %.2f, still %.2f%s, speed %.1f -> %.1f m/s",
+                    crash ? "CRASH" : "dismissed", score, peakAcceleration, deltaV, jerk, rotationEnergy, stillnessStd,
+                    freeFall ? ", free fall" : "", speedBefore, speedAfter);
+        }
+    }
+
+    // --- Crash Parameters (NEEDS CALIBRATION!) ---
+    private static final long GRAVITY_TAU_MS = 2000;          // Gravity estimate follows orientation changes this slowly
+    private static final long PULSE_WINDOW_MS = 150;          // Delta-v is integrated over this sliding window
+    private static final float DELTA_V_TRIGGER = 2.5f;        // m/s in one window opens an evaluation (hard braking stays below)
+    private static final long MAX_SAMPLE_GAP_MS = 250;        // Longer gaps count as this much (SENSOR_DELAY_NORMAL is 200 ms)
+    private static final float FREE_FALL_MPS2 = 3.0f;         // |a| below this = falling
+    private static final long FREE_FALL_MIN_MS = 80;          // ~3 cm; shorter dips are vibration
+    private static final long FREE_FALL_LOOKBACK_MS = 1000;   // A fall ending this shortly before the hit counts
+    private static final long IMPACT_MS = 500;                // Peak, delta-v and jerk are taken this long after the trigger
+    private static final long ROTATION_MS = 1000;             // Rotation energy after the trigger (spins, rollovers; a dropped phone stops)
+    private static final long STILL_FROM_MS = 1000;           // Stillness is measured from here...
+    private static final long DECISION_DELAY_MS = 3000;       // ...up to the decision
+    private static final long MAX_DECISION_MS = 8000;         // Waiting for a GPS fix ends here
+    private static final long SPEED_MAX_AGE_MS = 10_000;      // Speed before the impact must be this fresh
+    private static final float MOVING_SPEED_MPS = 4f;         // ~15 km/h
+
+    // Feature scales: the value that scores 1.0
+    private static final float PEAK_FLOOR = 20f, PEAK_REF = 80f;   // m/s^2
+    private static final float DELTA_V_REF = 5f;                    // m/s (~18 km/h)
+    private static final float JERK_REF = 2000f;                    // m/s^3
+    private static final float ROTATION_REF = 4f;                   // rad^2/s
+    private static final float STILL_STD = 0.35f;                   // m/s^2; at or below = still, 2x = not
+    private static final float SPEED_DROP_REF = 8f;                 // m/s
+
+    private static final float W_PEAK = 0.2f, W_DELTA_V = 0.25f, W_JERK = 0.15f, W_ROTATION = 0.1f, W_STILL = 0.1f, W_SPEED = 0.2f;
+    private static final float FREE_FALL_FACTOR = 0.3f;        // Score multiplier after a free fall
+    private static final float CRASH_SCORE = 0.6f;
+    // ---
+
+    private static final int PULSE_CAPACITY = 128;      // Covers PULSE_WINDOW_MS up to ~850 Hz
+    private static final int SPEED_CAPACITY = 16;
+
+    // Both squared trigger thresholds in one immutable object, so a sample never sees half an update
+    private static final class Thresholds {
+        final float accelerationSq;
+        final float rotationSq;
+
+        Thresholds(float acceleration, float rotation) {
+            this.accelerationSq = acceleration * acceleration;
+            this.rotationSq = rotation * rotation;
+        }
+    }
+
+    private final Listener listener;
+    private volatile Thresholds thresholds;
+
+    // --- Sensor thread: continuous state ---
+    private long lastAccelNs = -1;
+    private float ax, ay, az;                      // Last sample
+    private float gx, gy, gz;                      // Gravity estimate (frozen during an evaluation)
+    private final long[] pulseTimes = new long[PULSE_CAPACITY];
+    private final float[] pulseDx = new float[PULSE_CAPACITY], pulseDy = new float[PULSE_CAPACITY], pulseDz = new float[PULSE_CAPACITY];
+    private final float[] pulseMagnitude = new float[PULSE_CAPACITY];
+    private int pulseHead = 0, pulseCount = 0;
+    private float sumDx, sumDy, sumDz;             // Delta-v over the pulse window
+    private long freeFallStartNs = -1;
+    private long lastFreeFallEndNs = Long.MIN_VALUE / 2;
+    private long lastGyroNs = -1;
+
+    // --- Sensor thread: the evaluation in progress ---
+    private long triggerNs = -1;                   // -1 = none
+    private float peak, maxDeltaV, maxJerk, rotationEnergy;
+    private boolean freeFall;
+    private long stillCount;
+    private double stillMean, stillM2;             // Welford on |a|
+
+    // --- GPS speed, written by the location thread ---
+    private final long[] speedTimes = new long[SPEED_CAPACITY];
+    private final float[] speeds = new float[SPEED_CAPACITY];
+    private int speedHead = 0, speedCount = 0;
+
+    public CrashClassifier(float accelerationThreshold, float rotationThreshold, Listener listener) {
+        this.thresholds = new Thresholds(accelerationThreshold, rotationThreshold);
+        this.listener = listener;
+    }
+
+    /** Takes effect from the next sample; safe from any thread. */
+    public void setThresholds(float accelerationThreshold, float rotationThreshold) {
+        this.thresholds = new Thresholds(accelerationThreshold, rotationThreshold);
+    }
+
+    public void onAccelerometer(long timestampNs, float x, float y, float z) {
+        float magnitudeSq = x * x + y * y + z * z;
+        float magnitude = (float) Math.sqrt(magnitudeSq);
+        if (lastAccelNs < 0) {
+            gx = x; gy = y; gz = z;
+            lastAccelNs = timestampNs;
+            ax = x; ay = y; az = z;
+            return;
+        }
+        long dtNs = timestampNs - lastAccelNs;
+        if (dtNs <= 0) return;
+        float dt = Math.min(dtNs, TimeUnit.MILLISECONDS.toNanos(MAX_SAMPLE_GAP_MS)) / 1e9f;
+
+        // Jerk before the sample is overwritten
+        float jx = x - ax, jy = y - ay, jz = z - az;
+        float jerk = (float) Math.sqrt(jx * jx + jy * jy + jz * jz) / dt;
+        lastAccelNs = timestampNs;
+        ax = x; ay = y; az = z;
+
+        boolean evaluating = triggerNs >= 0;
+        if (!evaluating) {
+            float alpha = dt * 1000f / (GRAVITY_TAU_MS + dt * 1000f);
+            gx += (x - gx) * alpha;
+            gy += (y - gy) * alpha;
+            gz += (z - gz) * alpha;
+        }
+        addPulse(timestampNs, (x - gx) * dt, (y - gy) * dt, (z - gz) * dt, magnitude);
+        float deltaV = (float) Math.sqrt(sumDx * sumDx + sumDy * sumDy + sumDz * sumDz);
+
+        // Free fall: a run of near-zero |a|, remembered until the hit that ends it
+        if (magnitude < FREE_FALL_MPS2) {
+            if (freeFallStartNs < 0) freeFallStartNs = timestampNs;
+        } else if (freeFallStartNs >= 0) {
+            if (timestampNs - freeFallStartNs >= TimeUnit.MILLISECONDS.toNanos(FREE_FALL_MIN_MS)) lastFreeFallEndNs = timestampNs;
+            freeFallStartNs = -1;
+        }
+
+        if (!evaluating) {
+            if (magnitudeSq > thresholds.accelerationSq || deltaV >= DELTA_V_TRIGGER) startEvaluation(timestampNs);
+            return;
+        }
+        long sinceMs = (timestampNs - triggerNs) / 1_000_000L;
+        if (sinceMs <= IMPACT_MS) {
+            peak = Math.max(peak, magnitude);
+            maxDeltaV = Math.max(maxDeltaV, deltaV);
+            maxJerk = Math.max(maxJerk, jerk);
+        } else if (sinceMs >= STILL_FROM_MS) {
+            stillCount++;
+            double d = magnitude - stillMean;
+            stillMean += d / stillCount;
+            stillM2 += d * (magnitude - stillMean);
+        }
+        if (sinceMs >= DECISION_DELAY_MS) decide(timestampNs, sinceMs >= MAX_DECISION_MS);
+    }
+
+    public void onGyroscope(long timestampNs, float x, float y, float z) {
+        float magnitudeSq = x * x + y * y + z * z;
+        long dtNs = lastGyroNs < 0 ? 0 : timestampNs - lastGyroNs;
+        lastGyroNs = timestampNs;
+        if (triggerNs < 0) {
+            if (magnitudeSq > thresholds.rotationSq && lastAccelNs >= 0) startEvaluation(timestampNs);
+            return;
+        }
+        if (dtNs > 0 && timestampNs - triggerNs <= TimeUnit.MILLISECONDS.toNanos(ROTATION_MS)) {
+            rotationEnergy += magnitudeSq * Math.min(dtNs, TimeUnit.MILLISECONDS.toNanos(MAX_SAMPLE_GAP_MS)) / 1e9f;
+        }
+    }
+
+    /** GPS fix (elapsedRealtime clock, like sensor timestamps). Safe from any thread. */
+    public synchronized void onLocation(long elapsedRealtimeNs, boolean hasSpeed, float speedMps) {
+        if (!hasSpeed) return;
+        int slot = (speedHead + speedCount) % SPEED_CAPACITY;
+        if (speedCount == SPEED_CAPACITY) {
+            speedHead = (speedHead + 1) % SPEED_CAPACITY; // Overwrite the oldest
+        } else {
+            speedCount++;
+        }
+        speedTimes[slot] = elapsedRealtimeNs;
+        speeds[slot] = speedMps;
+    }
+
+    // Sliding delta-v: add the newest increment, drop those older than the window (amortized O(1))
+    private void addPulse(long timestampNs, float dx, float dy, float dz, float magnitude) {
+        if (pulseCount == PULSE_CAPACITY) removeOldestPulse();
+        int slot = (pulseHead + pulseCount) % PULSE_CAPACITY;
+        pulseTimes[slot] = timestampNs;
+        pulseDx[slot] = dx;
+        pulseDy[slot] = dy;
+        pulseDz[slot] = dz;
+        pulseMagnitude[slot] = magnitude;
+        pulseCount++;
+        sumDx += dx;
+        sumDy += dy;
+        sumDz += dz;
+        long windowNs = TimeUnit.MILLISECONDS.toNanos(PULSE_WINDOW_MS);
+        while (pulseCount > 1 && timestampNs - pulseTimes[pulseHead] >= windowNs) removeOldestPulse();
+    }
+
+    private void removeOldestPulse() {
+        sumDx -= pulseDx[pulseHead];
+        sumDy -= pulseDy[pulseHead];
+        sumDz -= pulseDz[pulseHead];
+        pulseHead = (pulseHead + 1) % PULSE_CAPACITY;
+        pulseCount--;
+    }
+
+    private void startEvaluation(long timestampNs) {
+        triggerNs = timestampNs;
+        // The pulse may have begun before the trigger; its samples are still in the window
+        peak = 0f;
+        for (int i = 0; i < pulseCount; i++) peak = Math.max(peak, pulseMagnitude[(pulseHead + i) % PULSE_CAPACITY]);
+        maxDeltaV = (float) Math.sqrt(sumDx * sumDx + sumDy * sumDy + sumDz * sumDz);
+        maxJerk = 0f;
+        rotationEnergy = 0f;
+        freeFall = freeFallStartNs >= 0 // Still falling: a gyro trigger mid-fall
+                || timestampNs - lastFreeFallEndNs <= TimeUnit.MILLISECONDS.toNanos(FREE_FALL_LOOKBACK_MS);
+        stillCount = 0;
+        stillMean = 0;
+        stillM2 = 0;
+    }
+
+    private void decide(long nowNs, boolean final_) {
+        float stillStd = stillCount > 1 ? (float) Math.sqrt(stillM2 / (stillCount - 1)) : Float.NaN;
+        float speedBefore, speedAfter;
+        synchronized (this) {
+            speedBefore = speedAt(triggerNs - TimeUnit.MILLISECONDS.toNanos(SPEED_MAX_AGE_MS), triggerNs);
+            speedAfter = speedAt(triggerNs, nowNs);
+        }
+
+        float known = W_PEAK * scale(peak - PEAK_FLOOR, PEAK_REF - PEAK_FLOOR)
+                + W_DELTA_V * scale(maxDeltaV, DELTA_V_REF)
+                + W_JERK * scale(maxJerk, JERK_REF)
+                + W_ROTATION * scale(rotationEnergy, ROTATION_REF);
+        float weight = W_PEAK + W_DELTA_V + W_JERK + W_ROTATION;
+        if (!Float.isNaN(stillStd)) {
+            known += W_STILL * scale(2 * STILL_STD - stillStd, STILL_STD);
+            weight += W_STILL;
+        }
+        // Standing still before (e.g. rear-ended at a light): no drop possible, so the speed says
+        // nothing either way; leave it out rather than score it 0, and don't wait for a fix
+        boolean moving = !Float.isNaN(speedBefore) && speedBefore >= MOVING_SPEED_MPS;
+        if (moving && !Float.isNaN(speedAfter)) {
+            known += W_SPEED * scale(speedBefore - speedAfter, SPEED_DROP_REF);
+            weight += W_SPEED;
+        } else if (moving && !final_) {
+            // Moving before, no fix since: decide now only if the speed could not change the verdict
+            float factor = freeFall ? FREE_FALL_FACTOR : 1f;
+            float low = factor * known / (weight + W_SPEED), high = factor * (known + W_SPEED) / (weight + W_SPEED);
+            if (low < CRASH_SCORE && high >= CRASH_SCORE) return; // Wait for the next fix
+        }
+        float score = known / weight * (freeFall ? FREE_FALL_FACTOR : 1f);
+        boolean crash = score >= CRASH_SCORE;
+        Assessment assessment = new Assessment(triggerNs, peak, maxDeltaV, maxJerk, rotationEnergy, stillStd, freeFall,
+                speedBefore, speedAfter, score, crash);
+        triggerNs = -1;
+        if (crash) listener.onCrashDetected(assessment); else listener.onImpactDismissed(assessment);
+    }
+
+    // Latest speed with fromNs < t <= toNs, NaN if none; caller holds the lock
+    private float speedAt(long fromNs, long toNs) {
+        for (int i = speedCount - 1; i >= 0; i--) {
+            int slot = (speedHead + i) % SPEED_CAPACITY;
+            if (speedTimes[slot] <= toNs) return speedTimes[slot] > fromNs ? speeds[slot] : Float.NaN;
+        }
+        return Float.NaN;
+    }
+
+    private static float scale(float value, float ref) {
+        return Math.max(0f, Math.min(1f, value / ref));
+    }
+
+    /** True while an impact is being evaluated. */
+    public boolean isEvaluating() {
+        return triggerNs >= 0;
+    }
+}
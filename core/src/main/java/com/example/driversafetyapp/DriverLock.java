@@ -0,0 +1,212 @@
+package com.example.driversafetyapp;
+
+/**
+ * Keeps the fatigue logic on one person (the driver) and plans the region of interest the next
+ * frame is analyzed on.
+ * The driver is the largest face when nothing is locked yet; afterwards the face with the locked
+ * ML Kit tracking ID, or failing that the face closest to where the driver last was. A passenger
+ * never takes over while the lock is fresh. While locked, frames are analyzed on a square crop
+ * around the driver (in sensor coordinates, so it can be cut straight out of the Y plane); every
+ * REACQUIRE_INTERVAL_MS, and whenever the crop misses, a full frame is analyzed instead.
+ * Face boxes are exchanged as l, t, r, b in upright full-frame pixels (the space ML Kit reports
+ * in for the full image). planFrame() runs on the camera thread and selectDriver() on the result
+ * thread; both are synchronized, uncontended with one frame in flight.
+ */
+public class DriverLock {
+
+    // --- Lock-on / ROI Parameters (NEEDS CALIBRATION!) ---
+    private static final long REACQUIRE_INTERVAL_MS = 2000; // Full-frame pass this often, to catch a lost/new face
+    private static final long LOCK_TIMEOUT_MS = 3000;       // Driver unseen this long: lock onto whoever is largest
+    private static final float MAX_JUMP = 1.0f;             // Re-identify within one face width of the last position
+    private static final float ROI_MARGIN = 0.4f;           // Crop side = face side * (1 + 2 * margin); keeps the face above ML Kit's min size
+    private static final int MIN_CROP_SIDE = 160;           // Pixels; smaller crops lose landmark precision
+    private static final float MAX_CROP_AREA_FRACTION = 0.6f; // Bigger crops save too little to be worth it
+    private static final float MAX_FACE_FILL = 0.75f;       // Face this large in the crop: re-size on a full frame
+    private static final float EYE_BAND_TOP = 0.2f;         // Eye band, as fractions of the face box height from its top
+    private static final float EYE_BAND_BOTTOM = 0.6f;
+    // ---
+
+    // --- Driver (upright full-frame coordinates) ---
+    private boolean hasDriver = false;
+    private int lockedId = -1;
+    private float driverLeft, driverTop, driverRight, driverBottom;
+    private long lastSeenMs = Long.MIN_VALUE;
+    private float cropSide; // Chosen on full frames, kept while cropping so the crop doesn't breathe
+
+    // --- Frame geometry and plan ---
+    private int frameWidth, frameHeight, rotation; // Sensor buffer size and rotation to upright
+    private long lastFullFrameMs = 0;
+    private boolean forceFullFrame = true;
+    private int cropLeft, cropTop, cropWidth, cropHeight; // Sensor coordinates, all even
+    private int offsetX, offsetY; // Crop origin in upright full-frame coordinates
+
+    // --- Stats ---
+    private long croppedFrames = 0;
+    private long fullFrames = 0;
+
+    /**
+     * Plans the next frame. Returns true if it should be analyzed on the crop (see getCrop*,
+     * getOffset*), false for the full frame.
+     */
+    public synchronized boolean planFrame(long timestampMs, int width, int height, int rotationDegrees) {
+        if (width != frameWidth || height != frameHeight || rotationDegrees != rotation) {
+            frameWidth = width;
+            frameHeight = height;
+            rotation = rotationDegrees;
+            hasDriver = false; // Old coordinates mean nothing in the new geometry
+        }
+        if (!hasDriver || forceFullFrame || timestampMs - lastFullFrameMs >= REACQUIRE_INTERVAL_MS || !planCrop()) {
+            lastFullFrameMs = timestampMs;
+            forceFullFrame = false;
+            fullFrames++;
+            return false;
+        }
+        croppedFrames++;
+        return true;
+    }
+
+    private boolean planCrop() {
+        boolean sideways = rotation == 90 || rotation == 270;
+        int uprightWidth = sideways ? frameHeight : frameWidth;
+        int uprightHeight = sideways ? frameWidth : frameHeight;
+        int side = Math.min((int) cropSide, Math.min(uprightWidth, uprightHeight)) & ~1;
+        if (side < MIN_CROP_SIDE || (float) side * side >= MAX_CROP_AREA_FRACTION * frameWidth * frameHeight) return false;
+
+        // Centered on the driver in upright space, then moved into sensor space and clamped there
+        float centerX = (driverLeft + driverRight) / 2;
+        float centerY = (driverTop + driverBottom) / 2;
+        int left = Math.round(centerX - side / 2f);
+        int top = Math.round(centerY - side / 2f);
+        int sensorLeft, sensorTop;
+        switch (rotation) {
+            case 90: sensorLeft = top; sensorTop = frameHeight - (left + side); break;
+            case 180: sensorLeft = frameWidth - (left + side); sensorTop = frameHeight - (top + side); break;
+            case 270: sensorLeft = frameWidth - (top + side); sensorTop = left; break;
+            default: sensorLeft = left; sensorTop = top; break;
+        }
+        // Even origin keeps the NV21 chroma grid aligned
+        cropLeft = Math.max(0, Math.min(frameWidth - side, sensorLeft)) & ~1;
+        cropTop = Math.max(0, Math.min(frameHeight - side, sensorTop)) & ~1;
+        cropWidth = side;
+        cropHeight = side;
+
+        // Where the clamped crop lands in upright space; results are shifted back by this
+        switch (rotation) {
+            case 90: offsetX = frameHeight - (cropTop + cropHeight); offsetY = cropLeft; break;
+            case 180: offsetX = frameWidth - (cropLeft + cropWidth); offsetY = frameHeight - (cropTop + cropHeight); break;
+            case 270: offsetX = cropTop; offsetY = frameWidth - (cropLeft + cropWidth); break;
+            default: offsetX = cropLeft; offsetY = cropTop; break;
+        }
+        return true;
+    }
+
+    /**
+     * Picks the driver among count faces: trackingIds[i] (-1 if untracked) and boxes[4i..4i+3]
+     * in upright full-frame coordinates. Returns the face index, or -1 if the driver is not
+     * among them. A -1 on a cropped frame means the crop missed: the next frame is full.
+     */
+    public synchronized int selectDriver(long timestampMs, boolean cropped, int count, int[] trackingIds, float[] boxes) {
+        boolean fresh = hasDriver && timestampMs - lastSeenMs < LOCK_TIMEOUT_MS;
+        int driver = -1;
+        if (hasDriver) {
+            for (int i = 0; i < count && driver < 0; i++) {
+                if (lockedId >= 0 && trackingIds[i] == lockedId) driver = i;
+            }
+            if (driver < 0) driver = nearestToDriver(count, boxes); // IDs can restart when the input size changes
+        }
+        if (driver < 0 && !fresh && !cropped) driver = largest(count, boxes);
+
+        if (driver < 0) {
+            if (cropped) forceFullFrame = true;
+            else if (!fresh) hasDriver = false;
+            return -1;
+        }
+
+        int b = driver * 4;
+        float width = boxes[b + 2] - boxes[b];
+        float height = boxes[b + 3] - boxes[b + 1];
+        driverLeft = boxes[b];
+        driverTop = boxes[b + 1];
+        driverRight = boxes[b + 2];
+        driverBottom = boxes[b + 3];
+        if (trackingIds[driver] >= 0) lockedId = trackingIds[driver];
+        lastSeenMs = timestampMs;
+        hasDriver = true;
+        if (!cropped) {
+            cropSide = Math.max(width, height) * (1 + 2 * ROI_MARGIN);
+        } else if (Math.max(width, height) > MAX_FACE_FILL * cropWidth) {
+            forceFullFrame = true; // Leaning in: the crop is getting too tight
+        }
+        return driver;
+    }
+
+    private int nearestToDriver(int count, float[] boxes) {
+        float cx = (driverLeft + driverRight) / 2;
+        float cy = (driverTop + driverBottom) / 2;
+        float maxDist = MAX_JUMP * (driverRight - driverLeft);
+        int best = -1;
+        float bestDistSq = maxDist * maxDist;
+        for (int i = 0; i < count; i++) {
+            int b = i * 4;
+            float dx = (boxes[b] + boxes[b + 2]) / 2 - cx;
+            float dy = (boxes[b + 1] + boxes[b + 3]) / 2 - cy;
+            float distSq = dx * dx + dy * dy;
+            if (distSq <= bestDistSq) {
+                bestDistSq = distSq;
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    private static int largest(int count, float[] boxes) {
+        int best = -1;
+        float bestArea = 0;
+        for (int i = 0; i < count; i++) {
+            int b = i * 4;
+            float area = (boxes[b + 2] - boxes[b]) * (boxes[b + 3] - boxes[b + 1]);
+            if (area > bestArea) {
+                bestArea = area;
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * The band of the driver's face the eyes are in, as l, t, w, h into out in sensor coordinates
+     * for a width x height buffer at rotationDegrees. False if there is no driver in that geometry.
+     */
+    public synchronized boolean eyeBand(int width, int height, int rotationDegrees, int[] out) {
+        if (!hasDriver || width != frameWidth || height != frameHeight || rotationDegrees != rotation) return false;
+        float faceHeight = driverBottom - driverTop;
+        int left = Math.round(driverLeft);
+        int top = Math.round(driverTop + EYE_BAND_TOP * faceHeight);
+        int w = Math.round(driverRight - driverLeft);
+        int h = Math.round((EYE_BAND_BOTTOM - EYE_BAND_TOP) * faceHeight);
+        int sensorLeft, sensorTop, sensorWidth = w, sensorHeight = h;
+        switch (rotation) {
+            case 90: sensorLeft = top; sensorTop = frameHeight - (left + w); sensorWidth = h; sensorHeight = w; break;
+            case 180: sensorLeft = frameWidth - (left + w); sensorTop = frameHeight - (top + h); break;
+            case 270: sensorLeft = frameWidth - (top + h); sensorTop = left; sensorWidth = h; sensorHeight = w; break;
+            default: sensorLeft = left; sensorTop = top; break;
+        }
+        int l = Math.max(0, sensorLeft), t = Math.max(0, sensorTop);
+        int r = Math.min(frameWidth, sensorLeft + sensorWidth), b = Math.min(frameHeight, sensorTop + sensorHeight);
+        if (r <= l || b <= t) return false;
+        out[0] = l;
+        out[1] = t;
+        out[2] = r - l;
+        out[3] = b - t;
+        return true;
+    }
+
+    public synchronized int getCropLeft() { return cropLeft; }
+    public synchronized int getCropTop() { return cropTop; }
+    public synchronized int getCropWidth() { return cropWidth; }
+    public synchronized int getCropHeight() { return cropHeight; }
+    public synchronized int getOffsetX() { return offsetX; }
+    public synchronized int getOffsetY() { return offsetY; }
+    public synchronized long getCroppedFrames() { return croppedFrames; }
+    public synchronized long getFullFrames() { return fullFrames; }
+}
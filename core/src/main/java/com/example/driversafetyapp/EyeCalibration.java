@@ -0,0 +1,139 @@
+package com.example.driversafetyapp;
+
+import java.util.Locale;
+
+/**
+ * Learns a driver's personal eye-closed threshold from the eye-open probabilities ML Kit
+ * reports for them. Two P² estimators track the "open" level (median) and the "closed" level
+ * (low quantile, dominated by blinks) of the per-frame eye value; the threshold is placed
+ * between the two. The first CALIBRATION_MS of face time set it, then each later epoch
+ * nudges it by ADAPT_RATE. Epochs in which the driver was reported fatigued are discarded, so
+ * drowsiness is never learned as the driver's normal.
+ * add() is O(1) with no allocation; call it from the analysis thread only. threshold() and
+ * getState() are a single volatile read and safe from any thread.
+ */
+public class EyeCalibration {
+
+    // --- Calibration Parameters (NEEDS CALIBRATION!) ---
+    private static final long CALIBRATION_MS = 120_000;     // Face time before the first personal threshold
+    private static final long ADAPT_EPOCH_MS = 60_000;      // Face time per adaptation step afterwards
+    private static final float MIN_SAMPLES_PER_S = 2f;      // Fewer frames per second of face time and the epoch is dropped
+                                                            // (steady analysis runs ~4.5 fast-tier fps)
+    private static final long MAX_SAMPLE_GAP_MS = 1000;     // A dropout counts as at most this much face time
+    private static final double OPEN_QUANTILE = 0.5;        // Typical open-eye probability
+    private static final double CLOSED_QUANTILE = 0.02;     // Blinks fill a few percent of frames
+    private static final float ADAPT_RATE = 0.2f;           // Weight of one epoch once calibrated
+    private static final float SPLIT = 0.4f;                // Threshold sits 40% of the way from closed to open
+    private static final float MIN_SPREAD = 0.25f;          // Below this no blinks were seen: fall back to OPEN_FRACTION
+    private static final float OPEN_FRACTION = 0.5f;
+    private static final float MIN_THRESHOLD = 0.1f;
+    private static final float MAX_THRESHOLD = 0.7f;
+    // ---
+
+    /** What is persisted per driver profile. Immutable. */
+    public static final class State {
+        public final float threshold;
+        public final float openLevel;
+        public final float closedLevel;
+        public final int epochs; // Completed epochs, including the calibration one
+
+        public State(float threshold, float openLevel, float closedLevel, int epochs) {
+            this.threshold = threshold;
+            this.openLevel = openLevel;
+            this.closedLevel = closedLevel;
+            this.epochs = epochs;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "threshold %.2f (open %.2f, closed %.2f, %d epochs)",
+                    threshold, openLevel, closedLevel, epochs);
+        }
+    }
+
+    /** Called on the analysis thread when an epoch updated the state; keep it cheap. */
+    public interface Listener {
+        void onCalibrationUpdated(State state);
+    }
+
+    private final Listener listener;
+    private volatile State state; // Null until calibrated
+
+    // --- Current epoch (analysis thread) ---
+    private final P2Quantile openQuantile = new P2Quantile(OPEN_QUANTILE);
+    private final P2Quantile closedQuantile = new P2Quantile(CLOSED_QUANTILE);
+    private long epochFaceMs = 0;
+    private long lastTimestampMs = -1;
+    private boolean epochTainted = false;
+
+    public EyeCalibration(State restored, Listener listener) {
+        this.state = restored;
+        this.listener = listener;
+    }
+
+    /** The personal threshold, or fallback while still calibrating. */
+    public float threshold(float fallback) {
+        State s = state;
+        return s != null ? s.threshold : fallback;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public boolean isCalibrated() {
+        return state != null;
+    }
+
+    /** One face frame. NaN probabilities are skipped; fatigued taints the current epoch. */
+    public void add(long timestampMs, float leftEyeOpen, float rightEyeOpen, boolean fatigued) {
+        if (Float.isNaN(leftEyeOpen) || Float.isNaN(rightEyeOpen)) return;
+        if (lastTimestampMs >= 0 && timestampMs > lastTimestampMs) {
+            epochFaceMs += Math.min(timestampMs - lastTimestampMs, MAX_SAMPLE_GAP_MS);
+        }
+        lastTimestampMs = timestampMs;
+        epochTainted |= fatigued;
+
+        // The engine calls the eyes closed only when both are below the threshold
+        float eye = Math.max(leftEyeOpen, rightEyeOpen);
+        openQuantile.add(eye);
+        closedQuantile.add(eye);
+
+        if (epochFaceMs >= (state == null ? CALIBRATION_MS : ADAPT_EPOCH_MS)) endEpoch();
+    }
+
+    /** Face lost: the gap until it is back does not count as face time. */
+    public void onNoFace() {
+        lastTimestampMs = -1;
+    }
+
+    private void endEpoch() {
+        // Sized by face time, not a frame count: the scheduler runs well below camera rate while the eyes are open
+        boolean usable = !epochTainted && openQuantile.getCount() >= epochFaceMs * MIN_SAMPLES_PER_S / 1000f;
+        float open = (float) openQuantile.estimate();
+        float closed = (float) closedQuantile.estimate();
+        openQuantile.reset();
+        closedQuantile.reset();
+        epochFaceMs = 0;
+        epochTainted = false;
+        if (!usable) return;
+
+        State previous = state;
+        State next;
+        if (previous == null) {
+            next = new State(deriveThreshold(open, closed), open, closed, 1);
+        } else {
+            float blendedOpen = previous.openLevel + ADAPT_RATE * (open - previous.openLevel);
+            float blendedClosed = previous.closedLevel + ADAPT_RATE * (closed - previous.closedLevel);
+            next = new State(deriveThreshold(blendedOpen, blendedClosed), blendedOpen, blendedClosed, previous.epochs + 1);
+        }
+        state = next;
+        if (listener != null) listener.onCalibrationUpdated(next);
+    }
+
+    static float deriveThreshold(float open, float closed) {
+        float spread = open - closed;
+        float threshold = spread >= MIN_SPREAD ? closed + SPLIT * spread : open * OPEN_FRACTION;
+        return Math.max(MIN_THRESHOLD, Math.min(MAX_THRESHOLD, threshold));
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.driversafetyapp;
+
+import java.util.concurrent.Executor;
+
+/**
+ * A face-analysis backend: one camera frame in (Y plane, rotation, timestamp, optional region),
+ * the faces in it out, as a reused FaceResults. FatigueDetector only talks to this interface, so
+ * backends can be swapped by configuration (AppConfig.faceEngine) and compared with
+ * MeasuredFaceEngine. At most one analyze() is in flight at a time; the frame's buffers stay
+ * valid until its callback has run.
+ */
+public interface FaceAnalysisEngine {
+
+    String ENGINE_MLKIT = "mlkit";
+    String ENGINE_SYNTHETIC = "synthetic"; // Scripted faces; exercises the pipeline without a model (debug/tests only)
+
+    /** FAST runs on every frame; ACCURATE only on the few frames the cascade asks for. */
+    enum Tier { FAST, ACCURATE }
+
+    /** Called on the callbackExecutor the engine was created with. */
+    interface Callback {
+        void onResult(FaceResults results);
+        void onError(Exception error);
+    }
+
+    /** Creates an engine delivering its callbacks on callbackExecutor. */
+    interface Factory {
+        FaceAnalysisEngine create(Executor callbackExecutor);
+    }
+
+    String getName();
+
+    /**
+     * True if ACCURATE is a different, more expensive model worth a cascade. Engines without
+     * one should report landmarks on FAST frames (FaceResults.landmarksRun).
+     */
+    boolean hasAccurateTier();
+
+    void analyze(AnalysisFrame frame, Tier tier, Callback callback);
+
+    /** Loads models ahead of the first frame; onWarm runs on the callback executor. */
+    void prewarm(Runnable onWarm);
+
+    void close();
+}
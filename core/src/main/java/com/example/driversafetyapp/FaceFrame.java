@@ -0,0 +1,51 @@
+package com.example.driversafetyapp;
+
+/**
+ * One analyzed camera frame, reduced to the values the fatigue logic needs.
+ * Instances are reused frame after frame (fill, process, fill again), so the detection
+ * path does not depend on ML Kit or CameraX types and allocates nothing per frame.
+ */
+public class FaceFrame {
+
+    public long timestampMs;
+    public boolean facePresent;
+    public float leftEyeOpen = Float.NaN;  // NaN = not classified
+    public float rightEyeOpen = Float.NaN;
+    public final float[] mouth = new float[YawnDetector.MOUTH_POINT_COUNT]; // See YawnDetector.MOUTH_* offsets
+    public boolean mouthValid;
+    public float headEulerX = Float.NaN;   // Pitch (degrees, positive = looking up)
+    public float headEulerY = Float.NaN;   // Yaw
+    public float headEulerZ = Float.NaN;   // Roll
+    public int trackingId = -1;            // -1 = not tracked
+    public boolean landmarksRun = true;    // False on cascade tier-1 frames: no mouth data is not "mouth lost"
+    public boolean accurate;               // From the ACCURATE tier; can confirm a suspected closure
+
+    public void setNoFace(long timestampMs) {
+        this.timestampMs = timestampMs;
+        facePresent = false;
+        leftEyeOpen = Float.NaN;
+        rightEyeOpen = Float.NaN;
+        mouthValid = false;
+        headEulerX = Float.NaN;
+        headEulerY = Float.NaN;
+        headEulerZ = Float.NaN;
+        trackingId = -1;
+        landmarksRun = true;
+        accurate = false;
+    }
+
+    public void copyFrom(FaceFrame other) {
+        timestampMs = other.timestampMs;
+        facePresent = other.facePresent;
+        leftEyeOpen = other.leftEyeOpen;
+        rightEyeOpen = other.rightEyeOpen;
+        System.arraycopy(other.mouth, 0, mouth, 0, mouth.length);
+        mouthValid = other.mouthValid;
+        headEulerX = other.headEulerX;
+        headEulerY = other.headEulerY;
+        headEulerZ = other.headEulerZ;
+        trackingId = other.trackingId;
+        landmarksRun = other.landmarksRun;
+        accurate = other.accurate;
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.driversafetyapp;
+
+/**
+ * The faces a FaceAnalysisEngine found in one frame, as parallel primitive arrays so that
+ * engines can fill the same instance frame after frame without allocating. Boxes are l, t, r, b
+ * and, like the mouth points, in upright coordinates of the analyzed region until shift().
+ */
+public class FaceResults {
+
+    public static final int MAX_FACES = 8;
+
+    public int count;
+    public boolean landmarksRun; // False if this pass did not look for landmarks (mouth points absent, not lost)
+    public final int[] trackingIds = new int[MAX_FACES]; // -1 = not tracked
+    public final float[] boxes = new float[MAX_FACES * 4];
+    public final float[] leftEyeOpen = new float[MAX_FACES];  // NaN = not classified
+    public final float[] rightEyeOpen = new float[MAX_FACES];
+    public final float[] eulerX = new float[MAX_FACES];
+    public final float[] eulerY = new float[MAX_FACES];
+    public final float[] eulerZ = new float[MAX_FACES];
+    public final float[] mouth = new float[MAX_FACES * YawnDetector.MOUTH_POINT_COUNT];
+    public final boolean[] mouthValid = new boolean[MAX_FACES];
+
+    public void clear(boolean landmarksRun) {
+        count = 0;
+        this.landmarksRun = landmarksRun;
+    }
+
+    /** Appends a face with everything unknown and returns its index, or -1 if full. */
+    public int add(float left, float top, float right, float bottom) {
+        if (count == MAX_FACES) return -1;
+        int i = count++;
+        boxes[i * 4] = left;
+        boxes[i * 4 + 1] = top;
+        boxes[i * 4 + 2] = right;
+        boxes[i * 4 + 3] = bottom;
+        trackingIds[i] = -1;
+        leftEyeOpen[i] = Float.NaN;
+        rightEyeOpen[i] = Float.NaN;
+        eulerX[i] = Float.NaN;
+        eulerY[i] = Float.NaN;
+        eulerZ[i] = Float.NaN;
+        mouthValid[i] = false;
+        return i;
+    }
+
+    /** Moves boxes and mouth points by (dx, dy), e.g. from a crop into the full frame. */
+    public void shift(float dx, float dy) {
+        if (dx == 0 && dy == 0) return;
+        for (int i = 0; i < count; i++) {
+            boxes[i * 4] += dx;
+            boxes[i * 4 + 1] += dy;
+            boxes[i * 4 + 2] += dx;
+            boxes[i * 4 + 3] += dy;
+            int m = i * YawnDetector.MOUTH_POINT_COUNT;
+            for (int p = 0; p < YawnDetector.MOUTH_POINT_COUNT; p += 2) {
+                mouth[m + p] += dx;
+                mouth[m + p + 1] += dy;
+            }
+        }
+    }
+
+    /** Larger of the two eye-open probabilities, NaN if either is unknown. */
+    public float maxEyeOpen(int i) {
+        float left = leftEyeOpen[i], right = rightEyeOpen[i];
+        return Float.isNaN(left) || Float.isNaN(right) ? Float.NaN : Math.max(left, right);
+    }
+
+    /** Copies face i into the fatigue logic's frame. */
+    public void copyTo(int i, long timestampMs, boolean accurate, FaceFrame f) {
+        f.timestampMs = timestampMs;
+        f.facePresent = true;
+        f.accurate = accurate;
+        f.landmarksRun = landmarksRun;
+        f.leftEyeOpen = leftEyeOpen[i];
+        f.rightEyeOpen = rightEyeOpen[i];
+        System.arraycopy(mouth, i * YawnDetector.MOUTH_POINT_COUNT, f.mouth, 0, YawnDetector.MOUTH_POINT_COUNT);
+        f.mouthValid = mouthValid[i];
+        f.headEulerX = eulerX[i];
+        f.headEulerY = eulerY[i];
+        f.headEulerZ = eulerZ[i];
+        f.trackingId = trackingIds[i];
+    }
+}
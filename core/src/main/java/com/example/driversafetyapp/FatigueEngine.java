@@ -0,0 +1,261 @@
+package com.example.driversafetyapp;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The fatigue decision logic (microsleep timer, PERCLOS window, head pose, yawn counter) on plain
+ * FaceFrames, independent of CameraX/ML Kit so it can be replayed on the JVM.
+ * Time comes only from frame timestamps. Feed frames from one thread at a time; the fatigue
+ * state is held in atomics, so the getters and reset() are safe from any thread and a
+ * transition is reported only by the thread whose compare-and-set made it.
+ */
+public class FatigueEngine {
+
+    // --- Fatigue Detection Parameters (NEEDS CALIBRATION!) ---
+    // Eye-closure threshold and microsleep duration come from the AppConfig snapshot; the
+    // threshold is replaced by the driver's personal one once EyeCalibration has learned it
+    private static final long PERCLOS_WINDOW_MS = 60000; // Rolling PERCLOS window
+    private static final long PERCLOS_MIN_COVERAGE_MS = 20000; // Don't judge PERCLOS on less data than this
+    private static final float PERCLOS_ONSET_THRESHOLD = 0.15f; // >= 15% closed -> drowsy
+    private static final float PERCLOS_CLEAR_THRESHOLD = 0.08f; // < 8% closed (and eyes open) -> clear
+    private static final long PERCLOS_MAX_SAMPLE_GAP_MS = 1000; // Max weight of one sample (covers slow analysis rates)
+    private static final int PERCLOS_CAPACITY = 4096; // 60 s at up to ~60 fps
+    private static final long CANDIDATE_CLOSURE_MS = 400; // Closure this long asks the accurate tier to look (blinks are shorter)
+    private static final long REJECT_HOLDOFF_MS = 1000; // After the accurate tier saw open eyes, don't ask again this soon
+    private static final int NODS_FOR_FATIGUE = 2; // Microsleep nods within HeadPoseDetector's window -> drowsy
+    private static final long NOD_ALERT_HOLD_MS = 3000; // A nod burst is over once the head is up; keep the alert this long
+    private static final long NO_FACE_GRACE_MS = 2000; // Shorter face dropouts (hand, glare, mirror check) keep the fatigue state
+    private static final long TIER_OFFSET_MAX_AGE_MS = 400; // ACCURATE vs FAST angle offset is learned against a FAST frame this recent
+    private static final float TIER_OFFSET_RATE = 0.1f; // Weight of one ACCURATE frame in that offset
+    // ---
+
+    private final FatigueListener listener;
+    private final FrameRateScheduler frameScheduler; // Optional, gets eye-state feedback
+    private volatile AppConfig config = AppConfig.defaults(); // Swapped whole on settings changes
+    private volatile EyeCalibration calibration; // Optional, swapped whole when the driver profile changes
+    private volatile float lastThreshold = AppConfig.defaults().eyeClosedThreshold;
+
+    private final PerclosWindow perclosWindow =
+            new PerclosWindow(PERCLOS_WINDOW_MS, PERCLOS_MAX_SAMPLE_GAP_MS, PERCLOS_CAPACITY);
+    private final YawnDetector yawnDetector = YawnDetector.withDefaults();
+    private final HeadPoseDetector headPose = new HeadPoseDetector();
+    private volatile long yawnStageAvgNs = 0; // Measured extra cost of yawn detection per analyzed frame
+
+    // --- Fatigue state (lock-free) ---
+    private final AtomicLong eyesClosedStartTime = new AtomicLong(-1); // Frame timestamp when the current closure started
+    private final AtomicBoolean isFatigued = new AtomicBoolean(false); // Last state reported to the listener (edge-triggered)
+    private volatile boolean lastEyesClosed = false;
+    private volatile float lastPerclos = 0f; // PerclosWindow itself is owned by the feeding thread
+    private volatile long nodAlertUntilMs = -1;
+    private long noFaceSinceMs = -1; // Start of the current face dropout (feeding thread)
+    private boolean headDownAtLastFace = false; // Feeding thread: the face may have dropped out of view
+    // ACCURATE-tier Euler angles minus FAST-tier ones (feeding thread); head pose is on the FAST model's scale
+    private float fastPitch, fastYaw;
+    private long fastPoseMs = -1;
+    private float tierPitchOffset = 0f, tierYawOffset = 0f;
+    private boolean faceLost = false; // No-face is reported on the edge only, once the grace period is over
+
+    // --- Cascade confirmation (feeding thread, except the volatiles) ---
+    // With confirmation required, fatigue onset waits until an ACCURATE-tier frame has seen the eyes closed
+    private volatile boolean confirmationRequired = false;
+    private volatile boolean confirmationWanted = false; // Polled by the detector: run the accurate tier next
+    private long confirmedClosureStartMs = -1; // Start of the closure the accurate tier confirmed
+    private long lastConfirmedClosureMs = -1;
+    private long rejectedUntilMs = -1;
+    private volatile long confirmedCount = 0;
+    private volatile long rejectedCount = 0;
+
+    public FatigueEngine(FatigueListener listener, FrameRateScheduler frameScheduler) {
+        this.listener = listener;
+        this.frameScheduler = frameScheduler;
+    }
+
+    public void onFrame(FaceFrame frame) {
+        if (frame.facePresent) {
+            noFaceSinceMs = -1;
+            faceLost = false;
+            processFace(frame);
+        } else {
+            EyeCalibration cal = calibration;
+            if (cal != null) cal.onNoFace();
+            if (frameScheduler != null) frameScheduler.onNoFace(frame.timestampMs);
+            if (noFaceSinceMs < 0) noFaceSinceMs = frame.timestampMs;
+            // A short dropout changes nothing: clearing would restart a running alarm and cancel its countdown
+            if (!faceLost && frame.timestampMs - noFaceSinceMs >= NO_FACE_GRACE_MS) {
+                faceLost = true;
+                if (headDownAtLastFace) {
+                    // The head went down out of view: a head drop, not the driver leaving. Held until the face is back.
+                    setFatigued(true);
+                } else {
+                    resetFatigueState();
+                    listener.onNoFaceDetected();
+                }
+            }
+        }
+    }
+
+    private void processFace(FaceFrame face) {
+        long frameTimeMs = face.timestampMs;
+        AppConfig cfg = config; // One snapshot per frame
+        EyeCalibration cal = cfg.autoCalibrateEyes ? calibration : null;
+        float threshold = cal != null ? cal.threshold(cfg.eyeClosedThreshold) : cfg.eyeClosedThreshold;
+        lastThreshold = threshold;
+        // NaN (unclassified) compares false, i.e. counts as open, same as a missing probability
+        boolean eyesClosed = face.leftEyeOpen < threshold && face.rightEyeOpen < threshold;
+        lastEyesClosed = eyesClosed;
+        // Calibration learns from the per-frame tier only, so its statistics don't mix two models
+        if (cal != null && !face.accurate) cal.add(frameTimeMs, face.leftEyeOpen, face.rightEyeOpen, isFatigued.get());
+
+        perclosWindow.add(frameTimeMs, face.leftEyeOpen, face.rightEyeOpen, eyesClosed);
+
+        // --- Head pose: head drops often come with the eyes still partly open ---
+        // Both tiers, so a confirmation burst doesn't starve it; ACCURATE angles are shifted onto the FAST scale
+        if (!Float.isNaN(face.headEulerX) && !Float.isNaN(face.headEulerY)
+                && headPose.update(frameTimeMs, tierPitch(face), tierYaw(face))
+                && headPose.getNodCount(frameTimeMs) >= NODS_FOR_FATIGUE) {
+            nodAlertUntilMs = frameTimeMs + NOD_ALERT_HOLD_MS;
+        }
+        headDownAtLastFace = headPose.isHeadDown();
+        boolean headAway = headPose.isHeadDropped(frameTimeMs) || headPose.isLookingAway(frameTimeMs)
+                || frameTimeMs < nodAlertUntilMs;
+
+        if (frameScheduler != null) {
+            // Full analysis rate while eyes are closed or the head is dropping/turned away
+            if (eyesClosed || headPose.isMoving()) frameScheduler.onEyesClosed(frameTimeMs); else frameScheduler.onEyesOpen(frameTimeMs);
+        }
+        if (eyesClosed) {
+            eyesClosedStartTime.compareAndSet(-1, frameTimeMs); // Eyes just closed
+        } else {
+            eyesClosedStartTime.set(-1);
+        }
+
+        // Fatigue = one long closure (microsleep) OR many short ones (high PERCLOS)
+        long closedSince = eyesClosedStartTime.get();
+        boolean microsleep = closedSince != -1 && frameTimeMs - closedSince >= cfg.fatigueDurationMs;
+        boolean perclosValid = perclosWindow.getCoverageMs() >= PERCLOS_MIN_COVERAGE_MS;
+        float perclos = perclosWindow.getPerclos();
+        lastPerclos = perclos;
+        boolean perclosHigh = perclosValid && perclos >= PERCLOS_ONSET_THRESHOLD;
+
+        if (confirmationRequired) {
+            updateConfirmation(face, frameTimeMs, eyesClosed, closedSince, perclosHigh);
+            microsleep &= confirmedClosureStartMs == closedSince;
+            perclosHigh &= lastConfirmedClosureMs >= 0 && frameTimeMs - lastConfirmedClosureMs <= PERCLOS_WINDOW_MS;
+        }
+
+        // Head pose needs no confirmation: the angles don't depend on the eye classifier
+        if (!isFatigued.get()) {
+            if (microsleep || perclosHigh || headAway) {
+                setFatigued(true);
+            }
+        } else if (!eyesClosed && !headAway && (!perclosValid || perclos < PERCLOS_CLEAR_THRESHOLD)) {
+            setFatigued(false);
+        }
+
+        // --- Yawn Detection (mouth aspect ratio on the mouth landmarks) ---
+        long yawnStartNs = System.nanoTime();
+        if (face.mouthValid) {
+            if (yawnDetector.update(frameTimeMs, face.mouth)) {
+                listener.onYawnDetected(yawnDetector.getYawnCount(frameTimeMs));
+            }
+        } else if (face.landmarksRun) {
+            yawnDetector.reset();
+        }
+        long elapsedNs = System.nanoTime() - yawnStartNs;
+        // Exponential moving average of the extra per-frame cost of the yawn stage
+        yawnStageAvgNs = yawnStageAvgNs == 0 ? elapsedNs : yawnStageAvgNs + (elapsedNs - yawnStageAvgNs) / 16;
+    }
+
+    // FAST frames pass through and are remembered; an ACCURATE frame next to one (head still) updates the offset
+    private float tierPitch(FaceFrame face) {
+        if (!face.accurate) {
+            fastPitch = face.headEulerX;
+            fastYaw = face.headEulerY;
+            fastPoseMs = face.timestampMs;
+            return face.headEulerX;
+        }
+        if (fastPoseMs >= 0 && face.timestampMs - fastPoseMs <= TIER_OFFSET_MAX_AGE_MS && !headPose.isMoving()) {
+            tierPitchOffset += (face.headEulerX - fastPitch - tierPitchOffset) * TIER_OFFSET_RATE;
+            tierYawOffset += (face.headEulerY - fastYaw - tierYawOffset) * TIER_OFFSET_RATE;
+        }
+        return face.headEulerX - tierPitchOffset;
+    }
+
+    // Call after tierPitch() for the same frame
+    private float tierYaw(FaceFrame face) {
+        return face.accurate ? face.headEulerY - tierYawOffset : face.headEulerY;
+    }
+
+    // An ACCURATE-tier frame settles the suspicion either way; a FAST-tier closure raises one
+    private void updateConfirmation(FaceFrame face, long frameTimeMs, boolean eyesClosed, long closedSince, boolean perclosHigh) {
+        if (face.accurate) {
+            if (eyesClosed) {
+                if (confirmationWanted) confirmedCount++;
+                confirmedClosureStartMs = closedSince;
+                lastConfirmedClosureMs = frameTimeMs;
+            } else if (confirmationWanted) {
+                rejectedUntilMs = frameTimeMs + REJECT_HOLDOFF_MS; // This frame being "open" already restarted the closure timer
+                rejectedCount++;
+            }
+        }
+        boolean unconfirmedClosure = eyesClosed && confirmedClosureStartMs != closedSince
+                && (frameTimeMs - closedSince >= CANDIDATE_CLOSURE_MS || perclosHigh);
+        confirmationWanted = unconfirmedClosure && frameTimeMs >= rejectedUntilMs;
+    }
+
+    private void resetFatigueState() {
+        // Face gone past the grace period: the closure timer restarts, a reported fatigue state is
+        // cleared, and PERCLOS starts over so the old closures can't raise a new onset on return
+        reset();
+        perclosWindow.clear();
+        lastPerclos = 0f;
+        confirmedClosureStartMs = -1;
+        lastConfirmedClosureMs = -1;
+        rejectedUntilMs = -1;
+        yawnDetector.reset();
+        headPose.reset();
+    }
+
+    /** New thresholds apply from the next frame. Safe from any thread. */
+    public void setConfig(AppConfig config) {
+        this.config = config;
+    }
+
+    /**
+     * Cascade mode: fatigue onset then needs an ACCURATE-tier frame (FaceFrame.accurate) that
+     * also sees the eyes closed; isConfirmationWanted() says when to run one.
+     */
+    public void setConfirmationRequired(boolean required) {
+        confirmationRequired = required;
+        if (!required) confirmationWanted = false;
+    }
+
+    /** Per-driver threshold learning; null turns it off. Safe from any thread. */
+    public void setCalibration(EyeCalibration calibration) {
+        this.calibration = calibration;
+    }
+
+    /** Restarts the closure timer and clears a reported fatigue state. Safe from any thread. */
+    public void reset() {
+        eyesClosedStartTime.set(-1);
+        lastEyesClosed = false;
+        nodAlertUntilMs = -1;
+        confirmationWanted = false;
+        setFatigued(false);
+    }
+
+    // Notifies the listener only on onset/clear transitions, never once per frame
+    private void setFatigued(boolean fatigued) {
+        if (isFatigued.compareAndSet(!fatigued, fatigued)) listener.onFatigueDetected(fatigued);
+    }
+
+    public boolean isFatigued() { return isFatigued.get(); }
+    public boolean isLastEyesClosed() { return lastEyesClosed; }
+    public float getPerclos() { return lastPerclos; }
+    public float getEyeClosedThreshold() { return lastThreshold; }
+    public boolean isConfirmationWanted() { return confirmationWanted; }
+    public long getConfirmedCount() { return confirmedCount; }
+    public long getRejectedCount() { return rejectedCount; }
+    public long getYawnStageAvgNs() { return yawnStageAvgNs; }
+}
@@ -0,0 +1,8 @@
+package com.example.driversafetyapp;
+
+// Interface to communicate fatigue status back to MainActivity
+public interface FatigueListener {
+    void onFatigueDetected(boolean isFatigued); // True if fatigue detected, false otherwise
+    void onNoFaceDetected(); // Called when the face is lost (once per loss, not once per frame)
+    void onYawnDetected(int yawnsInWindow); // Called once per yawn with the count in the rolling window
+}
@@ -0,0 +1,186 @@
+package com.example.driversafetyapp;
+
+import java.nio.ByteBuffer;
+import java.util.Locale;
+
+/**
+ * Cheap pre-filter in front of ML Kit. Samples the Y plane on a fixed GRID_COLS x GRID_ROWS grid
+ * (absolute reads, no copies, no allocation) for mean luminance, contrast (standard deviation)
+ * and the mean absolute difference from the last frame that went to inference. Frames too
+ * dark, overexposed or flat to classify are skipped once inference on such a frame found no
+ * face (the model often still copes with a dim cabin); frames that barely changed since the last
+ * inference reuse its result. Neither happens while the eyes are closing, and an inference still
+ * runs at least every MAX_REUSE_MS / MAX_SKIP_MS.
+ * An eyelid closing moves only a handful of the whole-frame samples, far too few for the mean,
+ * so while a face is present the driver's eye band (from DriverLock) is sampled on a finer grid
+ * too: a few samples changing there is enough to infer. A face without a known eye band is
+ * never reused.
+ * evaluate() runs on the camera thread, onInferred() on the result thread before the frame is
+ * released, so the next evaluate() always sees the latest eye state.
+ */
+public class FrameGate {
+
+    public static final int INFER = 0;
+    public static final int REUSE = 1; // Feed the previous result again with this frame's timestamp
+    public static final int SKIP = 2;  // Unusable frame, feed nothing
+
+    // --- Gate Parameters (NEEDS CALIBRATION!) ---
+    private static final int GRID_COLS = 32;
+    private static final int GRID_ROWS = 24;
+    private static final float MIN_MEAN_LUMA = 25f;    // Darker: nothing to classify
+    private static final float MAX_MEAN_LUMA = 235f;   // Brighter: blown out
+    private static final float MIN_CONTRAST = 6f;      // Std dev in luma levels; lens covered, flat scene
+    private static final float STATIC_DIFF = 2.5f;     // Mean abs luma change below this = nothing happened
+    private static final long MAX_REUSE_MS = 400;      // Reused result is never older than this
+    private static final long MAX_SKIP_MS = 1000;      // Try inference this often even in bad light
+    private static final float CLOSING_MARGIN = 0.2f;  // Eye-open this close above the threshold = closing
+    private static final float DROP_MARGIN = 0.1f;     // Or falling this much since the last inference
+    private static final int BAND_COLS = 16;           // Eye band grid
+    private static final int BAND_ROWS = 8;
+    private static final int BAND_PIXEL_DIFF = 12;     // Luma change of one band sample that counts as movement
+    private static final int BAND_MAX_CHANGED = 2;     // This many changed band samples = the eyes moved
+    // ---
+
+    private static final int SAMPLES = GRID_COLS * GRID_ROWS;
+    private static final int BAND_SAMPLES = BAND_COLS * BAND_ROWS;
+
+    // --- Camera thread ---
+    private short[] reference = new short[SAMPLES]; // Grid of the last inferred frame
+    private short[] current = new short[SAMPLES];
+    private boolean hasReference = false;
+    private long lastInferenceMs = 0;
+    private boolean lastInferredUnusable = false; // The last inferred frame failed the light/contrast check
+    private final short[] bandReference = new short[BAND_SAMPLES]; // Eye band of the last inferred frame
+    private boolean hasBandReference = false;
+    private int bandLeft, bandTop, bandWidth, bandHeight; // Where bandReference was sampled, sensor coordinates
+
+    // --- Written by the result thread ---
+    private volatile boolean eyesClosing = false;
+    private volatile boolean resultReusable = false;
+    private volatile boolean resultFacePresent = false;
+    private float lastEyeOpen = Float.NaN;
+    private volatile long inferenceAvgNs = 0; // Moving average, prices the avoided inferences
+
+    // --- Stats ---
+    private volatile long inferred, reused, skipped, savedNs;
+    private volatile float lastMean, lastContrast, lastDiff;
+    private volatile int lastBandChanged;
+
+    /**
+     * Decides what to do with a frame: INFER, REUSE or SKIP. The driver's eye band is given in
+     * sensor coordinates (DriverLock.eyeBand()), bandWidth = 0 if unknown. Allocation-free.
+     */
+    public int evaluate(long timestampMs, ByteBuffer yPlane, int rowStride, int width, int height,
+                        int bandLeft, int bandTop, int bandWidth, int bandHeight) {
+        long sum = 0, sumSq = 0, diffSum = 0;
+        int i = 0;
+        for (int r = 0; r < GRID_ROWS; r++) {
+            int rowStart = ((2 * r + 1) * height / (2 * GRID_ROWS)) * rowStride;
+            for (int c = 0; c < GRID_COLS; c++, i++) {
+                int v = yPlane.get(rowStart + (2 * c + 1) * width / (2 * GRID_COLS)) & 0xFF;
+                current[i] = (short) v;
+                sum += v;
+                sumSq += v * v;
+                diffSum += Math.abs(v - reference[i]);
+            }
+        }
+        float mean = (float) sum / SAMPLES;
+        float contrast = (float) Math.sqrt(Math.max(0, (float) sumSq / SAMPLES - mean * mean));
+        float diff = hasReference ? (float) diffSum / SAMPLES : Float.MAX_VALUE;
+        lastMean = mean;
+        lastContrast = contrast;
+        lastDiff = diff;
+        int bandChanged = hasBandReference ? bandChanged(yPlane, rowStride) : BAND_SAMPLES;
+        lastBandChanged = bandChanged;
+        boolean eyesStill = hasBandReference ? bandChanged < BAND_MAX_CHANGED : !resultFacePresent;
+
+        long sinceInference = timestampMs - lastInferenceMs;
+        boolean unusable = mean < MIN_MEAN_LUMA || mean > MAX_MEAN_LUMA || contrast < MIN_CONTRAST;
+        if (!eyesClosing) {
+            if (unusable && lastInferredUnusable && !resultFacePresent && sinceInference < MAX_SKIP_MS) {
+                skipped++;
+                savedNs += inferenceAvgNs;
+                return SKIP;
+            }
+            if (!unusable && resultReusable && diff < STATIC_DIFF && eyesStill && sinceInference < MAX_REUSE_MS) {
+                reused++;
+                savedNs += inferenceAvgNs;
+                return REUSE;
+            }
+        }
+        short[] swap = reference;
+        reference = current;
+        current = swap;
+        hasReference = true;
+        sampleBand(yPlane, rowStride, bandLeft, bandTop, bandWidth, bandHeight);
+        lastInferenceMs = timestampMs;
+        lastInferredUnusable = unusable;
+        resultReusable = false; // Until onInferred() says otherwise
+        inferred++;
+        return INFER;
+    }
+
+    // Eye band of this frame (a future reference) at the band's current position
+    private void sampleBand(ByteBuffer yPlane, int rowStride, int left, int top, int width, int height) {
+        hasBandReference = width > 0 && height > 0;
+        if (!hasBandReference) return;
+        bandLeft = left;
+        bandTop = top;
+        bandWidth = width;
+        bandHeight = height;
+        int i = 0;
+        for (int r = 0; r < BAND_ROWS; r++) {
+            int rowStart = (top + (2 * r + 1) * height / (2 * BAND_ROWS)) * rowStride + left;
+            for (int c = 0; c < BAND_COLS; c++, i++) {
+                bandReference[i] = (short) (yPlane.get(rowStart + (2 * c + 1) * width / (2 * BAND_COLS)) & 0xFF);
+            }
+        }
+    }
+
+    // Samples of the reference eye band that changed by more than BAND_PIXEL_DIFF in this frame
+    private int bandChanged(ByteBuffer yPlane, int rowStride) {
+        int changed = 0;
+        int i = 0;
+        for (int r = 0; r < BAND_ROWS; r++) {
+            int rowStart = (bandTop + (2 * r + 1) * bandHeight / (2 * BAND_ROWS)) * rowStride + bandLeft;
+            for (int c = 0; c < BAND_COLS; c++, i++) {
+                int v = yPlane.get(rowStart + (2 * c + 1) * bandWidth / (2 * BAND_COLS)) & 0xFF;
+                if (Math.abs(v - bandReference[i]) > BAND_PIXEL_DIFF) changed++;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Result of the last INFER frame. usable=false (failed, or the crop missed) means there is
+     * nothing to reuse. eyeOpen is the larger of the two probabilities, NaN if unknown.
+     */
+    public void onInferred(boolean usable, boolean facePresent, float eyeOpen, float closedThreshold, long inferenceNs) {
+        if (inferenceNs > 0) inferenceAvgNs = inferenceAvgNs == 0 ? inferenceNs : inferenceAvgNs + (inferenceNs - inferenceAvgNs) / 16;
+        if (!usable) return;
+        boolean closing = false;
+        if (facePresent && !Float.isNaN(eyeOpen)) {
+            closing = eyeOpen < closedThreshold + CLOSING_MARGIN
+                    || (!Float.isNaN(lastEyeOpen) && eyeOpen < lastEyeOpen - DROP_MARGIN);
+        }
+        lastEyeOpen = facePresent ? eyeOpen : Float.NaN;
+        eyesClosing = closing;
+        resultFacePresent = facePresent;
+        resultReusable = true;
+    }
+
+    public long getInferred() { return inferred; }
+    public long getReused() { return reused; }
+    public long getSkipped() { return skipped; }
+    public long getSavedNs() { return savedNs; }
+
+    public String formatSummary() {
+        long total = inferred + reused + skipped;
+        if (total == 0) return "Pre-filter: no frames yet";
+        return String.format(Locale.US,
+                "Pre-filter: %.0f%% of inferences avoided (reused %d, skipped %d of %d), ~%.1f s inference saved\n"
+                        + "  last frame: luma %.0f, contrast %.1f, change %.1f, eye band samples changed %d",
+                100.0 * (reused + skipped) / total, reused, skipped, total, savedNs / 1e9,
+                lastMean, lastContrast, lastDiff == Float.MAX_VALUE ? Float.NaN : lastDiff, lastBandChanged);
+    }
+}
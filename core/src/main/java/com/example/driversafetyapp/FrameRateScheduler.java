@@ -0,0 +1,125 @@
+package com.example.driversafetyapp;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides which camera frames are sent to the face detector.
+ * Frames are analyzed at a low rate while the driver's eyes are steadily open, at full rate
+ * as soon as the eyes are seen closing, and at a decaying rate while no face is found.
+ * shouldAnalyze() is called from the analysis thread, the on*() feedback methods from
+ * whichever thread handles detection results.
+ */
+public class FrameRateScheduler {
+
+    public enum Mode { STEADY, ACTIVE, NO_FACE }
+
+    // --- Rate Configuration ---
+    public static class Config {
+        public final float steadyFps;          // Rate while eyes are steadily open
+        public final float activeFps;          // Rate while eyes are closing/closed (<= 0 = every frame)
+        public final float noFaceMinFps;       // Floor of the no-face backoff
+        public final int noFaceBackoffAfter;   // Consecutive no-face results before each backoff step
+        public final long steadyAfterMs;       // Eyes must stay open this long before dropping to steadyFps
+
+        public Config(float steadyFps, float activeFps, float noFaceMinFps, int noFaceBackoffAfter, long steadyAfterMs) {
+            this.steadyFps = steadyFps;
+            this.activeFps = activeFps;
+            this.noFaceMinFps = noFaceMinFps;
+            this.noFaceBackoffAfter = Math.max(1, noFaceBackoffAfter);
+            this.steadyAfterMs = steadyAfterMs;
+        }
+
+        public static Config defaults() {
+            return new Config(5f, 0f, 1f, 5, 3000);
+        }
+    }
+
+    private volatile Config config;
+    private volatile Mode mode = Mode.ACTIVE; // Start at full rate until we know the eyes are open
+    private volatile int consecutiveNoFace = 0;
+    private volatile long eyesOpenSinceMs = -1;
+
+    // Only touched by the analysis thread
+    private long nextDueNs = Long.MIN_VALUE;
+
+    private volatile long analyzedFrames = 0;
+    private volatile long skippedFrames = 0;
+
+    public FrameRateScheduler(Config config) {
+        this.config = config;
+    }
+
+    public void setConfig(Config config) {
+        this.config = config;
+    }
+
+    public Config getConfig() {
+        return config;
+    }
+
+    /** Returns true if the frame with this timestamp should be analyzed, false if it should be dropped. */
+    public boolean shouldAnalyze(long frameTimestampNs) {
+        long intervalNs = currentIntervalNs();
+        if (intervalNs <= 0 || frameTimestampNs >= nextDueNs) {
+            // Advance by whole intervals so the average rate converges on the target,
+            // but never let the schedule fall behind the camera.
+            nextDueNs = (nextDueNs == Long.MIN_VALUE || nextDueNs + intervalNs < frameTimestampNs)
+                    ? frameTimestampNs + intervalNs
+                    : nextDueNs + intervalNs;
+            analyzedFrames++;
+            return true;
+        }
+        skippedFrames++;
+        return false;
+    }
+
+    // --- Feedback from detection results ---
+    public void onEyesClosed(long timestampMs) {
+        consecutiveNoFace = 0;
+        eyesOpenSinceMs = -1;
+        mode = Mode.ACTIVE;
+    }
+
+    public void onEyesOpen(long timestampMs) {
+        consecutiveNoFace = 0;
+        if (eyesOpenSinceMs == -1) eyesOpenSinceMs = timestampMs;
+        if (mode == Mode.NO_FACE) {
+            mode = Mode.ACTIVE; // Face just came back, look closely before slowing down again
+        } else if (mode == Mode.ACTIVE && timestampMs - eyesOpenSinceMs >= config.steadyAfterMs) {
+            mode = Mode.STEADY;
+        }
+    }
+
+    public void onNoFace(long timestampMs) {
+        eyesOpenSinceMs = -1;
+        int misses = consecutiveNoFace + 1;
+        consecutiveNoFace = misses;
+        if (misses >= config.noFaceBackoffAfter) mode = Mode.NO_FACE;
+    }
+
+    private long currentIntervalNs() {
+        Config c = config;
+        switch (mode) {
+            case ACTIVE:
+                return fpsToIntervalNs(c.activeFps);
+            case NO_FACE: {
+                // Halve the rate for every further backoff step, down to noFaceMinFps
+                int steps = consecutiveNoFace / c.noFaceBackoffAfter;
+                float fps = c.steadyFps / (float) (1 << Math.min(steps, 16));
+                return fpsToIntervalNs(Math.max(fps, c.noFaceMinFps));
+            }
+            case STEADY:
+            default:
+                return fpsToIntervalNs(c.steadyFps);
+        }
+    }
+
+    private static long fpsToIntervalNs(float fps) {
+        return fps <= 0f ? 0 : (long) (TimeUnit.SECONDS.toNanos(1) / fps);
+    }
+
+    // --- Stats ---
+    public Mode getMode() { return mode; }
+    public long getAnalyzedFrames() { return analyzedFrames; }
+    public long getSkippedFrames() { return skippedFrames; }
+}
@@ -0,0 +1,213 @@
+package com.example.driversafetyapp;
+
+/**
+ * Head-pose signal stage on the face's Euler angles: microsleep nods and head drops from pitch,
+ * sustained looking away from yaw. Angles are low-pass filtered per frame (time-constant aware,
+ * so the analysis rate may change), filtered pitch is kept in a fixed ring buffer for its rate
+ * of change, and both are judged against a slowly learned neutral pose, since camera mounts and
+ * seating positions differ. O(1) per frame, nothing allocated. Not thread-safe, feed it from a
+ * single thread.
+ */
+public class HeadPoseDetector {
+
+    // --- Head Pose Parameters (NEEDS CALIBRATION!) ---
+    private static final long LOWPASS_TAU_MS = 120;          // Smooths landmark jitter, keeps a nod's shape
+    private static final long BASELINE_TAU_MS = 20_000;      // Neutral pose follows posture changes this slowly
+    private static final long BASELINE_WARMUP_MS = 5_000;    // No judgement before this much neutral pose was seen
+    private static final long RATE_WINDOW_MS = 300;          // Pitch rate is measured over this span
+    private static final float NOD_DROP_RATE = 30f;          // deg/s; pitch falling faster starts a nod
+    private static final float NOD_MIN_DEPTH = 12f;          // deg below neutral the head must reach
+    private static final long NOD_MAX_DROP_MS = 1000;        // A drop that takes longer to get deep is no nod
+    private static final float RECOVERED_FRACTION = 0.5f;    // Back within half the depth = head is up again
+    private static final float SLOW_RECOVERY_FACTOR = 1.5f;  // Nod: peak rate back up this much slower than down (else a glance)
+    private static final long HEAD_DROP_HOLD_MS = 1500;      // Head down this long = head drop
+    private static final float LOOK_AWAY_YAW = 30f;          // deg from neutral yaw
+    private static final long LOOK_AWAY_MS = 2000;           // Turned away this long = not watching the road
+    private static final long MAX_GAP_MS = 1000;             // Longer gap between frames restarts the filters...
+    private static final int MAX_GAP_FRAMES = 3;             // ...or this many frame periods, at slow analysis rates
+    private static final long MAX_FRAME_PERIOD_MS = 2000;    // Longer intervals are gaps, not the analysis rate
+    private static final int RING_CAPACITY = 64;             // Pitch history; covers RATE_WINDOW_MS up to ~200 fps
+    private static final long NOD_WINDOW_MS = 2 * 60_000L;   // Nods are counted over this window
+    private static final int MAX_TRACKED_NODS = 16;
+    // ---
+
+    private static final int UPRIGHT = 0, DROPPING = 1, DOWN = 2;
+
+    // Filtered pitch history (ring buffer, sequence numbers map to seq % RING_CAPACITY)
+    private final long[] ringTimes = new long[RING_CAPACITY];
+    private final float[] ringPitch = new float[RING_CAPACITY];
+    private long ringSeq = 0;  // Next sequence number to write
+    private long ringStart = 0; // Oldest sequence number still valid
+    private long lagSeq = 0;    // Newest sample at least RATE_WINDOW_MS old (advances monotonically)
+
+    private long lastMs = -1;
+    private float framePeriodMs = 0; // Smoothed frame interval, kept across restarts
+    private float pitch, yaw; // Low-passed
+    private float pitchRate;  // deg/s, negative = head dropping
+    private float basePitch = Float.NaN, baseYaw = Float.NaN;
+    private long baselineMs = 0; // Neutral pose seen so far, capped at the warm-up
+
+    private int state = UPRIGHT;
+    private long dropStartMs, downSinceMs;
+    private float peakDropRate, peakRecoveryRate; // deg/s, of the nod in progress
+    private long lookAwaySinceMs = -1;
+
+    // Ring buffer of nod timestamps for the window count
+    private final long[] nodTimes = new long[MAX_TRACKED_NODS];
+    private int nodHead = 0;
+    private int nodCount = 0;
+
+    /**
+     * Feeds one frame's pitch (positive = looking up) and yaw, in degrees.
+     * Returns true exactly once per nod, on the frame the head is back up.
+     */
+    public boolean update(long timestampMs, float pitchDeg, float yawDeg) {
+        long dt = timestampMs - lastMs;
+        if (lastMs >= 0 && dt > 0) {
+            long period = Math.min(dt, MAX_FRAME_PERIOD_MS);
+            framePeriodMs = framePeriodMs == 0 ? period : framePeriodMs + (period - framePeriodMs) * 0.25f;
+        }
+        if (lastMs < 0 || dt > Math.max(MAX_GAP_MS, MAX_GAP_FRAMES * framePeriodMs) || dt < 0) {
+            restart(timestampMs, pitchDeg, yawDeg);
+            return false;
+        }
+        if (dt == 0) return false;
+        lastMs = timestampMs;
+        float alpha = (float) dt / (LOWPASS_TAU_MS + dt);
+        pitch += (pitchDeg - pitch) * alpha;
+        yaw += (yawDeg - yaw) * alpha;
+        push(timestampMs);
+
+        // Rate over ~RATE_WINDOW_MS from the ring; the lag pointer only moves forward
+        if (lagSeq < ringStart) lagSeq = ringStart;
+        while (lagSeq + 1 < ringSeq && timestampMs - ringTimes[(int) ((lagSeq + 1) % RING_CAPACITY)] >= RATE_WINDOW_MS) lagSeq++;
+        int lag = (int) (lagSeq % RING_CAPACITY);
+        long span = timestampMs - ringTimes[lag];
+        pitchRate = span > 0 ? (pitch - ringPitch[lag]) * 1000f / span : 0f;
+
+        float pitchDev = pitch - basePitch;
+        float yawDev = yaw - baseYaw;
+        boolean turned = Math.abs(yawDev) >= LOOK_AWAY_YAW;
+        if (state == UPRIGHT && !turned) {
+            // Only a neutral-looking pose teaches the neutral pose
+            float beta = (float) dt / (BASELINE_TAU_MS + dt);
+            basePitch += (pitch - basePitch) * beta;
+            baseYaw += (yaw - baseYaw) * beta;
+            baselineMs = Math.min(baselineMs + dt, BASELINE_WARMUP_MS);
+        }
+        if (baselineMs < BASELINE_WARMUP_MS) return false;
+
+        if (turned) {
+            if (lookAwaySinceMs == -1) lookAwaySinceMs = timestampMs;
+        } else {
+            lookAwaySinceMs = -1;
+        }
+        return updateNod(timestampMs, pitchDev);
+    }
+
+    // Nod: a fast drop below neutral, then a slower way back up. Fast down and fast up is a glance.
+    private boolean updateNod(long timestampMs, float pitchDev) {
+        switch (state) {
+            case UPRIGHT:
+                if (pitchRate <= -NOD_DROP_RATE) {
+                    state = DROPPING;
+                    dropStartMs = ringTimes[(int) (lagSeq % RING_CAPACITY)]; // Movement started about a window ago
+                    peakDropRate = pitchRate;
+                    peakRecoveryRate = 0f;
+                }
+                return false;
+            case DROPPING:
+                peakDropRate = Math.min(peakDropRate, pitchRate);
+                if (pitchDev <= -NOD_MIN_DEPTH) {
+                    state = DOWN;
+                    downSinceMs = timestampMs;
+                } else if (timestampMs - dropStartMs > NOD_MAX_DROP_MS) {
+                    state = UPRIGHT; // Slow lean or shallow dip
+                }
+                return false;
+            default: // DOWN
+                peakDropRate = Math.min(peakDropRate, pitchRate);
+                peakRecoveryRate = Math.max(peakRecoveryRate, pitchRate);
+                if (pitchDev <= -NOD_MIN_DEPTH * RECOVERED_FRACTION) return false;
+                state = UPRIGHT;
+                if (peakRecoveryRate * SLOW_RECOVERY_FACTOR > -peakDropRate) return false;
+                recordNod(timestampMs);
+                return true;
+        }
+    }
+
+    private void push(long timestampMs) {
+        int slot = (int) (ringSeq % RING_CAPACITY);
+        ringTimes[slot] = timestampMs;
+        ringPitch[slot] = pitch;
+        ringSeq++;
+        if (ringSeq - ringStart > RING_CAPACITY) ringStart = ringSeq - RING_CAPACITY;
+    }
+
+    // First frame, or after a gap: filters start over at this pose; the learned neutral pose stays
+    private void restart(long timestampMs, float pitchDeg, float yawDeg) {
+        lastMs = timestampMs;
+        pitch = pitchDeg;
+        yaw = yawDeg;
+        pitchRate = 0f;
+        ringStart = ringSeq;
+        lagSeq = ringSeq;
+        push(timestampMs);
+        if (Float.isNaN(basePitch)) {
+            basePitch = pitchDeg;
+            baseYaw = yawDeg;
+        }
+        state = UPRIGHT;
+        lookAwaySinceMs = -1;
+    }
+
+    /** Call when the face is lost: the pose in progress no longer counts. The neutral pose and nod count stay. */
+    public void reset() {
+        lastMs = -1;
+        state = UPRIGHT;
+        lookAwaySinceMs = -1;
+    }
+
+    private void recordNod(long timestampMs) {
+        int slot = (nodHead + nodCount) % nodTimes.length;
+        if (nodCount == nodTimes.length) {
+            nodHead = (nodHead + 1) % nodTimes.length; // Overwrite the oldest
+        } else {
+            nodCount++;
+        }
+        nodTimes[slot] = timestampMs;
+    }
+
+    /** Number of nods within the nod window ending at nowMs. */
+    public int getNodCount(long nowMs) {
+        while (nodCount > 0 && nowMs - nodTimes[nodHead] > NOD_WINDOW_MS) {
+            nodHead = (nodHead + 1) % nodTimes.length;
+            nodCount--;
+        }
+        return nodCount;
+    }
+
+    /** Head has been down, well below neutral, for at least HEAD_DROP_HOLD_MS. */
+    public boolean isHeadDropped(long nowMs) {
+        return state == DOWN && nowMs - downSinceMs >= HEAD_DROP_HOLD_MS;
+    }
+
+    /** Head turned away from the road (yaw) for at least LOOK_AWAY_MS. */
+    public boolean isLookingAway(long nowMs) {
+        return lookAwaySinceMs != -1 && nowMs - lookAwaySinceMs >= LOOK_AWAY_MS;
+    }
+
+    /** Head is down past the nod depth (not necessarily for HEAD_DROP_HOLD_MS yet). */
+    public boolean isHeadDown() {
+        return state == DOWN;
+    }
+
+    /** A drop or turn is in progress; worth analyzing every frame. */
+    public boolean isMoving() {
+        return state != UPRIGHT || lookAwaySinceMs != -1;
+    }
+
+    public float getPitchRate() { return pitchRate; }
+    public float getPitchDeviation() { return Float.isNaN(basePitch) ? 0f : pitch - basePitch; }
+    public float getYawDeviation() { return Float.isNaN(baseYaw) ? 0f : yaw - baseYaw; }
+}
@@ -0,0 +1,62 @@
+package com.example.driversafetyapp;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Threshold check for accelerometer/gyroscope samples, kept free of Android types so it can
+ * run on any thread (and on the JVM). Magnitudes are compared squared, so the common
+ * below-threshold path costs no sqrt; the listener is only called on a hit, at most once
+ * per refractory period for each sensor.
+ */
+public class ImpactDetector {
+
+    public interface ImpactListener {
+        void onHighAcceleration(float magnitude, long timestampNs); // m/s^2
+        void onHighRotation(float magnitude, long timestampNs);     // rad/s
+    }
+
+    private static final long REFRACTORY_NS = TimeUnit.SECONDS.toNanos(1);
+
+    // Both squared thresholds in one immutable object, so a sample never sees half an update
+    private static final class Thresholds {
+        final float accelerationSq;
+        final float rotationSq;
+
+        Thresholds(float acceleration, float rotation) {
+            this.accelerationSq = acceleration * acceleration;
+            this.rotationSq = rotation * rotation;
+        }
+    }
+
+    private volatile Thresholds thresholds;
+    private final ImpactListener listener;
+
+    private long lastAccelHitNs = -REFRACTORY_NS;
+    private long lastGyroHitNs = -REFRACTORY_NS;
+
+    public ImpactDetector(float accelerationThreshold, float rotationThreshold, ImpactListener listener) {
+        this.thresholds = new Thresholds(accelerationThreshold, rotationThreshold);
+        this.listener = listener;
+    }
+
+    /** Takes effect from the next sample; safe from any thread. */
+    public void setThresholds(float accelerationThreshold, float rotationThreshold) {
+        this.thresholds = new Thresholds(accelerationThreshold, rotationThreshold);
+    }
+
+    public void onAccelerometer(long timestampNs, float x, float y, float z) {
+        float magnitudeSq = x * x + y * y + z * z;
+        if (magnitudeSq > thresholds.accelerationSq && timestampNs - lastAccelHitNs >= REFRACTORY_NS) {
+            lastAccelHitNs = timestampNs;
+            listener.onHighAcceleration((float) Math.sqrt(magnitudeSq), timestampNs);
+        }
+    }
+
+    public void onGyroscope(long timestampNs, float x, float y, float z) {
+        float magnitudeSq = x * x + y * y + z * z;
+        if (magnitudeSq > thresholds.rotationSq && timestampNs - lastGyroHitNs >= REFRACTORY_NS) {
+            lastGyroHitNs = timestampNs;
+            listener.onHighRotation((float) Math.sqrt(magnitudeSq), timestampNs);
+        }
+    }
+}
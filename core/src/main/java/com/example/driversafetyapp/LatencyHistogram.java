@@ -0,0 +1,87 @@
+package com.example.driversafetyapp;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free, fixed-memory latency histogram with HdrHistogram-style log-linear buckets:
+ * exact below 64 us, then 32 sub-buckets per power of two (~3% relative error) up to ~1 min.
+ * record() is a couple of atomic increments and never allocates; any thread may record or read.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BITS = 5;
+    private static final int SUB_COUNT = 1 << SUB_BITS;                   // 32
+    private static final long MAX_VALUE_US = TimeUnit.SECONDS.toMicros(60);
+    private static final int BUCKET_COUNT = indexOf(MAX_VALUE_US) + 1;
+
+    private final String name;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong totalCount = new AtomicLong();
+    private final AtomicLong totalUs = new AtomicLong();
+    private final AtomicLong maxUs = new AtomicLong();
+
+    public LatencyHistogram(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void recordNanos(long nanos) {
+        if (nanos < 0) return; // Clock went backwards or stages out of order, ignore
+        long us = Math.min(nanos / 1000, MAX_VALUE_US);
+        counts.incrementAndGet(indexOf(us));
+        totalCount.incrementAndGet();
+        totalUs.addAndGet(us);
+        long max;
+        while (us > (max = maxUs.get()) && !maxUs.compareAndSet(max, us)) {
+            // Retry until we either raise the max or someone else raised it past us
+        }
+    }
+
+    static int indexOf(long us) {
+        if (us < 2 * SUB_COUNT) return (int) us; // Linear range, 1 us resolution
+        int msb = 63 - Long.numberOfLeadingZeros(us);
+        int shift = msb - SUB_BITS;
+        return (shift + 1) * SUB_COUNT + (int) ((us >>> shift) - SUB_COUNT);
+    }
+
+    // Highest value (us) that maps to this bucket
+    static long upperBoundUs(int index) {
+        if (index < 2 * SUB_COUNT) return index;
+        int shift = index / SUB_COUNT - 1;
+        long sub = index % SUB_COUNT + SUB_COUNT;
+        return ((sub + 1) << shift) - 1;
+    }
+
+    /** Value at the given percentile (0..100) in microseconds, 0 if empty. */
+    public long percentileUs(double percentile) {
+        long total = totalCount.get();
+        if (total == 0) return 0;
+        long target = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts.get(i);
+            if (seen >= target) return Math.min(upperBoundUs(i), maxUs.get());
+        }
+        return maxUs.get();
+    }
+
+    public long getCount() { return totalCount.get(); }
+    public long getMaxUs() { return maxUs.get(); }
+
+    public long getMeanUs() {
+        long n = totalCount.get();
+        return n == 0 ? 0 : totalUs.get() / n;
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) counts.set(i, 0);
+        totalCount.set(0);
+        totalUs.set(0);
+        maxUs.set(0);
+    }
+}
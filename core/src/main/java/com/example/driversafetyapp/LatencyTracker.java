@@ -0,0 +1,131 @@
+package com.example.driversafetyapp;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+
+/**
+ * Per-stage latency from camera frame to fatigue alarm, one LatencyHistogram per stage.
+ * Per-frame stages are recorded by FatigueDetector; the alert stages follow the frame that
+ * raised fatigue through MainActivity's main-thread post to the alarm start.
+ */
+public class LatencyTracker {
+
+    public enum Stage {
+        FRAME_AGE("Frame timestamp -> analyze()"),
+        PREFILTER("Pre-filter gate (luma/contrast/change)"),
+        PREPARE("analyze() -> faceDetector.process"),
+        INFERENCE("process -> ML Kit success callback"),
+        INFERENCE_ACCURATE("process -> callback, accurate tier"),
+        PROCESS_FACE("Callback -> fatigue logic done"),
+        MAIN_THREAD_POST("onFatigueDetected -> main-thread run"),
+        ALARM_START("Main-thread run -> playFatigueAlarm done"),
+        END_TO_END("analyze() of triggering frame -> alarm playing"),
+        ALARM_AUDIBLE("onFatigueDetected -> first alarm frame played out");
+
+        public final String label;
+
+        Stage(String label) {
+            this.label = label;
+        }
+    }
+
+    private final LatencyHistogram[] histograms = new LatencyHistogram[Stage.values().length];
+
+    // Correlates the frame being processed with the alert it may raise
+    private volatile long currentFrameStartNs = -1;
+    private volatile long signalFrameStartNs = -1;
+    private volatile long signalNs = -1;
+    private volatile long postRunNs = -1;
+    private volatile long alarmSignalNs = -1; // Signal of the alarm that was last started, until it is heard
+
+    public LatencyTracker() {
+        for (Stage s : Stage.values()) histograms[s.ordinal()] = new LatencyHistogram(s.name());
+    }
+
+    public void record(Stage stage, long nanos) {
+        histograms[stage.ordinal()].recordNanos(nanos);
+    }
+
+    public LatencyHistogram get(Stage stage) {
+        return histograms[stage.ordinal()];
+    }
+
+    // --- Alert path correlation (System.nanoTime() clock throughout) ---
+    /** Called before the fatigue logic runs on a frame, with that frame's analyze() entry time. */
+    public void beginFrame(long analyzeStartNs) {
+        currentFrameStartNs = analyzeStartNs;
+    }
+
+    /** Called from the listener callback when fatigue is raised (on the detection thread). */
+    public void markFatigueSignal() {
+        signalFrameStartNs = currentFrameStartNs;
+        signalNs = System.nanoTime();
+    }
+
+    /** Called first thing in the main-thread runnable that handles the fatigue signal. */
+    public void markMainThreadRun() {
+        long signal = signalNs;
+        if (signal < 0) return;
+        postRunNs = System.nanoTime();
+        record(Stage.MAIN_THREAD_POST, postRunNs - signal);
+    }
+
+    /** Called once the alarm has been started. */
+    public void markAlarmStarted() {
+        long run = postRunNs;
+        long frameStart = signalFrameStartNs;
+        if (run < 0) return;
+        long now = System.nanoTime();
+        record(Stage.ALARM_START, now - run);
+        if (frameStart >= 0) record(Stage.END_TO_END, now - frameStart);
+        alarmSignalNs = signalNs;
+        signalNs = -1;
+        postRunNs = -1;
+        signalFrameStartNs = -1;
+    }
+
+    /** Called with the time the started alarm's first frame was played out (from the audio timestamp). */
+    public void markAlarmAudible(long audibleNs) {
+        long signal = alarmSignalNs;
+        if (signal < 0) return;
+        record(Stage.ALARM_AUDIBLE, audibleNs - signal);
+        alarmSignalNs = -1;
+    }
+
+    // --- Reporting ---
+    public String formatSummary() {
+        StringBuilder sb = new StringBuilder();
+        for (Stage s : Stage.values()) {
+            LatencyHistogram h = get(s);
+            sb.append(s.label).append('\n');
+            if (h.getCount() == 0) {
+                sb.append("  no samples\n");
+                continue;
+            }
+            sb.append(String.format(Locale.US, "  p50 %s  p95 %s  p99 %s  max %s  (n=%d)\n",
+                    formatUs(h.percentileUs(50)), formatUs(h.percentileUs(95)),
+                    formatUs(h.percentileUs(99)), formatUs(h.getMaxUs()), h.getCount()));
+        }
+        return sb.toString();
+    }
+
+    /** Machine-readable dump: one CSV line per stage, values in microseconds. */
+    public void dump(Writer out) throws IOException {
+        out.write("stage,count,mean_us,p50_us,p90_us,p95_us,p99_us,p999_us,max_us\n");
+        for (Stage s : Stage.values()) {
+            LatencyHistogram h = get(s);
+            out.write(String.format(Locale.US, "%s,%d,%d,%d,%d,%d,%d,%d,%d\n", s.name(), h.getCount(), h.getMeanUs(),
+                    h.percentileUs(50), h.percentileUs(90), h.percentileUs(95), h.percentileUs(99),
+                    h.percentileUs(99.9), h.getMaxUs()));
+        }
+    }
+
+    public void reset() {
+        for (LatencyHistogram h : histograms) h.reset();
+    }
+
+    private static String formatUs(long us) {
+        return us >= 10_000 ? (us / 1000) + "ms" : String.format(Locale.US, "%.1fms", us / 1000.0);
+    }
+}
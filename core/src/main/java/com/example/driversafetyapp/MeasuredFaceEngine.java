@@ -0,0 +1,106 @@
+package com.example.driversafetyapp;
+
+import java.util.Locale;
+import java.util.function.LongSupplier;
+
+/**
+ * Wraps any FaceAnalysisEngine and measures it the same way whichever it is: latency from
+ * analyze() to the callback, per tier, and bytes allocated over that span. Allocation comes
+ * from an injected counter (the platform's, or a test's) and is skipped without one; for engines
+ * that work on their own threads the counter must be process-wide. Adds no allocation itself.
+ */
+public class MeasuredFaceEngine implements FaceAnalysisEngine, FaceAnalysisEngine.Callback {
+
+    private final FaceAnalysisEngine delegate;
+    private final LongSupplier allocatedBytes; // Null = don't measure allocation
+    private final LatencyHistogram[] latency = new LatencyHistogram[Tier.values().length];
+    private final long[] allocatedTotal = new long[Tier.values().length];
+    private final long[] allocatedCount = new long[Tier.values().length];
+    private volatile long errors;
+
+    // The one analysis in flight (camera thread writes, callback thread reads)
+    private volatile Callback pending;
+    private volatile Tier pendingTier;
+    private volatile long startNs;
+    private volatile long startAllocated;
+
+    public MeasuredFaceEngine(FaceAnalysisEngine delegate, LongSupplier allocatedBytes) {
+        this.delegate = delegate;
+        this.allocatedBytes = allocatedBytes;
+        for (Tier tier : Tier.values()) latency[tier.ordinal()] = new LatencyHistogram(delegate.getName() + "_" + tier);
+    }
+
+    /** Factory that wraps whatever the given factory creates. */
+    public static Factory wrap(Factory factory, LongSupplier allocatedBytes) {
+        return callbackExecutor -> new MeasuredFaceEngine(factory.create(callbackExecutor), allocatedBytes);
+    }
+
+    @Override public String getName() { return delegate.getName(); }
+    @Override public boolean hasAccurateTier() { return delegate.hasAccurateTier(); }
+
+    @Override
+    public void analyze(AnalysisFrame frame, Tier tier, Callback callback) {
+        pending = callback;
+        pendingTier = tier;
+        startAllocated = allocatedBytes != null ? allocatedBytes.getAsLong() : 0;
+        startNs = System.nanoTime();
+        delegate.analyze(frame, tier, this);
+    }
+
+    @Override
+    public void onResult(FaceResults results) {
+        Callback callback = finish();
+        callback.onResult(results);
+    }
+
+    @Override
+    public void onError(Exception error) {
+        errors++;
+        Callback callback = finish();
+        callback.onError(error);
+    }
+
+    private Callback finish() {
+        long elapsedNs = System.nanoTime() - startNs;
+        int t = pendingTier.ordinal();
+        latency[t].recordNanos(elapsedNs);
+        if (allocatedBytes != null) {
+            synchronized (allocatedTotal) {
+                allocatedTotal[t] += allocatedBytes.getAsLong() - startAllocated;
+                allocatedCount[t]++;
+            }
+        }
+        return pending;
+    }
+
+    @Override public void prewarm(Runnable onWarm) { delegate.prewarm(onWarm); }
+    @Override public void close() { delegate.close(); }
+
+    public LatencyHistogram getLatency(Tier tier) {
+        return latency[tier.ordinal()];
+    }
+
+    /** Mean bytes allocated per analysis on this tier, or -1 if not measured. */
+    public long getMeanAllocatedBytes(Tier tier) {
+        synchronized (allocatedTotal) {
+            long n = allocatedCount[tier.ordinal()];
+            return n == 0 ? -1 : allocatedTotal[tier.ordinal()] / n;
+        }
+    }
+
+    public long getErrors() { return errors; }
+
+    public String formatSummary() {
+        StringBuilder sb = new StringBuilder("Engine ").append(delegate.getName()).append(':');
+        for (Tier tier : Tier.values()) {
+            LatencyHistogram h = latency[tier.ordinal()];
+            if (h.getCount() == 0) continue;
+            long alloc = getMeanAllocatedBytes(tier);
+            sb.append(String.format(Locale.US, "\n  %-8s n=%-6d p50=%.1f ms p99=%.1f ms max=%.1f ms alloc=%s",
+                    tier, h.getCount(), h.percentileUs(50) / 1000.0, h.percentileUs(99) / 1000.0, h.getMaxUs() / 1000.0,
+                    alloc < 0 ? "n/a" : String.format(Locale.US, "%.1f KB", alloc / 1024.0)));
+        }
+        if (errors > 0) sb.append("\n  errors ").append(errors);
+        return sb.toString();
+    }
+}
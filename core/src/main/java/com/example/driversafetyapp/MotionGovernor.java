@@ -0,0 +1,201 @@
+package com.example.driversafetyapp;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Classifies the vehicle as PARKED, IDLING or DRIVING from GPS speed and accelerometer
+ * variance, and picks a power profile (camera analysis rate, sensor rate/batching, location
+ * interval/priority) for the current state and thermal level.
+ * Upgrades towards DRIVING apply at once; downgrades only after the calmer state has held for
+ * a dwell time, so a red light doesn't flap the camera and sensors.
+ * Inputs arrive from the sensor and location threads; the listener is called outside the lock.
+ */
+public class MotionGovernor {
+
+    public enum MotionState { PARKED, IDLING, DRIVING }
+    public enum ThermalLevel { NORMAL, MODERATE, SEVERE }
+    public enum LocationPower { HIGH_ACCURACY, BALANCED, LOW_POWER }
+
+    /** Everything the pipeline needs to reconfigure itself for one state. */
+    public static class Profile {
+        public final MotionState state;
+        public final ThermalLevel thermal;
+        public final FrameRateScheduler.Config camera;
+        public final int sensorPeriodUs;
+        public final int sensorMaxLatencyUs;
+        public final long locationIntervalMs;
+        public final LocationPower locationPower;
+
+        Profile(MotionState state, ThermalLevel thermal, FrameRateScheduler.Config camera,
+                int sensorPeriodUs, int sensorMaxLatencyUs, long locationIntervalMs, LocationPower locationPower) {
+            this.state = state;
+            this.thermal = thermal;
+            this.camera = camera;
+            this.sensorPeriodUs = sensorPeriodUs;
+            this.sensorMaxLatencyUs = sensorMaxLatencyUs;
+            this.locationIntervalMs = locationIntervalMs;
+            this.locationPower = locationPower;
+        }
+
+        @Override
+        public String toString() {
+            return state + "/" + thermal + " camera=" + camera.steadyFps + "-" + (camera.activeFps <= 0 ? "max" : camera.activeFps) + "fps"
+                    + " sensors=" + sensorPeriodUs + "us/" + sensorMaxLatencyUs + "us"
+                    + " location=" + locationIntervalMs + "ms " + locationPower;
+        }
+    }
+
+    public interface Listener {
+        void onProfileChanged(Profile profile);
+    }
+
+    // --- Classification (NEEDS CALIBRATION!) ---
+    private static final float DRIVING_SPEED_MPS = 3.0f;       // ~11 km/h
+    private static final float STOPPED_SPEED_MPS = 1.0f;
+    private static final float DRIVING_ACCEL_STD = 0.8f;       // m/s^2; road/acceleration noise, used when GPS speed is stale
+    private static final float IDLING_ACCEL_STD = 0.05f;       // m/s^2; engine vibration floor
+    private static final long SPEED_STALE_MS = 30_000;         // Ignore GPS speed older than this
+    private static final long IDLING_DWELL_MS = 20_000;        // DRIVING -> IDLING
+    private static final long PARKED_DWELL_MS = 180_000;       // IDLING -> PARKED
+    private static final long ACCEL_VARIANCE_TAU_MS = 2_000;   // Time constant of the running variance
+    private static final float GRAVITY = 9.80665f;
+    private static final int SENSOR_PERIOD_US = 20_000;        // Same as SensorPipeline's defaults
+    private static final int SENSOR_MAX_LATENCY_US = 200_000;
+    // ---
+
+    private final Listener listener;
+
+    private MotionState state = MotionState.DRIVING; // Assume the worst until we know better
+    private ThermalLevel thermal = ThermalLevel.NORMAL;
+    private MotionState candidate = MotionState.DRIVING;
+    private long candidateSinceMs = -1;
+
+    private float speedMps = -1;           // -1 = no speed yet
+    private long speedAtMs = -1;
+    private float accelMean = GRAVITY;     // Exponentially weighted mean/variance of |a|
+    private float accelVariance = 0f;
+    private long lastAccelMs = -1;
+
+    public MotionGovernor(Listener listener) {
+        this.listener = listener;
+    }
+
+    // --- Inputs (timestamps on the elapsedRealtime clock, like SensorEvent and Location) ---
+    public void onAccelerometer(long timestampNs, float x, float y, float z) {
+        long nowMs = TimeUnit.NANOSECONDS.toMillis(timestampNs);
+        float magnitude = (float) Math.sqrt(x * x + y * y + z * z);
+        Profile changed;
+        synchronized (this) {
+            long dt = lastAccelMs < 0 ? 0 : Math.max(0, nowMs - lastAccelMs);
+            lastAccelMs = nowMs;
+            float alpha = Math.min(1f, (float) dt / ACCEL_VARIANCE_TAU_MS);
+            float delta = magnitude - accelMean;
+            accelMean += alpha * delta;
+            accelVariance = (1f - alpha) * (accelVariance + alpha * delta * delta);
+            changed = evaluate(nowMs);
+        }
+        if (changed != null) listener.onProfileChanged(changed);
+    }
+
+    public void onLocation(long elapsedRealtimeNs, boolean hasSpeed, float speedMps) {
+        if (!hasSpeed) return;
+        long nowMs = TimeUnit.NANOSECONDS.toMillis(elapsedRealtimeNs);
+        Profile changed;
+        synchronized (this) {
+            this.speedMps = speedMps;
+            this.speedAtMs = nowMs;
+            changed = evaluate(nowMs);
+        }
+        if (changed != null) listener.onProfileChanged(changed);
+    }
+
+    public void setThermalLevel(ThermalLevel level) {
+        Profile changed = null;
+        synchronized (this) {
+            if (thermal != level) {
+                thermal = level;
+                changed = profileFor(state, thermal);
+            }
+        }
+        if (changed != null) listener.onProfileChanged(changed);
+    }
+
+    // Returns the new profile if the state changed, else null
+    private Profile evaluate(long nowMs) {
+        boolean speedFresh = speedAtMs >= 0 && nowMs - speedAtMs <= SPEED_STALE_MS;
+        float accelStd = (float) Math.sqrt(accelVariance);
+        MotionState observed;
+        if (speedFresh && speedMps >= DRIVING_SPEED_MPS) {
+            observed = MotionState.DRIVING;
+        } else if (speedFresh && speedMps < STOPPED_SPEED_MPS) {
+            observed = accelStd >= IDLING_ACCEL_STD ? MotionState.IDLING : MotionState.PARKED;
+        } else if (!speedFresh && accelStd >= DRIVING_ACCEL_STD) {
+            observed = MotionState.DRIVING; // No GPS (tunnel, garage): a rough ride means we're moving
+        } else if (!speedFresh && accelStd < IDLING_ACCEL_STD) {
+            observed = MotionState.PARKED;
+        } else {
+            observed = state; // Crawling or ambiguous: keep what we have
+        }
+
+        if (observed != candidate) {
+            candidate = observed;
+            candidateSinceMs = nowMs;
+        }
+        if (candidate == state) return null;
+        if (candidate.ordinal() < state.ordinal()) {
+            // Calming down: wait out the dwell for the target state
+            long dwell = candidate == MotionState.PARKED ? PARKED_DWELL_MS : IDLING_DWELL_MS;
+            if (nowMs - candidateSinceMs < dwell) return null;
+        }
+        state = candidate;
+        return profileFor(state, thermal);
+    }
+
+    // --- Profiles ---
+    static Profile profileFor(MotionState state, ThermalLevel thermal) {
+        float steadyFps, activeFps, noFaceMinFps;
+        int periodUs, latencyUs;
+        long locationMs;
+        LocationPower locationPower;
+        switch (state) {
+            case PARKED:
+                // Nobody is driving; keep a slow watch so we notice the trip starting
+                steadyFps = 1f; activeFps = 5f; noFaceMinFps = 0.25f;
+                periodUs = 100_000; latencyUs = 2_000_000;
+                locationMs = 60_000; locationPower = LocationPower.LOW_POWER;
+                break;
+            case IDLING:
+                // Stopped in traffic: a microsleep still matters, and rear-end impacts happen here
+                steadyFps = 2f; activeFps = 0f; noFaceMinFps = 0.5f;
+                periodUs = SENSOR_PERIOD_US; latencyUs = 500_000;
+                locationMs = 20_000; locationPower = LocationPower.BALANCED;
+                break;
+            case DRIVING:
+            default:
+                FrameRateScheduler.Config d = FrameRateScheduler.Config.defaults();
+                steadyFps = d.steadyFps; activeFps = d.activeFps; noFaceMinFps = d.noFaceMinFps;
+                periodUs = SENSOR_PERIOD_US; latencyUs = SENSOR_MAX_LATENCY_US;
+                locationMs = 10_000; locationPower = LocationPower.HIGH_ACCURACY;
+                break;
+        }
+        // A hot device throttles anyway; shed analysis load before the OS does it for us
+        if (thermal == ThermalLevel.MODERATE) {
+            steadyFps = Math.min(steadyFps, 3f);
+            activeFps = activeFps <= 0f ? 15f : Math.min(activeFps, 15f);
+        } else if (thermal == ThermalLevel.SEVERE) {
+            steadyFps = Math.min(steadyFps, 2f);
+            activeFps = activeFps <= 0f ? 8f : Math.min(activeFps, 8f);
+            if (locationPower == LocationPower.HIGH_ACCURACY) locationPower = LocationPower.BALANCED;
+        }
+        FrameRateScheduler.Config camera = new FrameRateScheduler.Config(steadyFps, activeFps, noFaceMinFps, 5, 3000);
+        return new Profile(state, thermal, camera, periodUs, latencyUs, locationMs, locationPower);
+    }
+
+    public synchronized Profile getProfile() {
+        return profileFor(state, thermal);
+    }
+
+    public synchronized MotionState getState() {
+        return state;
+    }
+}
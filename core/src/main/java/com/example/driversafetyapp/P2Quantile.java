@@ -0,0 +1,91 @@
+package com.example.driversafetyapp;
+
+import java.util.Arrays;
+
+/**
+ * Streaming quantile estimate with the P² algorithm (Jain & Chlamtac): five markers whose
+ * heights are nudged along a piecewise-parabolic fit as samples arrive. Constant memory, O(1)
+ * per add() and no allocation, so it can sit on the per-frame path. Not thread-safe.
+ */
+public class P2Quantile {
+
+    private final double p;
+    private final double[] heights = new double[5];
+    private final int[] positions = new int[5];      // Actual marker positions (0-based)
+    private final double[] desired = new double[5];  // Desired marker positions
+    private final double[] increments = new double[5];
+    private int count = 0;
+
+    public P2Quantile(double p) {
+        if (p <= 0 || p >= 1) throw new IllegalArgumentException("p must be in (0, 1): " + p);
+        this.p = p;
+        reset();
+    }
+
+    public void reset() {
+        count = 0;
+        for (int i = 0; i < 5; i++) positions[i] = i;
+        desired[0] = 0; desired[1] = 2 * p; desired[2] = 4 * p; desired[3] = 2 + 2 * p; desired[4] = 4;
+        increments[0] = 0; increments[1] = p / 2; increments[2] = p; increments[3] = (1 + p) / 2; increments[4] = 1;
+    }
+
+    public void add(double x) {
+        if (count < 5) {
+            heights[count++] = x;
+            if (count == 5) Arrays.sort(heights);
+            return;
+        }
+        // Find the cell holding x, widening the outer markers if needed
+        int k;
+        if (x < heights[0]) {
+            heights[0] = x;
+            k = 0;
+        } else if (x >= heights[4]) {
+            heights[4] = x;
+            k = 3;
+        } else {
+            k = 0;
+            while (x >= heights[k + 1]) k++;
+        }
+        for (int i = k + 1; i < 5; i++) positions[i]++;
+        for (int i = 0; i < 5; i++) desired[i] += increments[i];
+        count++;
+
+        // Move the middle markers towards their desired positions, one step at a time
+        for (int i = 1; i <= 3; i++) {
+            double d = desired[i] - positions[i];
+            if ((d >= 1 && positions[i + 1] - positions[i] > 1) || (d <= -1 && positions[i - 1] - positions[i] < -1)) {
+                int s = d > 0 ? 1 : -1;
+                double candidate = parabolic(i, s);
+                heights[i] = heights[i - 1] < candidate && candidate < heights[i + 1] ? candidate : linear(i, s);
+                positions[i] += s;
+            }
+        }
+    }
+
+    private double parabolic(int i, int s) {
+        double left = positions[i] - positions[i - 1];
+        double right = positions[i + 1] - positions[i];
+        return heights[i] + s / (double) (positions[i + 1] - positions[i - 1])
+                * ((left + s) * (heights[i + 1] - heights[i]) / right + (right - s) * (heights[i] - heights[i - 1]) / left);
+    }
+
+    private double linear(int i, int s) {
+        return heights[i] + s * (heights[i + s] - heights[i]) / (positions[i + s] - positions[i]);
+    }
+
+    /** Current estimate; exact for fewer than five samples, NaN when empty. */
+    public double estimate() {
+        if (count == 0) return Double.NaN;
+        if (count < 5) {
+            double[] sorted = Arrays.copyOf(heights, count);
+            Arrays.sort(sorted);
+            return sorted[(int) Math.round(p * (count - 1))];
+        }
+        return heights[2];
+    }
+
+    public int getCount() {
+        return count;
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.driversafetyapp;
+
+/**
+ * Rolling PERCLOS (percentage of eye closure) over a time window.
+ * Samples live in a fixed primitive ring buffer; each sample is weighted by the time until the
+ * next one arrives, so the result does not depend on the analysis frame rate. add() is O(1)
+ * amortized and allocates nothing. Not thread-safe, feed it from a single thread.
+ */
+public class PerclosWindow {
+
+    private final long windowMs;
+    private final long maxSampleGapMs; // Caps the weight of a sample followed by a dropout
+
+    // --- Ring buffer (struct of arrays) ---
+    private final long[] timestamps;
+    private final float[] leftProbs;
+    private final float[] rightProbs;
+    private final boolean[] closedFlags;
+    private final int[] durations; // Filled in when the following sample arrives
+    private int head = 0; // Oldest sample
+    private int size = 0;
+
+    // Running sums over the completed samples currently in the window
+    private long totalMs = 0;
+    private long closedMs = 0;
+
+    public PerclosWindow(long windowMs, long maxSampleGapMs, int capacity) {
+        this.windowMs = windowMs;
+        this.maxSampleGapMs = maxSampleGapMs;
+        timestamps = new long[capacity];
+        leftProbs = new float[capacity];
+        rightProbs = new float[capacity];
+        closedFlags = new boolean[capacity];
+        durations = new int[capacity];
+    }
+
+    /** Adds a sample. Timestamps must not go backwards; NaN probabilities mean "unknown". */
+    public void add(long timestampMs, float leftProb, float rightProb, boolean closed) {
+        if (size > 0) {
+            int last = index(size - 1);
+            long dt = timestampMs - timestamps[last];
+            if (dt < 0) return; // Out of order, drop
+            int weight = (int) Math.min(dt, maxSampleGapMs);
+            durations[last] = weight;
+            totalMs += weight;
+            if (closedFlags[last]) closedMs += weight;
+        }
+        if (size == timestamps.length) evictOldest(); // Buffer full, window shrinks a little
+
+        int slot = index(size);
+        timestamps[slot] = timestampMs;
+        leftProbs[slot] = leftProb;
+        rightProbs[slot] = rightProb;
+        closedFlags[slot] = closed;
+        durations[slot] = 0;
+        size++;
+
+        // Drop completed samples that ended before the window start
+        long windowStart = timestampMs - windowMs;
+        while (size > 1 && timestamps[head] + durations[head] <= windowStart) {
+            evictOldest();
+        }
+    }
+
+    private void evictOldest() {
+        totalMs -= durations[head];
+        if (closedFlags[head]) closedMs -= durations[head];
+        head = (head + 1) % timestamps.length;
+        size--;
+    }
+
+    private int index(int offset) {
+        return (head + offset) % timestamps.length;
+    }
+
+    public void clear() {
+        head = 0; size = 0; totalMs = 0; closedMs = 0;
+    }
+
+    /** Fraction of covered time the eyes were closed, 0..1 (0 when nothing is covered yet). */
+    public float getPerclos() {
+        return totalMs > 0 ? (float) closedMs / totalMs : 0f;
+    }
+
+    /** How many milliseconds of the window are actually covered by samples. */
+    public long getCoverageMs() { return totalMs; }
+    public long getWindowMs() { return windowMs; }
+    public int size() { return size; }
+
+    // Oldest-first access for recorders/debugging
+    public long timestampAt(int i) { return timestamps[index(i)]; }
+    public float leftProbAt(int i) { return leftProbs[index(i)]; }
+    public float rightProbAt(int i) { return rightProbs[index(i)]; }
+    public boolean closedAt(int i) { return closedFlags[index(i)]; }
+}
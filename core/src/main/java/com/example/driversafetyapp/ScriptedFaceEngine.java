@@ -0,0 +1,91 @@
+package com.example.driversafetyapp;
+
+import java.util.concurrent.Executor;
+
+/**
+ * FaceAnalysisEngine that runs no model: a Script decides what each frame contains. Used by JVM
+ * tests to drive the pipeline with exact eye/head/mouth values, and selectable on a device
+ * ("synthetic") to measure the pipeline's own cost with inference taken out.
+ * Results are filled into one reused FaceResults; no per-frame allocation.
+ */
+public class ScriptedFaceEngine implements FaceAnalysisEngine {
+
+    /** Fills results (already cleared) with the faces for this frame, in region coordinates. */
+    public interface Script {
+        void fill(AnalysisFrame frame, Tier tier, FaceResults results);
+    }
+
+    /** One steady, centred driver with open eyes, landmarks on every pass. */
+    public static final Script STEADY_FACE = (frame, tier, results) -> {
+        float w = frame.getRegionWidth(), h = frame.getRegionHeight();
+        if (frame.rotationDegrees % 180 != 0) { float swap = w; w = h; h = swap; } // Upright region
+        float side = Math.min(w, h) * 0.5f;
+        float left = (w - side) / 2, top = (h - side) / 2;
+        int i = results.add(left, top, left + side, top + side);
+        results.trackingIds[i] = 1;
+        results.leftEyeOpen[i] = 0.95f;
+        results.rightEyeOpen[i] = 0.95f;
+        results.eulerX[i] = 0f;
+        results.eulerY[i] = 0f;
+        results.eulerZ[i] = 0f;
+        int m = i * YawnDetector.MOUTH_POINT_COUNT;
+        results.mouth[m + YawnDetector.MOUTH_LEFT_X] = left + side * 0.3f;
+        results.mouth[m + YawnDetector.MOUTH_LEFT_Y] = top + side * 0.75f;
+        results.mouth[m + YawnDetector.MOUTH_RIGHT_X] = left + side * 0.7f;
+        results.mouth[m + YawnDetector.MOUTH_RIGHT_Y] = top + side * 0.75f;
+        results.mouth[m + YawnDetector.MOUTH_BOTTOM_X] = left + side * 0.5f;
+        results.mouth[m + YawnDetector.MOUTH_BOTTOM_Y] = top + side * 0.82f;
+        results.mouthValid[i] = true;
+    };
+
+    private final Executor callbackExecutor;
+    private final Script script;
+    private final FaceResults results = new FaceResults(); // Callback thread only
+    private final Runnable deliver = this::deliver; // Preallocated; one analysis in flight
+    private volatile AnalysisFrame pendingFrame;
+    private volatile Tier pendingTier;
+    private volatile Callback pending;
+    private volatile boolean closed = false;
+
+    public ScriptedFaceEngine(Executor callbackExecutor, Script script) {
+        this.callbackExecutor = callbackExecutor;
+        this.script = script;
+    }
+
+    public static Factory factory(Script script) {
+        return callbackExecutor -> new ScriptedFaceEngine(callbackExecutor, script);
+    }
+
+    @Override public String getName() { return ENGINE_SYNTHETIC; }
+    @Override public boolean hasAccurateTier() { return false; } // Same answer on both tiers; no cascade
+
+    @Override
+    public void analyze(AnalysisFrame frame, Tier tier, Callback callback) {
+        if (closed) {
+            callbackExecutor.execute(() -> callback.onError(new IllegalStateException("Engine closed")));
+            return;
+        }
+        pendingFrame = frame;
+        pendingTier = tier;
+        pending = callback;
+        callbackExecutor.execute(deliver);
+    }
+
+    // Fills on the callback thread, like a real engine's continuation, so results are never
+    // rewritten by the next frame while the last callback is still reading them
+    private void deliver() {
+        results.clear(true);
+        script.fill(pendingFrame, pendingTier, results);
+        pending.onResult(results);
+    }
+
+    @Override
+    public void prewarm(Runnable onWarm) {
+        if (onWarm != null) callbackExecutor.execute(onWarm);
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+    }
+}
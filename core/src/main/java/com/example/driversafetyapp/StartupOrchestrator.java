@@ -0,0 +1,91 @@
+package com.example.driversafetyapp;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs startup initializers on a small background pool, each as soon as the initializers it
+ * depends on have finished, and records every one as a span in the StartupTimeline.
+ * A failing initializer is logged to the timeline and doesn't block its dependents (callers
+ * already treat missing components as optional). Deferred tasks run only after everything
+ * else, so they stay off the path to the first analyzed frame.
+ */
+public class StartupOrchestrator {
+
+    public interface ErrorListener {
+        void onInitializerFailed(String name, Throwable error);
+    }
+
+    private static final int POOL_SIZE = 3;
+
+    private final StartupTimeline timeline;
+    private final ErrorListener errorListener;
+    private final ExecutorService pool;
+    private final Map<String, CompletableFuture<Void>> tasks = new HashMap<>();
+    private final List<Runnable> deferred = new ArrayList<>();
+    private final List<String> deferredNames = new ArrayList<>();
+    private CompletableFuture<Void> all;
+
+    public StartupOrchestrator(StartupTimeline timeline, ErrorListener errorListener) {
+        this.timeline = timeline;
+        this.errorListener = errorListener;
+        AtomicInteger n = new AtomicInteger();
+        this.pool = Executors.newFixedThreadPool(POOL_SIZE, r -> {
+            Thread t = new Thread(r, "startup-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /** Schedules task right away (or once its dependencies are done). Call from one thread. */
+    public StartupOrchestrator add(String name, Runnable task, String... dependsOn) {
+        if (all != null) throw new IllegalStateException("Already started");
+        CompletableFuture<?>[] deps = new CompletableFuture<?>[dependsOn.length];
+        for (int i = 0; i < dependsOn.length; i++) {
+            deps[i] = tasks.get(dependsOn[i]);
+            if (deps[i] == null) throw new IllegalArgumentException("Unknown dependency " + dependsOn[i] + " of " + name);
+        }
+        tasks.put(name, CompletableFuture.allOf(deps).thenRunAsync(() -> run(name, task), pool));
+        return this;
+    }
+
+    /** Runs after every add()ed task has finished and after the whenDone() callback was issued. */
+    public StartupOrchestrator addDeferred(String name, Runnable task) {
+        deferredNames.add(name);
+        deferred.add(task);
+        return this;
+    }
+
+    /** Calls onDone on callbackExecutor once every add()ed task has finished, then starts the deferred ones. */
+    public void whenDone(Executor callbackExecutor, Runnable onDone) {
+        all = CompletableFuture.allOf(tasks.values().toArray(new CompletableFuture<?>[0]));
+        all.thenRunAsync(onDone, callbackExecutor)
+                .whenComplete((v, e) -> {
+                    if (e != null && errorListener != null) errorListener.onInitializerFailed("whenDone", e);
+                    for (int i = 0; i < deferred.size(); i++) {
+                        String name = deferredNames.get(i);
+                        Runnable task = deferred.get(i);
+                        pool.execute(() -> run(name, task));
+                    }
+                    pool.shutdown(); // Lets the deferred tasks finish, then the threads exit
+                });
+    }
+
+    private void run(String name, Runnable task) {
+        long startNs = System.nanoTime();
+        try {
+            task.run();
+            timeline.span(name, startNs, System.nanoTime());
+        } catch (Throwable e) { // Errors too (e.g. UnsatisfiedLinkError): a throw here would fail all and skip onDone
+            timeline.span(name + " FAILED", startNs, System.nanoTime());
+            if (errorListener != null) errorListener.onInitializerFailed(name, e);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.driversafetyapp;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cold-start timeline: named milestones and initializer spans, in ms since process start.
+ * Marks can come from any thread. The timeline is complete when FIRST_DETECTION is marked
+ * (the first analyzed camera frame has gone through the fatigue logic); the listener is then
+ * called once, on the marking thread.
+ */
+public class StartupTimeline {
+
+    public static final String FIRST_DETECTION = "first_detection";
+
+    public interface Listener {
+        void onTimelineComplete(StartupTimeline timeline);
+    }
+
+    public static class Entry {
+        public final String name;
+        public final long startMs; // Since process start; equals endMs for point marks
+        public final long endMs;
+        public final String thread;
+
+        Entry(String name, long startMs, long endMs, String thread) {
+            this.name = name;
+            this.startMs = startMs;
+            this.endMs = endMs;
+            this.thread = thread;
+        }
+    }
+
+    private final long originNs; // System.nanoTime() at process start
+    private final List<Entry> entries = new ArrayList<>();
+    private volatile Listener listener;
+    private boolean complete = false;
+
+    /** @param originNs System.nanoTime() value corresponding to process start */
+    public StartupTimeline(long originNs) {
+        this.originNs = originNs;
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    public void mark(String name) {
+        long nowMs = sinceOriginMs(System.nanoTime());
+        add(new Entry(name, nowMs, nowMs, Thread.currentThread().getName()));
+    }
+
+    public void span(String name, long startNs, long endNs) {
+        add(new Entry(name, sinceOriginMs(startNs), sinceOriginMs(endNs), Thread.currentThread().getName()));
+    }
+
+    private void add(Entry entry) {
+        boolean completedNow;
+        synchronized (this) {
+            entries.add(entry);
+            completedNow = !complete && FIRST_DETECTION.equals(entry.name);
+            if (completedNow) complete = true;
+        }
+        Listener l = listener;
+        if (completedNow && l != null) l.onTimelineComplete(this);
+    }
+
+    private long sinceOriginMs(long ns) {
+        return TimeUnit.NANOSECONDS.toMillis(ns - originNs);
+    }
+
+    // --- Reporting ---
+    public synchronized List<Entry> getEntries() {
+        return new ArrayList<>(entries);
+    }
+
+    /** ms since process start of a mark or span end, or -1. */
+    public synchronized long getMs(String name) {
+        for (Entry e : entries) if (e.name.equals(name)) return e.endMs;
+        return -1;
+    }
+
+    public synchronized String format() {
+        StringBuilder sb = new StringBuilder();
+        for (Entry e : entries) {
+            if (e.startMs == e.endMs) {
+                sb.append(String.format(Locale.US, "%6d ms  %s%n", e.endMs, e.name));
+            } else {
+                sb.append(String.format(Locale.US, "%6d ms  %s (%d ms on %s)%n", e.endMs, e.name, e.endMs - e.startMs, e.thread));
+            }
+        }
+        return sb.toString();
+    }
+
+    /** One CSV line per startup: release, wall-clock time, then name=endMs for every entry. */
+    public synchronized String toCsvLine(String release, long wallClockMs) {
+        StringBuilder sb = new StringBuilder().append(release).append(',').append(wallClockMs);
+        for (Entry e : entries) sb.append(',').append(e.name).append('=').append(e.endMs);
+        return sb.toString();
+    }
+}
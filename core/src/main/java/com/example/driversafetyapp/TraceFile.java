@@ -0,0 +1,198 @@
+package com.example.driversafetyapp;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Compact binary trace of face results and sensor samples, used to replay drives through the
+ * detection logic offline. Big endian (DataOutput), one type byte then a fixed payload:
+ *   header:   magic "DSTR" (int), version (int)
+ *   FACE:     tsNs, left, right, mouth[6], eulerX, eulerY, eulerZ (floats), trackingId (int), flags (byte:
+ *             1 = mouthValid, 2 = no landmark pass (cascade tier 1), 4 = accurate tier)
+ *   NO_FACE:  tsNs
+ *   ACCEL:    tsNs, x, y, z
+ *   GYRO:     tsNs, x, y, z
+ *   LOCATION: tsNs, lat, lon (doubles), speed (float)
+ *   MARKER:   tsNs, id (int)  -- ground-truth annotation, e.g. "eyes start closing here"
+ */
+public final class TraceFile {
+
+    public static final int MAGIC = 0x44535452; // "DSTR"
+    public static final int VERSION = 1;
+
+    public static final byte TYPE_FACE = 1;
+    public static final byte TYPE_NO_FACE = 2;
+    public static final byte TYPE_ACCEL = 3;
+    public static final byte TYPE_GYRO = 4;
+    public static final byte TYPE_LOCATION = 5;
+    public static final byte TYPE_MARKER = 6;
+
+    private TraceFile() {}
+
+    /** One decoded record; reused by Reader.next(). */
+    public static class Record {
+        public byte type;
+        public long timestampNs;
+        public final FaceFrame face = new FaceFrame(); // TYPE_FACE / TYPE_NO_FACE
+        public float x, y, z;                          // TYPE_ACCEL / TYPE_GYRO
+        public double latitude, longitude;             // TYPE_LOCATION
+        public float speedMps;
+        public int markerId;                           // TYPE_MARKER
+    }
+
+    // --- Writing (thread-safe; camera and sensor threads may share one writer) ---
+    public static class Writer implements Closeable {
+        private final DataOutputStream out;
+
+        public Writer(File file) throws IOException {
+            this(new FileOutputStream(file));
+        }
+
+        public Writer(OutputStream stream) throws IOException {
+            out = new DataOutputStream(new BufferedOutputStream(stream, 64 * 1024));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+        }
+
+        public synchronized void writeFace(FaceFrame f) {
+            try {
+                long tsNs = f.timestampMs * 1_000_000L;
+                if (!f.facePresent) {
+                    out.writeByte(TYPE_NO_FACE);
+                    out.writeLong(tsNs);
+                    return;
+                }
+                out.writeByte(TYPE_FACE);
+                out.writeLong(tsNs);
+                out.writeFloat(f.leftEyeOpen);
+                out.writeFloat(f.rightEyeOpen);
+                for (float v : f.mouth) out.writeFloat(v);
+                out.writeFloat(f.headEulerX);
+                out.writeFloat(f.headEulerY);
+                out.writeFloat(f.headEulerZ);
+                out.writeInt(f.trackingId);
+                out.writeByte((f.mouthValid ? 1 : 0) | (f.landmarksRun ? 0 : 2) | (f.accurate ? 4 : 0));
+            } catch (IOException ignored) {
+                // Tracing is best effort; never break detection over it
+            }
+        }
+
+        public synchronized void writeVector(byte type, long tsNs, float x, float y, float z) {
+            try {
+                out.writeByte(type);
+                out.writeLong(tsNs);
+                out.writeFloat(x);
+                out.writeFloat(y);
+                out.writeFloat(z);
+            } catch (IOException ignored) {
+            }
+        }
+
+        public synchronized void writeLocation(long tsNs, double lat, double lon, float speedMps) {
+            try {
+                out.writeByte(TYPE_LOCATION);
+                out.writeLong(tsNs);
+                out.writeDouble(lat);
+                out.writeDouble(lon);
+                out.writeFloat(speedMps);
+            } catch (IOException ignored) {
+            }
+        }
+
+        public synchronized void writeMarker(long tsNs, int markerId) {
+            try {
+                out.writeByte(TYPE_MARKER);
+                out.writeLong(tsNs);
+                out.writeInt(markerId);
+            } catch (IOException ignored) {
+            }
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            out.close();
+        }
+    }
+
+    // --- Reading ---
+    public static class Reader implements Closeable {
+        private final DataInputStream in;
+
+        public Reader(File file) throws IOException {
+            this(new FileInputStream(file));
+        }
+
+        public Reader(InputStream stream) throws IOException {
+            in = new DataInputStream(new BufferedInputStream(stream, 64 * 1024));
+            if (in.readInt() != MAGIC) throw new IOException("Not a trace file");
+            int version = in.readInt();
+            if (version != VERSION) throw new IOException("Unsupported trace version " + version);
+        }
+
+        /** Fills rec with the next record; false at end of file. */
+        public boolean next(Record rec) throws IOException {
+            int type = in.read();
+            if (type < 0) return false;
+            try {
+                rec.type = (byte) type;
+                rec.timestampNs = in.readLong();
+                switch (rec.type) {
+                    case TYPE_FACE: {
+                        FaceFrame f = rec.face;
+                        f.timestampMs = rec.timestampNs / 1_000_000L;
+                        f.facePresent = true;
+                        f.leftEyeOpen = in.readFloat();
+                        f.rightEyeOpen = in.readFloat();
+                        for (int i = 0; i < f.mouth.length; i++) f.mouth[i] = in.readFloat();
+                        f.headEulerX = in.readFloat();
+                        f.headEulerY = in.readFloat();
+                        f.headEulerZ = in.readFloat();
+                        f.trackingId = in.readInt();
+                        int flags = in.readByte();
+                        f.mouthValid = (flags & 1) != 0;
+                        f.landmarksRun = (flags & 2) == 0; // Older traces wrote only 0/1
+                        f.accurate = (flags & 4) != 0;
+                        break;
+                    }
+                    case TYPE_NO_FACE:
+                        rec.face.setNoFace(rec.timestampNs / 1_000_000L);
+                        break;
+                    case TYPE_ACCEL:
+                    case TYPE_GYRO:
+                        rec.x = in.readFloat();
+                        rec.y = in.readFloat();
+                        rec.z = in.readFloat();
+                        break;
+                    case TYPE_LOCATION:
+                        rec.latitude = in.readDouble();
+                        rec.longitude = in.readDouble();
+                        rec.speedMps = in.readFloat();
+                        break;
+                    case TYPE_MARKER:
+                        rec.markerId = in.readInt();
+                        break;
+                    default:
+                        throw new IOException("Unknown trace record type " + type);
+                }
+            } catch (EOFException e) {
+                return false; // Truncated final record (recording was killed mid-write)
+            }
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package com.example.driversafetyapp;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bounded in-memory trajectory (position, speed, heading), compressed as fixes arrive.
+ * A stationary fix that stays within its own accuracy of the last kept fix only refreshes the
+ * tail (dead band). Moving fixes go through an opening-window simplification (streaming
+ * Douglas-Peucker): a fix is kept only if the path without it would be off by more than
+ * TOLERANCE_M, the speed changed by more than SPEED_DEADBAND_MPS, or MAX_GAP_MS has passed.
+ * Kept fixes live in parallel primitive arrays used as a ring, oldest overwritten first; the
+ * newest fix is always available even if it isn't kept (yet). All methods are synchronized
+ * (the location thread writes, the alert path reads).
+ */
+public class TrajectoryBuffer {
+
+    /** One fix; times on the elapsedRealtime clock, bearing NaN if unknown. */
+    public static class Point {
+        public final long elapsedMs;
+        public final double latitude, longitude;
+        public final float speedMps;
+        public final float bearingDeg;
+
+        Point(long elapsedMs, double latitude, double longitude, float speedMps, float bearingDeg) {
+            this.elapsedMs = elapsedMs;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.speedMps = speedMps;
+            this.bearingDeg = bearingDeg;
+        }
+    }
+
+    // --- Compression (NEEDS CALIBRATION!) ---
+    private static final float TOLERANCE_M = 15f;           // Max deviation of the simplified path
+    private static final float SPEED_DEADBAND_MPS = 3f;     // ~11 km/h; keep speed profile for the approach to a crash
+    private static final long MAX_GAP_MS = 30_000;          // Keep at least one fix this often while moving
+    private static final float STATIONARY_SPEED_MPS = 0.5f;
+    private static final float MIN_DEADBAND_M = 5f;         // Dead band when the fix reports no accuracy
+    private static final int WINDOW_CAPACITY = 64;          // Fixes pending between kept ones; full window forces a keep
+    private static final double EARTH_RADIUS_M = 6_371_000.0;
+    // ---
+
+    private final int capacity;
+    private final long[] times;
+    private final double[] lats, lons;
+    private final float[] speeds, bearings;
+    private int head = 0;   // Next write slot
+    private int count = 0;  // Kept fixes in the ring
+
+    // Fixes since the last kept one (the opening window); the last one is the tail
+    private final long[] wTimes = new long[WINDOW_CAPACITY];
+    private final double[] wLats = new double[WINDOW_CAPACITY], wLons = new double[WINDOW_CAPACITY];
+    private final float[] wSpeeds = new float[WINDOW_CAPACITY], wBearings = new float[WINDOW_CAPACITY];
+    private int windowSize = 0;
+
+    private long rawCount = 0;
+    private float headingRateDegPerS = 0f; // Between the last two raw fixes
+
+    public TrajectoryBuffer(int capacity) {
+        this.capacity = capacity;
+        times = new long[capacity];
+        lats = new double[capacity];
+        lons = new double[capacity];
+        speeds = new float[capacity];
+        bearings = new float[capacity];
+    }
+
+    /**
+     * Adds a fix. speedMps < 0 or bearingDeg NaN = unknown, derived from the previous fix if
+     * possible; accuracyM <= 0 = unknown.
+     */
+    public synchronized void add(long elapsedMs, double lat, double lon, float speedMps, float bearingDeg, float accuracyM) {
+        rawCount++;
+        if (count == 0 && windowSize == 0) {
+            keep(elapsedMs, lat, lon, Math.max(speedMps, 0f), bearingDeg);
+            return;
+        }
+        int tail = windowSize > 0 ? windowSize - 1 : -1;
+        long prevMs = tail >= 0 ? wTimes[tail] : times[last()];
+        double prevLat = tail >= 0 ? wLats[tail] : lats[last()];
+        double prevLon = tail >= 0 ? wLons[tail] : lons[last()];
+        float prevBearing = tail >= 0 ? wBearings[tail] : bearings[last()];
+        if (elapsedMs <= prevMs) return; // Duplicate or out-of-order delivery from a batch
+
+        float dtS = (elapsedMs - prevMs) / 1000f;
+        if (speedMps < 0) speedMps = (float) (distanceM(prevLat, prevLon, lat, lon) / dtS);
+        if (Float.isNaN(bearingDeg) && speedMps >= STATIONARY_SPEED_MPS) bearingDeg = bearingDeg(prevLat, prevLon, lat, lon);
+        headingRateDegPerS = Float.isNaN(bearingDeg) || Float.isNaN(prevBearing) ? 0f
+                : Math.abs(angleDiffDeg(prevBearing, bearingDeg)) / dtS;
+
+        // Dead band: parked GPS jitter only moves the tail
+        int anchor = last();
+        float deadband = Math.max(accuracyM, MIN_DEADBAND_M);
+        if (speedMps < STATIONARY_SPEED_MPS && speeds[anchor] < STATIONARY_SPEED_MPS
+                && (tail < 0 || wSpeeds[tail] < STATIONARY_SPEED_MPS)
+                && distanceM(lats[anchor], lons[anchor], lat, lon) <= deadband
+                && elapsedMs - times[anchor] < MAX_GAP_MS) {
+            windowSize = 0;
+            appendWindow(elapsedMs, lat, lon, speedMps, bearingDeg);
+            return;
+        }
+
+        boolean keepNew = Math.abs(speedMps - speeds[anchor]) > SPEED_DEADBAND_MPS
+                || elapsedMs - times[anchor] >= MAX_GAP_MS;
+        if (windowSize > 0 && (windowSize == WINDOW_CAPACITY || !windowFitsSegment(anchor, lat, lon))) {
+            // The path can't skip the tail any more: keep it and open a new window from there
+            keep(wTimes[tail], wLats[tail], wLons[tail], wSpeeds[tail], wBearings[tail]);
+            windowSize = 0;
+        }
+        if (keepNew) {
+            windowSize = 0;
+            keep(elapsedMs, lat, lon, speedMps, bearingDeg);
+        } else {
+            appendWindow(elapsedMs, lat, lon, speedMps, bearingDeg);
+        }
+    }
+
+    // True if every pending fix is within TOLERANCE_M of the segment anchor -> (lat, lon)
+    private boolean windowFitsSegment(int anchor, double lat, double lon) {
+        double lat0 = lats[anchor], lon0 = lons[anchor];
+        double cosLat = Math.cos(Math.toRadians(lat0));
+        double bx = Math.toRadians(lon - lon0) * cosLat * EARTH_RADIUS_M;
+        double by = Math.toRadians(lat - lat0) * EARTH_RADIUS_M;
+        double lenSq = bx * bx + by * by;
+        for (int i = 0; i < windowSize; i++) {
+            double px = Math.toRadians(wLons[i] - lon0) * cosLat * EARTH_RADIUS_M;
+            double py = Math.toRadians(wLats[i] - lat0) * EARTH_RADIUS_M;
+            double t = lenSq > 0 ? Math.max(0, Math.min(1, (px * bx + py * by) / lenSq)) : 0;
+            double dx = px - t * bx, dy = py - t * by;
+            if (dx * dx + dy * dy > TOLERANCE_M * TOLERANCE_M) return false;
+        }
+        return true;
+    }
+
+    private void appendWindow(long elapsedMs, double lat, double lon, float speedMps, float bearingDeg) {
+        wTimes[windowSize] = elapsedMs;
+        wLats[windowSize] = lat;
+        wLons[windowSize] = lon;
+        wSpeeds[windowSize] = speedMps;
+        wBearings[windowSize] = bearingDeg;
+        windowSize++;
+    }
+
+    private void keep(long elapsedMs, double lat, double lon, float speedMps, float bearingDeg) {
+        times[head] = elapsedMs;
+        lats[head] = lat;
+        lons[head] = lon;
+        speeds[head] = speedMps;
+        bearings[head] = bearingDeg;
+        head = (head + 1) % capacity;
+        if (count < capacity) count++;
+    }
+
+    private int last() {
+        return (head - 1 + capacity) % capacity;
+    }
+
+    // --- Reading ---
+    /** Kept fixes plus the current tail with elapsedMs >= sinceElapsedMs, oldest first. */
+    public synchronized List<Point> since(long sinceElapsedMs) {
+        List<Point> out = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            int idx = (head - count + i + capacity) % capacity;
+            if (times[idx] >= sinceElapsedMs) out.add(new Point(times[idx], lats[idx], lons[idx], speeds[idx], bearings[idx]));
+        }
+        int tail = windowSize - 1;
+        if (tail >= 0 && wTimes[tail] >= sinceElapsedMs) {
+            out.add(new Point(wTimes[tail], wLats[tail], wLons[tail], wSpeeds[tail], wBearings[tail]));
+        }
+        return out;
+    }
+
+    /** Newest fix, or null. */
+    public synchronized Point latest() {
+        int tail = windowSize - 1;
+        if (tail >= 0) return new Point(wTimes[tail], wLats[tail], wLons[tail], wSpeeds[tail], wBearings[tail]);
+        if (count == 0) return null;
+        int idx = last();
+        return new Point(times[idx], lats[idx], lons[idx], speeds[idx], bearings[idx]);
+    }
+
+    public synchronized float getHeadingRateDegPerS() { return headingRateDegPerS; }
+    public synchronized int getKeptCount() { return count; }
+    public synchronized long getRawCount() { return rawCount; }
+
+    public synchronized void clear() {
+        head = 0; count = 0; windowSize = 0; rawCount = 0; headingRateDegPerS = 0f;
+    }
+
+    // --- Geometry (no android.location, so this runs on the JVM) ---
+    static double distanceM(double lat1, double lon1, double lat2, double lon2) {
+        return TripRecorder.distanceMeters(lat1, lon1, lat2, lon2);
+    }
+
+    static float bearingDeg(double lat1, double lon1, double lat2, double lon2) {
+        double p1 = Math.toRadians(lat1), p2 = Math.toRadians(lat2), dLon = Math.toRadians(lon2 - lon1);
+        double y = Math.sin(dLon) * Math.cos(p2);
+        double x = Math.cos(p1) * Math.sin(p2) - Math.sin(p1) * Math.cos(p2) * Math.cos(dLon);
+        return (float) ((Math.toDegrees(Math.atan2(y, x)) + 360.0) % 360.0);
+    }
+
+    // Signed smallest difference b - a, in (-180, 180]
+    static float angleDiffDeg(float a, float b) {
+        float d = (b - a) % 360f;
+        if (d > 180f) d -= 360f;
+        if (d <= -180f) d += 360f;
+        return d;
+    }
+}
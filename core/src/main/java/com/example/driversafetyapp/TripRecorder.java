@@ -0,0 +1,263 @@
+package com.example.driversafetyapp;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.LongSupplier;
+
+/**
+ * Streams live trip data into per-second, per-minute and per-trip rollups.
+ * Each finished minute is appended to the TripStore and folded into the running trip
+ * summary, which is appended when the trip ends; no raw samples are kept.
+ * Inputs arrive from the sensor, camera and location threads, so all methods are synchronized.
+ * Store I/O (appends, the compaction they may trigger, trip recovery) runs on the recorder's own
+ * writer thread, so a minute rollover never blocks the thread whose input crossed it.
+ */
+public class TripRecorder {
+
+    private static final long SECOND_MS = 1000;
+    private static final long MINUTE_MS = 60_000;
+    private static final float GRAVITY = 9.80665f;
+    private static final long MAX_EYE_GAP_MS = 1000; // Don't credit more than this to one eye sample
+    private static final int RECOVERY_SCAN_MINUTES = 24 * 60;
+
+    private final TripStore store;
+    private final LongSupplier clock;
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(r -> new Thread(r, "TripRecorder"));
+    private volatile IOException lastError; // Set on the writer thread
+
+    // --- Trip rollup ---
+    private long tripId = -1;
+    private float tripDistanceM, tripMaxAccelSq;
+    private long tripClosedMs, tripObservedMs;
+    private int tripFatigueEpisodes, tripAlerts, tripMinutes;
+
+    // --- Minute rollup ---
+    private long minuteStartMs;
+    private float minuteDistanceM, minuteMaxAccelSq;
+    private long minuteClosedMs, minuteObservedMs;
+    private int minuteFatigueEpisodes, minuteAlerts;
+
+    // --- Second rollup ---
+    private long secondStartMs;
+    private float secondDistanceM, secondMaxAccelSq;
+    private long secondClosedMs, secondObservedMs;
+
+    // Last raw inputs, needed for deltas
+    private long lastEyeMs = -1;
+    private boolean lastEyeClosed;
+    private boolean hasLastFix;
+    private double lastLat, lastLon;
+
+    public TripRecorder(TripStore store, LongSupplier clock) {
+        this.store = store;
+        this.clock = clock;
+    }
+
+    // --- Trip lifecycle ---
+    public synchronized void startTrip() {
+        if (tripId != -1) return;
+        writer.execute(this::recoverUnfinishedTrip); // Queued ahead of this trip's first minute
+        long now = clock.getAsLong();
+        tripId = now;
+        tripDistanceM = 0; tripMaxAccelSq = 0; tripClosedMs = 0; tripObservedMs = 0;
+        tripFatigueEpisodes = 0; tripAlerts = 0; tripMinutes = 0;
+        resetMinute(now - now % MINUTE_MS);
+        resetSecond(now - now % SECOND_MS);
+        lastEyeMs = -1;
+        hasLastFix = false;
+    }
+
+    public synchronized void endTrip() {
+        if (tripId == -1) return;
+        long now = clock.getAsLong();
+        advance(now);
+        rollSecond();
+        rollMinute();
+        TripStore.TripSummary summary = new TripStore.TripSummary();
+        summary.tripId = tripId;
+        summary.endMs = now;
+        summary.distanceM = tripDistanceM;
+        summary.maxG = (float) Math.sqrt(tripMaxAccelSq) / GRAVITY;
+        summary.eyeClosedFraction = tripObservedMs > 0 ? (float) tripClosedMs / tripObservedMs : 0f;
+        summary.fatigueEpisodes = tripFatigueEpisodes;
+        summary.alerts = tripAlerts;
+        summary.minutes = tripMinutes;
+        summary.observedEyeMs = tripObservedMs;
+        writer.execute(() -> {
+            try {
+                store.appendTrip(summary);
+            } catch (IOException e) {
+                lastError = e;
+            }
+        });
+        tripId = -1;
+    }
+
+    public synchronized boolean isTripActive() {
+        return tripId != -1;
+    }
+
+    // --- Inputs ---
+    public synchronized void onEyeState(boolean eyesClosed) {
+        if (tripId == -1) return;
+        long now = clock.getAsLong();
+        advance(now);
+        if (lastEyeMs != -1) {
+            long dt = Math.min(now - lastEyeMs, MAX_EYE_GAP_MS);
+            if (dt > 0) {
+                secondObservedMs += dt;
+                if (lastEyeClosed) secondClosedMs += dt;
+            }
+        }
+        lastEyeMs = now;
+        lastEyeClosed = eyesClosed;
+    }
+
+    public synchronized void onNoFace() {
+        lastEyeMs = -1; // Unknown eye state doesn't count towards coverage
+    }
+
+    /** Squared accelerometer magnitude in (m/s^2)^2, so the sensor thread needs no sqrt. */
+    public synchronized void onAccelerationSq(float magnitudeSq) {
+        if (tripId == -1) return;
+        advance(clock.getAsLong());
+        if (magnitudeSq > secondMaxAccelSq) secondMaxAccelSq = magnitudeSq;
+    }
+
+    public synchronized void onLocation(double lat, double lon) {
+        if (tripId == -1) return;
+        advance(clock.getAsLong());
+        if (hasLastFix) secondDistanceM += (float) distanceMeters(lastLat, lastLon, lat, lon);
+        lastLat = lat;
+        lastLon = lon;
+        hasLastFix = true;
+    }
+
+    public synchronized void onFatigueEpisode() {
+        if (tripId == -1) return;
+        advance(clock.getAsLong());
+        minuteFatigueEpisodes++;
+    }
+
+    public synchronized void onAlertFired() {
+        if (tripId == -1) return;
+        advance(clock.getAsLong());
+        minuteAlerts++;
+    }
+
+    // --- Rollups ---
+    // Closes every second/minute bucket that ended before now
+    private void advance(long now) {
+        while (now - secondStartMs >= SECOND_MS) {
+            rollSecond();
+            long nextSecond = secondStartMs + SECOND_MS;
+            if (nextSecond - minuteStartMs >= MINUTE_MS) {
+                rollMinute();
+                resetMinute(minuteStartMs + MINUTE_MS);
+                if (now - minuteStartMs >= MINUTE_MS) { // Idle gap: jump straight to the current minute
+                    resetMinute(now - now % MINUTE_MS);
+                    nextSecond = now - now % SECOND_MS;
+                }
+            }
+            resetSecond(nextSecond);
+        }
+    }
+
+    private void rollSecond() {
+        minuteDistanceM += secondDistanceM;
+        minuteClosedMs += secondClosedMs;
+        minuteObservedMs += secondObservedMs;
+        if (secondMaxAccelSq > minuteMaxAccelSq) minuteMaxAccelSq = secondMaxAccelSq;
+        resetSecond(secondStartMs);
+    }
+
+    private void rollMinute() {
+        boolean empty = minuteObservedMs == 0 && minuteDistanceM == 0 && minuteMaxAccelSq == 0
+                && minuteFatigueEpisodes == 0 && minuteAlerts == 0;
+        tripDistanceM += minuteDistanceM;
+        tripClosedMs += minuteClosedMs;
+        tripObservedMs += minuteObservedMs;
+        tripFatigueEpisodes += minuteFatigueEpisodes;
+        tripAlerts += minuteAlerts;
+        if (minuteMaxAccelSq > tripMaxAccelSq) tripMaxAccelSq = minuteMaxAccelSq;
+        if (empty) return; // Nothing happened (e.g. monitoring paused); don't spend disk on it
+        tripMinutes++;
+
+        TripStore.MinuteRollup m = new TripStore.MinuteRollup(); // Once a minute; owned by the writer from here
+        m.minuteStartMs = minuteStartMs;
+        m.tripId = tripId;
+        m.distanceM = minuteDistanceM;
+        m.maxG = (float) Math.sqrt(minuteMaxAccelSq) / GRAVITY;
+        m.closedPermille = minuteObservedMs > 0 ? (int) (minuteClosedMs * 1000 / minuteObservedMs) : 0;
+        m.fatigueEpisodes = minuteFatigueEpisodes;
+        m.alerts = minuteAlerts;
+        m.observedSec = (int) (minuteObservedMs / 1000);
+        writer.execute(() -> {
+            try {
+                store.appendMinute(m);
+            } catch (IOException e) {
+                lastError = e;
+            }
+        });
+    }
+
+    private void resetMinute(long startMs) {
+        minuteStartMs = startMs;
+        minuteDistanceM = 0; minuteMaxAccelSq = 0; minuteClosedMs = 0; minuteObservedMs = 0;
+        minuteFatigueEpisodes = 0; minuteAlerts = 0;
+    }
+
+    private void resetSecond(long startMs) {
+        secondStartMs = startMs;
+        secondDistanceM = 0; secondMaxAccelSq = 0; secondClosedMs = 0; secondObservedMs = 0;
+    }
+
+    /** Lets queued appends finish, then stops the writer. Call after endTrip(); the recorder is done. */
+    public void close() {
+        writer.shutdown();
+    }
+
+    // Writer thread. A trip cut short by a process kill has minute rollups but no summary; rebuild it from them
+    private void recoverUnfinishedTrip() {
+        try {
+            long orphanId = store.lastMinuteTripId();
+            if (orphanId == -1) return;
+            List<TripStore.TripSummary> last = store.loadTrips(1);
+            if (!last.isEmpty() && last.get(0).tripId == orphanId) return;
+            List<TripStore.MinuteRollup> minutes = store.loadMinutes(orphanId, RECOVERY_SCAN_MINUTES);
+            if (minutes.isEmpty()) return;
+            TripStore.TripSummary s = new TripStore.TripSummary();
+            s.tripId = orphanId;
+            long closedMs = 0;
+            for (TripStore.MinuteRollup m : minutes) {
+                s.endMs = m.minuteStartMs + MINUTE_MS;
+                s.distanceM += m.distanceM;
+                s.maxG = Math.max(s.maxG, m.maxG);
+                s.fatigueEpisodes += m.fatigueEpisodes;
+                s.alerts += m.alerts;
+                s.minutes++;
+                s.observedEyeMs += m.observedSec * 1000L;
+                closedMs += (long) m.closedPermille * m.observedSec; // permille * sec = ms
+            }
+            s.eyeClosedFraction = s.observedEyeMs > 0 ? (float) closedMs / s.observedEyeMs : 0f;
+            store.appendTrip(s);
+        } catch (IOException e) {
+            lastError = e;
+        }
+    }
+
+    public IOException getLastError() {
+        return lastError;
+    }
+
+    // Haversine distance; avoids android.location so the recorder runs on the JVM
+    static double distanceMeters(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 6_371_000.0 * 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.driversafetyapp;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Append-only trip history on disk, as two files of fixed-size little-endian records:
+ *   minutes.bin (32 bytes): minuteStartMs, tripId, distanceM, maxG, closedPermille, fatigueEpisodes, alerts, observedSec
+ *   trips.bin   (48 bytes): tripId (start ms), endMs, distanceM, maxG, eyeClosedFraction, fatigueEpisodes, alerts, minutes, observedEyeMs
+ * Trip summaries are rolled up while driving, so listing history never touches minutes.bin.
+ * minutes.bin is compacted (oldest detail dropped) once it exceeds its byte budget.
+ */
+public class TripStore {
+
+    public static final int MINUTE_RECORD_SIZE = 32;
+    public static final int TRIP_RECORD_SIZE = 48;
+
+    public static class MinuteRollup {
+        public long minuteStartMs;
+        public long tripId;
+        public float distanceM;
+        public float maxG;
+        public int closedPermille;   // Eye-closure fraction * 1000
+        public int fatigueEpisodes;
+        public int alerts;
+        public int observedSec;      // Seconds of eye-state coverage
+    }
+
+    public static class TripSummary {
+        public long tripId;          // Trip start time (ms)
+        public long endMs;
+        public float distanceM;
+        public float maxG;
+        public float eyeClosedFraction;
+        public int fatigueEpisodes;
+        public int alerts;
+        public int minutes;
+        public long observedEyeMs;
+    }
+
+    private final File minutesFile;
+    private final File tripsFile;
+    private final long maxMinuteBytes;
+    private final ByteBuffer minuteBuffer = ByteBuffer.allocate(MINUTE_RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private final ByteBuffer tripBuffer = ByteBuffer.allocate(TRIP_RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+    public TripStore(File directory, long maxMinuteBytes) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        this.minutesFile = new File(directory, "minutes.bin");
+        this.tripsFile = new File(directory, "trips.bin");
+        this.maxMinuteBytes = maxMinuteBytes;
+        dropTornRecord(minutesFile, MINUTE_RECORD_SIZE);
+        dropTornRecord(tripsFile, TRIP_RECORD_SIZE);
+    }
+
+    // A process kill mid-append can leave a partial record; cut it so later appends stay aligned
+    private static void dropTornRecord(File file, int recordSize) throws IOException {
+        if (!file.exists() || file.length() % recordSize == 0) return;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - raf.length() % recordSize);
+        }
+    }
+
+    /** ~30 days of continuous minute detail (1.4 MB); summaries are kept forever. */
+    public static TripStore createDefault(File directory) throws IOException {
+        return new TripStore(directory, 30L * 24 * 60 * MINUTE_RECORD_SIZE);
+    }
+
+    // --- Appends ---
+    public synchronized void appendMinute(MinuteRollup m) throws IOException {
+        minuteBuffer.clear();
+        minuteBuffer.putLong(m.minuteStartMs).putLong(m.tripId).putFloat(m.distanceM).putFloat(m.maxG)
+                .putShort((short) m.closedPermille).putShort((short) m.fatigueEpisodes)
+                .putShort((short) m.alerts).putShort((short) m.observedSec);
+        append(minutesFile, minuteBuffer);
+        if (minutesFile.length() > maxMinuteBytes) compactMinutes();
+    }
+
+    public synchronized void appendTrip(TripSummary t) throws IOException {
+        tripBuffer.clear();
+        tripBuffer.putLong(t.tripId).putLong(t.endMs).putFloat(t.distanceM).putFloat(t.maxG)
+                .putFloat(t.eyeClosedFraction).putInt(t.fatigueEpisodes).putInt(t.alerts).putInt(t.minutes)
+                .putLong(t.observedEyeMs);
+        append(tripsFile, tripBuffer);
+    }
+
+    private static void append(File file, ByteBuffer record) throws IOException {
+        record.flip();
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            out.getChannel().write(record);
+        }
+    }
+
+    // Keeps the newest half of the budget; trip summaries already hold the aggregates of what is dropped
+    private void compactMinutes() throws IOException {
+        long keepBytes = (maxMinuteBytes / 2) / MINUTE_RECORD_SIZE * MINUTE_RECORD_SIZE;
+        byte[] tail = readTail(minutesFile, keepBytes, MINUTE_RECORD_SIZE);
+        File tmp = new File(minutesFile.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            out.write(tail);
+            out.getFD().sync();
+        }
+        if (!tmp.renameTo(minutesFile)) throw new IOException("Minute compaction rename failed");
+    }
+
+    // --- Queries ---
+    /** Newest-first trip summaries, at most maxTrips of them. Reads only trips.bin. */
+    public synchronized List<TripSummary> loadTrips(int maxTrips) throws IOException {
+        List<TripSummary> result = new ArrayList<>();
+        if (!tripsFile.exists()) return result;
+        ByteBuffer buf = ByteBuffer.wrap(readTail(tripsFile, (long) maxTrips * TRIP_RECORD_SIZE, TRIP_RECORD_SIZE)).order(ByteOrder.LITTLE_ENDIAN);
+        for (int pos = buf.limit() - TRIP_RECORD_SIZE; pos >= 0; pos -= TRIP_RECORD_SIZE) {
+            TripSummary t = new TripSummary();
+            t.tripId = buf.getLong(pos);
+            t.endMs = buf.getLong(pos + 8);
+            t.distanceM = buf.getFloat(pos + 16);
+            t.maxG = buf.getFloat(pos + 20);
+            t.eyeClosedFraction = buf.getFloat(pos + 24);
+            t.fatigueEpisodes = buf.getInt(pos + 28);
+            t.alerts = buf.getInt(pos + 32);
+            t.minutes = buf.getInt(pos + 36);
+            t.observedEyeMs = buf.getLong(pos + 40);
+            result.add(t);
+        }
+        return result;
+    }
+
+    /** Oldest-first minute rollups of one trip, scanning at most the last maxMinutes records. */
+    public synchronized List<MinuteRollup> loadMinutes(long tripId, int maxMinutes) throws IOException {
+        List<MinuteRollup> result = new ArrayList<>();
+        if (!minutesFile.exists()) return result;
+        ByteBuffer buf = ByteBuffer.wrap(readTail(minutesFile, (long) maxMinutes * MINUTE_RECORD_SIZE, MINUTE_RECORD_SIZE)).order(ByteOrder.LITTLE_ENDIAN);
+        for (int pos = 0; pos + MINUTE_RECORD_SIZE <= buf.limit(); pos += MINUTE_RECORD_SIZE) {
+            if (buf.getLong(pos + 8) != tripId) continue;
+            MinuteRollup m = new MinuteRollup();
+            m.minuteStartMs = buf.getLong(pos);
+            m.tripId = tripId;
+            m.distanceM = buf.getFloat(pos + 16);
+            m.maxG = buf.getFloat(pos + 20);
+            m.closedPermille = buf.getShort(pos + 24);
+            m.fatigueEpisodes = buf.getShort(pos + 26);
+            m.alerts = buf.getShort(pos + 28);
+            m.observedSec = buf.getShort(pos + 30);
+            result.add(m);
+        }
+        return result;
+    }
+
+    /** tripId of the newest minute record, or -1. Used to recover a trip whose summary was never written. */
+    public synchronized long lastMinuteTripId() throws IOException {
+        if (!minutesFile.exists() || minutesFile.length() < MINUTE_RECORD_SIZE) return -1;
+        ByteBuffer buf = ByteBuffer.wrap(readTail(minutesFile, MINUTE_RECORD_SIZE, MINUTE_RECORD_SIZE)).order(ByteOrder.LITTLE_ENDIAN);
+        return buf.limit() == MINUTE_RECORD_SIZE ? buf.getLong(8) : -1;
+    }
+
+    // Reads up to maxBytes of whole records from the end of a file, ignoring a torn last record
+    private static byte[] readTail(File file, long maxBytes, int recordSize) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            long length = raf.length() - raf.length() % recordSize;
+            int n = (int) Math.min(length, maxBytes / recordSize * recordSize);
+            byte[] data = new byte[n];
+            raf.seek(length - n);
+            raf.readFully(data);
+            return data;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.driversafetyapp;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Cuts a region out of a camera Y (luma) plane into a reused NV21 buffer for ML Kit. Only the
+ * region's rows are copied, straight from the plane's ByteBuffer; there is no RGB conversion
+ * and the rest of the frame is never touched. Face detection only looks at luma, so the chroma
+ * half is left at neutral grey (filled once per crop size, not per frame).
+ * The returned buffer is reused: call crop() again only after ML Kit is done with the last one.
+ */
+public class YPlaneCropper {
+
+    private static final byte NEUTRAL_CHROMA = (byte) 128;
+
+    private ByteBuffer buffer;
+    private int lastWidth = -1;
+    private int lastHeight = -1;
+
+    /** left, top, width and height must be even and inside the plane. */
+    public ByteBuffer crop(ByteBuffer yPlane, int rowStride, int left, int top, int width, int height) {
+        int lumaSize = width * height;
+        int size = lumaSize + lumaSize / 2;
+        if (buffer == null || buffer.capacity() < size) {
+            buffer = ByteBuffer.allocateDirect(size);
+            lastWidth = -1;
+        }
+        if (width != lastWidth || height != lastHeight) {
+            buffer.clear();
+            buffer.position(lumaSize);
+            while (buffer.position() < size) buffer.put(NEUTRAL_CHROMA);
+            lastWidth = width;
+            lastHeight = height;
+        }
+
+        ByteBuffer src = yPlane.duplicate(); // Own position/limit; the plane's buffer is left alone
+        buffer.clear();
+        for (int row = 0; row < height; row++) {
+            int start = (top + row) * rowStride + left;
+            src.position(0);
+            src.limit(start + width);
+            src.position(start);
+            buffer.put(src);
+        }
+        buffer.position(0);
+        buffer.limit(size);
+        return buffer;
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.driversafetyapp;
+
+/**
+ * Mouth-aspect-ratio (MAR) yawn detection on the ML Kit mouth landmarks, plus a streaming
+ * count of yawns over a rolling window. All geometry works on a caller-owned float array,
+ * nothing is allocated per frame. Not thread-safe, feed it from a single thread.
+ */
+public class YawnDetector {
+
+    // Layout of the mouth point array passed to update()
+    public static final int MOUTH_LEFT_X = 0, MOUTH_LEFT_Y = 1;
+    public static final int MOUTH_RIGHT_X = 2, MOUTH_RIGHT_Y = 3;
+    public static final int MOUTH_BOTTOM_X = 4, MOUTH_BOTTOM_Y = 5;
+    public static final int MOUTH_POINT_COUNT = 6;
+
+    // --- Yawn Parameters (NEEDS CALIBRATION!) ---
+    private final float openRatio;      // MAR at/above this counts as "mouth wide open"
+    private final float closeRatio;     // MAR below this ends the yawn (hysteresis)
+    private final long minYawnMs;       // Mouth must stay open this long to count as a yawn
+    private final long frequencyWindowMs;
+
+    private long openStartMs = -1;
+    private boolean yawnCounted = false; // Current opening already counted
+    private float lastRatio = 0f;
+
+    // Ring buffer of yawn timestamps for the frequency counter
+    private final long[] yawnTimes;
+    private int yawnHead = 0;
+    private int yawnCount = 0;
+
+    public YawnDetector(float openRatio, float closeRatio, long minYawnMs, long frequencyWindowMs, int maxTrackedYawns) {
+        this.openRatio = openRatio;
+        this.closeRatio = closeRatio;
+        this.minYawnMs = minYawnMs;
+        this.frequencyWindowMs = frequencyWindowMs;
+        this.yawnTimes = new long[maxTrackedYawns];
+    }
+
+    public static YawnDetector withDefaults() {
+        return new YawnDetector(0.6f, 0.45f, 1500, 10 * 60 * 1000L, 32);
+    }
+
+    /**
+     * Feeds one frame's mouth points (see MOUTH_* offsets).
+     * Returns true exactly once per yawn, on the frame where it is confirmed.
+     */
+    public boolean update(long timestampMs, float[] mouth) {
+        float dx = mouth[MOUTH_RIGHT_X] - mouth[MOUTH_LEFT_X];
+        float dy = mouth[MOUTH_RIGHT_Y] - mouth[MOUTH_LEFT_Y];
+        float widthSq = dx * dx + dy * dy;
+        if (widthSq < 1f) { // Degenerate landmarks
+            lastRatio = 0f;
+            return false;
+        }
+        // Vertical opening: lower lip distance from the line between the mouth corners
+        float cx = (mouth[MOUTH_LEFT_X] + mouth[MOUTH_RIGHT_X]) * 0.5f;
+        float cy = (mouth[MOUTH_LEFT_Y] + mouth[MOUTH_RIGHT_Y]) * 0.5f;
+        float ox = mouth[MOUTH_BOTTOM_X] - cx;
+        float oy = mouth[MOUTH_BOTTOM_Y] - cy;
+        float ratio = (float) Math.sqrt((ox * ox + oy * oy) / widthSq);
+        lastRatio = ratio;
+
+        if (ratio >= openRatio) {
+            if (openStartMs == -1) openStartMs = timestampMs;
+            if (!yawnCounted && timestampMs - openStartMs >= minYawnMs) {
+                yawnCounted = true;
+                recordYawn(timestampMs);
+                return true;
+            }
+        } else if (ratio < closeRatio) {
+            reset();
+        }
+        return false;
+    }
+
+    /** Call when the face is lost; an open mouth in progress no longer counts. */
+    public void reset() {
+        openStartMs = -1;
+        yawnCounted = false;
+    }
+
+    private void recordYawn(long timestampMs) {
+        int slot = (yawnHead + yawnCount) % yawnTimes.length;
+        if (yawnCount == yawnTimes.length) {
+            yawnHead = (yawnHead + 1) % yawnTimes.length; // Overwrite the oldest
+        } else {
+            yawnCount++;
+        }
+        yawnTimes[slot] = timestampMs;
+    }
+
+    /** Number of yawns within the frequency window ending at nowMs. */
+    public int getYawnCount(long nowMs) {
+        while (yawnCount > 0 && nowMs - yawnTimes[yawnHead] > frequencyWindowMs) {
+            yawnHead = (yawnHead + 1) % yawnTimes.length;
+            yawnCount--;
+        }
+        return yawnCount;
+    }
+
+    public float getLastRatio() { return lastRatio; }
+    public long getFrequencyWindowMs() { return frequencyWindowMs; }
+}
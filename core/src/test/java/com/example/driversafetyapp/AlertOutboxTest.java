@@ -0,0 +1,191 @@
+package com.example.driversafetyapp;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Drives the alert outbox with a fake transport and a manual clock.
+ */
+public class AlertOutboxTest {
+
+    /** Records sends; the test decides when and how each one completes. */
+    private static class FakeTransport implements AlertTransport {
+        final List<String> destinations = new ArrayList<>();
+        final List<Callback> callbacks = new ArrayList<>();
+
+        @Override
+        public void sendSms(String destination, String body, Callback callback) {
+            destinations.add(destination);
+            callbacks.add(callback);
+        }
+
+        Callback last() { return callbacks.get(callbacks.size() - 1); }
+    }
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private final long[] now = {1_000_000L};
+
+    private AlertOutbox outbox(File dir, FakeTransport transport) throws Exception {
+        return new AlertOutbox(dir, transport, () -> now[0]);
+    }
+
+    private File tempDir() throws Exception {
+        return temp.newFolder();
+    }
+
+    @Test
+    public void fanOut_sendsToEveryContactBeforeAnyReport() throws Exception {
+        FakeTransport transport = new FakeTransport();
+        AlertOutbox outbox = outbox(tempDir(), transport);
+        long id = outbox.enqueue("Accident", "help", Arrays.asList("111", "222", "333"));
+
+        outbox.pump();
+
+        assertEquals(Arrays.asList("111", "222", "333"), transport.destinations);
+        assertEquals(AlertOutbox.Status.SENDING, outbox.getStatus(id, "222"));
+        transport.callbacks.get(1).onSent(true, null);
+        transport.callbacks.get(1).onDelivered(true);
+        assertEquals(AlertOutbox.Status.DELIVERED, outbox.getStatus(id, "222"));
+        assertEquals(AlertOutbox.Status.SENDING, outbox.getStatus(id, "111"));
+    }
+
+    @Test
+    public void failedSend_retriedAfterBackoff() throws Exception {
+        FakeTransport transport = new FakeTransport();
+        AlertOutbox outbox = outbox(tempDir(), transport);
+        long id = outbox.enqueue("Accident", "help", Arrays.asList("111"));
+        outbox.pump();
+        transport.last().onSent(false, "no service");
+
+        assertEquals(AlertOutbox.Status.PENDING, outbox.getStatus(id, "111"));
+        assertEquals(AlertOutbox.backoffMs(1), outbox.pump());
+        assertEquals(1, transport.destinations.size()); // Not before the backoff
+
+        now[0] += AlertOutbox.backoffMs(1);
+        outbox.pump();
+        assertEquals(2, transport.destinations.size());
+        transport.last().onSent(true, null);
+        assertEquals(AlertOutbox.Status.SENT, outbox.getStatus(id, "111"));
+        assertEquals(2, outbox.getAttempts(id, "111"));
+        assertEquals(-1, outbox.pump());
+        assertTrue(AlertOutbox.backoffMs(2) > AlertOutbox.backoffMs(1));
+    }
+
+    @Test
+    public void missingSentReport_timesOutAndRetries() throws Exception {
+        FakeTransport transport = new FakeTransport();
+        AlertOutbox outbox = outbox(tempDir(), transport);
+        long id = outbox.enqueue("Fatigue", "tired", Arrays.asList("111"));
+        outbox.pump();
+        AlertTransport.Callback first = transport.last();
+
+        now[0] += outbox.pump();     // Wait out the send timeout
+        outbox.pump();
+        now[0] += AlertOutbox.backoffMs(1);
+        outbox.pump();
+        assertEquals(2, transport.destinations.size());
+
+        first.onSent(true, null); // Late report of the abandoned attempt is ignored
+        assertEquals(AlertOutbox.Status.SENDING, outbox.getStatus(id, "111"));
+    }
+
+    @Test
+    public void sameContact_alertsGoOutInOrder() throws Exception {
+        FakeTransport transport = new FakeTransport();
+        AlertOutbox outbox = outbox(tempDir(), transport);
+        long first = outbox.enqueue("Fatigue", "first", Arrays.asList("111"));
+        now[0] += 10;
+        long second = outbox.enqueue("Accident", "second", Arrays.asList("111", "222"));
+
+        outbox.pump();
+        assertEquals(Arrays.asList("111", "222"), transport.destinations); // 222 isn't held up by 111's queue
+        assertEquals(AlertOutbox.Status.PENDING, outbox.getStatus(second, "111"));
+
+        transport.callbacks.get(0).onSent(true, null);
+        outbox.pump();
+        assertEquals(Arrays.asList("111", "222", "111"), transport.destinations);
+        assertEquals(AlertOutbox.Status.SENT, outbox.getStatus(first, "111"));
+        assertEquals(AlertOutbox.Status.SENDING, outbox.getStatus(second, "111"));
+    }
+
+    @Test
+    public void queuedAlert_survivesRestartAndTornTail() throws Exception {
+        File dir = tempDir();
+        FakeTransport transport = new FakeTransport();
+        AlertOutbox outbox = outbox(dir, transport);
+        long id = outbox.enqueue("Accident", "help", Arrays.asList("111", "222"));
+        outbox.pump();
+        transport.callbacks.get(0).onSent(true, null);
+        // Process dies with 222 in flight, mid-way through writing another record
+        try (FileOutputStream out = new FileOutputStream(new File(dir, "outbox.log"), true)) {
+            out.write(new byte[] {0, 0, 0, 40, 2, 0});
+        }
+
+        FakeTransport after = new FakeTransport();
+        AlertOutbox restarted = outbox(dir, after);
+        assertEquals(1, restarted.getPendingCount());
+        restarted.pump();
+        assertEquals(Arrays.asList("222"), after.destinations); // 111 was already sent
+        after.last().onSent(true, null);
+        assertEquals(AlertOutbox.Status.SENT, restarted.getStatus(id, "222"));
+        assertFalse("Settled journal should be compacted away", new File(dir, "outbox.log").exists());
+    }
+
+    @Test
+    public void failedDelivery_afterCompaction_survivesRestart() throws Exception {
+        File dir = tempDir();
+        FakeTransport transport = new FakeTransport();
+        AlertOutbox outbox = outbox(dir, transport);
+        long id = outbox.enqueue("Accident", "help", Arrays.asList("111"));
+        outbox.pump();
+        AlertTransport.Callback callback = transport.last();
+        callback.onSent(true, null);
+        assertFalse("SENT alone compacts the journal", new File(dir, "outbox.log").exists());
+
+        callback.onDelivered(false); // The network gives up on it after all
+        assertEquals(AlertOutbox.Status.PENDING, outbox.getStatus(id, "111"));
+
+        FakeTransport after = new FakeTransport();
+        AlertOutbox restarted = outbox(dir, after); // Process dies before the retry
+        assertEquals(1, restarted.getPendingCount());
+        now[0] += AlertOutbox.backoffMs(1);
+        restarted.pump();
+        assertEquals(Arrays.asList("111"), after.destinations);
+        assertEquals(2, restarted.getAttempts(id, "111"));
+    }
+
+    @Test
+    public void givesUp_afterMaxAttempts() throws Exception {
+        FakeTransport transport = new FakeTransport();
+        AlertOutbox outbox = outbox(tempDir(), transport);
+        long id = outbox.enqueue("Accident", "help", Arrays.asList("111"));
+        while (outbox.getStatus(id, "111") != AlertOutbox.Status.FAILED) {
+            assertTrue("Never gave up", transport.destinations.size() < 100);
+            long wait = outbox.pump();
+            if (outbox.getStatus(id, "111") == AlertOutbox.Status.SENDING) {
+                transport.last().onSent(false, "radio off");
+            } else {
+                now[0] += wait;
+            }
+        }
+        assertEquals(0, outbox.getPendingCount());
+        assertEquals(-1, outbox.pump());
+    }
+
+    @Test
+    public void parseDestinations_splitsAndDeduplicates() {
+        assertEquals(Arrays.asList("+49 1", "0171"), AlertOutbox.parseDestinations(" +49 1, 0171;+49 1 ;"));
+        assertTrue(AlertOutbox.parseDestinations(null).isEmpty());
+    }
+}
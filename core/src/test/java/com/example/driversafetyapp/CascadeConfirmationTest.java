@@ -0,0 +1,94 @@
+package com.example.driversafetyapp;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs the FAST/ACCURATE cascade on the JVM: the scripted engine answers each tier with its own
+ * eye state, and the tier is picked the way FatigueDetector picks it (ACCURATE when the fatigue
+ * engine wants a closure confirmed). A closure only the FAST tier sees must not raise fatigue;
+ * a confirmed one must raise it as early as it would without the cascade.
+ */
+public class CascadeConfirmationTest {
+
+    private static final int WIDTH = 640, HEIGHT = 480, FPS = 30;
+    private static final long FRAME_MS = 1000 / FPS;
+    private static final long START_MS = 1000, OPEN_MS = 5000, CLOSED_MS = 5000;
+
+    /** Fatigue onset (-1 = never) and how often each tier ran. */
+    private static final class Run {
+        long fatigueOnMs = -1;
+        int fastFrames, accurateFrames;
+        long confirmed, rejected;
+    }
+
+    // Eyes open for OPEN_MS, then the FAST tier sees them shut; the ACCURATE tier sees accurateEyeOpen then
+    private static Run replay(boolean cascade, float accurateEyeOpen) {
+        Run run = new Run();
+        FaceFrame face = new FaceFrame();
+        FatigueEngine engine = new FatigueEngine(new FatigueListener() {
+            @Override public void onFatigueDetected(boolean isFatigued) {
+                if (isFatigued && run.fatigueOnMs < 0) run.fatigueOnMs = face.timestampMs;
+            }
+            @Override public void onNoFaceDetected() {}
+            @Override public void onYawnDetected(int yawnsInWindow) {}
+        }, null);
+        engine.setConfirmationRequired(cascade);
+
+        ScriptedFaceEngine faceEngine = new ScriptedFaceEngine(Runnable::run, (frame, tier, results) -> {
+            boolean shut = frame.timestampMs >= START_MS + OPEN_MS;
+            float eyeOpen = !shut ? 0.95f : (tier == FaceAnalysisEngine.Tier.ACCURATE ? accurateEyeOpen : 0.05f);
+            int i = results.add(200, 120, 440, 360);
+            results.trackingIds[i] = 1;
+            results.leftEyeOpen[i] = eyeOpen;
+            results.rightEyeOpen[i] = eyeOpen;
+        });
+        AnalysisFrame frame = new AnalysisFrame();
+        ByteBuffer yPlane = ByteBuffer.allocateDirect(WIDTH * HEIGHT);
+
+        for (long t = START_MS; t < START_MS + OPEN_MS + CLOSED_MS; t += FRAME_MS) {
+            boolean accurate = cascade && engine.isConfirmationWanted();
+            if (accurate) run.accurateFrames++; else run.fastFrames++;
+            frame.set(t, yPlane, WIDTH, WIDTH, HEIGHT, 0, null);
+            long frameTimeMs = t;
+            faceEngine.analyze(frame, accurate ? FaceAnalysisEngine.Tier.ACCURATE : FaceAnalysisEngine.Tier.FAST,
+                    new FaceAnalysisEngine.Callback() {
+                        @Override public void onResult(FaceResults results) {
+                            results.copyTo(0, frameTimeMs, accurate, face);
+                        }
+                        @Override public void onError(Exception error) { fail(error.toString()); }
+                    });
+            engine.onFrame(face);
+        }
+        run.confirmed = engine.getConfirmedCount();
+        run.rejected = engine.getRejectedCount();
+        return run;
+    }
+
+    @Test
+    public void closureOnlyFastSees_raisesNoAlarm() {
+        Run withoutCascade = replay(false, 0.95f);
+        Run cascade = replay(true, 0.95f);
+
+        assertTrue("The FAST tier alone raises fatigue", withoutCascade.fatigueOnMs > 0);
+        assertEquals("Fatigue onset", -1, cascade.fatigueOnMs);
+        assertTrue("ACCURATE asked", cascade.accurateFrames > 0);
+        assertEquals(0, cascade.confirmed);
+        assertTrue("Rejected " + cascade.rejected, cascade.rejected > 0);
+    }
+
+    @Test
+    public void confirmedClosure_keepsTheFastOnset() {
+        Run withoutCascade = replay(false, 0.05f);
+        Run cascade = replay(true, 0.05f);
+
+        assertTrue("Fatigue never raised", withoutCascade.fatigueOnMs > 0);
+        assertEquals("Fatigue onset", withoutCascade.fatigueOnMs, cascade.fatigueOnMs);
+        assertEquals(1, cascade.accurateFrames); // One confirmation is enough for the whole closure
+        assertEquals(1, cascade.confirmed);
+        assertEquals(0, cascade.rejected);
+    }
+}
@@ -0,0 +1,184 @@
+package com.example.driversafetyapp;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Replays synthetic drop and crash traces through the crash classifier: phone drops and
+ * potholes cross the impact threshold like a crash does, but must not be reported as one.
+ */
+public class CrashClassifierTest {
+
+    private static final float G = 9.81f;
+    private static final float DRIVING_SPEED = 15f; // m/s, ~55 km/h
+
+    private static ReplayHarness harness() {
+        return new ReplayHarness(null, 45.0f, 15.0f);
+    }
+
+    // Phone in its mount: gravity along z plus road vibration
+    private static SyntheticTrace.Motion road(long seed, float vibration) {
+        Random random = new Random(seed);
+        return (ms, accel, gyro) -> {
+            accel[0] = (float) random.nextGaussian() * vibration;
+            accel[1] = (float) random.nextGaussian() * vibration;
+            accel[2] = G + (float) random.nextGaussian() * vibration;
+            gyro[0] = (float) random.nextGaussian() * 0.05f;
+            gyro[1] = (float) random.nextGaussian() * 0.05f;
+            gyro[2] = (float) random.nextGaussian() * 0.05f;
+        };
+    }
+
+    // Frontal crash: a half-sine deceleration pulse along -x from startMs, then the car yaws to a stop
+    private static SyntheticTrace.Motion collision(float peak, long pulseMs, long startMs) {
+        return (segmentMs, accel, gyro) -> {
+            long ms = Math.max(0, segmentMs - startMs);
+            float pulse = segmentMs >= startMs && ms < pulseMs ? peak * (float) Math.sin(Math.PI * ms / pulseMs) : 0f;
+            accel[0] = -pulse;
+            accel[1] = 0.3f * pulse;
+            accel[2] = G;
+            gyro[0] = 0f;
+            gyro[1] = 0f;
+            gyro[2] = segmentMs >= startMs && ms < 1000 ? 3f * (1000 - ms) / 1000f : 0f;
+        };
+    }
+
+    // Rear-end impact on a stopped car: a forward half-sine pulse along +x, no spin
+    private static SyntheticTrace.Motion rearEnd(float peak, long pulseMs) {
+        return (ms, accel, gyro) -> {
+            accel[0] = ms < pulseMs ? peak * (float) Math.sin(Math.PI * ms / pulseMs) : 0f;
+            accel[1] = 0f;
+            accel[2] = G;
+            gyro[0] = 0f;
+            gyro[1] = 0f;
+            gyro[2] = 0f;
+        };
+    }
+
+    // Falling phone: near-zero acceleration while it tumbles
+    private static final SyntheticTrace.Motion FREE_FALL = (ms, accel, gyro) -> {
+        accel[0] = 0.3f;
+        accel[1] = -0.2f;
+        accel[2] = 0.4f;
+        gyro[0] = 8f;
+        gyro[1] = 3f;
+        gyro[2] = 1f;
+    };
+
+    // Landing: one hard spike, then a short bounce
+    private static SyntheticTrace.Motion landing(float peak) {
+        return (ms, accel, gyro) -> {
+            accel[0] = ms < 20 ? 0.4f * peak : 0f;
+            accel[1] = 0f;
+            accel[2] = ms < 20 ? peak : (ms < 60 ? 2f : G);
+            gyro[0] = ms < 60 ? 2f : 0f;
+            gyro[1] = 0f;
+            gyro[2] = 0f;
+        };
+    }
+
+    // Driving for durationMs at hz with a GPS fix every second
+    private static SyntheticTrace drive(SyntheticTrace trace, long durationMs, int hz, float speedMps, SyntheticTrace.Motion motion) {
+        for (long t = 0; t < durationMs; t += 1000) {
+            trace.location(speedMps).sensors(Math.min(1000, durationMs - t), hz, motion);
+        }
+        return trace;
+    }
+
+    private static SyntheticTrace crash(int hz, float peak, long pulseMs, long pulseStartMs) throws Exception {
+        SyntheticTrace trace = drive(new SyntheticTrace(), 20_000, hz, DRIVING_SPEED, road(1, 0.4f));
+        trace.marker(1).sensors(2000, hz, collision(peak, pulseMs, pulseStartMs));
+        return drive(trace, 10_000, hz, 0f, road(3, 0.03f)); // Stopped, nobody moving the phone
+    }
+
+    @Test
+    public void crash_detected() throws Exception {
+        ReplayHarness.Report report = harness().replay(crash(50, 120f, 120, 0).reader());
+
+        ReplayHarness.Detection crash = report.first(ReplayHarness.CRASH);
+        assertNotNull(report.toString(), crash);
+        assertEquals(report.toString(), 1, report.count(ReplayHarness.CRASH));
+        assertEquals(0, report.count(ReplayHarness.IMPACT_DISMISSED));
+        CrashClassifier.Assessment assessment = report.assessments.get(0);
+        assertTrue(assessment.toString(), assessment.deltaV > 5f && assessment.speedBefore - assessment.speedAfter > 10f);
+        assertFalse(assessment.freeFall);
+        assertTrue("Latency " + crash.latencyNs, crash.latencyNs < 5_000_000_000L); // Waits for stillness and the speed drop
+    }
+
+    @Test
+    public void crash_detectedWhenSampledTooSlowlyToSeeThePeak() throws Exception {
+        // 5 Hz (SENSOR_DELAY_NORMAL): the only sample inside the pulse lands on its flank, below the threshold
+        ReplayHarness.Report report = harness().replay(crash(5, 60f, 150, 170).reader());
+
+        assertEquals(report.toString(), 0, report.count(ReplayHarness.HIGH_ACCELERATION));
+        assertEquals(report.toString(), 1, report.count(ReplayHarness.CRASH));
+        assertTrue(report.assessments.get(0).peakAcceleration < 45f);
+    }
+
+    @Test
+    public void rearEndedWhileStopped_crashDetected() throws Exception {
+        // Waiting at a light, hit from behind: ~6 g forward, delta-v ~4 m/s, no speed before to lose
+        SyntheticTrace trace = drive(new SyntheticTrace(), 20_000, 50, 0f, road(1, 0.1f))
+                .marker(1)
+                .sensors(2000, 50, rearEnd(6f * G, 110));
+        drive(trace, 10_000, 50, 0f, road(3, 0.03f));
+
+        ReplayHarness.Report report = harness().replay(trace.reader());
+
+        assertEquals(report.toString(), 1, report.count(ReplayHarness.CRASH));
+        CrashClassifier.Assessment assessment = report.assessments.get(0);
+        assertTrue(assessment.toString(), assessment.deltaV > 3f && assessment.speedBefore < 1f);
+    }
+
+    @Test
+    public void phoneDroppedWhileDriving_notACrash() throws Exception {
+        SyntheticTrace trace = drive(new SyntheticTrace(), 20_000, 50, DRIVING_SPEED, road(1, 0.4f))
+                .marker(1)
+                .sensors(300, 50, FREE_FALL)
+                .sensors(100, 50, landing(150f));
+        drive(trace, 10_000, 50, DRIVING_SPEED, road(4, 0.8f)); // Lying in the footwell, car drives on
+
+        ReplayHarness.Report report = harness().replay(trace.reader());
+
+        assertEquals(report.toString(), 1, report.count(ReplayHarness.HIGH_ACCELERATION)); // The raw threshold fires...
+        assertEquals(report.toString(), 0, report.count(ReplayHarness.CRASH));              // ...the classifier does not
+        assertEquals(1, report.count(ReplayHarness.IMPACT_DISMISSED));
+        assertTrue(report.assessments.get(0).freeFall);
+    }
+
+    @Test
+    public void phoneDroppedWhileParked_notACrash() throws Exception {
+        SyntheticTrace trace = drive(new SyntheticTrace(), 10_000, 50, 0f, road(1, 0.1f))
+                .sensors(450, 50, FREE_FALL)  // ~1 m
+                .sensors(100, 50, landing(200f));
+        drive(trace, 10_000, 50, 0f, road(5, 0.03f)); // Lies still on the ground
+
+        ReplayHarness.Report report = harness().replay(trace.reader());
+
+        assertEquals(report.toString(), 0, report.count(ReplayHarness.CRASH));
+        assertEquals(1, report.count(ReplayHarness.IMPACT_DISMISSED));
+    }
+
+    @Test
+    public void pothole_notACrash() throws Exception {
+        SyntheticTrace.Motion pothole = (ms, accel, gyro) -> {
+            accel[0] = 0f;
+            accel[1] = 0f;
+            accel[2] = ms < 40 ? 5.5f * G : (ms < 100 ? 0.3f * G : G);
+            gyro[0] = ms < 100 ? 1.5f : 0f;
+            gyro[1] = 0f;
+            gyro[2] = 0f;
+        };
+        SyntheticTrace trace = drive(new SyntheticTrace(), 20_000, 50, DRIVING_SPEED, road(1, 0.4f))
+                .sensors(200, 50, pothole);
+        drive(trace, 10_000, 50, DRIVING_SPEED, road(6, 0.4f));
+
+        ReplayHarness.Report report = harness().replay(trace.reader());
+
+        assertEquals(report.toString(), 1, report.count(ReplayHarness.HIGH_ACCELERATION));
+        assertEquals(report.toString(), 0, report.count(ReplayHarness.CRASH));
+    }
+}
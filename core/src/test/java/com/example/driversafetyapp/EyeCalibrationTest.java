@@ -0,0 +1,132 @@
+package com.example.driversafetyapp;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Feeds scripted eye-open probabilities at camera rate through the personal threshold
+ * calibration: learning, rejection of fatigued epochs, and the no-blink fallback.
+ */
+public class EyeCalibrationTest {
+
+    private static final int FPS = 30;
+    private static final long FRAME_MS = 1000 / FPS;
+    private static final int ADAPT_EPOCH_FRAMES = (int) ((60_000 + FRAME_MS - 1) / FRAME_MS); // Frames of face time per epoch
+
+    private final List<EyeCalibration.State> updates = new ArrayList<>();
+    private final EyeCalibration calibration = new EyeCalibration(null, updates::add);
+    private final Random random = new Random(7);
+    private long nowMs = 0;
+
+    // durationMs of frames: eyes around open, blinking (down to ~closed) on blinkFraction of them
+    private void feed(long durationMs, float open, float closed, double blinkFraction, boolean fatigued) {
+        feedFrames((int) (durationMs / FRAME_MS), open, closed, blinkFraction, fatigued);
+    }
+
+    private void feedFrames(int frames, float open, float closed, double blinkFraction, boolean fatigued) {
+        for (int i = 0; i < frames; i++, nowMs += FRAME_MS) {
+            float eye = random.nextDouble() < blinkFraction ? closed : open + 0.05f * (float) random.nextGaussian();
+            calibration.add(nowMs, eye, eye, fatigued);
+        }
+    }
+
+    // Clean frames at fps with every skipEvery-th one missing (0 = none), as FatigueEngine feeds them
+    private void feedAtRate(long durationMs, int fps, int skipEvery, float open, float closed, double blinkFraction) {
+        long endMs = nowMs + durationMs;
+        for (int i = 1; nowMs < endMs; i++, nowMs += 1000 / fps) {
+            if (skipEvery > 0 && i % skipEvery == 0) continue;
+            float eye = random.nextDouble() < blinkFraction ? closed : open + 0.05f * (float) random.nextGaussian();
+            calibration.add(nowMs, eye, eye, false);
+        }
+    }
+
+    // Clean frames until the calibration epoch closes, so later epochs start on a frame boundary
+    private void calibrate() {
+        while (!calibration.isCalibrated()) feedFrames(1, 0.9f, 0.05f, 0.04, false);
+    }
+
+    @Test
+    public void calibrationEpoch_placesThresholdBetweenClosedAndOpen() {
+        feed(119_000, 0.9f, 0.05f, 0.04, false);
+        assertFalse(calibration.isCalibrated());
+        assertEquals(0.5f, calibration.threshold(0.5f), 0);
+
+        feed(2_000, 0.9f, 0.05f, 0.04, false);
+        assertTrue(calibration.isCalibrated());
+        EyeCalibration.State state = calibration.getState();
+        assertEquals(1, updates.size());
+        assertEquals(1, state.epochs);
+        assertEquals(state.toString(), 0.9f, state.openLevel, 0.03f);
+        assertEquals(state.toString(), 0.05f, state.closedLevel, 0.05f);
+        assertEquals(EyeCalibration.deriveThreshold(state.openLevel, state.closedLevel), state.threshold, 0);
+        assertEquals(state.toString(), 0.05f + 0.4f * 0.85f, state.threshold, 0.04f);
+    }
+
+    @Test
+    public void taintedCalibrationEpoch_isDiscarded() {
+        feed(60_000, 0.9f, 0.05f, 0.04, false);
+        feed(1_000, 0.3f, 0.05f, 0.5, true); // Reported fatigued once in the epoch
+        feed(60_000, 0.9f, 0.05f, 0.04, false);
+        assertFalse(calibration.isCalibrated());
+
+        feed(121_000, 0.9f, 0.05f, 0.04, false); // A clean epoch calibrates
+        assertTrue(calibration.isCalibrated());
+        assertEquals(1, calibration.getState().epochs);
+    }
+
+    @Test
+    public void taintedAdaptationEpoch_doesNotMoveThreshold() {
+        calibrate();
+        EyeCalibration.State calibrated = calibration.getState();
+
+        feedFrames(ADAPT_EPOCH_FRAMES, 0.35f, 0.05f, 0.3, true); // Drowsy minute: droopy eyes, long closures
+        assertSame(calibrated, calibration.getState());
+
+        feedFrames(ADAPT_EPOCH_FRAMES, 0.9f, 0.05f, 0.04, false); // A clean minute adapts as usual
+        assertEquals(2, calibration.getState().epochs);
+        assertEquals(calibrated.threshold, calibration.getState().threshold, 0.03f);
+    }
+
+    @Test
+    public void steadyAnalysisRate_calibratesAndAdapts() {
+        // 5 fps with eyes open; one inference in 10 goes to the accurate tier, which calibration doesn't see
+        feedAtRate(121_000, 5, 10, 0.9f, 0.05f, 0.04);
+        assertTrue("Calibration epoch dropped", calibration.isCalibrated());
+        EyeCalibration.State state = calibration.getState();
+        assertEquals(state.toString(), 0.9f, state.openLevel, 0.03f);
+        // ~20 blink frames per epoch instead of ~140: the low quantile is coarser than at camera rate
+        assertEquals(state.toString(), 0.05f, state.closedLevel, 0.15f);
+        assertEquals(state.toString(), 0.05f + 0.4f * 0.85f, state.threshold, 0.08f);
+
+        feedAtRate(61_000, 5, 10, 0.9f, 0.05f, 0.04);
+        assertEquals("Adaptation epoch dropped", 2, calibration.getState().epochs);
+    }
+
+    @Test
+    public void sparseFrames_epochIsDropped() {
+        feedAtRate(125_000, 1, 0, 0.9f, 0.05f, 0.04); // 1 fps: too few samples for the blink quantile
+        assertFalse(calibration.isCalibrated());
+    }
+
+    @Test
+    public void noBlinksSeen_fallsBackToFractionOfOpenLevel() {
+        feed(121_000, 0.6f, 0.05f, 0.0, false); // Never blinks to closed: spread below MIN_SPREAD
+        EyeCalibration.State state = calibration.getState();
+        assertNotNull(state);
+        assertTrue(state.toString(), state.openLevel - state.closedLevel < 0.25f);
+        assertEquals(state.toString(), state.openLevel * 0.5f, state.threshold, 1e-6);
+    }
+
+    @Test
+    public void deriveThreshold_splitsSpreadAndClamps() {
+        assertEquals(0.1f + 0.4f * 0.8f, EyeCalibration.deriveThreshold(0.9f, 0.1f), 1e-6); // Normal spread
+        assertEquals(0.3f, EyeCalibration.deriveThreshold(0.6f, 0.5f), 1e-6);              // MIN_SPREAD fallback
+        assertEquals(0.1f, EyeCalibration.deriveThreshold(0.12f, 0.1f), 1e-6);             // Clamped low
+        assertEquals(0.7f, EyeCalibration.deriveThreshold(1.0f, 0.6f), 1e-6);              // Clamped high
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.driversafetyapp;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+import static org.junit.Assert.*;
+
+/**
+ * Drives the face-analysis engine interface with the scripted engine on the JVM: results
+ * plumbing, crop coordinates, and the latency/allocation accounting every engine gets.
+ */
+public class FaceAnalysisEngineTest {
+
+    private static final int WIDTH = 640, HEIGHT = 480;
+
+    // Bytes allocated by the calling thread (HotSpot); the scripted engine calls back on it
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private static final LongSupplier THREAD_ALLOCATED = () -> THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+
+    // Keeps the last result the engine delivered
+    private static class Recorder implements FaceAnalysisEngine.Callback {
+        final FaceFrame frame = new FaceFrame();
+        int results, errors;
+
+        @Override
+        public void onResult(FaceResults r) {
+            results++;
+            if (r.count > 0) r.copyTo(0, 0, false, frame); else frame.setNoFace(0);
+        }
+
+        @Override
+        public void onError(Exception error) {
+            errors++;
+        }
+    }
+
+    private static AnalysisFrame frame(long timestampMs) {
+        AnalysisFrame frame = new AnalysisFrame();
+        frame.set(timestampMs, ByteBuffer.allocateDirect(WIDTH * HEIGHT), WIDTH, WIDTH, HEIGHT, 0, null);
+        return frame;
+    }
+
+    @Test
+    public void scriptedEngine_deliversScriptedFace() {
+        ScriptedFaceEngine engine = new ScriptedFaceEngine(Runnable::run, (f, tier, r) -> {
+            int i = r.add(100, 50, 300, 250);
+            r.leftEyeOpen[i] = 0.1f;
+            r.rightEyeOpen[i] = 0.3f;
+            r.eulerX[i] = -20f;
+            r.trackingIds[i] = 7;
+        });
+        Recorder recorder = new Recorder();
+        engine.analyze(frame(1000), FaceAnalysisEngine.Tier.FAST, recorder);
+
+        assertEquals(1, recorder.results);
+        assertTrue(recorder.frame.facePresent);
+        assertEquals(0.1f, recorder.frame.leftEyeOpen, 1e-6);
+        assertEquals(0.3f, recorder.frame.rightEyeOpen, 1e-6);
+        assertEquals(-20f, recorder.frame.headEulerX, 1e-6);
+        assertTrue(Float.isNaN(recorder.frame.headEulerY)); // Not reported = unknown
+        assertEquals(7, recorder.frame.trackingId);
+        assertFalse(recorder.frame.mouthValid);
+
+        engine.close();
+        engine.analyze(frame(1033), FaceAnalysisEngine.Tier.FAST, recorder);
+        assertEquals(1, recorder.errors);
+    }
+
+    @Test
+    public void faceResults_shiftMovesCropCoordinatesIntoFrame() {
+        AnalysisFrame crop = frame(0);
+        crop.setCrop(200, 100, 240, 240);
+        ScriptedFaceEngine engine = new ScriptedFaceEngine(Runnable::run, ScriptedFaceEngine.STEADY_FACE);
+        FaceResults[] delivered = new FaceResults[1];
+        engine.analyze(crop, FaceAnalysisEngine.Tier.FAST, new FaceAnalysisEngine.Callback() {
+            @Override public void onResult(FaceResults results) { delivered[0] = results; }
+            @Override public void onError(Exception error) { fail(error.toString()); }
+        });
+
+        FaceResults r = delivered[0];
+        assertEquals(1, r.count);
+        assertEquals(60f, r.boxes[0], 1e-3); // Centred in the 240 px region
+        r.shift(200, 100);
+        assertEquals(260f, r.boxes[0], 1e-3);
+        assertEquals(160f, r.boxes[1], 1e-3);
+        assertEquals(200 + 60 + 120 * 0.3f, r.mouth[YawnDetector.MOUTH_LEFT_X], 1e-3);
+        assertEquals(0.95f, r.maxEyeOpen(0), 1e-6);
+    }
+
+    @Test
+    public void measuredEngine_recordsLatencyPerTierWithoutAllocating() {
+        Recorder recorder = new Recorder();
+        AnalysisFrame frame = frame(0);
+        // Warm up so the JIT settles before allocation is measured
+        MeasuredFaceEngine warmup = new MeasuredFaceEngine(
+                new ScriptedFaceEngine(Runnable::run, ScriptedFaceEngine.STEADY_FACE), THREAD_ALLOCATED);
+        for (int i = 0; i < 20_000; i++) warmup.analyze(frame, FaceAnalysisEngine.Tier.FAST, recorder);
+
+        MeasuredFaceEngine engine = new MeasuredFaceEngine(
+                new ScriptedFaceEngine(Runnable::run, ScriptedFaceEngine.STEADY_FACE), THREAD_ALLOCATED);
+        for (int i = 0; i < 900; i++) {
+            frame.timestampMs = i * 33L;
+            engine.analyze(frame, i % 10 == 0 ? FaceAnalysisEngine.Tier.ACCURATE : FaceAnalysisEngine.Tier.FAST, recorder);
+        }
+
+        assertEquals(ScriptedFaceEngine.ENGINE_SYNTHETIC, engine.getName());
+        assertFalse(engine.hasAccurateTier());
+        assertEquals(810, engine.getLatency(FaceAnalysisEngine.Tier.FAST).getCount());
+        assertEquals(90, engine.getLatency(FaceAnalysisEngine.Tier.ACCURATE).getCount());
+        assertTrue(recorder.frame.facePresent);
+        long allocated = engine.getMeanAllocatedBytes(FaceAnalysisEngine.Tier.FAST);
+        assertTrue("Allocated " + allocated + " bytes per inference", allocated >= 0 && allocated < 64);
+        assertTrue(engine.formatSummary(), engine.formatSummary().contains("FAST"));
+    }
+
+    @Test
+    public void measuredEngine_withoutCounterReportsNoAllocation() {
+        MeasuredFaceEngine engine = new MeasuredFaceEngine(
+                new ScriptedFaceEngine(Runnable::run, ScriptedFaceEngine.STEADY_FACE), null);
+        engine.analyze(frame(0), FaceAnalysisEngine.Tier.FAST, new Recorder());
+        assertEquals(1, engine.getLatency(FaceAnalysisEngine.Tier.FAST).getCount());
+        assertEquals(-1, engine.getMeanAllocatedBytes(FaceAnalysisEngine.Tier.FAST));
+        assertTrue(engine.formatSummary(), engine.formatSummary().contains("n/a"));
+    }
+
+    @Test
+    public void syntheticEngine_onlySelectableWhenAllowed() {
+        Map<String, String> values = Collections.singletonMap(AppConfig.KEY_FACE_ENGINE, FaceAnalysisEngine.ENGINE_SYNTHETIC);
+
+        assertEquals(FaceAnalysisEngine.ENGINE_SYNTHETIC,
+                AppConfig.fromValues(values, AppConfig.defaults(), true, true).faceEngine);
+        // Release: a stored value is ignored, an imported one is rejected
+        assertEquals(FaceAnalysisEngine.ENGINE_MLKIT, AppConfig.fromValues(values, AppConfig.defaults(), false).faceEngine);
+        try {
+            AppConfig.fromValues(values, AppConfig.defaults(), true);
+            fail("Synthetic engine accepted in a release config");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+}
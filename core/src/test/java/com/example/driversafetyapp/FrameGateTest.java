@@ -0,0 +1,159 @@
+package com.example.driversafetyapp;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Replays a synthetic camera stream (Y plane: textured scene, a face, two eyes, sensor noise)
+ * through the pre-filter the way FatigueDetector drives it, with a scripted engine that reports
+ * what the eyes really do. A closing eyelid changes only a few dozen pixels, too few for the
+ * whole-frame difference to notice; the eye band must.
+ */
+public class FrameGateTest {
+
+    private static final int WIDTH = 640, HEIGHT = 480, FPS = 30;
+    private static final long FRAME_MS = 1000 / FPS;
+    private static final float[] FACE_BOX = {240, 140, 400, 300}; // Upright l, t, r, b; rotation 0
+    private static final int[][] EYES = {{280, 190, 40, 15}, {330, 190, 40, 15}}; // l, t, w, h
+    private static final int EYE_OPEN_LUMA = 40, SKIN_LUMA = 150;
+
+    /** What the gate decided for each frame, and when fatigue was raised (-1 = never). */
+    private static final class Run {
+        int inferred, reused;
+        int firstClosedDecision = -1;
+        long fatigueOnMs = -1;
+    }
+
+    // Scene texture once, then per frame: face, eyes open or shut, and +-2 levels of noise
+    private static final class Camera {
+        private final byte[] scene = new byte[WIDTH * HEIGHT];
+        private final ByteBuffer yPlane = ByteBuffer.allocateDirect(WIDTH * HEIGHT);
+        private final Random noise = new Random(7);
+
+        Camera() {
+            Random texture = new Random(3);
+            for (int i = 0; i < scene.length; i++) scene[i] = (byte) (60 + texture.nextInt(120));
+            fill(scene, Math.round(FACE_BOX[0]), Math.round(FACE_BOX[1]),
+                    Math.round(FACE_BOX[2] - FACE_BOX[0]), Math.round(FACE_BOX[3] - FACE_BOX[1]), SKIN_LUMA);
+        }
+
+        ByteBuffer frame(boolean eyesOpen) {
+            byte[] pixels = scene.clone();
+            if (eyesOpen) {
+                for (int[] eye : EYES) fill(pixels, eye[0], eye[1], eye[2], eye[3], EYE_OPEN_LUMA);
+            }
+            for (int i = 0; i < pixels.length; i++) {
+                pixels[i] = (byte) Math.max(0, Math.min(255, (pixels[i] & 0xFF) + noise.nextInt(5) - 2));
+            }
+            yPlane.clear();
+            yPlane.put(pixels);
+            yPlane.clear();
+            return yPlane;
+        }
+
+        private static void fill(byte[] pixels, int left, int top, int width, int height, int luma) {
+            for (int y = top; y < top + height; y++) {
+                for (int x = left; x < left + width; x++) pixels[y * WIDTH + x] = (byte) luma;
+            }
+        }
+    }
+
+    // Eyes open for openMs, then shut for closedMs. gated = false infers every frame (no pre-filter)
+    private static Run replay(long openMs, long closedMs, boolean gated) {
+        Run run = new Run();
+        FrameGate gate = new FrameGate();
+        DriverLock driverLock = new DriverLock();
+        FaceFrame result = new FaceFrame();
+        int[] band = new int[4];
+        int[] trackingIds = {1};
+        FatigueEngine engine = new FatigueEngine(new FatigueListener() {
+            @Override public void onFatigueDetected(boolean isFatigued) {
+                if (isFatigued && run.fatigueOnMs < 0) run.fatigueOnMs = result.timestampMs;
+            }
+            @Override public void onNoFaceDetected() {}
+            @Override public void onYawnDetected(int yawnsInWindow) {}
+        }, null);
+        Camera camera = new Camera();
+
+        for (long t = 1000; t < 1000 + openMs + closedMs; t += FRAME_MS) {
+            boolean eyesOpen = t < 1000 + openMs;
+            ByteBuffer yPlane = camera.frame(eyesOpen);
+            int decision = FrameGate.INFER;
+            if (gated) {
+                if (!driverLock.eyeBand(WIDTH, HEIGHT, 0, band)) band[2] = 0;
+                decision = gate.evaluate(t, yPlane, WIDTH, WIDTH, HEIGHT, band[0], band[1], band[2], band[3]);
+            }
+            if (!eyesOpen && run.firstClosedDecision < 0) run.firstClosedDecision = decision;
+            if (decision == FrameGate.INFER) {
+                run.inferred++;
+                driverLock.planFrame(t, WIDTH, HEIGHT, 0);
+                driverLock.selectDriver(t, false, 1, trackingIds, FACE_BOX.clone());
+                float eyeOpen = eyesOpen ? 0.95f : 0.05f;
+                result.timestampMs = t;
+                result.facePresent = true;
+                result.leftEyeOpen = eyeOpen;
+                result.rightEyeOpen = eyeOpen;
+                result.trackingId = 1;
+                gate.onInferred(true, true, eyeOpen, engine.getEyeClosedThreshold(), 20_000_000L);
+            } else {
+                run.reused++;
+                result.timestampMs = t; // The previous result again, with this frame's timestamp
+            }
+            engine.onFrame(result);
+        }
+        return run;
+    }
+
+    @Test
+    public void staticDriver_resultsAreReused() {
+        Run run = replay(10_000, 0, true);
+
+        assertTrue("Reused " + run.reused + " of " + (run.reused + run.inferred), run.reused > run.inferred);
+        assertEquals(-1, run.fatigueOnMs);
+    }
+
+    @Test
+    public void eyeClosure_isNotMaskedByTheStaticScene() {
+        Run gated = replay(10_000, 4_000, true);
+        Run everyFrame = replay(10_000, 4_000, false);
+
+        assertEquals("First shut-eye frame", FrameGate.INFER, gated.firstClosedDecision);
+        assertTrue("Fatigue never raised", everyFrame.fatigueOnMs > 0);
+        assertEquals("Fatigue onset", everyFrame.fatigueOnMs, gated.fatigueOnMs);
+    }
+
+    @Test
+    public void darkCabin_keepsInferringWhileTheFaceIsFound() {
+        FrameGate gate = new FrameGate();
+        ByteBuffer dark = ByteBuffer.allocateDirect(WIDTH * HEIGHT);
+        Random texture = new Random(5);
+        for (int i = 0; i < WIDTH * HEIGHT; i++) dark.put(i, (byte) (5 + texture.nextInt(30))); // Mean ~20, below MIN_MEAN_LUMA
+
+        long t = 1000;
+        for (int i = 0; i < FPS; i++, t += FRAME_MS) {
+            assertEquals("Dark frame " + i + " with a face", FrameGate.INFER, gate.evaluate(t, dark, WIDTH, WIDTH, HEIGHT, 0, 0, 0, 0));
+            gate.onInferred(true, true, 0.9f, 0.4f, 20_000_000L);
+        }
+        assertEquals(FrameGate.INFER, gate.evaluate(t, dark, WIDTH, WIDTH, HEIGHT, 0, 0, 0, 0));
+        gate.onInferred(true, false, Float.NaN, 0.4f, 20_000_000L); // Face lost in the dark
+        assertEquals(FrameGate.SKIP, gate.evaluate(t + FRAME_MS, dark, WIDTH, WIDTH, HEIGHT, 0, 0, 0, 0));
+    }
+
+    @Test
+    public void eyeBand_followsTheDriverIntoSensorCoordinates() {
+        DriverLock driverLock = new DriverLock();
+        int[] band = new int[4];
+        assertFalse(driverLock.eyeBand(WIDTH, HEIGHT, 90, band)); // No driver yet
+
+        driverLock.planFrame(0, WIDTH, HEIGHT, 90);  // Upright frame is 480 x 640
+        driverLock.selectDriver(0, false, 1, new int[]{1}, new float[]{100, 200, 260, 360});
+
+        assertTrue(driverLock.eyeBand(WIDTH, HEIGHT, 90, band));
+        assertArrayEquals(new int[]{232, 220, 64, 160}, band); // Upright rows 232..296 = sensor columns
+        assertFalse(driverLock.eyeBand(WIDTH, HEIGHT, 0, band)); // Other geometry: nothing known
+    }
+}
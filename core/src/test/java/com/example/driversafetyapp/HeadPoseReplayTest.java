@@ -0,0 +1,174 @@
+package com.example.driversafetyapp;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Replays scripted head poses (open eyes throughout) through the fatigue logic: microsleep
+ * nods, a held head drop and looking away must raise fatigue; a mirror check must not.
+ */
+public class HeadPoseReplayTest {
+
+    private static final int FPS = 30;
+
+    private static ReplayHarness harness() {
+        return new ReplayHarness(FrameRateScheduler.Config.defaults(), 45.0f, 15.0f);
+    }
+
+    // Upright and looking ahead, long enough to learn the neutral pose
+    private static SyntheticTrace upright(SyntheticTrace trace, long durationMs) {
+        return trace.pose(durationMs, FPS, (ms, p) -> { p[0] = 0f; p[1] = 0f; });
+    }
+
+    // Pitch: down to -depth in downMs, held holdMs, back up in upMs
+    private static SyntheticTrace.Pose drop(float depth, long downMs, long holdMs, long upMs) {
+        return (ms, p) -> {
+            if (ms < downMs) p[0] = -depth * ms / downMs;
+            else if (ms < downMs + holdMs) p[0] = -depth;
+            else p[0] = -depth * Math.max(0f, 1f - (float) (ms - downMs - holdMs) / upMs);
+            p[1] = 0f;
+        };
+    }
+
+    // Yaw: turned to angle in 300 ms, held holdMs, back in 300 ms
+    private static SyntheticTrace.Pose turn(float angle, long holdMs) {
+        return (ms, p) -> {
+            p[0] = 0f;
+            if (ms < 300) p[1] = angle * ms / 300f;
+            else if (ms < 300 + holdMs) p[1] = angle;
+            else p[1] = angle * Math.max(0f, 1f - (ms - 300 - holdMs) / 300f);
+        };
+    }
+
+    @Test
+    public void nodPair_raisesFatigueAfterSecondNod() throws Exception {
+        SyntheticTrace trace = upright(new SyntheticTrace(), 30_000)
+                .pose(2_500, FPS, drop(25f, 400, 300, 1200))  // Nod: drops fast, comes back up slowly
+                .pose(5_000, FPS, (ms, p) -> { p[0] = 0f; p[1] = 0f; })
+                .marker(1)
+                .pose(2_500, FPS, drop(25f, 400, 300, 1200));
+        upright(trace, 10_000);
+
+        ReplayHarness.Report report = harness().replay(trace.reader());
+
+        ReplayHarness.Detection onset = report.first(ReplayHarness.FATIGUE_ON);
+        assertNotNull("Nods not detected: " + report, onset);
+        assertEquals(report.toString(), 1, report.count(ReplayHarness.FATIGUE_ON));
+        assertTrue("Latency " + onset.latencyNs, onset.latencyNs < 2_500_000_000L); // Raised once the head is back up
+        assertEquals(1, report.count(ReplayHarness.FATIGUE_OFF));              // Cleared after the hold
+    }
+
+    @Test
+    public void singleNod_notEnough() throws Exception {
+        SyntheticTrace trace = upright(new SyntheticTrace(), 30_000).pose(2_500, FPS, drop(25f, 400, 300, 1200));
+        upright(trace, 10_000);
+        ReplayHarness.Report report = harness().replay(trace.reader());
+        assertEquals(report.toString(), 0, report.count(ReplayHarness.FATIGUE_ON));
+    }
+
+    @Test
+    public void headDrop_heldRaisesFatigue() throws Exception {
+        SyntheticTrace trace = upright(new SyntheticTrace(), 30_000)
+                .marker(1)
+                .pose(7_000, FPS, drop(30f, 500, 4_000, 2_000)); // Chin on chest for 4 s
+        upright(trace, 10_000);
+
+        ReplayHarness.Report report = harness().replay(trace.reader());
+
+        ReplayHarness.Detection onset = report.first(ReplayHarness.FATIGUE_ON);
+        assertNotNull("Head drop not detected: " + report, onset);
+        // Down after ~0.5 s plus filter lag, then HEAD_DROP_HOLD_MS (1.5 s)
+        assertTrue("Latency " + onset.latencyNs, onset.latencyNs >= 1_800_000_000L && onset.latencyNs < 3_000_000_000L);
+        assertEquals(1, report.count(ReplayHarness.FATIGUE_ON));
+    }
+
+    @Test
+    public void lookingAway_heldRaisesFatigue() throws Exception {
+        SyntheticTrace trace = upright(new SyntheticTrace(), 30_000)
+                .marker(1)
+                .pose(3_600, FPS, turn(35f, 3_000)); // 35° yaw held for 3 s
+        upright(trace, 10_000);
+
+        ReplayHarness.Report report = harness().replay(trace.reader());
+
+        ReplayHarness.Detection onset = report.first(ReplayHarness.FATIGUE_ON);
+        assertNotNull("Looking away not detected: " + report, onset);
+        assertTrue("Latency " + onset.latencyNs, onset.latencyNs >= 2_000_000_000L && onset.latencyNs < 3_000_000_000L);
+        assertEquals(1, report.count(ReplayHarness.FATIGUE_ON));
+        assertEquals(1, report.count(ReplayHarness.FATIGUE_OFF));
+    }
+
+    @Test
+    public void mirrorChecks_doNotRaiseFatigue() throws Exception {
+        SyntheticTrace trace = upright(new SyntheticTrace(), 30_000);
+        for (int i = 0; i < 10; i++) {
+            trace.pose(1_400, FPS, turn(i % 2 == 0 ? 40f : -40f, 800)); // Side mirror, 0.8 s
+            upright(trace, 8_000);
+        }
+        ReplayHarness.Report report = harness().replay(trace.reader());
+        assertEquals(report.toString(), 0, report.count(ReplayHarness.FATIGUE_ON));
+    }
+
+    @Test
+    public void headDrop_outOfView_keepsFatigueUntilFaceReturns() throws Exception {
+        SyntheticTrace trace = upright(new SyntheticTrace(), 30_000)
+                .marker(1)
+                .pose(800, FPS, drop(40f, 500, 10_000, 1_000)) // Down past the nod depth...
+                .noFace(6_000, FPS);                           // ...and on down out of the camera's view
+        long faceBackNs = trace.nowNs();
+        upright(trace, 10_000);
+
+        ReplayHarness.Report report = harness().replay(trace.reader());
+
+        ReplayHarness.Detection onset = report.first(ReplayHarness.FATIGUE_ON);
+        assertNotNull("Head drop out of view not detected: " + report, onset);
+        assertTrue("Latency " + onset.latencyNs, onset.latencyNs < 3_500_000_000L); // At the end of the no-face grace
+        assertEquals(report.toString(), 1, report.count(ReplayHarness.FATIGUE_ON));
+        ReplayHarness.Detection clear = report.first(ReplayHarness.FATIGUE_OFF);
+        assertNotNull(report.toString(), clear);
+        assertTrue("Cleared while the face was still gone: " + report, clear.timestampNs >= faceBackNs);
+    }
+
+    @Test
+    public void slowAnalysisRate_headDropStillDetected() {
+        HeadPoseDetector detector = new HeadPoseDetector();
+        long t = 0;
+        for (; t < 20_000; t += 1_200) detector.update(t, 0f, 0f);  // ~0.8 fps: every interval is over 1 s
+        for (long end = t + 5_000; t < end; t += 1_200) detector.update(t, -45f, 0f);
+        assertTrue("Filters restarted on every frame", detector.isHeadDropped(t - 1_200));
+    }
+
+    @Test
+    public void bothTiers_feedHeadPoseOnOneScale() {
+        boolean[] fatigued = {false};
+        FatigueEngine engine = new FatigueEngine(new FatigueListener() {
+            @Override public void onFatigueDetected(boolean isFatigued) { fatigued[0] = isFatigued; }
+            @Override public void onNoFaceDetected() {}
+            @Override public void onYawnDetected(int yawnsInWindow) {}
+        }, null);
+        FaceFrame face = new FaceFrame();
+        long t = 0;
+        for (int i = 0; t < 40_000; i++, t += 200) feedPose(engine, face, t, i % 10 == 9, 0f); // Yawn samples
+        for (long end = t + 4_000; t < end; t += 200) feedPose(engine, face, t, true, 0f);     // Confirmation burst
+        assertFalse("ACCURATE model's pitch read as a head drop", fatigued[0]);
+        for (long end = t + 5_000; t < end; t += 200) feedPose(engine, face, t, false, 0f);
+        for (long end = t + 5_000; t < end; t += 200) feedPose(engine, face, t, false, -40f);
+        assertTrue("Head drop not detected", fatigued[0]);
+    }
+
+    // Upright is pitch; the ACCURATE model reads 15° lower than the FAST one
+    private static void feedPose(FatigueEngine engine, FaceFrame face, long t, boolean accurate, float pitch) {
+        face.setNoFace(t);
+        face.facePresent = true;
+        face.trackingId = 1;
+        face.leftEyeOpen = 0.95f;
+        face.rightEyeOpen = 0.95f;
+        face.accurate = accurate;
+        face.landmarksRun = accurate;
+        face.headEulerX = accurate ? pitch - 15f : pitch;
+        face.headEulerY = 0f;
+        face.headEulerZ = 0f;
+        engine.onFrame(face);
+    }
+}
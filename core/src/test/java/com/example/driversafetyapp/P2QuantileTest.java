@@ -0,0 +1,79 @@
+package com.example.driversafetyapp;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the streaming P² estimate against exact quantiles of the same samples.
+ */
+public class P2QuantileTest {
+
+    private static final int SAMPLES = 50_000;
+
+    private static double exact(double[] sorted, double p) {
+        return sorted[(int) Math.round(p * (sorted.length - 1))];
+    }
+
+    private static void assertTracks(double[] samples, double p, double tolerance) {
+        P2Quantile q = new P2Quantile(p);
+        for (double x : samples) q.add(x);
+        double[] sorted = samples.clone();
+        Arrays.sort(sorted);
+        assertEquals("p=" + p, exact(sorted, p), q.estimate(), tolerance);
+        assertEquals(samples.length, q.getCount());
+    }
+
+    @Test
+    public void uniform_matchesExactQuantiles() {
+        Random random = new Random(1);
+        double[] samples = new double[SAMPLES];
+        for (int i = 0; i < samples.length; i++) samples[i] = random.nextDouble();
+        assertTracks(samples, 0.5, 0.01);
+        assertTracks(samples, 0.9, 0.01);
+        assertTracks(samples, 0.02, 0.01);
+    }
+
+    @Test
+    public void normal_matchesExactQuantiles() {
+        Random random = new Random(2);
+        double[] samples = new double[SAMPLES];
+        for (int i = 0; i < samples.length; i++) samples[i] = 10 + 2 * random.nextGaussian();
+        assertTracks(samples, 0.5, 0.05);
+        assertTracks(samples, 0.95, 0.1);
+        assertTracks(samples, 0.02, 0.15);
+    }
+
+    @Test
+    public void eyeOpenMixture_lowQuantileFindsTheBlinks() {
+        // What EyeCalibration feeds it: mostly open eyes, a few percent blink frames
+        Random random = new Random(3);
+        double[] samples = new double[SAMPLES];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = random.nextDouble() < 0.04 ? 0.05 * random.nextDouble() : 0.85 + 0.1 * random.nextDouble();
+        }
+        assertTracks(samples, 0.5, 0.01);
+        assertTracks(samples, 0.02, 0.02);
+    }
+
+    @Test
+    public void fewSamples_exactAndResettable() {
+        P2Quantile q = new P2Quantile(0.5);
+        assertTrue(Double.isNaN(q.estimate()));
+        q.add(3);
+        q.add(1);
+        q.add(2);
+        assertEquals(2, q.estimate(), 0);
+        q.reset();
+        assertEquals(0, q.getCount());
+        assertTrue(Double.isNaN(q.estimate()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsQuantileOutsideUnitInterval() {
+        new P2Quantile(1.0);
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.driversafetyapp;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Feeds a recorded trace through FrameRateScheduler, FatigueEngine, ImpactDetector and
+ * CrashClassifier on a simulated clock (the trace timestamps) as fast as the JVM allows, and reports what was
+ * detected, how long after the last ground-truth marker, and the replay throughput.
+ */
+public class ReplayHarness implements FatigueListener, ImpactDetector.ImpactListener, CrashClassifier.Listener {
+
+    public static final String FATIGUE_ON = "FATIGUE_ON";
+    public static final String FATIGUE_OFF = "FATIGUE_OFF";
+    public static final String YAWN = "YAWN";
+    public static final String HIGH_ACCELERATION = "HIGH_ACCELERATION";
+    public static final String HIGH_ROTATION = "HIGH_ROTATION";
+    public static final String CRASH = "CRASH";
+    public static final String IMPACT_DISMISSED = "IMPACT_DISMISSED";
+
+    public static class Detection {
+        public final String kind;
+        public final long timestampNs;
+        public final long latencyNs; // Since the last MARKER record, -1 if none preceded it
+
+        Detection(String kind, long timestampNs, long latencyNs) {
+            this.kind = kind;
+            this.timestampNs = timestampNs;
+            this.latencyNs = latencyNs;
+        }
+
+        @Override
+        public String toString() {
+            return kind + "@" + timestampNs / 1_000_000L + "ms" + (latencyNs >= 0 ? " (+" + latencyNs / 1_000_000L + "ms)" : "");
+        }
+    }
+
+    public static class Report {
+        public final List<Detection> detections = new ArrayList<>();
+        public final List<CrashClassifier.Assessment> assessments = new ArrayList<>(); // Every evaluated impact
+        public long cameraFrames;      // Face/no-face records in the trace
+        public long analyzedFrames;    // Frames the scheduler let through to the engine
+        public long sensorSamples;
+        public long simulatedNs;       // Trace duration
+        public long wallNs;            // Time the replay took
+
+        public double framesPerSecond() {
+            return wallNs > 0 ? analyzedFrames * 1e9 / wallNs : 0;
+        }
+
+        public double speedup() {
+            return wallNs > 0 ? (double) simulatedNs / wallNs : 0;
+        }
+
+        public Detection first(String kind) {
+            for (Detection d : detections) if (d.kind.equals(kind)) return d;
+            return null;
+        }
+
+        public int count(String kind) {
+            int n = 0;
+            for (Detection d : detections) if (d.kind.equals(kind)) n++;
+            return n;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(java.util.Locale.US, "%d/%d frames analyzed, %d sensor samples, %.1f fps, %.0fx real-time, detections=%s, impacts=%s",
+                    analyzedFrames, cameraFrames, sensorSamples, framesPerSecond(), speedup(), detections, assessments);
+        }
+    }
+
+    private final FrameRateScheduler scheduler; // Null = analyze every recorded frame
+    private final FatigueEngine engine;
+    private final ImpactDetector impactDetector;
+    private final CrashClassifier crashClassifier;
+
+    private Report report;
+    private long currentNs;
+    private long lastMarkerNs = -1;
+
+    public ReplayHarness(FrameRateScheduler.Config rateConfig, float accelerationThreshold, float rotationThreshold) {
+        this.scheduler = rateConfig != null ? new FrameRateScheduler(rateConfig) : null;
+        this.engine = new FatigueEngine(this, scheduler);
+        this.impactDetector = new ImpactDetector(accelerationThreshold, rotationThreshold, this);
+        this.crashClassifier = new CrashClassifier(accelerationThreshold, rotationThreshold, this);
+    }
+
+    public Report replay(TraceFile.Reader reader) throws IOException {
+        report = new Report();
+        TraceFile.Record rec = new TraceFile.Record();
+        long firstNs = -1;
+        long startWall = System.nanoTime();
+        while (reader.next(rec)) {
+            currentNs = rec.timestampNs;
+            if (firstNs == -1) firstNs = currentNs;
+            switch (rec.type) {
+                case TraceFile.TYPE_FACE:
+                case TraceFile.TYPE_NO_FACE:
+                    report.cameraFrames++;
+                    if (scheduler == null || scheduler.shouldAnalyze(rec.timestampNs)) {
+                        report.analyzedFrames++;
+                        engine.onFrame(rec.face);
+                    }
+                    break;
+                case TraceFile.TYPE_ACCEL:
+                    report.sensorSamples++;
+                    impactDetector.onAccelerometer(rec.timestampNs, rec.x, rec.y, rec.z);
+                    crashClassifier.onAccelerometer(rec.timestampNs, rec.x, rec.y, rec.z);
+                    break;
+                case TraceFile.TYPE_GYRO:
+                    report.sensorSamples++;
+                    impactDetector.onGyroscope(rec.timestampNs, rec.x, rec.y, rec.z);
+                    crashClassifier.onGyroscope(rec.timestampNs, rec.x, rec.y, rec.z);
+                    break;
+                case TraceFile.TYPE_LOCATION:
+                    crashClassifier.onLocation(rec.timestampNs, true, rec.speedMps);
+                    break;
+                case TraceFile.TYPE_MARKER:
+                    lastMarkerNs = rec.timestampNs;
+                    break;
+                default:
+                    break;
+            }
+        }
+        report.wallNs = System.nanoTime() - startWall;
+        report.simulatedNs = firstNs == -1 ? 0 : currentNs - firstNs;
+        return report;
+    }
+
+    private void detected(String kind, long timestampNs) {
+        report.detections.add(new Detection(kind, timestampNs, lastMarkerNs >= 0 ? timestampNs - lastMarkerNs : -1));
+    }
+
+    // --- Listener callbacks (synchronous, on the replay thread) ---
+    @Override public void onFatigueDetected(boolean isFatigued) { detected(isFatigued ? FATIGUE_ON : FATIGUE_OFF, currentNs); }
+    @Override public void onNoFaceDetected() {}
+    @Override public void onYawnDetected(int yawnsInWindow) { detected(YAWN, currentNs); }
+    @Override public void onHighAcceleration(float magnitude, long timestampNs) { detected(HIGH_ACCELERATION, timestampNs); }
+    @Override public void onHighRotation(float magnitude, long timestampNs) { detected(HIGH_ROTATION, timestampNs); }
+
+    @Override
+    public void onCrashDetected(CrashClassifier.Assessment assessment) {
+        report.assessments.add(assessment);
+        detected(CRASH, currentNs);
+    }
+
+    @Override
+    public void onImpactDismissed(CrashClassifier.Assessment assessment) {
+        report.assessments.add(assessment);
+        detected(IMPACT_DISMISSED, currentNs);
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.driversafetyapp;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Replays scripted drives through the fatigue and impact logic on the JVM.
+ */
+public class ReplayHarnessTest {
+
+    private static ReplayHarness harness() {
+        return new ReplayHarness(FrameRateScheduler.Config.defaults(), 45.0f, 15.0f);
+    }
+
+    @Test
+    public void microsleep_detectedOnceWithinLatencyBudget() throws Exception {
+        SyntheticTrace trace = new SyntheticTrace()
+                .face(30_000, 30, 0.95f, 0.2f)   // Alert driving
+                .marker(1)
+                .face(3_000, 30, 0.05f, 0.2f)    // Eyes shut for 3 s
+                .face(10_000, 30, 0.95f, 0.2f);  // Eyes open again
+
+        ReplayHarness.Report report = harness().replay(trace.reader());
+
+        ReplayHarness.Detection onset = report.first(ReplayHarness.FATIGUE_ON);
+        assertNotNull("Fatigue not detected: " + report, onset);
+        assertEquals(1, report.count(ReplayHarness.FATIGUE_ON)); // Edge-triggered, not once per frame
+        assertTrue("Latency " + onset.latencyNs, onset.latencyNs >= 1_900_000_000L && onset.latencyNs < 2_500_000_000L);
+        assertEquals(1, report.count(ReplayHarness.FATIGUE_OFF));
+        assertTrue(report.analyzedFrames < report.cameraFrames); // Scheduler drops frames while alert
+    }
+
+    @Test
+    public void briefFaceDropout_keepsTheFatigueEpisode() throws Exception {
+        SyntheticTrace trace = new SyntheticTrace()
+                .face(30_000, 30, 0.95f, 0.2f)
+                .face(3_000, 30, 0.05f, 0.2f)    // Microsleep raises fatigue
+                .noFace(1_000, 30)               // Hand over the face
+                .face(2_000, 30, 0.05f, 0.2f)    // Still shut
+                .face(60_000, 30, 0.95f, 0.2f);  // Clears once the closures leave the PERCLOS window
+        ReplayHarness.Report report = harness().replay(trace.reader());
+        assertEquals(report.toString(), 1, report.count(ReplayHarness.FATIGUE_ON)); // No clear/onset pair around the dropout
+        assertEquals(report.toString(), 1, report.count(ReplayHarness.FATIGUE_OFF));
+    }
+
+    @Test
+    public void longFaceLoss_clearsFatigueAndPerclos() throws Exception {
+        SyntheticTrace trace = new SyntheticTrace();
+        for (int i = 0; i < 20; i++) {
+            trace.face(2_000, 30, 0.95f, 0.2f).face(600, 30, 0.05f, 0.2f); // ~23% closed: high PERCLOS
+        }
+        trace.noFace(5_000, 30)                  // Driver out of view
+                .face(30_000, 30, 0.95f, 0.2f);  // Back, alert
+        ReplayHarness.Report report = harness().replay(trace.reader());
+        assertEquals(report.toString(), 1, report.count(ReplayHarness.FATIGUE_ON));
+        assertEquals(report.toString(), 1, report.count(ReplayHarness.FATIGUE_OFF)); // The old closures don't re-raise it
+    }
+
+    @Test
+    public void shortBlinks_doNotTriggerFatigue() throws Exception {
+        SyntheticTrace trace = new SyntheticTrace();
+        for (int i = 0; i < 60; i++) {
+            trace.face(4_800, 30, 0.95f, 0.2f).face(200, 30, 0.05f, 0.2f); // Normal blink every 5 s
+        }
+        ReplayHarness.Report report = harness().replay(trace.reader());
+        assertEquals(report.toString(), 0, report.count(ReplayHarness.FATIGUE_ON));
+    }
+
+    @Test
+    public void yawn_countedOnce() throws Exception {
+        SyntheticTrace trace = new SyntheticTrace()
+                .face(10_000, 30, 0.95f, 0.2f)
+                .face(3_000, 30, 0.95f, 0.9f)    // Mouth wide open for 3 s
+                .face(5_000, 30, 0.95f, 0.2f);
+        ReplayHarness.Report report = harness().replay(trace.reader());
+        assertEquals(report.toString(), 1, report.count(ReplayHarness.YAWN));
+    }
+
+    @Test
+    public void impact_detectedFromSensorTrace() throws Exception {
+        SyntheticTrace trace = new SyntheticTrace()
+                .accel(5_000, 50, 9.8f)
+                .marker(2)
+                .accel(60, 50, 80f)
+                .accel(5_000, 50, 9.8f);
+        ReplayHarness.Report report = harness().replay(trace.reader());
+        ReplayHarness.Detection impact = report.first(ReplayHarness.HIGH_ACCELERATION);
+        assertNotNull(report.toString(), impact);
+        assertEquals(1, report.count(ReplayHarness.HIGH_ACCELERATION));
+        assertEquals(0, impact.latencyNs);
+    }
+
+    @Test
+    public void replay_runsFasterThanRealTime() throws Exception {
+        SyntheticTrace trace = new SyntheticTrace().face(10 * 60_000, 30, 0.95f, 0.2f); // 10 minutes
+        ReplayHarness.Report report = new ReplayHarness(null, 45.0f, 15.0f).replay(trace.reader());
+        assertEquals(report.cameraFrames, report.analyzedFrames);
+        assertTrue(report.toString(), report.speedup() > 10);
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.driversafetyapp;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * Builds small scripted traces in memory for replay tests: face frames (optionally with a
+ * scripted head pose) at a camera rate, sensor samples at a sensor rate, GPS fixes, and
+ * ground-truth markers.
+ */
+public class SyntheticTrace {
+
+    /** Head pose for pose(): fills pitchYaw with pitch (positive = up) and yaw in degrees at msIntoSegment. */
+    public interface Pose {
+        void at(long msIntoSegment, float[] pitchYaw);
+    }
+
+    /** Phone motion for sensors(): fills accel (m/s^2, gravity included) and gyro (rad/s) at msIntoSegment. */
+    public interface Motion {
+        void sample(long msIntoSegment, float[] accel, float[] gyro);
+    }
+
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    private final TraceFile.Writer writer;
+    private final FaceFrame frame = new FaceFrame();
+    private final float[] accel = new float[3], gyro = new float[3];
+    private final float[] pitchYaw = new float[2];
+    private long nowNs = 1_000_000_000L;
+
+    public SyntheticTrace() throws IOException {
+        writer = new TraceFile.Writer(bytes);
+    }
+
+    public long nowNs() {
+        return nowNs;
+    }
+
+    /** durationMs of face frames at fps with the given eye-open probability and mouth opening ratio. */
+    public SyntheticTrace face(long durationMs, int fps, float eyeOpenProb, float mouthRatio) {
+        long stepNs = 1_000_000_000L / fps;
+        long endNs = nowNs + durationMs * 1_000_000L;
+        for (; nowNs < endNs; nowNs += stepNs) writeFace(eyeOpenProb, mouthRatio, 0f, 0f);
+        return this;
+    }
+
+    /** durationMs of open-eyed face frames at fps with the head pose scripted by pose. */
+    public SyntheticTrace pose(long durationMs, int fps, Pose pose) {
+        long stepNs = 1_000_000_000L / fps;
+        long startNs = nowNs;
+        long endNs = nowNs + durationMs * 1_000_000L;
+        for (; nowNs < endNs; nowNs += stepNs) {
+            pose.at((nowNs - startNs) / 1_000_000L, pitchYaw);
+            writeFace(0.95f, 0.2f, pitchYaw[0], pitchYaw[1]);
+        }
+        return this;
+    }
+
+    private void writeFace(float eyeOpenProb, float mouthRatio, float pitch, float yaw) {
+        frame.timestampMs = nowNs / 1_000_000L;
+        frame.facePresent = true;
+        frame.leftEyeOpen = eyeOpenProb;
+        frame.rightEyeOpen = eyeOpenProb;
+        // Mouth corners 40 px apart, lower lip mouthRatio * 40 px below their midpoint
+        frame.mouth[YawnDetector.MOUTH_LEFT_X] = 100; frame.mouth[YawnDetector.MOUTH_LEFT_Y] = 200;
+        frame.mouth[YawnDetector.MOUTH_RIGHT_X] = 140; frame.mouth[YawnDetector.MOUTH_RIGHT_Y] = 200;
+        frame.mouth[YawnDetector.MOUTH_BOTTOM_X] = 120; frame.mouth[YawnDetector.MOUTH_BOTTOM_Y] = 200 + mouthRatio * 40;
+        frame.mouthValid = true;
+        frame.headEulerX = pitch; frame.headEulerY = yaw; frame.headEulerZ = 0;
+        frame.trackingId = 1;
+        writer.writeFace(frame);
+    }
+
+    public SyntheticTrace noFace(long durationMs, int fps) {
+        long stepNs = 1_000_000_000L / fps;
+        long endNs = nowNs + durationMs * 1_000_000L;
+        for (; nowNs < endNs; nowNs += stepNs) {
+            frame.setNoFace(nowNs / 1_000_000L);
+            writer.writeFace(frame);
+        }
+        return this;
+    }
+
+    /** Accelerometer samples with the given magnitude along z (gravity included by the caller). */
+    public SyntheticTrace accel(long durationMs, int hz, float magnitude) {
+        long stepNs = 1_000_000_000L / hz;
+        long endNs = nowNs + durationMs * 1_000_000L;
+        for (; nowNs < endNs; nowNs += stepNs) writer.writeVector(TraceFile.TYPE_ACCEL, nowNs, 0f, 0f, magnitude);
+        return this;
+    }
+
+    public SyntheticTrace gyro(long durationMs, int hz, float magnitude) {
+        long stepNs = 1_000_000_000L / hz;
+        long endNs = nowNs + durationMs * 1_000_000L;
+        for (; nowNs < endNs; nowNs += stepNs) writer.writeVector(TraceFile.TYPE_GYRO, nowNs, magnitude, 0f, 0f);
+        return this;
+    }
+
+    /** Interleaved accelerometer and gyroscope samples at hz, shaped by motion. */
+    public SyntheticTrace sensors(long durationMs, int hz, Motion motion) {
+        long stepNs = 1_000_000_000L / hz;
+        long startNs = nowNs;
+        long endNs = nowNs + durationMs * 1_000_000L;
+        for (; nowNs < endNs; nowNs += stepNs) {
+            motion.sample((nowNs - startNs) / 1_000_000L, accel, gyro);
+            writer.writeVector(TraceFile.TYPE_ACCEL, nowNs, accel[0], accel[1], accel[2]);
+            writer.writeVector(TraceFile.TYPE_GYRO, nowNs, gyro[0], gyro[1], gyro[2]);
+        }
+        return this;
+    }
+
+    /** One GPS fix with the given speed, at the current time. */
+    public SyntheticTrace location(float speedMps) {
+        writer.writeLocation(nowNs, 0.0, 0.0, speedMps);
+        return this;
+    }
+
+    public SyntheticTrace marker(int id) {
+        writer.writeMarker(nowNs, id);
+        return this;
+    }
+
+    public TraceFile.Reader reader() throws IOException {
+        writer.close();
+        return new TraceFile.Reader(new ByteArrayInputStream(bytes.toByteArray()));
+    }
+}